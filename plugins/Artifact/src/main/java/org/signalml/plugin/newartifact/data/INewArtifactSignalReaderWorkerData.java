@@ -6,6 +6,7 @@ public interface INewArtifactSignalReaderWorkerData {
 	double[][] getWritableBuffer() throws InterruptedException;
 	void markBufferAsReady(double buffer[][]) throws InterruptedException;
 	void finalizeBuffers() throws InterruptedException;
+	void abortBuffers();
 
 	MultichannelSampleSource getSignalSource();
 	NewArtifactConstants getArtifactConstants();
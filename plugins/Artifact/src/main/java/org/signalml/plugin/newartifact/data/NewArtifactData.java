@@ -100,6 +100,15 @@ public void setProcessedProject(boolean processedProject) {
 		this.processedProject = processedProject;
 	}
 
+	/**
+	 * Returns whether the intermediate results of the algorithms should be
+	 * written to files in the work directory.
+	 * @see NewArtifactParameters#isKeepIntermediateFiles()
+	 */
+	public boolean isKeepIntermediateFiles() {
+		return parameters.isKeepIntermediateFiles();
+	}
+
 	public void validate(Errors errors) {
 		// TODO maybe do, not needed now
 	}
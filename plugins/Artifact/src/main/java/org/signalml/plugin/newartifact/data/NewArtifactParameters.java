@@ -28,6 +28,8 @@ public class NewArtifactParameters implements Serializable, Preset {
 	private int[] chosenArtifactTypes;
 	private float[] sensitivities;
 
+	private boolean keepIntermediateFiles;
+
 	public NewArtifactParameters() {
 		int cnt = NewArtifactType.values().length;
 		chosenArtifactTypes = new int[cnt];
@@ -88,6 +90,19 @@ public void setSensitivity(NewArtifactType artifactType, float value) {
 		sensitivities[artifactType.ordinal()] = value;
 	}
 
+	/**
+	 * Returns whether the intermediate results of the algorithms should be
+	 * written to files in the project directory. Otherwise they are passed
+	 * to the tag creators in memory.
+	 */
+	public boolean isKeepIntermediateFiles() {
+		return keepIntermediateFiles;
+	}
+
+	public void setKeepIntermediateFiles(boolean keepIntermediateFiles) {
+		this.keepIntermediateFiles = keepIntermediateFiles;
+	}
+
 	@Override
 	public String toString() {
 		return this.getName();
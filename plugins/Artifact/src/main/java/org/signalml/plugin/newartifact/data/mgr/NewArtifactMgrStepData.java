@@ -6,6 +6,7 @@
 import org.signalml.plugin.method.logic.PluginComputationMgrStepData;
 import org.signalml.plugin.newartifact.data.NewArtifactConstants;
 import org.signalml.plugin.newartifact.data.NewArtifactData;
+import org.signalml.plugin.newartifact.io.NewArtifactIntermediateDataBuffers;
 import org.signalml.plugin.newartifact.logic.mgr.INewArtifactPathConstructor;
 import org.signalml.plugin.newartifact.logic.mgr.NewArtifactComputationProgressPhase;
 
@@ -13,15 +14,18 @@ public class NewArtifactMgrStepData extends PluginComputationMgrStepData<NewArti
 	public final NewArtifactData artifactData;
 	public final NewArtifactConstants constants;
 	public final INewArtifactPathConstructor pathConstructor;
+	public final NewArtifactIntermediateDataBuffers intermediateData;
 
 	public NewArtifactMgrStepData(final NewArtifactData artifactData,
 								  final NewArtifactConstants constants,
 								  final INewArtifactPathConstructor pathConstructor,
+								  final NewArtifactIntermediateDataBuffers intermediateData,
 								  final IPluginComputationMgrStepTrackerProxy<NewArtifactComputationProgressPhase> tracker,
 								  final ThreadFactory threadFactory) {
 		super(tracker, threadFactory);
 		this.artifactData = artifactData;
 		this.constants = constants;
 		this.pathConstructor = pathConstructor;
+		this.intermediateData = intermediateData;
 	}
 }
@@ -0,0 +1,164 @@
+package org.signalml.plugin.newartifact.io;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.signalml.plugin.export.SignalMLException;
+
+/**
+ * Writes the results of an algorithm to an intermediate file in the format
+ * of {@link NewArtifactAlgorithmWriter}, but the file is written by the
+ * given executor, so the algorithm does not wait for the disk. The executor
+ * should have a single thread, so that the blocks are written in order, and
+ * a bounded queue, so that the blocks waiting for the disk are not retained
+ * without limit; see {@link #CreateExecutor(ThreadFactory, int)}.
+ */
+public class NewArtifactAsyncAlgorithmWriter implements
+	INewArtifactAlgorithmWriter {
+
+	private final FileOutputStream stream;
+	private final FileChannel channel;
+	private final ExecutorService executor;
+
+	private volatile IOException error;
+
+	/**
+	 * Creates an executor suitable for the writers: it has a single thread
+	 * and at most <code>queueSize</code> waiting blocks. When the queue is
+	 * full the thread submitting a block waits, the order of the blocks is
+	 * kept.
+	 * @param threadFactory the factory of the writing thread
+	 * @param queueSize the maximal number of blocks waiting to be written
+	 * @return the executor
+	 */
+	public static ExecutorService CreateExecutor(ThreadFactory threadFactory,
+			int queueSize) {
+		return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+									  new ArrayBlockingQueue<Runnable>(queueSize), threadFactory,
+		new RejectedExecutionHandler() {
+			@Override
+			public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+				if (executor.isShutdown()) {
+					throw new RejectedExecutionException("Executor is shut down");
+				}
+				try {
+					executor.getQueue().put(r);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RejectedExecutionException(e);
+				}
+			}
+		});
+	}
+
+	public NewArtifactAsyncAlgorithmWriter(File targetFile,
+										   ExecutorService executor) throws SignalMLException {
+		try {
+			this.stream = new FileOutputStream(targetFile);
+		} catch (FileNotFoundException e) {
+			throw new SignalMLException(e);
+		}
+		this.channel = this.stream.getChannel();
+		this.executor = executor;
+		this.error = null;
+	}
+
+	@Override
+	public void write(double[][] buffer) throws IOException {
+		if (this.error != null) {
+			throw this.error;
+		}
+
+		int length = 0;
+		for (int i = 0; i < buffer.length; ++i) {
+			length += buffer[i].length;
+		}
+		final ByteBuffer byteBuffer = ByteBuffer.allocate(4 * length);
+		byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < buffer.length; ++i) {
+			double subArray[] = buffer[i];
+			for (int j = 0; j < subArray.length; ++j) {
+				byteBuffer.putFloat((float) subArray[j]);
+			}
+		}
+		byteBuffer.flip();
+
+		try {
+			this.executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					if (error != null) {
+						return;
+					}
+					try {
+						while (byteBuffer.hasRemaining()) {
+							channel.write(byteBuffer);
+						}
+					} catch (IOException e) {
+						error = e;
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new InterruptedIOException();
+			}
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Waits until all blocks are written and closes the file.
+	 * @throws IOException if a block could not be written, or if the
+	 * executor was shut down, so the blocks still waiting in it may be lost
+	 */
+	@Override
+	public void close() throws IOException {
+		Future<Void> future;
+		try {
+			future = this.executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					stream.close();
+					return null;
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			this.stream.close();
+			throw new IOException("The writer executor was shut down before all blocks were written", e);
+		}
+
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new IOException(cause);
+		}
+		if (this.error != null) {
+			throw this.error;
+		}
+	}
+
+}
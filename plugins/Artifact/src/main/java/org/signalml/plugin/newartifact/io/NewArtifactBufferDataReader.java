@@ -0,0 +1,25 @@
+package org.signalml.plugin.newartifact.io;
+
+import java.io.IOException;
+
+public class NewArtifactBufferDataReader implements INewArtifactDataReader {
+	private final NewArtifactDataBuffer buffer;
+	private final int channelCount;
+
+	public NewArtifactBufferDataReader(NewArtifactDataBuffer buffer,
+									   int channelCount) {
+		this.buffer = buffer;
+		this.channelCount = channelCount;
+	}
+
+	@Override
+	public double[][] read() throws IOException {
+		return this.buffer.read(this.channelCount);
+	}
+
+	@Override
+	public long getDataSize() throws IOException {
+		return this.buffer.getSize() / this.channelCount;
+	}
+
+}
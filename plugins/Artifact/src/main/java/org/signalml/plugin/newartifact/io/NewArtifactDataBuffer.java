@@ -0,0 +1,62 @@
+package org.signalml.plugin.newartifact.io;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Keeps the results of an algorithm in memory, in the same layout as the
+ * intermediate file written by {@link NewArtifactAlgorithmWriter}, so that
+ * the tag creators can read them without a round-trip through the disk.
+ * The values are stored as floats, like in the file, so the tags do not
+ * depend on whether the intermediate files are kept.
+ */
+public class NewArtifactDataBuffer implements INewArtifactAlgorithmWriter {
+
+	private static final int INITIAL_CAPACITY = 4096;
+
+	private float data[];
+	private int size;
+
+	public NewArtifactDataBuffer() {
+		this.data = new float[NewArtifactDataBuffer.INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	@Override
+	public synchronized void write(double[][] buffer) {
+		int length = 0;
+		for (int i = 0; i < buffer.length; ++i) {
+			length += buffer[i].length;
+		}
+		if (this.size + length > this.data.length) {
+			this.data = Arrays.copyOf(this.data,
+									  Math.max(2 * this.data.length, this.size + length));
+		}
+
+		for (int i = 0; i < buffer.length; ++i) {
+			double subArray[] = buffer[i];
+			for (int j = 0; j < subArray.length; ++j) {
+				this.data[this.size++] = (float) subArray[j];
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+	}
+
+	public synchronized int getSize() {
+		return this.size;
+	}
+
+	public synchronized double[][] read(int channelCount) {
+		return NewArtifactDataReader.ReadChannels(
+				   FloatBuffer.wrap(this.data, 0, this.size), channelCount);
+	}
+
+	public synchronized void clear() {
+		this.data = new float[0];
+		this.size = 0;
+	}
+
+}
@@ -3,21 +3,23 @@
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Vector;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
+import org.signalml.util.FileUtils;
 
+/**
+ * Reads an intermediate file written by {@link NewArtifactAlgorithmWriter}
+ * or {@link NewArtifactAsyncAlgorithmWriter}. The file is memory-mapped,
+ * its values are copied straight to the result arrays and the mapping is
+ * released at once.
+ */
 public class NewArtifactDataReader implements INewArtifactDataReader {
 	private final File sourceFile;
 	private final int channelCount;
 
-	private static final int BUFFER_SIZE = 8192;
-
 	public NewArtifactDataReader(File sourceFile,
 								 int channelCount) {
 		this.sourceFile = sourceFile;
@@ -25,54 +27,55 @@ public NewArtifactDataReader(File sourceFile,
 	}
 
 	public double[][] read() throws IOException {
-		byte rawBuffer[] = new byte[NewArtifactDataReader.BUFFER_SIZE];
-		ByteBuffer byteBuffer = ByteBuffer.wrap(rawBuffer);
-		byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
-		FloatBuffer floatBuffer;
-		int j, readBytes;
-		LinkedList<Vector<Double>> dataVectors = new LinkedList<Vector<Double>>();
-		for (int i = 0; i < this.channelCount; ++i) {
-			dataVectors.add(new Vector<Double>(NewArtifactDataReader.BUFFER_SIZE));
-		}
-
-		InputStream stream = new FileInputStream(this.sourceFile);
-
+		FileInputStream stream = new FileInputStream(this.sourceFile);
 		try {
-			byteBuffer.clear();
-			Iterator<Vector<Double>> it = dataVectors.iterator();
-			while ((readBytes = stream.read(rawBuffer)) > 0) {
-				floatBuffer = byteBuffer.asFloatBuffer();
-				j = 0;
-				while (j < (readBytes >> 2)) {
-					if (!it.hasNext()) {
-						it = dataVectors.iterator();
-					}
-					it.next().add((double) floatBuffer.get(j));
-					j++;
-				}
-				byteBuffer.clear();
+			FileChannel channel = stream.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Intermediate file too large: " + this.sourceFile);
+			}
+			MappedByteBuffer mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			try {
+				FloatBuffer floatBuffer = mappedBuffer.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+				return NewArtifactDataReader.ReadChannels(floatBuffer, this.channelCount);
+			} finally {
+				FileUtils.unmap(mappedBuffer);
 			}
 		} finally {
 			stream.close();
 		}
-
-		double result[][] = new double[this.channelCount][];
-		Iterator<Vector<Double>> it = dataVectors.iterator();
-		j = 0;
-		while (it.hasNext()) {
-			Vector<Double> v = it.next();
-			double channel[] = result[j] = new double[v.size()];
-			for (int i = 0; i < channel.length; ++i) {
-				channel[i] = v.get(i);
-			}
-			j++;
-		}
-
-		return result;
 	}
 
 	@Override
 	public long getDataSize() throws IOException {
 		return this.sourceFile.length() / (4 * this.channelCount);
 	}
+
+	/**
+	 * Splits the remaining values of the buffer between the channels, the
+	 * consecutive values belong to the consecutive channels. If the number
+	 * of values is not a multiple of the number of channels, the first
+	 * channels get one value more.
+	 */
+	static double[][] ReadChannels(FloatBuffer source, int channelCount) {
+		int valueCount = source.remaining();
+		int rowCount = valueCount / channelCount;
+		int lastRowLength = valueCount % channelCount;
+
+		double result[][] = new double[channelCount][];
+		for (int i = 0; i < channelCount; ++i) {
+			result[i] = new double[i < lastRowLength ? rowCount + 1 : rowCount];
+		}
+
+		int position = source.position();
+		for (int j = 0; j < rowCount; ++j) {
+			for (int i = 0; i < channelCount; ++i) {
+				result[i][j] = source.get(position++);
+			}
+		}
+		for (int i = 0; i < lastRowLength; ++i) {
+			result[i][rowCount] = source.get(position++);
+		}
+		return result;
+	}
 }
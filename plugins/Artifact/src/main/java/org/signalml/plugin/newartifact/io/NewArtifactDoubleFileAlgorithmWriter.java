@@ -8,16 +8,22 @@
 public class NewArtifactDoubleFileAlgorithmWriter implements
 	INewArtifactAlgorithmWriter {
 
-	private final NewArtifactAlgorithmWriter writer1;
-	private final NewArtifactAlgorithmWriter writer2;
+	private final INewArtifactAlgorithmWriter writer1;
+	private final INewArtifactAlgorithmWriter writer2;
 
 	private final double fakeBuffer1[][];
 	private final double fakeBuffer2[][];
 
 	public NewArtifactDoubleFileAlgorithmWriter(File targetFile1,
 			File targetFile2) throws SignalMLException {
-		this.writer1 = new NewArtifactAlgorithmWriter(targetFile1);
-		this.writer2 = new NewArtifactAlgorithmWriter(targetFile2);
+		this(new NewArtifactAlgorithmWriter(targetFile1),
+			 new NewArtifactAlgorithmWriter(targetFile2));
+	}
+
+	public NewArtifactDoubleFileAlgorithmWriter(INewArtifactAlgorithmWriter writer1,
+			INewArtifactAlgorithmWriter writer2) {
+		this.writer1 = writer1;
+		this.writer2 = writer2;
 
 		this.fakeBuffer1 = new double[1][];
 		this.fakeBuffer2 = new double[1][];
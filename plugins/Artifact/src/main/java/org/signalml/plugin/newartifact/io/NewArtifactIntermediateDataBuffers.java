@@ -0,0 +1,34 @@
+package org.signalml.plugin.newartifact.io;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The in-memory replacements of the intermediate files, shared by the steps
+ * of the computation and identified by the names of the files.
+ */
+public class NewArtifactIntermediateDataBuffers {
+
+	private final Map<String, NewArtifactDataBuffer> buffers;
+
+	public NewArtifactIntermediateDataBuffers() {
+		this.buffers = new HashMap<String, NewArtifactDataBuffer>();
+	}
+
+	public synchronized NewArtifactDataBuffer getBuffer(String fileName) {
+		NewArtifactDataBuffer buffer = this.buffers.get(fileName);
+		if (buffer == null) {
+			buffer = new NewArtifactDataBuffer();
+			this.buffers.put(fileName, buffer);
+		}
+		return buffer;
+	}
+
+	public synchronized void clear() {
+		for (NewArtifactDataBuffer buffer : this.buffers.values()) {
+			buffer.clear();
+		}
+		this.buffers.clear();
+	}
+
+}
@@ -16,7 +16,7 @@ public NewArtifactSignalReaderWorker(INewArtifactSignalReaderWorkerData data) {
 
 	@Override
 	public void run() {
-		boolean isInterrupted = false;
+		boolean isCompleted = false;
 		try {
 			MultichannelSampleSource source = this.data.getSignalSource();
 			NewArtifactConstants constants = this.data.getArtifactConstants();
@@ -58,15 +58,19 @@ public void run() {
 					}
 				}
 			}
+			isCompleted = true;
 		} catch (InterruptedException e) {
-			isInterrupted = true;
+			Thread.currentThread().interrupt();
 		} finally {
-			if (!isInterrupted) {
+			// the readers must not take a part of the signal for all of it
+			if (isCompleted) {
 				try {
 					this.data.finalizeBuffers();
 				} catch (InterruptedException e) {
-					//do nothing
+					this.data.abortBuffers();
 				}
+			} else {
+				this.data.abortBuffers();
 			}
 		}
 	}
@@ -1,16 +1,14 @@
 package org.signalml.plugin.newartifact.logic.algorithm;
 
-import java.util.Arrays;
-
-import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+import org.signalml.math.fft.FFTPlan;
 
 public class FFTHelper {
-	private final DoubleFFT_1D fft;
+	private final FFTPlan plan;
 	private final int length;
 	private final int targetLength;
 
 	public FFTHelper(int length, int targetLength) {
-		this.fft = new DoubleFFT_1D(length);
+		this.plan = FFTPlan.getPlan(length);
 		this.length = length;
 		this.targetLength = targetLength;
 	}
@@ -18,11 +16,16 @@ public FFTHelper(int length, int targetLength) {
 	public double fft(double source[], double target[]) {
 		double sum = 0.0;
 
-		for (int j = 0; j < length; ++j) {
-			target[j] = source[j];
+		plan.realForward(source, 0, target);
+
+		// only the first half of the spectrum is calculated,
+		// the rest is conjugate symmetric
+		int half = this.length >> 1;
+		for (int k = half + 1; 2 * k < this.targetLength; ++k) {
+			target[2 * k] = target[2 * (this.length - k)];
+			target[2 * k + 1] = -target[2 * (this.length - k) + 1];
 		}
-		Arrays.fill(target, length, (length << 1) - 1, 0.0);
-		fft.realForwardFull(target);
+
 		for (int j = 0; j < this.targetLength; j += 2) {
 			target[j] = (target[j] * target[j] + target[j + 1] * target[j + 1]) / this.length;
 			sum += target[j];
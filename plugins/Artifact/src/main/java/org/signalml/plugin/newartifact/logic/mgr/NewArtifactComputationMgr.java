@@ -20,6 +20,7 @@
 import org.signalml.plugin.newartifact.data.mgr.NewArtifactMgrData;
 import org.signalml.plugin.newartifact.data.mgr.NewArtifactMgrStepData;
 import org.signalml.plugin.newartifact.data.mgr.NewArtifactMgrStepResult;
+import org.signalml.plugin.newartifact.io.NewArtifactIntermediateDataBuffers;
 import org.signalml.plugin.newartifact.method.NewArtifactMethod;
 
 public class NewArtifactComputationMgr extends
@@ -99,7 +100,8 @@ protected Collection<IPluginComputationMgrStep> prepareStepChain() {
 		NewArtifactMgrStepData stepData = new NewArtifactMgrStepData(
 			data.artifactData, data.constants,
 			new NewArtifactIntermediateFilesPathConstructor(
-				data.artifactData), this.trackerProxy,
+				data.artifactData),
+			new NewArtifactIntermediateDataBuffers(), this.trackerProxy,
 			this.getThreadFactory());
 
 		this.steps.add(new NewArtifactMgrPreprocessStep(stepData));
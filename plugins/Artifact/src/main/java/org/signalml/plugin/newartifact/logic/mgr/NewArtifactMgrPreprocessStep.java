@@ -7,15 +7,8 @@
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ExecutorService;
 
 import org.signalml.domain.signal.samplesource.MultichannelSampleSource;
 import org.signalml.method.ComputationException;
@@ -27,6 +20,7 @@
 import org.signalml.plugin.method.helper.AbstractPluginTrackerUpdaterWithTimer;
 import org.signalml.plugin.method.logic.AbstractPluginComputationMgrStep;
 import org.signalml.plugin.method.logic.IPluginComputationMgrStepTrackerProxy;
+import org.signalml.plugin.method.logic.PluginSequencedRingBuffer;
 import org.signalml.plugin.method.logic.PluginWorkerSet;
 import org.signalml.plugin.newartifact.data.INewArtifactSignalReaderWorkerData;
 import org.signalml.plugin.newartifact.data.NewArtifactAlgorithmWorkerData;
@@ -35,7 +29,7 @@
 import org.signalml.plugin.newartifact.data.mgr.NewArtifactMgrStepData;
 import org.signalml.plugin.newartifact.data.mgr.NewArtifactMgrStepResult;
 import org.signalml.plugin.newartifact.io.INewArtifactAlgorithmWriter;
-import org.signalml.plugin.newartifact.io.NewArtifactAlgorithmWriter;
+import org.signalml.plugin.newartifact.io.NewArtifactAsyncAlgorithmWriter;
 import org.signalml.plugin.newartifact.io.NewArtifactDoubleFileAlgorithmWriter;
 import org.signalml.plugin.newartifact.io.NewArtifactSignalReaderWorker;
 import org.signalml.plugin.signal.PluginSignalHelper;
@@ -47,129 +41,27 @@
 public class NewArtifactMgrPreprocessStep extends
 	AbstractPluginComputationMgrStep<NewArtifactMgrStepData> {
 
-	private final int INPUT_BUFFER_QUEUE_SIZE = 40;
+	private final int INPUT_BUFFER_QUEUE_SIZE = 32;
+	private final int FILE_WRITER_QUEUE_SIZE = 64;
 
 	private PluginWorkerSet workers;
 	private Collection<INewArtifactAlgorithmWriter> writers;
-	private INewArtifactAlgorithmBufferSynchronizer synchronizer;
-	private final BlockingQueue<double[][]> readyBuffersQueue;
-	private final BlockingQueue<double[][]> freeBuffersQueue;
-	private final AtomicBoolean shutdownFlag;
+	private ExecutorService fileWriterExecutor;
+	private PluginSequencedRingBuffer ringBuffer;
 
 	private AbstractPluginTrackerUpdaterWithTimer trackerUpdater;
 
 	private Integer blockCount;
 
-	private interface INewArtifactAlgorithmBufferSynchronizer {
-
-		public void addBuffer(double buffer[][]);
-
-		public double[][] getNextBufferForObject(Object sender)
-		throws InterruptedException;
-
-		public void markCurrentBufferAsProcessed(Object sender);
-	}
-
-	private class NewArtifactAlgorithmBufferSynchronizer implements
-		INewArtifactAlgorithmBufferSynchronizer {
-		private final List<double[][]> bufferList = new LinkedList<double[][]>();
-		private final Map<double[][], Integer> useCount = new HashMap<double[][], Integer>();
-		private final Map<Object, Integer> nextBuffer = new HashMap<Object, Integer>();
-		private final Map<Object, Semaphore> waitSemaphore = new HashMap<Object, Semaphore>();
-		private final BlockingQueue<double[][]> freeBuffersQueue;
-		private final AtomicBoolean shutdownFlag;
-
-		public NewArtifactAlgorithmBufferSynchronizer(
-			BlockingQueue<double[][]> freeBuffersQueue,
-			AtomicBoolean shutdownFlag) {
-			this.freeBuffersQueue = freeBuffersQueue;
-			this.shutdownFlag = shutdownFlag;
-		}
-
-		@Override
-		public void addBuffer(double buffer[][]) {
-			synchronized (this) {
-				bufferList.add(buffer);
-				for (Semaphore s : waitSemaphore.values()) {
-					s.release();
-				}
-				useCount.put(buffer, waitSemaphore.size());
-			}
-		}
-
-		@Override
-		public double[][] getNextBufferForObject(Object sender)
-		throws InterruptedException {
-			final Semaphore s;
-			synchronized (this) {
-				if (!waitSemaphore.containsKey(sender)) {
-					waitSemaphore.put(sender, new Semaphore(bufferList.size()));
-					nextBuffer.put(sender, 0);
-					for (double[][] buffer : bufferList) {
-						useCount.put(buffer, useCount.get(buffer) + 1);
-					}
-				}
-
-				s = waitSemaphore.get(sender);
-			}
-			s.acquire();
-			synchronized (this) {
-				Integer index = nextBuffer.get(sender);
-				double buffer[][] = bufferList.get(index);
-				if (buffer == null || buffer.length == 0) {
-					s.release();
-					return null;
-				}
-				nextBuffer.put(sender, index + 1);
-				return buffer;
-			}
-		}
-
-		@Override
-		public void markCurrentBufferAsProcessed(Object sender) {
-			double buffer[][];
-			Integer count;
-			synchronized (this) {
-				Integer index = nextBuffer.get(sender);
-				if (index == null) {
-					return;
-				}
-				buffer = bufferList.get(index - 1);
-				count = useCount.get(buffer);
-				if (count == null) {
-					return;
-				}
-				if (count == 1) {
-					useCount.remove(buffer);
-					bufferList.remove(index - 1);
-					for (Entry<Object, Integer> entry : nextBuffer.entrySet()) {
-						entry.setValue(entry.getValue() - 1);
-					}
-				} else {
-					useCount.put(buffer, count - 1);
-				}
-			}
-
-			if (count == 1 && !this.shutdownFlag.get()) {
-				try {
-					this.freeBuffersQueue.put(buffer);
-				} catch (InterruptedException e) {
-					return;
-				}
-			}
-		}
-
-	}
-
 	private class NewArtifactAlgorithmDataSource implements
 		IPluginDataSourceReader {
 
-		private INewArtifactAlgorithmBufferSynchronizer synchronizer;
+		private PluginSequencedRingBuffer.Consumer consumer;
 		private double currentBuffer[][];
 
 		public NewArtifactAlgorithmDataSource(
-			INewArtifactAlgorithmBufferSynchronizer synchronizer) {
-			this.synchronizer = synchronizer;
+			PluginSequencedRingBuffer.Consumer consumer) {
+			this.consumer = consumer;
 			this.currentBuffer = null;
 		}
 
@@ -181,7 +73,7 @@ public void getSample(double[][] buffer) throws InterruptedException {
 
 			if (this.currentBuffer != null) {
 				this.copyChunk(buffer);
-				this.synchronizer.markCurrentBufferAsProcessed(this);
+				this.consumer.release();
 				this.currentBuffer = null;
 			}
 		}
@@ -195,15 +87,18 @@ public boolean hasMoreSamples() throws InterruptedException {
 		}
 
 		private void fetchNextBuffer() throws InterruptedException {
-			this.currentBuffer = this.synchronizer.getNextBufferForObject(this);
+			this.currentBuffer = this.consumer.next();
+			if (this.currentBuffer == null) {
+				this.consumer.detach();
+			}
 		}
 
 		private void copyChunk(double buffer[][]) {
 			for (int i = 0; i < buffer.length; ++i) {
-				buffer[i] = Arrays.copyOf(this.currentBuffer[i],
-										  buffer[i].length); // TODO
+				int length = Math.min(buffer[i].length, this.currentBuffer[i].length);
+				System.arraycopy(this.currentBuffer[i], 0, buffer[i], 0, length);
+				Arrays.fill(buffer[i], length, buffer[i].length, 0.0);
 			}
-
 		}
 
 	}
@@ -211,36 +106,38 @@ private void copyChunk(double buffer[][]) {
 	private class NewArtifactSignalReaderWorkerData implements
 		INewArtifactSignalReaderWorkerData {
 
-		private BlockingQueue<double[][]> inputQueue;
-		private BlockingQueue<double[][]> outputQueue;
+		private PluginSequencedRingBuffer ringBuffer;
 		private MultichannelSampleSource source;
 		private NewArtifactConstants constants;
 
 		public NewArtifactSignalReaderWorkerData(
 			MultichannelSampleSource source,
 			NewArtifactConstants constants,
-			BlockingQueue<double[][]> inputQueue,
-			BlockingQueue<double[][]> outputQueue) {
+			PluginSequencedRingBuffer ringBuffer) {
 			this.source = source;
 			this.constants = constants;
-			this.inputQueue = inputQueue;
-			this.outputQueue = outputQueue;
+			this.ringBuffer = ringBuffer;
 		}
 
 		@Override
 		public double[][] getWritableBuffer() throws InterruptedException {
-			return this.inputQueue.take();
+			return this.ringBuffer.claim();
 		}
 
 		@Override
 		public void markBufferAsReady(double[][] buffer)
 		throws InterruptedException {
-			this.outputQueue.put(buffer);
+			this.ringBuffer.publish();
 		}
 
 		@Override
 		public void finalizeBuffers() throws InterruptedException {
-			this.outputQueue.put(new double[0][]);
+			this.ringBuffer.finish();
+		}
+
+		@Override
+		public void abortBuffers() {
+			this.ringBuffer.abort();
 		}
 
 		@Override
@@ -286,13 +183,7 @@ public NewArtifactMgrPreprocessStep(NewArtifactMgrStepData data) {
 		super(data);
 
 		this.blockCount = null;
-
-		this.freeBuffersQueue = new ArrayBlockingQueue<double[][]>(
-			this.INPUT_BUFFER_QUEUE_SIZE);
-		this.readyBuffersQueue = new ArrayBlockingQueue<double[][]>(
-			this.INPUT_BUFFER_QUEUE_SIZE);
-
-		this.shutdownFlag = new AtomicBoolean(false);
+		this.ringBuffer = null;
 
 		this.workers = new PluginWorkerSet(this.data.threadFactory);
 		this.writers = new LinkedList<INewArtifactAlgorithmWriter>();
@@ -319,8 +210,6 @@ public PluginComputationMgrStepResult doRun(
 		this.checkAbortState();
 		tracker.advance(this, 1);
 
-		int current = 0;
-
 		this.trackerUpdater.start(1500);
 
 		this.workers.startAll();
@@ -328,46 +217,51 @@ public PluginComputationMgrStepResult doRun(
 		this.checkAbortState();
 		tracker.setProgressPhase(NewArtifactComputationProgressPhase.SOURCE_FILE_INITIAL_READ_PHASE);
 
-		double buffer[][] = null;
-		do {
+		while (!this.ringBuffer.isDrained()) {
+			this.checkWorkers();
 			try {
-				buffer = this.readyBuffersQueue.take();
+				Thread.sleep(100);
 			} catch (InterruptedException e) {
 				throw new PluginToolInterruptedException(e);
 			}
-			this.synchronizer.addBuffer(buffer);
-
-			current++;
-			if (current % 100 == 0) {
-				this.checkAbortState();
-			}
-			this.trackerUpdater.setProgress(current);
-		} while (buffer != null && buffer.length != 0);
+			this.trackerUpdater.setProgress((int) this.ringBuffer
+											.getProcessedCount());
+			this.checkAbortState();
+		}
 
 		this.checkAbortState();
 
 		return this.prepareStepResult();
 	}
 
+	/**
+	 * Checks whether the workers can still drain the ring buffer.
+	 * @throws ComputationException if a worker has failed or all workers
+	 * have terminated before the whole signal was processed
+	 */
+	private void checkWorkers() throws ComputationException {
+		Throwable failure = this.workers.getFailure();
+		if (failure != null) {
+			throw new ComputationException(failure);
+		}
+		// the ring may have been drained just before the last worker terminated
+		if (this.workers.areAllTerminated() && !this.ringBuffer.isDrained()) {
+			throw new ComputationException("Workers terminated before the whole signal was processed");
+		}
+	}
+
 	private void prepareWorkers() throws ComputationException {
 		int channelCount = this.data.artifactData.getSampleSource()
 						   .getChannelCount();
 		int blockLength = this.data.constants.getBlockLengthWithPadding();
 
-		double[][][] inputBuffer = new double[this.INPUT_BUFFER_QUEUE_SIZE][channelCount][blockLength];
-
-		for (double[][] buffer : inputBuffer) {
-			this.freeBuffersQueue.add(buffer);
-		}
-
-		this.synchronizer = new NewArtifactAlgorithmBufferSynchronizer(
-			this.freeBuffersQueue, this.shutdownFlag);
+		this.ringBuffer = new PluginSequencedRingBuffer(
+			this.INPUT_BUFFER_QUEUE_SIZE, channelCount, blockLength);
 
 		NewArtifactSignalReaderWorker reader = new NewArtifactSignalReaderWorker(
 			new NewArtifactSignalReaderWorkerData(
 				this.data.artifactData.getSampleSource(),
-				this.data.constants, this.freeBuffersQueue,
-				this.readyBuffersQueue));
+				this.data.constants, this.ringBuffer));
 
 		for (NewArtifactComputationType algorithmType : NewArtifactComputationType
 				.values()) {
@@ -376,7 +270,8 @@ private void prepareWorkers() throws ComputationException {
 			if (writer != null) {
 				this.writers.add(writer);
 				this.workers.add(new NewArtifactAlgorithmWorker(
-									 new NewArtifactAlgorithmDataSource(synchronizer),
+									 new NewArtifactAlgorithmDataSource(this.ringBuffer
+											 .createConsumer()),
 									 new NewArtifactAlgorithmFactory(algorithmType,
 											 this.data.constants), writer,
 									 new NewArtifactAlgorithmWorkerData(
@@ -403,15 +298,10 @@ protected void cleanup() {
 
 	private void stopWorkers() {
 		try {
-			if (this.synchronizer != null) {
-				this.synchronizer.addBuffer(null);
+			if (this.ringBuffer != null) {
+				this.ringBuffer.abort();
 			}
 
-			this.shutdownFlag.set(true);
-
-			this.freeBuffersQueue.clear();
-			this.freeBuffersQueue.add(new double[0][]);
-
 			this.trackerUpdater.stop();
 
 			this.data.tracker
@@ -439,6 +329,11 @@ private void terminateWorkers() {
 			}
 		}
 		this.writers.clear();
+
+		if (this.fileWriterExecutor != null) {
+			this.fileWriterExecutor.shutdown();
+			this.fileWriterExecutor = null;
+		}
 	}
 
 	private INewArtifactAlgorithmWriter createResultWriterForAlgorithm(
@@ -451,15 +346,14 @@ private INewArtifactAlgorithmWriter createResultWriterForAlgorithm(
 
 		String fileNames[] = this.data.pathConstructor
 							 .getIntermediateFileNamesForAlgorithm(algorithmType);
-		String workDirName = this.data.pathConstructor.getPathToWorkDir();
 
 		try {
 			switch (algorithmType) {
 			case MUSCLE_PLUS_POWER:
 				assert fileNames.length == 2;
-				return new NewArtifactDoubleFileAlgorithmWriter(new File(
-							workDirName, fileNames[0]), new File(workDirName,
-									fileNames[1]));
+				return new NewArtifactDoubleFileAlgorithmWriter(
+						   this.createIntermediateWriter(fileNames[0]),
+						   this.createIntermediateWriter(fileNames[1]));
 			case MUSCLE_ACTIVITY:
 			case POWER:
 				return null;
@@ -470,14 +364,29 @@ private INewArtifactAlgorithmWriter createResultWriterForAlgorithm(
 			case UNKNOWN:
 			default:
 				assert fileNames.length == 1;
-				return new NewArtifactAlgorithmWriter(new File(workDirName,
-													  fileNames[0]));
+				return this.createIntermediateWriter(fileNames[0]);
 			}
 		} catch (SignalMLException e) {
 			throw new ComputationException(e);
 		}
 	}
 
+	private INewArtifactAlgorithmWriter createIntermediateWriter(String fileName)
+	throws SignalMLException {
+		if (!this.data.artifactData.isKeepIntermediateFiles()) {
+			return this.data.intermediateData.getBuffer(fileName);
+		}
+
+		if (this.fileWriterExecutor == null) {
+			this.fileWriterExecutor = NewArtifactAsyncAlgorithmWriter
+									  .CreateExecutor(this.data.threadFactory,
+													  this.FILE_WRITER_QUEUE_SIZE);
+		}
+		return new NewArtifactAsyncAlgorithmWriter(new File(
+					   this.data.pathConstructor.getPathToWorkDir(), fileName),
+				   this.fileWriterExecutor);
+	}
+
 	private int getBlockCount() {
 		if (this.blockCount == null) {
 			this.blockCount = new Integer(PluginSignalHelper.GetBlockCount(
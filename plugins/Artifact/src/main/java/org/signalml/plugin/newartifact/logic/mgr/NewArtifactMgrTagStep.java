@@ -29,6 +29,7 @@
 import org.signalml.plugin.newartifact.data.tag.NewArtifactTagResult;
 import org.signalml.plugin.newartifact.data.tag.NewArtifactTagRoutineData;
 import org.signalml.plugin.newartifact.io.INewArtifactDataReader;
+import org.signalml.plugin.newartifact.io.NewArtifactBufferDataReader;
 import org.signalml.plugin.newartifact.io.NewArtifactDataReader;
 import org.signalml.plugin.newartifact.logic.tag.NewArtifactTagCreatorFactory;
 import org.signalml.plugin.newartifact.logic.tag.NewArtifactTagCreatorRoutine;
@@ -141,6 +142,7 @@ protected void cleanup() {
 			this.readers.clear();
 			this.readers = null;
 		}
+		this.data.intermediateData.clear();
 	}
 
 	private void prepareWorkers() {
@@ -248,12 +250,16 @@ private INewArtifactDataReader createDataReaderForTagger(
 		case EYEBLINKS:
 			channelCount = 2;
 		default:
+			String fileName = data.pathConstructor
+							  .getIntermediateFileNamesForAlgorithm(taggerType)[0];
+			if (!data.artifactData.isKeepIntermediateFiles()) {
+				return new NewArtifactBufferDataReader(
+						   data.intermediateData.getBuffer(fileName),
+						   channelCount);
+			}
 			return new NewArtifactDataReader(
-					   new File(
-						   data.pathConstructor.getPathToWorkDir(),
-						   data.pathConstructor
-						   .getIntermediateFileNamesForAlgorithm(taggerType)[0]),
-					   channelCount);
+					   new File(data.pathConstructor.getPathToWorkDir(),
+								fileName), channelCount);
 		}
 	}
 
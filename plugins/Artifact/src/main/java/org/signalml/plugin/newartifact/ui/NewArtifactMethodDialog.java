@@ -176,6 +176,7 @@ private void fillDialogFromParameters(NewArtifactParameters parameters) {
 			powerGridFrequency = NewArtifactPowerGridFrequency.EUROPE;
 		}
 		optionsPanel.getPowerComboBox().setSelectedItem(powerGridFrequency);
+		optionsPanel.getKeepIntermediateFilesCheckBox().setSelected(parameters.isKeepIntermediateFiles());
 
 	}
 
@@ -201,6 +202,7 @@ private void fillParametersFromDialog(NewArtifactParameters parameters) {
 		NewArtifactPowerGridFrequency powerGridFrequency = (NewArtifactPowerGridFrequency) optionsPanel
 				.getPowerComboBox().getSelectedItem();
 		parameters.setPowerGridFrequency(powerGridFrequency.getFrequency());
+		parameters.setKeepIntermediateFiles(optionsPanel.getKeepIntermediateFilesCheckBox().isSelected());
 
 	}
 
@@ -34,6 +34,7 @@ public class NewArtifactOptionsPanel extends JPanel {
 	private ResolvableComboBox powerComboBox;
 	private JCheckBox exclusionCheckBox;
 	private JButton exclusionButton;
+	private JCheckBox keepIntermediateFilesCheckBox;
 
 	public NewArtifactOptionsPanel() {
 		super();
@@ -61,6 +62,7 @@ private void initialize() {
 			layout.createParallelGroup()
 			.addComponent(powerLabel)
 			.addComponent(getExclusionCheckBox())
+			.addComponent(getKeepIntermediateFilesCheckBox())
 		);
 
 		hGroup.addGroup(
@@ -85,6 +87,11 @@ private void initialize() {
 			.addComponent(getExclusionButton())
 		);
 
+		vGroup.addGroup(
+			layout.createParallelGroup(Alignment.BASELINE)
+			.addComponent(getKeepIntermediateFilesCheckBox())
+		);
+
 		layout.setVerticalGroup(vGroup);
 
 	}
@@ -116,6 +123,13 @@ public void itemStateChanged(ItemEvent e) {
 		return exclusionCheckBox;
 	}
 
+	public JCheckBox getKeepIntermediateFilesCheckBox() {
+		if (keepIntermediateFilesCheckBox == null) {
+			keepIntermediateFilesCheckBox = new JCheckBox(_("Keep intermediate files in the project directory"));
+		}
+		return keepIntermediateFilesCheckBox;
+	}
+
 	public JButton getExclusionButton() {
 		if (exclusionButton == null) {
 			exclusionButton = new JButton();
@@ -0,0 +1,122 @@
+package org.signalml.plugin.newartifact.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.signalml.plugin.data.tag.IPluginTagDef;
+import org.signalml.plugin.newartifact.data.NewArtifactConstants;
+import org.signalml.plugin.newartifact.data.NewArtifactParameters;
+import org.signalml.plugin.newartifact.data.tag.NewArtifactTagData;
+import org.signalml.plugin.newartifact.data.tag.NewArtifactTagResult;
+import org.signalml.plugin.newartifact.logic.tag.creators.TechnicalTagCreator;
+
+/**
+ * Checks that the tag creators get the same data (and so create the same
+ * tags) whether the intermediate results are kept in memory or written to
+ * a file.
+ */
+public class NewArtifactIntermediateDataTest {
+
+	private static final int CHANNEL_COUNT = 5;
+	private static final int BLOCK_COUNT = 200;
+
+	private File file;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("artifact", ".bin");
+		executor = NewArtifactAsyncAlgorithmWriter.CreateExecutor(Executors.defaultThreadFactory(), 4);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		executor.shutdownNow();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		file.delete();
+	}
+
+	@Test
+	public void testSameDataInMemoryAndInFile() throws Exception {
+		NewArtifactDataBuffer buffer = new NewArtifactDataBuffer();
+		NewArtifactAsyncAlgorithmWriter fileWriter = new NewArtifactAsyncAlgorithmWriter(file, executor);
+
+		// the technical algorithm writes 3 values per channel for every block
+		Random random = new Random(7);
+		double block[][] = new double[CHANNEL_COUNT][3];
+		for (int n = 0; n < BLOCK_COUNT; ++n) {
+			for (int i = 0; i < CHANNEL_COUNT; ++i) {
+				for (int j = 0; j < 3; ++j) {
+					block[i][j] = (n % 37 == 0 ? 100 : 1) * random.nextGaussian();
+				}
+			}
+			buffer.write(block);
+			fileWriter.write(block);
+		}
+		buffer.close();
+		fileWriter.close();
+
+		INewArtifactDataReader memoryReader = new NewArtifactBufferDataReader(buffer, CHANNEL_COUNT);
+		INewArtifactDataReader fileReader = new NewArtifactDataReader(file, CHANNEL_COUNT);
+		assertEquals(fileReader.getDataSize(), memoryReader.getDataSize());
+
+		double memoryData[][] = memoryReader.read();
+		double fileData[][] = fileReader.read();
+		assertEquals(CHANNEL_COUNT, memoryData.length);
+		for (int i = 0; i < CHANNEL_COUNT; ++i) {
+			assertEquals(3 * BLOCK_COUNT, memoryData[i].length);
+			for (int j = 0; j < memoryData[i].length; ++j) {
+				assertEquals(fileData[i][j], memoryData[i][j], 0.0);
+			}
+		}
+
+		NewArtifactTagResult memoryResult = tag(memoryData);
+		NewArtifactTagResult fileResult = tag(fileData);
+		assertTrue(fileResult.tagGroup.tags.size() > 0);
+		assertEquals(fileResult.tagGroup.tags.size(), memoryResult.tagGroup.tags.size());
+		Iterator<IPluginTagDef> it = memoryResult.tagGroup.tags.iterator();
+		for (IPluginTagDef fileTag : fileResult.tagGroup.tags) {
+			IPluginTagDef memoryTag = it.next();
+			assertEquals(fileTag.getChannel(), memoryTag.getChannel());
+			assertEquals(fileTag.getOffset(), memoryTag.getOffset(), 0.0);
+			assertEquals(fileTag.getLength(), memoryTag.getLength(), 0.0);
+		}
+	}
+
+	@Test
+	public void testCloseAfterShutdown() throws Exception {
+		NewArtifactAsyncAlgorithmWriter fileWriter = new NewArtifactAsyncAlgorithmWriter(file, executor);
+		fileWriter.write(new double[CHANNEL_COUNT][3]);
+		executor.shutdown();
+		try {
+			fileWriter.close();
+			fail("closing after the executor was shut down should fail");
+		} catch (IOException e) {
+			// the queued blocks may be lost
+		}
+	}
+
+	private NewArtifactTagResult tag(double source[][]) {
+		NewArtifactConstants constants = new NewArtifactConstants(CHANNEL_COUNT,
+				128.0f, 50.0f, 4, 1, 2, 0.5f, 0.5f);
+		int eegChannels[] = new int[CHANNEL_COUNT];
+		for (int i = 0; i < CHANNEL_COUNT; ++i) {
+			eegChannels[i] = i;
+		}
+		return new TechnicalTagCreator().tag(new NewArtifactTagData(source,
+											 constants, new NewArtifactParameters(), eegChannels, null));
+	}
+
+}
@@ -14,6 +14,14 @@ public class BookReporterAtom {
 	public double phase;
 
 	public BookReporterAtom(double amplitude, double frequency, double scale, double position, double phase) {
+		this.set(amplitude, frequency, scale, position, phase);
+	}
+
+	/**
+	 * Replaces all values of this atom, so that the atom object can be
+	 * reused for another atom of the book.
+	 */
+	public void set(double amplitude, double frequency, double scale, double position, double phase) {
 		this.amplitude = amplitude;
 		this.frequency = frequency;
 		this.scale = scale;
@@ -7,21 +7,54 @@
 import java.util.Collections;
 import java.util.Comparator;
 import org.signalml.app.document.BookDocument;
+import org.signalml.domain.book.StandardBook;
+import org.signalml.domain.book.StandardBookAtom;
 import org.signalml.domain.book.StandardBookSegment;
 import org.signalml.plugin.bookreporter.data.book.BookReporterAtom;
 import org.signalml.plugin.bookreporter.exception.BookReporterBookReaderException;
 import org.signalml.plugin.export.SignalMLException;
 
+import pl.edu.fuw.MP.MPBookStore;
+import pl.edu.fuw.MP.Core.AtomColumnsV5;
+import pl.edu.fuw.MP.Core.BookIndexV5;
+
 /**
+ * Reads the atoms of a book segment by segment. MPv5 books are read
+ * through their {@link BookIndexV5}, so no atom objects of the book are
+ * created; other books are read through {@link StandardBookSegment}s.
+ * <p>
+ * The {@link BookReporterAtom}s are pooled: the atoms returned by
+ * {@link #getAtomsFromNextSegment()} are overwritten by the next call.
+ *
  * @author piotr@develancer.pl
  */
 public class BookReporterBookReader {
 
+	private static final Comparator<BookReporterAtom> POSITION_COMPARATOR = new Comparator<BookReporterAtom>() {
+		@Override
+		public int compare(BookReporterAtom o1, BookReporterAtom o2) {
+			return Double.compare(o1.position, o2.position);
+		}
+	};
+
 	private BookDocument bookDocument = null;
 	private final int segmentCount;
 	private final double segmentTimeLength;
 	private int nextSegment = 0;
 
+	/**
+	 * the index of the book, null if the book is not an MPv5 book
+	 */
+	private final BookIndexV5 bookIndex;
+	private final AtomColumnsV5 columns = new AtomColumnsV5();
+
+	/**
+	 * the atoms of the current segment and the pool of atom objects,
+	 * which is never shrunk
+	 */
+	private final ArrayList<BookReporterAtom> atoms = new ArrayList<BookReporterAtom>();
+	private final ArrayList<BookReporterAtom> atomPool = new ArrayList<BookReporterAtom>();
+
 	public BookReporterBookReader(String bookFilePath) throws BookReporterBookReaderException {
 		try {
 			this.bookDocument = new BookDocument(new File(bookFilePath));
@@ -30,9 +63,11 @@ public BookReporterBookReader(String bookFilePath) throws BookReporterBookReader
 			this.segmentTimeLength = (this.segmentCount > 0)
 				? this.bookDocument.getBook().getSegmentAt(0,0).getSegmentTimeLength()
 				: 0.0;
+			StandardBook book = this.bookDocument.getBook();
+			this.bookIndex = (book instanceof MPBookStore) ? ((MPBookStore) book).getBookIndex() : null;
 		} catch (SignalMLException ex) {
 			throw new BookReporterBookReaderException(ex.getMessage());
-			
+
 		} catch (IOException ex) {
 			throw new BookReporterBookReaderException(ex.getMessage());
 		}
@@ -48,45 +83,105 @@ public void close() throws BookReporterBookReaderException {
 			// let's ignore this
 		}
 	}
-	
+
+	/**
+	 * Returns the atoms of the next segment of all channels, sorted by
+	 * their position.
+	 * @return the atoms, valid until the next call of this method, or null
+	 * if there are no more segments
+	 */
 	public Collection<BookReporterAtom> getAtomsFromNextSegment() {
 		if (this.bookDocument == null) {
 			throw new RuntimeException("book is already closed");
 		} else if (this.nextSegment >= this.segmentCount) {
 			return null;
 		} else {
-			ArrayList<BookReporterAtom> atoms = new ArrayList<BookReporterAtom>();
-			for (StandardBookSegment segment : this.bookDocument.getBook().getSegmentAt(this.nextSegment)) {
-				double timeOffset = this.nextSegment * this.segmentTimeLength;
-				int atomCount = segment.getAtomCount();
-				for (int atomIndex=0; atomIndex<atomCount; ++atomIndex) {
-					BookReporterAtom newAtom = BookReporterAtom.createFromStandardBookAtom(
-						segment.getAtomAt(atomIndex),
-						this.bookDocument.getCalibration(),
-						timeOffset
-					);
-					atoms.add(newAtom);
-				}
+			this.atoms.clear();
+			double timeOffset = this.nextSegment * this.segmentTimeLength;
+			if (this.bookIndex != null) {
+				this.readIndexedSegment(timeOffset);
+			} else {
+				this.readSegment(timeOffset);
 			}
-			Collections.sort(atoms, new Comparator<BookReporterAtom>() {
-				@Override
-				public int compare(BookReporterAtom o1, BookReporterAtom o2) {
-					return Double.compare(o1.position, o2.position);
-				}
-			});
+			Collections.sort(this.atoms, POSITION_COMPARATOR);
 			this.nextSegment++;
-			return atoms;
+			return this.atoms;
 		}
 	}
-	
+
+	/**
+	 * Reads the atoms of the next segment from the index, the values are
+	 * converted exactly like in {@link BookReporterAtom#createFromStandardBookAtom}.
+	 * The amplitudes in the index are not calibrated, so they are first
+	 * multiplied by the calibration of the book, as in the atoms of
+	 * {@link StandardBookSegment}s.
+	 */
+	private void readIndexedSegment(double timeOffset) {
+		// segments are numbered from 1, as in MPBookStore.getSegmentAt
+		int segment = this.bookIndex.getSegmentIndex(this.nextSegment + 1);
+		if (segment < 0) {
+			return;
+		}
+		StandardBook book = this.bookDocument.getBook();
+		float samplingFrequency = book.getSamplingFrequency();
+		double pointsPerMicrovolt = this.bookDocument.getCalibration();
+		float convFactor = this.bookIndex.getPointsPerMicrovolt();
+		int channelCount = this.bookIndex.getChannelCount();
+		for (int channel = 0; channel < channelCount; ++channel) {
+			if (!this.bookIndex.hasAtoms(segment, channel)) {
+				continue;
+			}
+			int atomCount = this.bookIndex.readAtoms(segment, channel, this.columns);
+			for (int i = 0; i < atomCount; ++i) {
+				this.nextAtom().set(
+					2.0 * (this.columns.amplitude[i] * convFactor) / pointsPerMicrovolt,
+					0.5F * this.columns.frequency[i] * samplingFrequency,
+					this.columns.scale[i] / samplingFrequency,
+					this.columns.position[i] / samplingFrequency + timeOffset,
+					this.columns.phase[i]
+				);
+			}
+		}
+	}
+
+	private void readSegment(double timeOffset) {
+		double pointsPerMicrovolt = this.bookDocument.getCalibration();
+		for (StandardBookSegment segment : this.bookDocument.getBook().getSegmentAt(this.nextSegment)) {
+			int atomCount = segment.getAtomCount();
+			for (int atomIndex=0; atomIndex<atomCount; ++atomIndex) {
+				StandardBookAtom atom = segment.getAtomAt(atomIndex);
+				this.nextAtom().set(
+					2.0 * atom.getAmplitude() / pointsPerMicrovolt,
+					atom.getHzFrequency(),
+					atom.getTimeScale(),
+					atom.getTimePosition() + timeOffset,
+					atom.getPhase()
+				);
+			}
+		}
+	}
+
+	/**
+	 * Appends an atom from the pool to the atoms of the current segment.
+	 */
+	private BookReporterAtom nextAtom() {
+		int size = this.atoms.size();
+		if (size == this.atomPool.size()) {
+			this.atomPool.add(new BookReporterAtom(0.0, 0.0, 0.0, 0.0, 0.0));
+		}
+		BookReporterAtom atom = this.atomPool.get(size);
+		this.atoms.add(atom);
+		return atom;
+	}
+
 	public double getTimeLength() {
 		return this.segmentCount * this.segmentTimeLength;
 	}
-	
+
 	public int getAllSegmentsCount() {
 		return this.segmentCount;
 	}
-	
+
 	public int getProcessedSegmentsCount() {
 		return this.nextSegment;
 	}
@@ -0,0 +1,131 @@
+package org.signalml.plugin.bookreporter.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.signalml.domain.book.StandardBook;
+import org.signalml.domain.book.StandardBookAtom;
+import org.signalml.domain.book.StandardBookAtomWriterImpl;
+import org.signalml.domain.book.StandardBookSegment;
+import org.signalml.domain.book.StandardBookSegmentWriterImpl;
+import org.signalml.plugin.bookreporter.data.book.BookReporterAtom;
+
+import pl.edu.fuw.MP.MPBookStore;
+import pl.edu.fuw.MP.Core.BookLibraryV5Writer;
+
+/**
+ * Writes an MPv5 book with a calibration other than 1 and checks if
+ * the atoms read by the {@link BookReporterBookReader} through the index
+ * of the book are the same as the atoms of the {@link StandardBook}.
+ */
+public class BookReporterBookReaderTest {
+
+	private static final float SAMPLING_FREQUENCY = 128.0F;
+	private static final float CALIBRATION = 2.5F;
+	private static final int SEGMENT_LENGTH = 256;
+	private static final int SEGMENT_COUNT = 4;
+	private static final int CHANNEL_COUNT = 2;
+
+	private File bookFile;
+
+	@Before
+	public void setUp() throws Exception {
+		bookFile = File.createTempFile("bookreporter", ".b");
+		bookFile.deleteOnExit();
+
+		BookLibraryV5Writer writer = new BookLibraryV5Writer();
+		writer.setSamplingFrequency(SAMPLING_FREQUENCY);
+		writer.setCalibration(CALIBRATION);
+		writer.setNumberOfChannels(CHANNEL_COUNT);
+		writer.Open(bookFile.getAbsolutePath());
+
+		Random random = new Random(11);
+		StandardBookSegmentWriterImpl segment = new StandardBookSegmentWriterImpl(writer);
+		for (int s = 0; s < SEGMENT_COUNT; s++) {
+			for (int c = 0; c < CHANNEL_COUNT; c++) {
+				segment.setSegmentNumber(s + 1);
+				segment.setChannelNumber(c + 1);
+				segment.setSegmentLength(SEGMENT_LENGTH);
+				segment.clearAtoms();
+				for (int i = 0; i < 10; i++) {
+					StandardBookAtomWriterImpl atom = new StandardBookAtomWriterImpl();
+					atom.setType(StandardBookAtom.GABORWAVE_IDENTITY);
+					atom.setModulus((float) random.nextDouble());
+					atom.setAmplitude(1.0F + (float) random.nextDouble());
+					atom.setPosition(random.nextInt(SEGMENT_LENGTH));
+					atom.setScale(1 + random.nextInt(SEGMENT_LENGTH));
+					atom.setFrequency((float) (Math.PI * random.nextDouble()));
+					atom.setPhase((float) random.nextDouble());
+					segment.addAtom(atom);
+				}
+				writer.writeSegment(segment);
+			}
+		}
+		writer.close();
+	}
+
+	@After
+	public void tearDown() {
+		bookFile.delete();
+	}
+
+	@Test
+	public void testIndexedAtomsMatchStandardBook() throws Exception {
+		MPBookStore book = new MPBookStore();
+		assertTrue(book.Open(bookFile.getAbsolutePath()));
+		assertEquals(CALIBRATION, book.getCalibration(), 0.0F);
+		List<List<BookReporterAtom>> expected = new ArrayList<List<BookReporterAtom>>();
+		double segmentTimeLength = book.getSegmentAt(0, 0).getSegmentTimeLength();
+		for (int s = 0; s < SEGMENT_COUNT; s++) {
+			List<BookReporterAtom> atoms = new ArrayList<BookReporterAtom>();
+			for (StandardBookSegment segment : book.getSegmentAt(s)) {
+				for (int i = 0; i < segment.getAtomCount(); i++) {
+					atoms.add(BookReporterAtom.createFromStandardBookAtom(segment.getAtomAt(i), book.getCalibration(), s * segmentTimeLength));
+				}
+			}
+			expected.add(atoms);
+		}
+		book.close();
+
+		BookReporterBookReader reader = new BookReporterBookReader(bookFile.getAbsolutePath());
+		try {
+			assertEquals(SEGMENT_COUNT, reader.getAllSegmentsCount());
+			for (int s = 0; s < SEGMENT_COUNT; s++) {
+				Collection<BookReporterAtom> atoms = reader.getAtomsFromNextSegment();
+				assertEquals(expected.get(s).size(), atoms.size());
+				for (BookReporterAtom atom : atoms) {
+					assertContains(expected.get(s), atom);
+				}
+			}
+			assertNull(reader.getAtomsFromNextSegment());
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static void assertContains(List<BookReporterAtom> atoms, BookReporterAtom atom) {
+		Iterator<BookReporterAtom> it = atoms.iterator();
+		while (it.hasNext()) {
+			BookReporterAtom candidate = it.next();
+			if (Math.abs(candidate.position - atom.position) < 1e-9 && Math.abs(candidate.scale - atom.scale) < 1e-9
+					&& Math.abs(candidate.frequency - atom.frequency) < 1e-6 && Math.abs(candidate.phase - atom.phase) < 1e-9) {
+				assertEquals(candidate.amplitude, atom.amplitude, 1e-6);
+				it.remove();
+				return;
+			}
+		}
+		throw new AssertionError("Unexpected atom at position " + atom.position);
+	}
+
+}
@@ -165,6 +165,13 @@ public class SignalFFTPlot extends JComponent {
 	 */
 	private double[] frequencies;
 
+	/**
+	 * the transform used to calculate the power spectrum, it keeps the
+	 * window weights and the buffer for the spectrum between repaints;
+	 * null if the window function was changed
+	 */
+	private FourierTransform fourierTransform;
+
 	/**
 	 * the axis with frequencies
 	 */
@@ -281,7 +288,9 @@ private void calculate() {
 			logger.debug("Samples requested [" + sampleCnt + "] array size ["
 						 + samples.length + "]");
 
-			FourierTransform fourierTransform = new FourierTransform(windowType, windowParameter);
+			if (fourierTransform == null) {
+				fourierTransform = new FourierTransform(windowType, windowParameter);
+			}
 
 			powerSpectrum = fourierTransform.calculatePowerSpectrum(samples);
 			frequencies = fourierTransform.getFrequencies(samples, channelSamples.getSamplingFrequency());
@@ -670,6 +679,7 @@ public WindowType getWindowType() {
 	public void setWindowType(WindowType windowType) {
 		if (this.windowType != windowType) {
 			this.windowType = windowType;
+			fourierTransform = null;
 			calculated = false;
 			repaint();
 		}
@@ -691,6 +701,7 @@ public double getWindowParameter() {
 	public void setWindowParameter(double windowParameter) {
 		if (this.windowParameter != windowParameter) {
 			this.windowParameter = windowParameter;
+			fourierTransform = null;
 			calculated = false;
 			repaint();
 		}
@@ -843,6 +854,7 @@ public void setSettings(SignalFFTSettings settings) {
 		windowWidth = settings.getWindowWidth();
 		windowType = settings.getWindowType();
 		windowParameter = settings.getWindowParameter();
+		fourierTransform = null;
 		logarithmic = settings.isLogarithmic();
 		antialias = settings.isAntialias();
 		spline = settings.isSpline();
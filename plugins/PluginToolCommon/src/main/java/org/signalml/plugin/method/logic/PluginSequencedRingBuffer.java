@@ -0,0 +1,304 @@
+package org.signalml.plugin.method.logic;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A ring of preallocated signal blocks passed from a single producer (the
+ * signal reader) to any number of consumers (the algorithm workers). Every
+ * consumer sees every block, in order, and a slot is reused only after all
+ * consumers have released it.
+ * <p>
+ * The producer and each consumer own a sequence counter, so they never take
+ * a lock: the producer waits for the slowest consumer only when the ring is
+ * full, and a consumer waits only when it has caught up with the producer.
+ * Consumers must be created before the first block is published.
+ * <p>
+ * The producer calls {@link #claim()}, fills the returned block, calls
+ * {@link #publish()} and finally {@link #finish()}. A consumer calls
+ * {@link Consumer#next()} until it returns null, and
+ * {@link Consumer#release()} when it no longer needs the block.
+ * {@link #abort()} stops all waiting threads.
+ */
+public class PluginSequencedRingBuffer {
+
+	/**
+	 * the number of busy-wait iterations before a waiting thread is parked
+	 */
+	private static final int SPIN_COUNT = 100;
+
+	/**
+	 * the time for which a waiting thread is parked
+	 */
+	private static final long PARK_NANOS = 50000L;
+
+	/**
+	 * A consumer of the blocks, to be used by a single thread.
+	 */
+	public class Consumer {
+
+		/**
+		 * the sequence number of the next block to be read; all blocks
+		 * before it are released
+		 */
+		private final AtomicLong sequence;
+
+		/**
+		 * the sequence number of the block returned by {@link #next()},
+		 * -1 if there is none
+		 */
+		private long current;
+
+		private Consumer(long start) {
+			this.sequence = new AtomicLong(start);
+			this.current = -1;
+		}
+
+		/**
+		 * Waits for the next block and returns it. The block previously
+		 * returned by this method is released.
+		 * @return the next block or null if there are no more blocks or
+		 * the ring was aborted
+		 * @throws InterruptedException if the thread is interrupted while
+		 * waiting
+		 */
+		public double[][] next() throws InterruptedException {
+			this.release();
+
+			long next = this.sequence.get();
+			int spins = SPIN_COUNT;
+			while (true) {
+				if (aborted) {
+					return null;
+				}
+				// the flag is read before the cursor, see finish()
+				boolean isFinished = finished;
+				if (next < cursor) {
+					break;
+				}
+				if (isFinished) {
+					return null;
+				}
+				spins = PluginSequencedRingBuffer.waitStep(spins);
+			}
+
+			this.current = next;
+			return blocks[(int)(next & mask)];
+		}
+
+		/**
+		 * Releases the block returned by the last call to {@link #next()},
+		 * its slot may be reused by the producer afterwards.
+		 */
+		public void release() {
+			if (this.current >= 0) {
+				this.sequence.lazySet(this.current + 1);
+				this.current = -1;
+			}
+		}
+
+		/**
+		 * Detaches this consumer from the ring, the producer does not wait
+		 * for it any more.
+		 */
+		public void detach() {
+			this.current = -1;
+			this.sequence.set(Long.MAX_VALUE);
+		}
+
+		/**
+		 * Returns the number of blocks released by this consumer.
+		 * @return the number of blocks
+		 */
+		public long getSequence() {
+			return this.sequence.get();
+		}
+
+	}
+
+	private final double blocks[][][];
+	private final int mask;
+
+	/**
+	 * the consumers, replaced as a whole when a consumer is added
+	 */
+	private volatile Consumer consumers[];
+
+	/**
+	 * the number of published blocks, written only by the producer
+	 */
+	private volatile long cursor;
+
+	/**
+	 * the sequence number of the block returned by {@link #claim()}, -1 if
+	 * there is none
+	 */
+	private long claimed;
+
+	/**
+	 * the smallest consumer sequence seen by the producer, so that it does
+	 * not have to scan the consumers while the ring is not full
+	 */
+	private long cachedMinimumSequence;
+
+	private volatile boolean finished;
+	private volatile boolean aborted;
+
+	/**
+	 * Creates a ring of blocks.
+	 * @param capacity the minimal number of blocks in the ring, rounded up
+	 * to a power of two
+	 * @param channelCount the number of channels in a block
+	 * @param blockLength the number of samples in each channel of a block
+	 */
+	public PluginSequencedRingBuffer(int capacity, int channelCount,
+									 int blockLength) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Bad capacity [" + capacity + "]");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+
+		this.blocks = new double[size][channelCount][blockLength];
+		this.mask = size - 1;
+		this.consumers = new Consumer[0];
+		this.cursor = 0;
+		this.claimed = -1;
+		this.cachedMinimumSequence = 0;
+		this.finished = false;
+		this.aborted = false;
+	}
+
+	/**
+	 * Creates a consumer which receives all blocks published afterwards.
+	 * @return the new consumer
+	 * @throws IllegalStateException if some blocks have already been
+	 * published
+	 */
+	public synchronized Consumer createConsumer() {
+		if (this.cursor > 0) {
+			throw new IllegalStateException("Consumers must be created before the first block is published");
+		}
+		Consumer consumer = new Consumer(0);
+		Consumer newConsumers[] = Arrays.copyOf(this.consumers, this.consumers.length + 1);
+		newConsumers[newConsumers.length - 1] = consumer;
+		this.consumers = newConsumers;
+		return consumer;
+	}
+
+	/**
+	 * Waits until the slot of the next block is released by all consumers
+	 * and returns the block, to be filled by the producer.
+	 * @return the block or null if the ring was aborted
+	 * @throws InterruptedException if the thread is interrupted while
+	 * waiting
+	 */
+	public double[][] claim() throws InterruptedException {
+		long next = this.cursor;
+		long wrapPoint = next - this.blocks.length;
+		int spins = SPIN_COUNT;
+		while (wrapPoint >= this.cachedMinimumSequence) {
+			if (this.aborted) {
+				return null;
+			}
+			this.cachedMinimumSequence = this.getMinimumSequence(next);
+			if (wrapPoint < this.cachedMinimumSequence) {
+				break;
+			}
+			spins = PluginSequencedRingBuffer.waitStep(spins);
+		}
+		if (this.aborted) {
+			return null;
+		}
+
+		this.claimed = next;
+		return this.blocks[(int)(next & this.mask)];
+	}
+
+	/**
+	 * Makes the block returned by {@link #claim()} available to the
+	 * consumers.
+	 */
+	public void publish() {
+		if (this.claimed < 0) {
+			throw new IllegalStateException("No block claimed");
+		}
+		this.cursor = this.claimed + 1;
+		this.claimed = -1;
+	}
+
+	/**
+	 * Marks the end of the blocks. The consumers receive null when they
+	 * have read all published blocks.
+	 */
+	public void finish() {
+		this.finished = true;
+	}
+
+	/**
+	 * Stops the producer and the consumers, they receive null from the
+	 * calls waiting for a block.
+	 */
+	public void abort() {
+		this.aborted = true;
+	}
+
+	public boolean isAborted() {
+		return this.aborted;
+	}
+
+	/**
+	 * Returns the number of blocks published so far.
+	 * @return the number of blocks
+	 */
+	public long getPublishedCount() {
+		return this.cursor;
+	}
+
+	/**
+	 * Returns the number of blocks released by all consumers.
+	 * @return the number of blocks
+	 */
+	public long getProcessedCount() {
+		return this.getMinimumSequence(this.cursor);
+	}
+
+	/**
+	 * Returns whether the producer has finished and all consumers have
+	 * released all blocks.
+	 * @return true if there are no blocks left to process
+	 */
+	public boolean isDrained() {
+		return this.finished && this.getProcessedCount() >= this.cursor;
+	}
+
+	private long getMinimumSequence(long defaultValue) {
+		long minimum = defaultValue;
+		for (Consumer consumer : this.consumers) {
+			minimum = Math.min(minimum, consumer.sequence.get());
+		}
+		return minimum;
+	}
+
+	/**
+	 * Performs one step of waiting: spins at first, then parks the thread
+	 * for a short time.
+	 * @param spins the number of spins left
+	 * @return the number of spins left after this step
+	 * @throws InterruptedException if the thread is interrupted
+	 */
+	private static int waitStep(int spins) throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if (spins > 0) {
+			return spins - 1;
+		}
+		LockSupport.parkNanos(PARK_NANOS);
+		return 0;
+	}
+
+}
@@ -12,6 +12,10 @@ public class PluginWorkerSet {
 	private Collection<Thread> workers;
 	private Set<Thread> startedThreads;
 
+	/**
+	 * the first exception thrown by a worker, null if none was thrown
+	 */
+	private volatile Throwable failure;
 
 	public PluginWorkerSet(ThreadFactory threadFactory) {
 		this.threadFactory = threadFactory;
@@ -29,16 +33,63 @@ public void startAll() {
 	}
 
 	public void add(Runnable worker) {
-		this.workers.add(this.threadFactory.newThread(worker));
+		this.workers.add(this.threadFactory.newThread(this.watch(worker)));
 	}
 
 	public void submit(Runnable worker) {
-		Thread t = this.threadFactory.newThread(worker);
+		Thread t = this.threadFactory.newThread(this.watch(worker));
 		this.workers.add(t);
 		this.startedThreads.add(t);
 		t.start();
 	}
 
+	/**
+	 * Returns whether all started workers have terminated, either normally
+	 * or with an exception.
+	 * @return true if no started worker is alive
+	 */
+	public boolean areAllTerminated() {
+		for (Thread worker : this.startedThreads) {
+			if (worker.isAlive()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the first exception thrown by any of the workers.
+	 * @return the exception or null if no worker has failed
+	 */
+	public Throwable getFailure() {
+		return this.failure;
+	}
+
+	private Runnable watch(final Runnable worker) {
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					worker.run();
+				} catch (RuntimeException e) {
+					PluginWorkerSet.this.recordFailure(e);
+					throw e;
+				} catch (Error e) {
+					PluginWorkerSet.this.recordFailure(e);
+					throw e;
+				}
+			}
+
+		};
+	}
+
+	private synchronized void recordFailure(Throwable e) {
+		if (this.failure == null) {
+			this.failure = e;
+		}
+	}
+
 	@SuppressWarnings("deprecation")
 	public void terminateAll() {
 		boolean loop = true;
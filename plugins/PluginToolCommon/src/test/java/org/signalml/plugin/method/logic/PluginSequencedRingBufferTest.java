@@ -0,0 +1,225 @@
+package org.signalml.plugin.method.logic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Applies unit tests to the {@link PluginSequencedRingBuffer}.
+ */
+public class PluginSequencedRingBufferTest {
+
+	private static final long TIMEOUT = 10000;
+
+	/**
+	 * Reads blocks in a separate thread and checks that every block is
+	 * received once and in order; the first sample of block n is n.
+	 */
+	private static class CheckingConsumer extends Thread {
+
+		private final PluginSequencedRingBuffer.Consumer consumer;
+		private final AtomicReference<String> error = new AtomicReference<String>();
+		private volatile int count;
+
+		public CheckingConsumer(PluginSequencedRingBuffer.Consumer consumer) {
+			this.consumer = consumer;
+		}
+
+		@Override
+		public void run() {
+			try {
+				double block[][];
+				while ((block = consumer.next()) != null) {
+					if (block[0][0] != count || block[1][2] != -count) {
+						error.set("Block " + count + " contains " + block[0][0]);
+					}
+					count++;
+				}
+			} catch (InterruptedException e) {
+				error.set("Interrupted");
+			}
+		}
+
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testWrapAround() throws InterruptedException {
+		// the capacity is rounded up to 4
+		PluginSequencedRingBuffer ringBuffer = new PluginSequencedRingBuffer(3, 2, 3);
+		CheckingConsumer consumers[] = new CheckingConsumer[] {
+			new CheckingConsumer(ringBuffer.createConsumer()),
+			new CheckingConsumer(ringBuffer.createConsumer())
+		};
+		for (CheckingConsumer consumer : consumers) {
+			consumer.start();
+		}
+
+		for (int n = 0; n < 1000; n++) {
+			double block[][] = ringBuffer.claim();
+			block[0][0] = n;
+			block[1][2] = -n;
+			ringBuffer.publish();
+		}
+		ringBuffer.finish();
+
+		for (CheckingConsumer consumer : consumers) {
+			consumer.join();
+			assertNull(consumer.error.get());
+			assertEquals(1000, consumer.count);
+		}
+		assertEquals(1000, ringBuffer.getPublishedCount());
+		assertEquals(1000, ringBuffer.getProcessedCount());
+		assertTrue(ringBuffer.isDrained());
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testProducerWaitsForConsumer() throws InterruptedException {
+		final PluginSequencedRingBuffer ringBuffer = new PluginSequencedRingBuffer(4, 1, 1);
+		PluginSequencedRingBuffer.Consumer consumer = ringBuffer.createConsumer();
+		for (int n = 0; n < 4; n++) {
+			ringBuffer.claim();
+			ringBuffer.publish();
+		}
+
+		Thread producer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					ringBuffer.claim();
+					ringBuffer.publish();
+				} catch (InterruptedException e) {
+					// the test fails on the published count
+				}
+			}
+		};
+		producer.start();
+		producer.join(200);
+		assertTrue(producer.isAlive());
+		assertEquals(4, ringBuffer.getPublishedCount());
+
+		// the slot of the first block is reused after it is released
+		assertNotNull(consumer.next());
+		consumer.release();
+		producer.join();
+		assertEquals(5, ringBuffer.getPublishedCount());
+		assertEquals(1, consumer.getSequence());
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testDetach() throws InterruptedException {
+		PluginSequencedRingBuffer ringBuffer = new PluginSequencedRingBuffer(2, 2, 3);
+		PluginSequencedRingBuffer.Consumer detached = ringBuffer.createConsumer();
+		CheckingConsumer consumer = new CheckingConsumer(ringBuffer.createConsumer());
+
+		double first[][] = ringBuffer.claim();
+		first[0][0] = 0;
+		first[1][2] = 0;
+		ringBuffer.publish();
+
+		// the producer does not wait for a detached consumer, even if it
+		// has not released its block
+		assertNotNull(detached.next());
+		detached.detach();
+		consumer.start();
+
+		for (int n = 1; n < 100; n++) {
+			double block[][] = ringBuffer.claim();
+			block[0][0] = n;
+			block[1][2] = -n;
+			ringBuffer.publish();
+		}
+		ringBuffer.finish();
+
+		consumer.join();
+		assertNull(consumer.error.get());
+		assertEquals(100, consumer.count);
+		assertTrue(ringBuffer.isDrained());
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testFinish() throws InterruptedException {
+		PluginSequencedRingBuffer ringBuffer = new PluginSequencedRingBuffer(4, 1, 1);
+		PluginSequencedRingBuffer.Consumer consumer = ringBuffer.createConsumer();
+		for (int n = 0; n < 3; n++) {
+			ringBuffer.claim()[0][0] = n;
+			ringBuffer.publish();
+		}
+		assertFalse(ringBuffer.isDrained());
+		ringBuffer.finish();
+		assertFalse(ringBuffer.isDrained());
+
+		// the published blocks are read before the end is reported
+		for (int n = 0; n < 3; n++) {
+			assertEquals(n, consumer.next()[0][0], 0.0);
+		}
+		assertFalse(ringBuffer.isDrained());
+		assertNull(consumer.next());
+		assertTrue(ringBuffer.isDrained());
+		assertNull(consumer.next());
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testAbort() throws InterruptedException {
+		final PluginSequencedRingBuffer ringBuffer = new PluginSequencedRingBuffer(1, 1, 1);
+		final PluginSequencedRingBuffer.Consumer consumer = ringBuffer.createConsumer();
+		final AtomicReference<Object> consumerResult = new AtomicReference<Object>("none");
+		final AtomicReference<Object> producerResult = new AtomicReference<Object>("none");
+
+		ringBuffer.claim();
+		ringBuffer.publish();
+		assertNotNull(consumer.next());
+
+		// the consumer holds the only slot, so both threads wait
+		Thread producer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					producerResult.set(ringBuffer.claim());
+				} catch (InterruptedException e) {
+					producerResult.set(e);
+				}
+			}
+		};
+		producer.start();
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				try {
+					// waits after the held block is released
+					consumerResult.set(consumer.next());
+				} catch (InterruptedException e) {
+					consumerResult.set(e);
+				}
+			}
+		};
+		reader.start();
+
+		producer.join(100);
+		reader.join(100);
+		ringBuffer.abort();
+		producer.join();
+		reader.join();
+
+		assertTrue(ringBuffer.isAborted());
+		assertNull(consumerResult.get());
+		// the producer may have claimed the released slot before the abort
+		assertTrue(producerResult.get() == null || producerResult.get() instanceof double[][]);
+		assertNull(ringBuffer.claim());
+		assertFalse(ringBuffer.isDrained());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCreateConsumerAfterPublish() throws InterruptedException {
+		PluginSequencedRingBuffer ringBuffer = new PluginSequencedRingBuffer(2, 1, 1);
+		ringBuffer.claim();
+		ringBuffer.publish();
+		ringBuffer.createConsumer();
+	}
+
+}
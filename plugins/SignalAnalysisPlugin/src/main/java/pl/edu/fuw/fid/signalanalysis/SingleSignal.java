@@ -2,6 +2,8 @@
 
 /**
  * Single-channel signal interface.
+ * Implementations must allow concurrent calls of getSamples,
+ * as time-frequency maps are computed by multiple threads.
  *
  * @author ptr@mimuw.edu.pl
  */
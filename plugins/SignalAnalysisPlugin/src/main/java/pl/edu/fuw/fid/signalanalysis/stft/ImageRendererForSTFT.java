@@ -1,8 +1,10 @@
 package pl.edu.fuw.fid.signalanalysis.stft;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import org.apache.commons.math.complex.Complex;
-import org.apache.commons.math.transform.FastFourierTransformer;
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.signalml.math.fft.FFTPlan;
 import org.signalml.math.fft.WindowFunction;
 import org.signalml.math.fft.WindowType;
 import pl.edu.fuw.fid.signalanalysis.AsyncStatus;
@@ -21,6 +23,9 @@ public class ImageRendererForSTFT extends ImageRenderer<PreferencesForSTFT> {
 
 	private static final org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(ImageRendererForSTFT.class);
 
+	// longer visible ranges are read separately for each column
+	private static final int MAX_SEGMENT_LENGTH = 1 << 22;
+
 	private volatile boolean padToHeight_ = false;
 	private volatile Integer windowLength_ = 128;
 	private volatile WindowType windowType_ = WindowType.BARTLETT;
@@ -74,49 +79,151 @@ private static double calculatePaddedHeight(int chartHeight, double minFrequency
 	protected ImageResult compute(PreferencesWithAxes<PreferencesForSTFT> preferences, AsyncStatus status) throws Exception {
 		final PreferencesForSTFT prefs = preferences.prefs;
 		final ImageResult result = new ImageResult(preferences.width, preferences.height, "Averaged Short-Time Fourier Transform");
-		final FastFourierTransformer fft = new FastFourierTransformer();
+		final int width = preferences.width;
+		final int height = preferences.height;
+		final int windowLength = prefs.windowLength;
 
-		double paddedLengthMin = prefs.windowLength;
+		double paddedLengthMin = windowLength;
 		if (prefs.padToHeight) {
 			paddedLengthMin = Math.max(
 				paddedLengthMin,
-				calculatePaddedHeight(preferences.height, preferences.yMin, preferences.yMax, signal.getSamplingFrequency())
+				calculatePaddedHeight(height, preferences.yMin, preferences.yMax, signal.getSamplingFrequency())
 			);
 		}
 		int paddedLength = 2;
 		while (paddedLength < paddedLengthMin) {
 			paddedLength *= 2;
 		}
-		WindowFunction wf = new WindowFunction(prefs.windowType, prefs.windowType.getParameterDefault());
 
-		double[] chunk = new double[prefs.windowLength];
-		double[] padded = new double[paddedLength];
-		for (int ix=0; ix<preferences.width; ++ix) {
-			if (status.isCancelled()) {
-				return null;
-			}
-			status.setProgress(ix / (double) preferences.width);
+		// window weights are the same for every column
+		double[] ones = new double[windowLength];
+		Arrays.fill(ones, 1.0);
+		final double[] weights = new WindowFunction(prefs.windowType, prefs.windowType.getParameterDefault()).applyWindow(ones);
+
+		// frequency bins and phasers are the same for every column
+		final int[] bins = new int[height];
+		final double[] phaserRe = new double[height];
+		final double[] phaserIm = new double[height];
+		for (int iy=0; iy<height; ++iy) {
+			double fIdeal = preferences.yMin + (preferences.yMax - preferences.yMin) * iy / (height - 1);
+			int i = (int) Math.round(paddedLength * fIdeal / sampling);
+			double fExact = i * sampling / paddedLength;
+			result.f[iy] = fExact;
+			bins[iy] = (i >= 0 && i < paddedLength) ? i : -1;
+			// phase difference between start and center of time window
+			double phase = Math.PI*fExact*windowLength/sampling;
+			phaserRe[iy] = 2.0 * Math.cos(phase);
+			phaserIm[iy] = 2.0 * Math.sin(phase);
+		}
 
-			double t0 = preferences.xMin + (preferences.xMax - preferences.xMin) * ix / (preferences.width - 1);
+		final int[] starts = new int[width];
+		int first = Integer.MAX_VALUE, last = Integer.MIN_VALUE;
+		for (int ix=0; ix<width; ++ix) {
+			double t0 = preferences.xMin + (preferences.xMax - preferences.xMin) * ix / (width - 1);
 			result.t[ix] = t0;
-			int n0 = (int) Math.round(t0 * sampling);
-			Arrays.fill(chunk, 0.0);
-			signal.getSamples(n0 - prefs.windowLength / 2, prefs.windowLength, chunk);
-			double[] windowed = wf.applyWindow(chunk);
-			System.arraycopy(windowed, 0, padded, 0, prefs.windowLength);
-			Complex[] spectrum = fft.transform(padded);
-			for (int iy=0; iy<preferences.height; ++iy) {
-				double fIdeal = preferences.yMin + (preferences.yMax - preferences.yMin) * iy / (preferences.height - 1);
-				int i = (int) Math.round(spectrum.length * fIdeal / sampling);
-				double fExact = i * sampling / spectrum.length;
-				result.f[iy] = fExact;
-				// phase difference between start and center of time window
-				Complex phaser = new Complex(0, Math.PI*result.f[iy]*prefs.windowLength/sampling).exp().multiply(2.0);
-				Complex value = (i >= 0 && i < paddedLength) ? spectrum[i].multiply(phaser) : Complex.ZERO;
-				result.values[ix][iy] = value;
-			}
+			starts[ix] = (int) Math.round(t0 * sampling) - windowLength / 2;
+			first = Math.min(first, starts[ix]);
+			last = Math.max(last, starts[ix]);
+		}
+
+		// if windows of neighbouring columns overlap, visible part of the signal
+		// is read once and shared by all columns
+		long span = (long) last - first + windowLength;
+		double[] segment = null;
+		if (span <= MAX_SEGMENT_LENGTH && span < (long) width * windowLength) {
+			segment = new double[(int) span];
+			signal.getSamples(first, (int) span, segment);
+		}
+
+		final FFTPlan plan = FFTPlan.getPlan(paddedLength);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		int blockSize = Math.max(1, width / (4 * getThreadCount()));
+		for (int ix=0; ix<width; ix+=blockSize) {
+			tasks.add(new ColumnsTask(result, ix, Math.min(width, ix + blockSize), starts, segment, first, weights, plan, bins, phaserRe, phaserIm));
+		}
+		if (!runInParallel(tasks, status, 0.0, 1.0)) {
+			return null;
 		}
 		return result;
 	}
 
+	/**
+	 * Computes spectra of a range of columns.
+	 * Column with the same window position as the previous one
+	 * (possible if pixel hop is smaller than one sample) reuses its values.
+	 */
+	private class ColumnsTask implements Callable<Void> {
+
+		private final ImageResult result;
+		private final int ixFrom, ixTo;
+		private final int[] starts;
+		private final double[] segment;
+		private final int segmentStart;
+		private final double[] weights;
+		private final FFTPlan plan;
+		private final int[] bins;
+		private final double[] phaserRe, phaserIm;
+
+		public ColumnsTask(ImageResult result, int ixFrom, int ixTo, int[] starts, double[] segment, int segmentStart, double[] weights, FFTPlan plan, int[] bins, double[] phaserRe, double[] phaserIm) {
+			this.result = result;
+			this.ixFrom = ixFrom;
+			this.ixTo = ixTo;
+			this.starts = starts;
+			this.segment = segment;
+			this.segmentStart = segmentStart;
+			this.weights = weights;
+			this.plan = plan;
+			this.bins = bins;
+			this.phaserRe = phaserRe;
+			this.phaserIm = phaserIm;
+		}
+
+		@Override
+		public Void call() {
+			int windowLength = weights.length;
+			int paddedLength = plan.getSize();
+			int height = bins.length;
+			double[] spectrum = new double[plan.getRealSpectrumLength()];
+			for (int ix=ixFrom; ix<ixTo; ++ix) {
+				if (ix > ixFrom && starts[ix] == starts[ix-1]) {
+					System.arraycopy(result.magnitude[ix-1], 0, result.magnitude[ix], 0, height);
+					System.arraycopy(result.phase[ix-1], 0, result.phase[ix], 0, height);
+					continue;
+				}
+				if (segment != null) {
+					int offset = starts[ix] - segmentStart;
+					for (int i=0; i<windowLength; ++i) {
+						spectrum[i] = weights[i] * segment[offset + i];
+					}
+				} else {
+					signal.getSamples(starts[ix], windowLength, spectrum);
+					for (int i=0; i<windowLength; ++i) {
+						spectrum[i] *= weights[i];
+					}
+				}
+				Arrays.fill(spectrum, windowLength, paddedLength, 0.0);
+				plan.realForward(spectrum, 0, spectrum);
+				for (int iy=0; iy<height; ++iy) {
+					int i = bins[iy];
+					if (i < 0) {
+						result.magnitude[ix][iy] = 0.0;
+						result.phase[ix][iy] = 0.0;
+						continue;
+					}
+					// the upper half of the spectrum is conjugate symmetric
+					double re, im;
+					if (i <= paddedLength / 2) {
+						re = spectrum[2*i];
+						im = spectrum[2*i+1];
+					} else {
+						re = spectrum[2*(paddedLength-i)];
+						im = -spectrum[2*(paddedLength-i)+1];
+					}
+					result.setValue(ix, iy, re*phaserRe[iy] - im*phaserIm[iy], re*phaserIm[iy] + im*phaserRe[iy]);
+				}
+			}
+			return null;
+		}
+	}
+
 }
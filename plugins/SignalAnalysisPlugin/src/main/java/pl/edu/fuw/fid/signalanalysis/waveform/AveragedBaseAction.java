@@ -121,7 +121,7 @@ public void run() {
 								}
 								for (int ix=0; ix<preferences.width; ++ix) {
 									for (int iy=0; iy<preferences.height; ++iy) {
-										values[ix][iy] += result.values[ix][iy].abs();
+										values[ix][iy] += result.magnitude[ix][iy];
 									}
 								}
 								title = result.title;
@@ -1,6 +1,17 @@
 package pl.edu.fuw.fid.signalanalysis.waveform;
 
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import javafx.scene.chart.Axis;
 import org.apache.commons.math.complex.Complex;
 import org.signalml.app.view.book.wignermap.WignerMapPalette;
@@ -15,6 +26,9 @@
  */
 public abstract class ImageRenderer<P> {
 
+	private static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+	private static ExecutorService executor_;
+
 	protected final SingleSignal signal;
 	protected final double sampling;
 
@@ -29,6 +43,78 @@ public ImageRenderer(SingleSignal signal) {
 
 	protected abstract ImageResult compute(PreferencesWithAxes<P> preferences, AsyncStatus status) throws Exception;
 
+	/**
+	 * Number of threads used to compute parts of the result in parallel.
+	 *
+	 * @return  size of the shared thread pool
+	 */
+	protected static int getThreadCount() {
+		return THREAD_COUNT;
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor_ == null) {
+			executor_ = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+				private int count = 0;
+				@Override
+				public synchronized Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "ImageRenderer-" + (++count));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor_;
+	}
+
+	/**
+	 * Run given tasks in the thread pool shared by all renderers
+	 * and wait until all of them are finished. After each finished task,
+	 * progress is updated linearly between given bounds.
+	 * If status.isCancelled(), all remaining tasks are cancelled.
+	 *
+	 * @param tasks         parts of the computation
+	 * @param status        status to be checked periodically
+	 * @param progressFrom  progress reported before the first task is finished
+	 * @param progressTo    progress reported after all tasks are finished
+	 * @return  true if all tasks were finished, false if cancelled
+	 * @throws Exception if any of the tasks fails
+	 */
+	protected static boolean runInParallel(List<? extends Callable<?>> tasks, AsyncStatus status, double progressFrom, double progressTo) throws Exception {
+		CompletionService<Object> service = new ExecutorCompletionService<Object>(getExecutor());
+		List<Future<Object>> futures = new ArrayList<Future<Object>>(tasks.size());
+		try {
+			for (Callable<?> task : tasks) {
+				@SuppressWarnings("unchecked")
+				Callable<Object> callable = (Callable<Object>) task;
+				futures.add(service.submit(callable));
+			}
+			int finished = 0;
+			while (finished < futures.size()) {
+				if (status.isCancelled()) {
+					return false;
+				}
+				Future<Object> future = service.poll(100, TimeUnit.MILLISECONDS);
+				if (future != null) {
+					future.get();
+					++finished;
+					status.setProgress(progressFrom + (progressTo - progressFrom) * finished / futures.size());
+				}
+			}
+			return true;
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw ex;
+		} finally {
+			for (Future<Object> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
 	public boolean isInverted() {
 		return inverted_;
 	}
@@ -43,7 +129,7 @@ public TimeFrequency getTimeFrequency(int x, int y) {
 		if (cache != null && x >= 0 && x < cache.result.t.length && y >= 0 && y < cache.result.f.length) {
 			double t = cache.result.t[x];
 			double f = cache.result.f[y];
-			Complex v = cache.result.values[x][y];
+			Complex v = cache.result.getValue(x, y);
 			result = new TimeFrequency(t, f, v);
 		}
 		return result;
@@ -98,7 +184,7 @@ public BufferedImage renderImage(Axis<Number> xAxis, Axis<Number> yAxis, ImageRe
 		double max = 0;
 		for (int ix=0; ix<pax.width; ++ix) {
 			for (int iy=0; iy<pax.height; ++iy) {
-				max = Math.max(max, result.values[ix][iy].abs());
+				max = Math.max(max, result.magnitude[ix][iy]);
 			}
 		}
 		int[] palette = palette_.getPalette();
@@ -108,7 +194,7 @@ public BufferedImage renderImage(Axis<Number> xAxis, Axis<Number> yAxis, ImageRe
 				return null;
 			}
 			for (int iy=0; iy<pax.height; ++iy) {
-				double t = result.values[ix][iy].abs() / max;
+				double t = result.magnitude[ix][iy] / max;
 				if (inverted) {
 					t = 1.0 - t;
 				}
@@ -5,6 +5,8 @@
 /**
  * Time-frequency map (power estimation). Stores also time and frequency values
  * as well as text summary of the used method.
+ * Complex coefficients are stored as primitive magnitude and phase arrays,
+ * indexed [time][frequency].
  *
  * @author ptr@mimuw.edu.pl
  */
@@ -12,14 +14,26 @@ public class ImageResult {
 
 	public final double[] t;
 	public final double[] f;
-	public final Complex[][] values;
+	public final double[][] magnitude;
+	public final double[][] phase;
 	public final String title;
 
 	public ImageResult(int tSize, int fSize, String title) {
 		t = new double[tSize];
 		f = new double[fSize];
-		values = new Complex[tSize][fSize];
+		magnitude = new double[tSize][fSize];
+		phase = new double[tSize][fSize];
 		this.title = title;
 	}
 
+	public Complex getValue(int ix, int iy) {
+		double m = magnitude[ix][iy], p = phase[ix][iy];
+		return new Complex(m * Math.cos(p), m * Math.sin(p));
+	}
+
+	public void setValue(int ix, int iy, double re, double im) {
+		magnitude[ix][iy] = Math.sqrt(re*re + im*im);
+		phase[ix][iy] = Math.atan2(im, re);
+	}
+
 }
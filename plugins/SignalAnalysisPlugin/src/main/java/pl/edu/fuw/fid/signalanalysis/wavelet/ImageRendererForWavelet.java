@@ -1,6 +1,10 @@
 package pl.edu.fuw.fid.signalanalysis.wavelet;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 import org.apache.commons.math.complex.Complex;
+import org.signalml.math.fft.FFTPlan;
 import pl.edu.fuw.fid.signalanalysis.AsyncStatus;
 import pl.edu.fuw.fid.signalanalysis.waveform.ImageRenderer;
 import pl.edu.fuw.fid.signalanalysis.waveform.PreferencesWithAxes;
@@ -17,6 +21,9 @@ public class ImageRendererForWavelet extends ImageRenderer<PreferencesForWavelet
 
 	private static final org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(ImageRendererForWavelet.class);
 
+	// larger convolutions would need too much memory per thread
+	private static final int MAX_FFT_SIZE = 1 << 20;
+
 	private volatile MotherWavelet wavelet_ = new GaborWavelet();
 	private volatile boolean logScale_ = false;
 
@@ -36,54 +43,199 @@ public ImageResult compute(PreferencesWithAxes<PreferencesForWavelet> preference
 			windowLength *= 2;
 		}
 
-		final Complex[][] windows = new Complex[preferences.height][];
-		ImageResult result = new ImageResult(preferences.width, preferences.height, "Averaged wavelet transform ("+prefs.wavelet.getLabel()+")");
+		final int width = preferences.width;
+		final int height = preferences.height;
+		final ImageResult result = new ImageResult(width, height, "Averaged wavelet transform ("+prefs.wavelet.getLabel()+")");
+
+		for (int iy=0; iy<height; ++iy) {
+			result.f[iy] = prefs.logScale
+				? Math.exp( Math.log(preferences.yMin) + Math.log(preferences.yMax / preferences.yMin) * iy / (height - 1) )
+				: preferences.yMin + (preferences.yMax - preferences.yMin) * iy / (height - 1);
+		}
+
+		// first sample of the window for each column
+		final int[] starts = new int[width];
+		int first = Integer.MAX_VALUE, last = Integer.MIN_VALUE;
+		for (int ix=0; ix<width; ++ix) {
+			double t = preferences.xMin + (preferences.xMax - preferences.xMin) * ix / (width - 1);
+			result.t[ix] = t;
+			starts[ix] = (int) Math.floor(sampling * t) - windowLength / 2;
+			first = Math.min(first, starts[ix]);
+			last = Math.max(last, starts[ix]);
+		}
+
+		// convolution via FFT computes each scale over the whole visible range at once,
+		// which pays off unless the columns are sparse compared to the signal length
+		long span = (long) last - first + windowLength;
+		int fftSize = 1;
+		while (fftSize < span && fftSize < MAX_FFT_SIZE) {
+			fftSize *= 2;
+		}
+		boolean useFFT = span <= fftSize
+			&& (double) fftSize * (Math.log(fftSize) / Math.log(2)) < (double) width * windowLength;
 
-		// prepare windows
-		Complex[] window = new Complex[windowLength];
-		for (int iy=0; iy<preferences.height; ++iy) {
-			if (status.isCancelled()) {
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		if (useFFT) {
+			final FFTPlan plan = FFTPlan.getPlan(fftSize);
+			final double[] spectrum = new double[2 * fftSize];
+			signal.getSamples(first, (int) span, spectrum);
+			plan.realForward(spectrum, 0, spectrum);
+			// the upper half of the spectrum is conjugate symmetric
+			for (int k=fftSize/2+1; k<fftSize; ++k) {
+				spectrum[2*k] = spectrum[2*(fftSize-k)];
+				spectrum[2*k+1] = -spectrum[2*(fftSize-k)+1];
+			}
+			for (int iy=0; iy<height; ++iy) {
+				tasks.add(new ScaleTask(prefs.wavelet, result, iy, windowLength, starts, first, plan, spectrum));
+			}
+			if (!runInParallel(tasks, status, 0.0, 1.0)) {
 				return null;
 			}
-			status.setProgress(0.25 * iy / preferences.height);
-			double f = prefs.logScale
-				? Math.exp( Math.log(preferences.yMin) + Math.log(preferences.yMax / preferences.yMin) * iy / (preferences.height - 1) )
-				: preferences.yMin + (preferences.yMax - preferences.yMin) * iy / (preferences.height - 1);
-			result.f[iy] = f;
-			Waveform scaled = prefs.wavelet.scale(f);
-			double norm = 0.0;
-			for (int ix=0; ix<windowLength; ++ix) {
-				double t = (ix - 0.5*(windowLength-1)) / sampling;
-				window[ix] = scaled.value(t);
-				double re = window[ix].getReal(), im = window[ix].getImaginary();
-				norm += re*re + im*im;
+		} else {
+			final double[][] windowsRe = new double[height][windowLength];
+			final double[][] windowsIm = new double[height][windowLength];
+			for (int iy=0; iy<height; ++iy) {
+				if (status.isCancelled()) {
+					return null;
+				}
+				status.setProgress(0.25 * iy / height);
+				computeWindow(prefs.wavelet, result.f[iy], sampling, windowsRe[iy], windowsIm[iy]);
+			}
+			int blockSize = Math.max(1, width / (4 * getThreadCount()));
+			for (int ix=0; ix<width; ix+=blockSize) {
+				tasks.add(new ColumnsTask(result, ix, Math.min(width, ix + blockSize), windowsRe, windowsIm, starts));
 			}
-			norm = 1.0 / Math.sqrt(norm * windowLength);
-			for (int ix=0; ix<windowLength; ++ix) {
-				window[ix] = window[ix].multiply(norm);
+			if (!runInParallel(tasks, status, 0.25, 1.0)) {
+				return null;
 			}
-			windows[iy] = window.clone();
 		}
+		return result;
+	}
 
-		double[] chunk = new double[windowLength];
-		for (int ix=0; ix<preferences.width; ++ix) {
-			if (status.isCancelled()) {
-				return null;
+	/**
+	 * Compute normalized, scaled wavelet, sampled in the window of given length
+	 * centered at zero.
+	 *
+	 * @param wavelet   mother wavelet
+	 * @param f         frequency (inverse of scale)
+	 * @param sampling  sampling frequency
+	 * @param re        output array for real parts
+	 * @param im        output array for imaginary parts
+	 */
+	private static void computeWindow(MotherWavelet wavelet, double f, double sampling, double[] re, double[] im) {
+		int windowLength = re.length;
+		Waveform scaled = wavelet.scale(f);
+		double norm = 0.0;
+		for (int ix=0; ix<windowLength; ++ix) {
+			double t = (ix - 0.5*(windowLength-1)) / sampling;
+			Complex value = scaled.value(t);
+			re[ix] = value.getReal();
+			im[ix] = value.getImaginary();
+			norm += re[ix]*re[ix] + im[ix]*im[ix];
+		}
+		norm = 1.0 / Math.sqrt(norm * windowLength);
+		for (int ix=0; ix<windowLength; ++ix) {
+			re[ix] *= norm;
+			im[ix] *= norm;
+		}
+	}
+
+	/**
+	 * Computes single row (scale) of the result as a convolution
+	 * of the whole visible part of the signal with the reversed wavelet.
+	 */
+	private class ScaleTask implements Callable<Void> {
+
+		private final MotherWavelet wavelet;
+		private final ImageResult result;
+		private final int iy;
+		private final int windowLength;
+		private final int[] starts;
+		private final int first;
+		private final FFTPlan plan;
+		private final double[] spectrum;
+
+		public ScaleTask(MotherWavelet wavelet, ImageResult result, int iy, int windowLength, int[] starts, int first, FFTPlan plan, double[] spectrum) {
+			this.wavelet = wavelet;
+			this.result = result;
+			this.iy = iy;
+			this.windowLength = windowLength;
+			this.starts = starts;
+			this.first = first;
+			this.plan = plan;
+			this.spectrum = spectrum;
+		}
+
+		@Override
+		public Void call() {
+			int size = plan.getSize();
+			double[] re = new double[windowLength];
+			double[] im = new double[windowLength];
+			computeWindow(wavelet, result.f[iy], sampling, re, im);
+
+			// sum of w[k] x[n+k] is a circular convolution of x with w[-k]
+			double[] buffer = new double[2 * size];
+			buffer[0] = re[0];
+			buffer[1] = im[0];
+			for (int k=1; k<windowLength; ++k) {
+				buffer[2*(size-k)] = re[k];
+				buffer[2*(size-k)+1] = im[k];
 			}
-			status.setProgress(0.25 + 0.75 * ix / preferences.width);
-			double t = preferences.xMin + (preferences.xMax - preferences.xMin) * ix / (preferences.width - 1);
-			result.t[ix] = t;
-			int i0 = (int) Math.floor(sampling * t) - windowLength / 2;
-			signal.getSamples(i0, windowLength, chunk);
-			for (int iy=0; iy<preferences.height; ++iy) {
-				Complex sum = Complex.ZERO;
-				for (int iw=0; iw<windowLength; ++iw) {
-					sum = sum.add(windows[iy][iw].multiply(chunk[iw]));
+			plan.forward(buffer);
+			for (int k=0; k<size; ++k) {
+				double wr = buffer[2*k], wi = buffer[2*k+1];
+				double xr = spectrum[2*k], xi = spectrum[2*k+1];
+				buffer[2*k] = wr*xr - wi*xi;
+				buffer[2*k+1] = wr*xi + wi*xr;
+			}
+			plan.inverse(buffer);
+
+			for (int ix=0; ix<starts.length; ++ix) {
+				int n = starts[ix] - first;
+				result.setValue(ix, iy, windowLength * buffer[2*n], -windowLength * buffer[2*n+1]);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Computes all scales for a range of columns directly
+	 * from the signal samples in each column's window.
+	 */
+	private class ColumnsTask implements Callable<Void> {
+
+		private final ImageResult result;
+		private final int ixFrom, ixTo;
+		private final double[][] windowsRe, windowsIm;
+		private final int[] starts;
+
+		public ColumnsTask(ImageResult result, int ixFrom, int ixTo, double[][] windowsRe, double[][] windowsIm, int[] starts) {
+			this.result = result;
+			this.ixFrom = ixFrom;
+			this.ixTo = ixTo;
+			this.windowsRe = windowsRe;
+			this.windowsIm = windowsIm;
+			this.starts = starts;
+		}
+
+		@Override
+		public Void call() {
+			int windowLength = windowsRe[0].length;
+			double[] chunk = new double[windowLength];
+			for (int ix=ixFrom; ix<ixTo; ++ix) {
+				signal.getSamples(starts[ix], windowLength, chunk);
+				for (int iy=0; iy<windowsRe.length; ++iy) {
+					double[] re = windowsRe[iy], im = windowsIm[iy];
+					double sumRe = 0.0, sumIm = 0.0;
+					for (int iw=0; iw<windowLength; ++iw) {
+						sumRe += re[iw] * chunk[iw];
+						sumIm += im[iw] * chunk[iw];
+					}
+					result.setValue(ix, iy, windowLength * sumRe, -windowLength * sumIm);
 				}
-				result.values[ix][iy] = sum.conjugate().multiply(windowLength);
 			}
+			return null;
 		}
-		return result;
 	}
 
 	@Override
@@ -1,15 +1,24 @@
 package org.signalml.plugin.newstager.data;
 
+import java.io.File;
+
 import org.signalml.plugin.newstager.logic.book.NewStagerBookDataProvider;
 
 public class NewStagerBookReaderWorkerData {
 
 	public final String bookFilePath;
 	public final NewStagerBookDataProvider bookProvider;
+	/**
+	 * the directory in which the index of the book is cached, null if
+	 * the index should not be cached
+	 */
+	public final File indexDirectory;
 
-	public NewStagerBookReaderWorkerData(String bookFilePath, NewStagerBookDataProvider bookProvider) {
+	public NewStagerBookReaderWorkerData(String bookFilePath, NewStagerBookDataProvider bookProvider,
+										 File indexDirectory) {
 		this.bookFilePath = bookFilePath;
 		this.bookProvider = bookProvider;
+		this.indexDirectory = indexDirectory;
 	}
 
 }
@@ -7,6 +7,7 @@ public interface INewStagerStatsSynchronizer {
 	double[][] getReadyBuffer() throws InterruptedException;
 	void markBufferAsProcessed(double[][] buffer) throws InterruptedException;
 	void finalizeBuffers() throws InterruptedException;
+	void abortBuffers();
 	int getBufferLength();
 
 }
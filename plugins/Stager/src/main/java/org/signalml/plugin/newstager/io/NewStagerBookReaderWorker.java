@@ -23,7 +23,7 @@ public void run() {
 
 		if (this.canUseFastV5BookReader()) {
 			reader = new NewStagerFastBookV5AtomReader(new File(
-						this.data.bookFilePath));
+						this.data.bookFilePath), this.data.indexDirectory);
 		} else {
 			// TODO
 			throw new RuntimeException("Old books not supported");
@@ -18,6 +18,7 @@ public void run() {
 		IPluginDataSourceReader reader = new NewStagerSignalReader(source, this.data.synchronizer.getBufferLength());
 		INewStagerStatsSynchronizer synchronizer = this.data.synchronizer;
 
+		boolean isCompleted = false;
 		try {
 			while (reader.hasMoreSamples()) {
 				double buffer[][] = synchronizer.getWritableBuffer();
@@ -27,13 +28,19 @@ public void run() {
 				reader.getSample(buffer);
 				synchronizer.markBufferAsReady(buffer);
 			}
+			isCompleted = true;
 		} catch (InterruptedException e) {
-			//TODO
+			Thread.currentThread().interrupt();
 		} finally {
-			try {
-				synchronizer.finalizeBuffers();
-			} catch (InterruptedException e) {
-				//do nothing
+			// the statistics must not be computed from a part of the signal
+			if (isCompleted) {
+				try {
+					synchronizer.finalizeBuffers();
+				} catch (InterruptedException e) {
+					synchronizer.abortBuffers();
+				}
+			} else {
+				synchronizer.abortBuffers();
 			}
 		}
 
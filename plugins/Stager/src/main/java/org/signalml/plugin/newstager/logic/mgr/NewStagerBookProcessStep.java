@@ -1,5 +1,6 @@
 package org.signalml.plugin.newstager.logic.mgr;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -100,10 +101,13 @@ public int getStepNumberEstimate() {
 
 	@Override
 	protected void doInitialize() {
+		// the index of the book is cached with the other results of the project
+		String projectPath = this.data.stagerData.getProjectPath();
 		NewStagerBookReaderWorker bookReaderWorker = new NewStagerBookReaderWorker(
 			new NewStagerBookReaderWorkerData(
 				this.data.stagerData.getParameters().bookFilePath,
-				this.bookDataProvider));
+				this.bookDataProvider,
+				projectPath != null ? new File(projectPath) : null));
 		this.workers.submit(bookReaderWorker);
 	}
 
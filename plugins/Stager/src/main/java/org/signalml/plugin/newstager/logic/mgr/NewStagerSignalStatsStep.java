@@ -1,8 +1,5 @@
 package org.signalml.plugin.newstager.logic.mgr;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -14,6 +11,7 @@
 import org.signalml.plugin.method.helper.AbstractPluginTrackerUpdaterWithTimer;
 import org.signalml.plugin.method.logic.AbstractPluginComputationMgrStep;
 import org.signalml.plugin.method.logic.IPluginComputationMgrStepTrackerProxy;
+import org.signalml.plugin.method.logic.PluginSequencedRingBuffer;
 import org.signalml.plugin.method.logic.PluginWorkerSet;
 import org.signalml.plugin.newstager.data.NewStagerConstants;
 import org.signalml.plugin.newstager.data.NewStagerFASPThreshold;
@@ -65,9 +63,10 @@ public void update(int progress, int prevProgress) {
 
 	}
 
-	private static final int BUFFER_QUEUE_SIZE = 20;
+	private static final int BUFFER_QUEUE_SIZE = 16;
 
 	private final PluginWorkerSet workers;
+	private PluginSequencedRingBuffer ringBuffer;
 
 	private final TrackerUpdater trackerUpdater;
 
@@ -78,12 +77,13 @@ public void update(int progress, int prevProgress) {
 
 	private Integer blockCount;
 
-	private NewStagerStatAlgorithmResult statResult;
+	private volatile NewStagerStatAlgorithmResult statResult;
 
 	public NewStagerSignalStatsStep(NewStagerMgrStepData data) {
 		super(data);
 
 		this.workers = new PluginWorkerSet(this.data.threadFactory);
+		this.ringBuffer = null;
 		this.progressBlockCount = new AtomicInteger(0);
 		this.statResultReadyFlag = new AtomicBoolean(false);
 
@@ -132,6 +132,13 @@ protected PluginComputationMgrStepResult doRun(
 		this.trackerUpdater.start(1500);
 
 		while (!this.statResultReadyFlag.get()) {
+			Throwable failure = this.workers.getFailure();
+			if (failure != null) {
+				throw new ComputationException(failure);
+			}
+			if (this.workers.areAllTerminated() && !this.statResultReadyFlag.get()) {
+				throw new ComputationException("Workers terminated before the statistics were computed");
+			}
 			try {
 				Thread.sleep(500);
 				this.trackerUpdater.setProgress(this.progressBlockCount.get());
@@ -141,6 +148,15 @@ protected PluginComputationMgrStepResult doRun(
 			this.checkAbortState();
 		}
 
+		// the workers may fail after the flag was set
+		Throwable failure = this.workers.getFailure();
+		if (failure != null) {
+			throw new ComputationException(failure);
+		}
+		if (this.ringBuffer.isAborted() || this.statResult == null) {
+			throw new ComputationException("Signal reading was aborted before the statistics were computed");
+		}
+
 		return this.prepareStepResult();
 	}
 
@@ -155,53 +171,45 @@ private void createWorkers() {
 		MultichannelSampleSource source = this.data.stagerData
 										  .getSampleSource();
 
-		final BlockingQueue<double[][]> freeBufferQueue = new ArrayBlockingQueue<double[][]>(
-			BUFFER_QUEUE_SIZE);
-		final BlockingQueue<double[][]> readyBufferQueue = new ArrayBlockingQueue<double[][]>(
-			BUFFER_QUEUE_SIZE);
-
-		for (int i = 0; i < BUFFER_QUEUE_SIZE; ++i) {
-			freeBufferQueue
-			.add(new double[source.getChannelCount()][this.data.constants
-					.getBlockLengthInSamples()]);
-		}
+		this.ringBuffer = new PluginSequencedRingBuffer(BUFFER_QUEUE_SIZE,
+				source.getChannelCount(),
+				this.data.constants.getBlockLengthInSamples());
+		final PluginSequencedRingBuffer ringBuffer = this.ringBuffer;
+		final PluginSequencedRingBuffer.Consumer consumer = ringBuffer
+				.createConsumer();
 
 		INewStagerStatsSynchronizer synchronizer = new INewStagerStatsSynchronizer() {
 
-			AtomicBoolean shutdownFlag = new AtomicBoolean();
-
 			@Override
 			public void markBufferAsReady(double[][] buffer)
 			throws InterruptedException {
-				readyBufferQueue.add(buffer);
+				ringBuffer.publish();
 			}
 
 			@Override
 			public double[][] getWritableBuffer() throws InterruptedException {
-				return freeBufferQueue.take();
+				return ringBuffer.claim();
 			}
 
 			@Override
 			public double[][] getReadyBuffer() throws InterruptedException {
-				double result[][] = null;
-				do {
-					result = readyBufferQueue.poll(1000, TimeUnit.MILLISECONDS);
-					if (result == null && this.shutdownFlag.get()) {
-						return null;
-					}
-				} while (result == null);
-				return result;
+				return consumer.next();
 			}
 
 			@Override
 			public void markBufferAsProcessed(double buffer[][])
 			throws InterruptedException {
-				freeBufferQueue.add(buffer);
+				consumer.release();
 			}
 
 			@Override
 			public void finalizeBuffers() throws InterruptedException {
-				this.shutdownFlag.set(true);
+				ringBuffer.finish();
+			}
+
+			@Override
+			public void abortBuffers() {
+				ringBuffer.abort();
 			}
 
 			@Override
@@ -220,8 +228,8 @@ public void signalProgress(int i) {
 
 			@Override
 			public void completeWork(NewStagerStatAlgorithmResult result) {
-				resultReadyFlag.set(true);
 				statResult = result;
+				resultReadyFlag.set(true);
 			}
 
 		};
@@ -239,6 +247,9 @@ public void completeWork(NewStagerStatAlgorithmResult result) {
 	}
 
 	private void stopWorkers() {
+		if (this.ringBuffer != null) {
+			this.ringBuffer.abort();
+		}
 		this.workers.terminateAll();
 	}
 
@@ -84,6 +84,7 @@
 import org.signalml.plugin.export.SignalMLException;
 import org.signalml.plugin.impl.PluginAccessClass;
 import org.signalml.plugin.loader.PluginLoaderHi;
+import org.signalml.task.TaskScheduler;
 import org.signalml.util.SvarogConstants;
 import org.signalml.util.Util;
 import org.springframework.context.i18n.LocaleContextHolder;
@@ -697,6 +698,15 @@ private void createApplication() {
 		taskManager.setMode(SignalMLOperationMode.APPLICATION);
 		taskManager.setMethodManager(methodManager);
 
+		TaskScheduler taskScheduler = taskManager.getScheduler();
+		taskScheduler.setWorkerCount(applicationConfig.getTaskWorkerCount());
+		// by default one native mp5 process per processor
+		int mp5TaskLimit = applicationConfig.getMp5TaskLimit();
+		if (mp5TaskLimit <= 0) {
+			mp5TaskLimit = Runtime.getRuntime().availableProcessors();
+		}
+		taskScheduler.setMethodLimit(MP5Method.NAME, mp5TaskLimit);
+
 		splash(_("Initializing presets"), true);
 
 		managerOfPresetManagers = new ManagerOfPresetManagers(profileDir);
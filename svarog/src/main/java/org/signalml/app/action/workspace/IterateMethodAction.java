@@ -27,6 +27,7 @@
 import org.signalml.plugin.export.view.AbstractSignalMLAction;
 import org.signalml.task.LocalTask;
 import org.signalml.task.Task;
+import org.signalml.task.TaskPriority;
 
 /** IterateMethodAction
  *
@@ -138,7 +139,7 @@ public void actionPerformed(ActionEvent ev) {
 		TaskStatusDialog dialog = taskManager.getStatusDialogForTask(task);
 		dialog.showDialog(true);
 
-		taskManager.startTask(task);
+		taskManager.startTask(task, TaskPriority.BATCH);
 
 	}
 
@@ -14,6 +14,7 @@
 import org.signalml.method.SuspendableMethod;
 import org.signalml.plugin.export.view.AbstractSignalMLAction;
 import org.signalml.task.Task;
+import org.signalml.task.TaskPriority;
 
 /** ResumeAllTasksAction
  *
@@ -53,7 +54,7 @@ public void actionPerformed(ActionEvent ev) {
 				task = taskManager.getTaskAt(i);
 				synchronized (task) {
 					if ((task.getMethod() instanceof SuspendableMethod) && task.getStatus().isResumable()) {
-						taskManager.resumeTask(task);
+						taskManager.resumeTask(task, TaskPriority.BATCH);
 					}
 				}
 			}
@@ -108,6 +108,17 @@ public class ApplicationConfiguration extends AbstractXMLConfiguration implement
 	 */
 	private boolean autoTryToLoadSignalWithTags;
 
+	/**
+	 * The number of tasks executed at the same time,
+	 * 0 means one task per processor.
+	 */
+	private int taskWorkerCount;
+	/**
+	 * The number of MP5 tasks executed at the same time,
+	 * 0 means one task per processor.
+	 */
+	private int mp5TaskLimit;
+
 	public void applySystemSettings() {
 
 		// apply tooltip settings
@@ -618,4 +629,20 @@ public void setAutoTryToLoadSignalWithTags(boolean autoTryToLoadTags) {
 		this.autoTryToLoadSignalWithTags = autoTryToLoadTags;
 	}
 
+	public int getTaskWorkerCount() {
+		return taskWorkerCount;
+	}
+
+	public void setTaskWorkerCount(int taskWorkerCount) {
+		this.taskWorkerCount = taskWorkerCount;
+	}
+
+	public int getMp5TaskLimit() {
+		return mp5TaskLimit;
+	}
+
+	public void setMp5TaskLimit(int mp5TaskLimit) {
+		this.mp5TaskLimit = mp5TaskLimit;
+	}
+
 }
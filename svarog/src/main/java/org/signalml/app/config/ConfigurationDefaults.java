@@ -143,6 +143,9 @@ public static void setApplicationConfigurationDefaults(ApplicationConfiguration
 
 		config.setBackupFrequency(getFloat("application.signalRecording.frequency"));
 
+		config.setTaskWorkerCount(getInt("application.tasks.workerCount"));
+		config.setMp5TaskLimit(getInt("application.tasks.mp5Limit"));
+
 		config.setMonitorPageSize(getFloat("monitor.pageSize"));
 		config.setOpenbciIPAddress(getString("monitor.openbciIPAddress"));
 		config.setOpenbciPort(getInt("monitor.openbciPort"));
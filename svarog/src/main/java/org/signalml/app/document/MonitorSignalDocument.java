@@ -1,6 +1,7 @@
 package org.signalml.app.document;
 
 import static org.signalml.app.util.i18n.SvarogI18n._;
+import static org.signalml.app.util.i18n.SvarogI18n._R;
 
 import java.beans.IntrospectionException;
 import java.beans.PropertyChangeListener;
@@ -17,6 +18,7 @@
 import org.signalml.app.model.components.LabelledPropertyDescriptor;
 import org.signalml.app.model.document.opensignal.ExperimentDescriptor;
 import org.signalml.app.model.monitor.MonitorRecordingDescriptor;
+import org.signalml.app.view.common.dialogs.errors.Dialogs;
 import org.signalml.app.view.signal.SignalPlot;
 import org.signalml.app.view.signal.SignalView;
 import org.signalml.app.worker.monitor.DisconnectFromExperimentWorker;
@@ -349,6 +351,7 @@ public void startMonitorRecording() throws FileNotFoundException {
 		}
 
 		// connecting recorders to the monitor worker
+		signalRecorderWorker.start();
 		monitorWorker.connectSignalRecorderWorker(signalRecorderWorker);
 		monitorWorker.connectTagRecorderWorker(tagRecorderWorker);
 
@@ -371,6 +374,10 @@ public void stopMonitorRecording() throws IOException {
 
 		if (signalRecorderWorker != null) {
 			signalRecorderWorker.save();
+			int fillerSampleCount = signalRecorderWorker.getFillerSampleCount();
+			if (fillerSampleCount > 0) {
+				Dialogs.showWarningMessage(_R("{0} samples could not be recorded in time and were replaced with zeros.", fillerSampleCount));
+			}
 		}
 
 		if (tagRecorderWorker != null) {
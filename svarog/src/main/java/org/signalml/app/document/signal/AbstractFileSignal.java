@@ -16,6 +16,7 @@
 import org.signalml.app.model.components.LabelledPropertyDescriptor;
 import org.signalml.app.worker.signal.SignalChecksumWorker;
 import org.signalml.domain.signal.SignalChecksum;
+import org.signalml.domain.signal.SignalChecksumCache;
 import org.signalml.plugin.export.SignalMLException;
 import org.signalml.util.Util;
 
@@ -24,7 +25,9 @@
  * Apart from what can be found in {@link AbstractSignal}, contains
  * the {@link #getBackingFile() backing file} and implements the calculation
  * of the {@link SignalChecksum signal checksums} (using the provided
- * {@link SignalChecksumWorker worker}).
+ * {@link SignalChecksumWorker worker}). The checksums are also kept in the
+ * {@link SignalChecksumCache}, so they are not calculated again when
+ * the same file is opened again.
  *
  * @author Michal Dobaczewski &copy; 2007-2008 CC Otwarte Systemy Komputerowe Sp. z o.o.
  */
@@ -112,6 +115,12 @@ public SignalChecksum[] getChecksums(String[] types, SignalChecksumProgressMonit
 			int i;
 			for (i=0; i<types.length; i++) {
 				checksum = checksums.get(types[i]);
+				if (checksum == null && backingFile != null) {
+					checksum = SignalChecksumCache.getSharedInstance().get(backingFile, types[i]);
+					if (checksum != null) {
+						checksums.put(types[i], checksum);
+					}
+				}
 				if (checksum == null) {
 					missing[missingCnt] = types[i];
 					missingIdx[missingCnt] = i;
@@ -126,8 +135,12 @@ public SignalChecksum[] getChecksums(String[] types, SignalChecksumProgressMonit
 			String[] missingTypes = Arrays.copyOf(missing, missingCnt);
 
 			SignalChecksum[] results = Util.getSignalChecksums(backingFile, missingTypes, monitor);
+			if (results == null) {
+				return null;
+			}
 			for (i=0; i<results.length; i++) {
 				checksums.put(results[i].getMethod(), results[i]);
+				SignalChecksumCache.getSharedInstance().put(backingFile, results[i]);
 				checksumArr[missingIdx[i]] = results[i];
 			}
 
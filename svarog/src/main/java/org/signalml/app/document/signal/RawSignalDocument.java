@@ -12,6 +12,7 @@
 
 import org.signalml.app.model.components.LabelledPropertyDescriptor;
 import org.signalml.codec.SignalMLCodec;
+import org.signalml.domain.signal.raw.MappedRawSignalSampleSource;
 import org.signalml.domain.signal.raw.RawSignalByteOrder;
 import org.signalml.domain.signal.raw.RawSignalDescriptor;
 import org.signalml.domain.signal.raw.RawSignalSampleSource;
@@ -63,7 +64,7 @@ public void openDocument() throws SignalMLException, IOException {
 		if (backingFile == null) {
 			throw new SignalMLException("error.noBackingFile");
 		}
-		RawSignalSampleSource sampleSource = new RawSignalSampleSource(backingFile.getAbsoluteFile(), descriptor.getChannelCount(), descriptor.getSamplingFrequency(), descriptor.getSampleType(), descriptor.getByteOrder());
+		RawSignalSampleSource sampleSource = new MappedRawSignalSampleSource(backingFile.getAbsoluteFile(), descriptor.getChannelCount(), descriptor.getSamplingFrequency(), descriptor.getSampleType(), descriptor.getByteOrder());
 		sampleSource.setCalibrationGain(descriptor.getCalibrationGain());
 		sampleSource.setCalibrationOffset(descriptor.getCalibrationOffset());
 		sampleSource.setLabels(descriptor.getChannelLabels());
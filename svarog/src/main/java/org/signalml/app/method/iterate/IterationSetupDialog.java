@@ -49,6 +49,7 @@
 import org.signalml.method.iterator.IterableNumericParameter;
 import org.signalml.method.iterator.IterableParameter;
 import org.signalml.method.iterator.MethodIteratorData;
+import org.signalml.method.iterator.ParallelIterableMethod;
 import org.signalml.method.iterator.ParameterIterationSettings;
 import org.signalml.plugin.export.SignalMLException;
 
@@ -71,6 +72,7 @@ public class IterationSetupDialog extends AbstractDialog  {
 	private JButton editBaseConfigurationButton;
 
 	private JSpinner iterationCountSpinner;
+	private JSpinner parallelIterationsSpinner;
 
 	private ResolvableComboBox parameterComboBox;
 
@@ -132,6 +134,7 @@ public JComponent createInterface() {
 		layout.setAutoCreateGaps(true);
 
 		JLabel iterationCountLabel = new JLabel(_("Iteration count"));
+		JLabel parallelIterationsLabel = new JLabel(_("Parallel iterations"));
 		JLabel parameterLabel = new JLabel(_("Parameter"));
 		JLabel iterateLabel = new JLabel(_("Iterate this parameter"));
 		JLabel iterationStartLabel = new JLabel(_("Iteration start value"));
@@ -142,6 +145,7 @@ public JComponent createInterface() {
 		hGroup.addGroup(
 			layout.createParallelGroup()
 			.addComponent(iterationCountLabel)
+			.addComponent(parallelIterationsLabel)
 			.addComponent(parameterLabel)
 			.addComponent(iterateLabel)
 			.addComponent(iterationStartLabel)
@@ -151,6 +155,7 @@ public JComponent createInterface() {
 		hGroup.addGroup(
 			layout.createParallelGroup(Alignment.TRAILING)
 			.addComponent(getIterationCountSpinner())
+			.addComponent(getParallelIterationsSpinner())
 			.addComponent(getParameterComboBox())
 			.addComponent(getIterateCheckBox())
 			.addComponent(getStartSpinner())
@@ -167,6 +172,12 @@ public JComponent createInterface() {
 			.addComponent(getIterationCountSpinner())
 		);
 
+		vGroup.addGroup(
+			layout.createParallelGroup(Alignment.BASELINE)
+			.addComponent(parallelIterationsLabel)
+			.addComponent(getParallelIterationsSpinner())
+		);
+
 		vGroup.addGroup(
 			layout.createParallelGroup(Alignment.BASELINE)
 			.addComponent(parameterLabel)
@@ -262,6 +273,11 @@ public void fillDialogFromModel(Object model) throws SignalMLException {
 
 		getIterationCountSpinner().setValue(new Integer(currentData.getTotalIterations()));
 
+		// only methods with independent iterations may be iterated in parallel
+		boolean parallel = (currentMethod instanceof ParallelIterableMethod);
+		getParallelIterationsSpinner().setValue(new Integer(parallel ? currentData.getParallelIterations() : 1));
+		getParallelIterationsSpinner().setEnabled(parallel);
+
 		IterableParameter[] iterableParameters = currentMethod.getIterableParameters(subjectData);
 		ParameterIterationSettings[] parameters = currentData.getParameters();
 
@@ -279,6 +295,7 @@ public void fillModelFromDialog(Object model) throws SignalMLException {
 		MethodIteratorData data = descriptor.getData();
 
 		data.setTotalIterations((Integer) getIterationCountSpinner().getValue());
+		data.setParallelIterations((Integer) getParallelIterationsSpinner().getValue());
 
 		data.setParameters(currentParameters);
 
@@ -317,6 +334,17 @@ public JButton getEditBaseConfigurationButton() {
 		return editBaseConfigurationButton;
 	}
 
+	public JSpinner getParallelIterationsSpinner() {
+		if (parallelIterationsSpinner == null) {
+			parallelIterationsSpinner = new JSpinner(new SpinnerNumberModel(new Integer(1), new Integer(1), null, new Integer(1)));
+			parallelIterationsSpinner.setPreferredSize(SPINNER_DIMENSION);
+			parallelIterationsSpinner.setMinimumSize(SPINNER_DIMENSION);
+			parallelIterationsSpinner.setMaximumSize(SPINNER_DIMENSION);
+			parallelIterationsSpinner.setFont(parallelIterationsSpinner.getFont().deriveFont(Font.PLAIN));
+		}
+		return parallelIterationsSpinner;
+	}
+
 	public JSpinner getIterationCountSpinner() {
 		if (iterationCountSpinner == null) {
 			iterationCountSpinner = new JSpinner(new SpinnerNumberModel(new Integer(2), new Integer(2), null, new Integer(1)));
@@ -4,11 +4,15 @@
 package org.signalml.app.model.components;
 
 import static org.signalml.app.util.i18n.SvarogI18n._;
+import static org.signalml.app.util.i18n.SvarogI18n._R;
 
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableRowSorter;
 
@@ -20,6 +24,8 @@
 import org.signalml.task.TaskEventListener;
 import org.signalml.task.TaskManagerEvent;
 import org.signalml.task.TaskManagerListener;
+import org.signalml.task.TaskPriority;
+import org.signalml.task.TaskScheduler;
 import org.signalml.task.TaskStatus;
 import org.signalml.task.TaskStatusImportanceComparator;
 
@@ -31,7 +37,7 @@
  *         Sp. z o.o.
  */
 public class TaskTableModel extends AbstractTableModel implements
-	TaskManagerListener, TaskEventListener {
+	TaskManagerListener, TaskEventListener, ChangeListener {
 
 	private static final long serialVersionUID = 1L;
 
@@ -40,6 +46,7 @@ public class TaskTableModel extends AbstractTableModel implements
 	public static final int CREATE_TIME_COLUMN = 2;
 	public static final int PROGRESS_COLUMN = 3;
 	public static final int MESSAGE_COLUMN = 4;
+	public static final int QUEUE_COLUMN = 5;
 	private ApplicationTaskManager taskManager;
 
 	private TableRowSorter<TaskTableModel> sorter = null;
@@ -77,6 +84,9 @@ public Class<?> getColumnClass(int col) {
 		case MESSAGE_COLUMN:
 			return String.class;
 
+		case QUEUE_COLUMN:
+			return String.class;
+
 		default:
 			return Object.class;
 
@@ -104,6 +114,9 @@ public String getColumnName(int col) {
 		case MESSAGE_COLUMN:
 			return _("Message");
 
+		case QUEUE_COLUMN:
+			return _("Queue");
+
 		default:
 			return "???";
 
@@ -112,7 +125,7 @@ public String getColumnName(int col) {
 
 	@Override
 	public int getColumnCount() {
-		return 5;
+		return 6;
 	}
 
 	@Override
@@ -156,6 +169,9 @@ public Object getValueAt(int row, int col) {
 				return "";
 			}
 
+		case QUEUE_COLUMN:
+			return getQueueDescription(task);
+
 		default:
 			return "???";
 
@@ -163,6 +179,28 @@ public Object getValueAt(int row, int col) {
 
 	}
 
+	/**
+	 * Describes the position of the given task in the queue of the
+	 * scheduler and the number of tasks waiting with it.
+	 * @param task the task
+	 * @return the description, or an empty string if the task is not waiting
+	 */
+	private String getQueueDescription(Task task) {
+		TaskScheduler scheduler = taskManager.getScheduler();
+		synchronized (scheduler) {
+			TaskPriority priority = scheduler.getWaitingPriority(task);
+			if (priority == null) {
+				return "";
+			}
+			int position = scheduler.getQueuePosition(task);
+			int count = scheduler.getWaitingCount(priority);
+			if (priority == TaskPriority.BATCH) {
+				return _R("{0} of {1} (batch)", position, count);
+			}
+			return _R("{0} of {1}", position, count);
+		}
+	}
+
 	public ApplicationTaskManager getTaskManager() {
 		return taskManager;
 	}
@@ -170,10 +208,12 @@ public ApplicationTaskManager getTaskManager() {
 	public void setTaskManager(ApplicationTaskManager taskManager) {
 		if (this.taskManager != null) {
 			this.taskManager.removeTaskManagerListener(this);
+			this.taskManager.getScheduler().removeChangeListener(this);
 		}
 		this.taskManager = taskManager;
 		if (taskManager != null) {
 			taskManager.addTaskManagerListener(this);
+			taskManager.getScheduler().addChangeListener(this);
 		}
 	}
 
@@ -265,4 +305,21 @@ public void taskTickerUpdated(TaskEvent ev) {
 			fireTableRowsUpdated(index, index);
 		}
 	}
+
+	/**
+	 * Called by the scheduler when tasks start waiting, start or finish, possibly
+	 * on a worker thread. Updates the queue positions of all tasks.
+	 */
+	@Override
+	public void stateChanged(ChangeEvent e) {
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				int count = getRowCount();
+				if (count > 0) {
+					fireTableRowsUpdated(0, count - 1);
+				}
+			}
+		});
+	}
 }
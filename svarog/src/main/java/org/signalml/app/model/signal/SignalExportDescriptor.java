@@ -6,6 +6,7 @@
 
 import org.signalml.app.config.preset.Preset;
 import org.signalml.domain.signal.ExportFormatType;
+import org.signalml.domain.signal.export.ascii.ASCIILayout;
 import org.signalml.domain.signal.raw.RawSignalByteOrder;
 import org.signalml.domain.signal.raw.RawSignalSampleType;
 import org.signalml.domain.signal.space.SignalSpace;
@@ -26,6 +27,7 @@ public class SignalExportDescriptor implements Preset {
 	private String name;
 
 	private String separator;
+	private ASCIILayout asciiLayout;
 
 	private ExportFormatType formatType;
 
@@ -48,6 +50,7 @@ public SignalExportDescriptor() {
 		signalSpace = new SignalSpace();
 		formatType = ExportFormatType.RAW;
 		separator = " ";
+		asciiLayout = ASCIILayout.CHANNELS_IN_ROWS;
 		sampleType = RawSignalSampleType.FLOAT;
 		byteOrder = RawSignalByteOrder.LITTLE_ENDIAN;
 		saveXML = true;
@@ -81,6 +84,15 @@ public void setSeparator(String separator){
 		this.separator = separator;
 	}
 
+	public ASCIILayout getAsciiLayout() {
+		// missing in presets saved by older versions
+		return (asciiLayout != null ? asciiLayout : ASCIILayout.CHANNELS_IN_ROWS);
+	}
+
+	public void setAsciiLayout(ASCIILayout asciiLayout) {
+		this.asciiLayout = asciiLayout;
+	}
+
 	public ExportFormatType getFormatType(){
 		return formatType;
 	}
@@ -20,6 +20,7 @@
 import org.signalml.method.Method;
 import org.signalml.task.DefaultTaskManager;
 import org.signalml.task.Task;
+import org.signalml.task.TaskPriority;
 
 /** ApplicationTaskManager
  *
@@ -80,24 +81,50 @@ public void addTask(Task task) {
 		super.addTask(task);
 	}
 
+	/**
+	 * Starts the given task as an {@link TaskPriority#INTERACTIVE interactive} task.
+	 * @param task the task to start
+	 */
 	public void startTask(Task task) {
-		ApplicationTaskWorker worker = new ApplicationTaskWorker(task);
-		workerMap.put(task, worker);
-
-		TaskEventProxy proxy = proxyMap.get(task);
-		proxy.setWorker(worker);
+		startTask(task, TaskPriority.INTERACTIVE);
+	}
 
-		worker.execute();
+	/**
+	 * Submits the given task to the {@link #getScheduler() scheduler} in the given
+	 * priority class. The task is started when a worker is available.
+	 * @param task the task to start
+	 * @param priority the priority class of the task
+	 */
+	public void startTask(Task task, TaskPriority priority) {
+		submitWorker(task, priority);
 	}
 
+	/**
+	 * Resumes the given task as an {@link TaskPriority#INTERACTIVE interactive} task.
+	 * @param task the task to resume
+	 */
 	public void resumeTask(Task task) {
+		resumeTask(task, TaskPriority.INTERACTIVE);
+	}
+
+	/**
+	 * Submits the given suspended task to the {@link #getScheduler() scheduler} in the given
+	 * priority class. The task is resumed when a worker is available.
+	 * @param task the task to resume
+	 * @param priority the priority class of the task
+	 */
+	public void resumeTask(Task task, TaskPriority priority) {
+		submitWorker(task, priority);
+	}
+
+	private void submitWorker(Task task, TaskPriority priority) {
 		ApplicationTaskWorker worker = new ApplicationTaskWorker(task);
 		workerMap.put(task, worker);
 
 		TaskEventProxy proxy = proxyMap.get(task);
 		proxy.setWorker(worker);
 
-		worker.execute();
+		getScheduler().submit(task, worker, priority);
 	}
 
 	@Override
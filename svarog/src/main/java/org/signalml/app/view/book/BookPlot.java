@@ -855,6 +855,7 @@ public void setZoom(double minPosition, double maxPosition, double minFrequency,
 
 	public void destroy() {
 		view.removePropertyChangeListener(this);
+		wignerMapProvider.shutdown();
 		setVisible(false);
 		segment = null;
 		view = null;
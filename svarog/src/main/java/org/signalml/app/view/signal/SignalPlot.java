@@ -53,10 +53,12 @@
 import org.signalml.app.view.tag.TagPaintMode;
 import org.signalml.app.view.tag.TagRenderer;
 import org.signalml.app.view.tag.comparison.TagDifferenceRenderer;
+import org.signalml.app.worker.signal.BuildMinMaxPyramidWorker;
 import org.signalml.domain.montage.Montage;
 import org.signalml.domain.montage.MontageMismatchException;
 import org.signalml.domain.montage.SourceChannel;
 import org.signalml.domain.montage.system.ChannelFunction;
+import org.signalml.domain.signal.MinMaxPyramid;
 import org.signalml.domain.signal.SignalProcessingChain;
 import org.signalml.domain.signal.raw.RawSignalSampleSource;
 import org.signalml.domain.signal.samplesource.ChangeableMultichannelSampleSource;
@@ -134,6 +136,16 @@ public class SignalPlot extends JComponent implements PropertyChangeListener, Ch
 
 	private double[] samples;
 
+	/**
+	 * The multi-resolution summary of the signal used to paint zoomed out
+	 * signals when {@link #optimizeSignalDisplaying} is on, null if
+	 * it is not (yet) available.
+	 */
+	private MinMaxPyramid minMaxPyramid;
+	private BuildMinMaxPyramidWorker minMaxPyramidWorker;
+	private double[] columnMinimum;
+	private double[] columnMaximum;
+
 	private int[] channelLevel;
 	private int clampLimit;
 
@@ -489,6 +501,8 @@ private void calculateParameters() {
 
 	public void destroy() {
 		setVisible(false);
+		cancelMinMaxPyramidWorker();
+		discardMinMaxPyramid();
 		document.removePropertyChangeListener(this);
 		document = null;
 		signalChain.removePropertyChangeListener(this);
@@ -887,6 +901,11 @@ protected void paintComponent(Graphics gOrig) {
 		double lastX = 0;
 		double lastY = 0;
 
+		MinMaxPyramid pyramid = null;
+		if (optimizeSignalDisplaying && minMaxPyramid != null && minMaxPyramid.isUsable(1 / timeZoomFactor)) {
+			pyramid = minMaxPyramid;
+		}
+
 		visibleCount = 0;
 		channel=startChannel;
 		while (visibleCount < maxNumberOfChannels && channel<channelCount) {
@@ -895,6 +914,13 @@ protected void paintComponent(Graphics gOrig) {
 				continue;
 			}
 			visibleCount ++;
+
+			if (pyramid != null) {
+				paintChannelColumns(g, pyramid, channel, clip.x-1, clipEndX+1);
+				channel++;
+				continue;
+			}
+
 			// those must be offset by one to get correct partial redraw
 			// offset again by one, this time in terms of samples
 			firstSample = (int) Math.max(0, Math.floor((clip.x-1) / timeZoomFactor) - 1);
@@ -1057,6 +1083,89 @@ protected void paintComponent(Graphics gOrig) {
 
 	}
 
+	/**
+	 * Paints the signal of the given channel as a vertical line from the minimal
+	 * to the maximal value in every pixel column, using the {@link MinMaxPyramid}.
+	 * The cost depends only on the number of columns.
+	 * @param g the graphics to paint on
+	 * @param pyramid the pyramid of the signal
+	 * @param channel the channel to paint
+	 * @param firstColumn the first pixel column to paint
+	 * @param lastColumn the last pixel column to paint
+	 */
+	private void paintChannelColumns(Graphics2D g, MinMaxPyramid pyramid, int channel, int firstColumn, int lastColumn) {
+
+		firstColumn = Math.max(0, firstColumn);
+		int columnCount = lastColumn - firstColumn + 1;
+		if (columnCount <= 0) {
+			return;
+		}
+		if (columnMinimum == null || columnMinimum.length < columnCount) {
+			columnMinimum = new double[columnCount];
+			columnMaximum = new double[columnCount];
+		}
+
+		double samplesPerColumn = 1 / timeZoomFactor;
+		pyramid.getColumns(channel, firstColumn * samplesPerColumn, samplesPerColumn, columnCount, columnMinimum, columnMaximum, null);
+
+		double pixelPerValueForChannel = channelsPlotOptionsModel.getPixelsPerValue(channel);
+		boolean started = false;
+		double lastY = 0;
+
+		generalPath.reset();
+
+		for (int i = 0; i < columnCount; i++) {
+			if (Double.isNaN(columnMinimum[i])) {
+				continue;
+			}
+
+			double x = firstColumn + i;
+			double top = toChannelPixelY(channel, columnMaximum[i] * pixelPerValueForChannel);
+			double bottom = toChannelPixelY(channel, columnMinimum[i] * pixelPerValueForChannel);
+
+			// start from the end closer to the previous column to avoid long diagonals
+			double from = top;
+			double to = bottom;
+			if (started && Math.abs(lastY - bottom) < Math.abs(lastY - top)) {
+				from = bottom;
+				to = top;
+			}
+
+			if (!started) {
+				generalPath.moveTo(x, from);
+				started = true;
+			} else {
+				generalPath.lineTo(x, from);
+			}
+			generalPath.lineTo(x, to);
+			lastY = to;
+		}
+
+		if (started) {
+			g.draw(generalPath);
+		}
+
+	}
+
+	/**
+	 * Converts the value of a sample (already multiplied by the number of
+	 * pixels per value) to the vertical pixel position in the given channel,
+	 * clamping it if necessary.
+	 * @param channel the channel
+	 * @param y the scaled value of the sample
+	 * @return the vertical position
+	 */
+	private double toChannelPixelY(int channel, double y) {
+		if (clamped) {
+			if (y > clampLimit) {
+				return channelLevel[channel] - clampLimit;
+			} else if (y < -clampLimit) {
+				return channelLevel[channel] + clampLimit;
+			}
+		}
+		return channelLevel[channel] - y;
+	}
+
 	public long getFirstSampleTimestamp() {
 		return this.view.isDisplayClockTime() ? firstSampleTimestamp : 0;
 	}
@@ -1294,9 +1403,76 @@ public String getToolTipText(MouseEvent event) {
 
 	public void reset() {
 		calculateParameters();
+		rebuildMinMaxPyramid();
 		revalidateAndRepaintAll();
 	}
 
+	private void cancelMinMaxPyramidWorker() {
+		if (minMaxPyramidWorker != null) {
+			minMaxPyramidWorker.cancel(true);
+			minMaxPyramidWorker = null;
+		}
+	}
+
+	/**
+	 * Releases the current {@link MinMaxPyramid}, together with the chain
+	 * it reads its finer levels from.
+	 */
+	private void discardMinMaxPyramid() {
+		if (minMaxPyramid != null) {
+			minMaxPyramid.destroy();
+			minMaxPyramid = null;
+		}
+	}
+
+	/**
+	 * Discards the current {@link MinMaxPyramid} and, if the optimized
+	 * signal displaying is on, starts building a new one in the background.
+	 * The pyramid is not built for signals which are still growing
+	 * (online signals).
+	 */
+	private void rebuildMinMaxPyramid() {
+		cancelMinMaxPyramidWorker();
+		discardMinMaxPyramid();
+
+		if (!optimizeSignalDisplaying || signalChain == null || signalChain.getSource() instanceof ChangeableMultichannelSampleSource) {
+			return;
+		}
+
+		SignalProcessingChain chainCopy;
+		try {
+			chainCopy = signalChain.createFilteredLevelCopyChain();
+		} catch (SignalMLException ex) {
+			logger.error("Failed to create a chain for the min/max pyramid", ex);
+			return;
+		}
+		minMaxPyramidWorker = new BuildMinMaxPyramidWorker(this, chainCopy);
+		minMaxPyramidWorker.execute();
+	}
+
+	/**
+	 * Sets the {@link MinMaxPyramid} used to paint zoomed out signals.
+	 * The pyramid is destroyed if it doesn't match the current signal,
+	 * otherwise the plot takes it over and destroys the previous one.
+	 * @param minMaxPyramid the pyramid
+	 */
+	public void setMinMaxPyramid(MinMaxPyramid minMaxPyramid) {
+		if (signalChain == null || !minMaxPyramid.matches(signalChain)) {
+			minMaxPyramid.destroy();
+			return;
+		}
+		if (this.minMaxPyramid != minMaxPyramid) {
+			discardMinMaxPyramid();
+		}
+		this.minMaxPyramid = minMaxPyramid;
+		minMaxPyramidWorker = null;
+		repaint();
+	}
+
+	public MinMaxPyramid getMinMaxPyramid() {
+		return minMaxPyramid;
+	}
+
 	public void revalidateAndRepaintAll() {
 		if (signalPlotColumnHeader != null) {
 			signalPlotColumnHeader.revalidate();
@@ -2623,7 +2799,11 @@ public boolean isOptimizeSignalDisplaying() {
 	}
 
 	public void setOptimizeSignalDisplaying(boolean optimizeSignalDisplaying) {
+		boolean changed = this.optimizeSignalDisplaying != optimizeSignalDisplaying;
 		this.optimizeSignalDisplaying = optimizeSignalDisplaying;
+		if (changed || (optimizeSignalDisplaying && minMaxPyramid == null && minMaxPyramidWorker == null)) {
+			rebuildMinMaxPyramid();
+		}
 		repaint();
 	}
 
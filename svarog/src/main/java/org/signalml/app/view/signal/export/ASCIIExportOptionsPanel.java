@@ -5,13 +5,15 @@
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.swing.DefaultComboBoxModel;
+import javax.swing.JComboBox;
 import javax.swing.JLabel;
-import javax.swing.JPanel;
 import javax.swing.JTextField;
 
 import org.apache.log4j.Logger;
 import org.signalml.app.model.signal.SignalExportDescriptor;
 import org.signalml.app.view.common.components.panels.ComponentWithLabel;
+import org.signalml.domain.signal.export.ascii.ASCIILayout;
 
 /**
  * This class represents a panel which may be used to select a file. It contains
@@ -27,6 +29,12 @@ public class ASCIIExportOptionsPanel extends AbstractExportOptionsPanel {
 
 	private JTextField separatorField;
 
+	/**
+	 * the combo-box which allows to select the {@link ASCIILayout layout}
+	 * of the samples
+	 */
+	private JComboBox layoutComboBox;
+
 	/**
 	 * This is the default constructor
 	 */
@@ -41,6 +49,13 @@ protected JTextField getSeparatorField() {
 		return separatorField;
 	}
 
+	protected JComboBox getLayoutComboBox() {
+		if (layoutComboBox == null) {
+			layoutComboBox = new JComboBox(new DefaultComboBoxModel(ASCIILayout.values()));
+		}
+		return layoutComboBox;
+	}
+
 	public void setSeparator(String separator) {
 		this.separatorField.setText(separator);
 	}
@@ -57,11 +72,13 @@ public boolean isSeparatorSelected() {
 	@Override
 	public void fillPanelFromModel(SignalExportDescriptor descriptor) {
 		separatorField.setText(descriptor.getSeparator());
+		getLayoutComboBox().setSelectedItem(descriptor.getAsciiLayout());
 	}
 
 	@Override
 	public void fillModelFromPanel(SignalExportDescriptor descriptor) {
 		descriptor.setSeparator(separatorField.getText());
+		descriptor.setAsciiLayout((ASCIILayout) getLayoutComboBox().getSelectedItem());
 		descriptor.setSaveXML(false);
 	}
 
@@ -70,7 +87,7 @@ protected List<ComponentWithLabel> createComponents() {
 		List<ComponentWithLabel> components = new ArrayList<ComponentWithLabel>();
 
 		components.add(new ComponentWithLabel(new JLabel(_("Separator: ")), getSeparatorField()));
-		components.add(new ComponentWithLabel(new JLabel(""), new JPanel()));
+		components.add(new ComponentWithLabel(new JLabel(_("Layout: ")), getLayoutComboBox()));
 		return components;
 	}
 
@@ -67,6 +67,7 @@
 import org.signalml.plugin.loader.PluginLoaderHi;
 import org.signalml.task.LocalTask;
 import org.signalml.task.Task;
+import org.signalml.task.TaskPriority;
 import org.signalml.task.TaskStatus;
 import org.signalml.util.SvarogConstants;
 
@@ -184,7 +185,7 @@ public void bootstrap() {
 				for (int i=0; i<taskCount; i++) {
 					task = taskManager.getTaskAt(i);
 					if (task.getStatus().isResumable()) {
-						taskManager.resumeTask(task);
+						taskManager.resumeTask(task, TaskPriority.BATCH);
 					}
 				}
 
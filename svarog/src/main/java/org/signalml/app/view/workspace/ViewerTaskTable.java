@@ -105,6 +105,10 @@ public ViewerTaskTable(TaskTableModel model) {
 		tc.setHeaderValue(model.getColumnName(tc.getModelIndex()));
 		columnModel.addColumn(tc);
 
+		tc = new TableColumn(TaskTableModel.QUEUE_COLUMN, 80);
+		tc.setHeaderValue(model.getColumnName(tc.getModelIndex()));
+		columnModel.addColumn(tc);
+
 		tc = new TableColumn(TaskTableModel.CREATE_TIME_COLUMN, 100);
 		tc.setHeaderValue(model.getColumnName(tc.getModelIndex()));
 		DateTableCellRenderer dateTableCellRenderer = new DateTableCellRenderer();
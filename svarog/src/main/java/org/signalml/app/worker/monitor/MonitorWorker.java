@@ -167,22 +167,24 @@ protected void parseMessageWithSamples(ByteString sampleMsgString) {
 			logger.error("", e);
 			return;
 		}
-		List<Sample> samples = sampleVector.getSamplesList();
+		int sampleCount = sampleVector.getSamplesCount();
+		if (sampleCount == 0) {
+			return;
+		}
 
-		for (int k=0; k<sampleVector.getSamplesCount(); k++) {
+		// the whole packet is decoded into one block, so it is added
+		// to the sample source with a single event
+		int channelCount = sampleVector.getSamples(0).getChannelsCount();
+		float[][] block = new float[channelCount][sampleCount];
+		for (int k = 0; k < sampleCount; k++) {
 			Sample sample = sampleVector.getSamples(k);
-
-			float[] newSamplesArray = new float[sample.getChannelsCount()];
-			for (int i = 0; i < newSamplesArray.length; i++) {
-				newSamplesArray[i] = sample.getChannels(i);
+			for (int i = 0; i < channelCount; i++) {
+				block[i][k] = sample.getChannels(i);
 			}
-
-			double samplesTimestamp = samples.get(0).getTimestamp();
-			//System.out.println("  -- " + samplesTimestamp);
-			NewSamplesData newSamplesPackage = new NewSamplesData(newSamplesArray, samplesTimestamp);
-
-			publish(newSamplesPackage);
 		}
+
+		double samplesTimestamp = sampleVector.getSamples(0).getTimestamp();
+		publish(new NewSamplesData(block, sampleCount, samplesTimestamp));
 	}
 
 	/**
@@ -236,7 +238,7 @@ protected void process(List<Object> objs) {
 
 				sampleSource.lock();
 				tagSet.lock();
-				sampleSource.addSamples(data.getSampleValues());
+				sampleSource.addSampleBlock(data.getSampleValues(), data.getSampleCount());
 				tagSet.newSample(data.getSamplesTimestamp());
 				tagSet.unlock();
 				sampleSource.unlock();
@@ -246,9 +248,9 @@ protected void process(List<Object> objs) {
 					tagRecorderWorker.setStartRecordingTimestamp(data.getSamplesTimestamp());
 				}
 
-				// sends chunks to the signal recorder
+				// sends the block to the signal recorder
 				if (signalRecorderWorker != null) {
-					signalRecorderWorker.offerChunk(data.getSampleValues());
+					signalRecorderWorker.offerBlock(data.getSampleValues(), data.getSampleCount());
 					if (!signalRecorderWorker.isFirstSampleTimestampSet())
 						signalRecorderWorker.setFirstSampleTimestamp(data.getSamplesTimestamp());
 				}
@@ -356,16 +358,21 @@ public static String msToDate(double timestamp) {
  * This class holds information about the newest samples package that was received
  * by Svarog and published by the doInTheBackground method.
  *
- * The data consists of the sample values (a sample value for each channel)
- * and a timestamp of these samples.
+ * The data consists of a block of sample values (a number of samples for
+ * each channel) and a timestamp of these samples.
  * @author Piotr Szachewicz
  */
 class NewSamplesData {
 	/**
-	 * The values of the samples. The size of the array is equal to the number
-	 * of channels in the signal.
+	 * The values of the samples, <code>sampleValues[channel][sample]</code>.
+	 * The number of arrays is equal to the number of channels in the signal.
 	 */
-	private float[] sampleValues;
+	private float[][] sampleValues;
+
+	/**
+	 * The number of samples of every channel in the {@link #sampleValues}.
+	 */
+	private int sampleCount;
 
 	/**
 	 * The timestamp of the samples represented by the sampleValues array.
@@ -375,21 +382,31 @@ class NewSamplesData {
 	/**
 	 * Constructor. Creates an object containing samples data.
 	 * @param sampleValues the values of the samples for each channel
+	 * @param sampleCount the number of samples of every channel
 	 * @param samplesTimestamp the timestamp of the samples
 	 */
-	public NewSamplesData(float[] sampleValues, double samplesTimestamp) {
+	public NewSamplesData(float[][] sampleValues, int sampleCount, double samplesTimestamp) {
 		this.sampleValues = sampleValues;
+		this.sampleCount = sampleCount;
 		this.samplesTimestamp = samplesTimestamp;
 	}
 
-	public float[] getSampleValues() {
+	public float[][] getSampleValues() {
 		return sampleValues;
 	}
 
-	public void setSampleValues(float[] sampleValues) {
+	public void setSampleValues(float[][] sampleValues) {
 		this.sampleValues = sampleValues;
 	}
 
+	public int getSampleCount() {
+		return sampleCount;
+	}
+
+	public void setSampleCount(int sampleCount) {
+		this.sampleCount = sampleCount;
+	}
+
 	public double getSamplesTimestamp() {
 		return samplesTimestamp;
 	}
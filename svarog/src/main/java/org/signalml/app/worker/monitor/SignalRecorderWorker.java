@@ -4,11 +4,11 @@
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.nio.FloatBuffer;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.apache.log4j.Level;
@@ -23,6 +23,21 @@
 
 /**
  * SignalRecorderWorker
+ * <p>
+ * Records the signal received by the {@link MonitorWorker} to a raw
+ * file. Offered samples are put in a bounded queue which is drained by
+ * a background writer thread (started by {@link #start()}), so the memory
+ * used by the recorder does not depend on the length of the recording.
+ * Samples are offered on the event dispatch thread, so offering waits
+ * for a free place in the queue only for a short time: if the writer
+ * can't keep up, the samples which did not fit are replaced with zeros
+ * in the file, so the following samples keep their positions relative to
+ * the recorded tags (see {@link #getFillerSampleCount()}).
+ * The writer converts the samples to little endian floats in a reused
+ * direct buffer, writes them to a {@link FileChannel}
+ * and every {@link ExperimentDescriptor#getBackupFrequency() backup period}
+ * forces them to the disk and saves a backup of the metadata.
+ * The final metadata file is written by {@link #save()}.
  */
 public class SignalRecorderWorker {
 
@@ -32,14 +47,59 @@ public class SignalRecorderWorker {
 	protected static final Logger logger = Logger.getLogger(SignalRecorderWorker.class);
 
 	/**
-	 * Array to store received samples in.
+	 * The maximum number of blocks waiting in the {@link #queue}.
 	 */
-	private List<float[]> sampleList;
+	private static final int QUEUE_CAPACITY = 1024;
 
 	/**
-	 * The stream to save signal to.
+	 * The number of samples (per channel) which are converted in the
+	 * {@link #byteBuffer} at once.
 	 */
-	private OutputStream outputStream;
+	private static final int BUFFER_SAMPLE_COUNT = 4096;
+
+	/**
+	 * How long the writer waits for new samples before it checks whether
+	 * a backup should be saved.
+	 */
+	private static final long POLL_TIMEOUT_IN_MILISECONDS = 500;
+
+	/**
+	 * How long {@link #offerBlock(float[][], int)} waits for a free place
+	 * in the {@link #queue}.
+	 */
+	private static final long OFFER_TIMEOUT_IN_MILISECONDS = 100;
+
+	/**
+	 * The block which is put in the {@link #queue} when the recording is
+	 * finished.
+	 */
+	private static final SampleBlock END_OF_RECORDING = new SampleBlock(new float[0][], 0);
+
+	/**
+	 * The blocks of samples waiting to be written.
+	 */
+	private final BlockingQueue<SampleBlock> queue = new ArrayBlockingQueue<SampleBlock>(QUEUE_CAPACITY);
+
+	/**
+	 * The thread writing samples from the {@link #queue} to the {@link #fileChannel}.
+	 */
+	private final Thread writerThread;
+
+	/**
+	 * Whether the {@link #writerThread} was started.
+	 */
+	private boolean started;
+
+	/**
+	 * The channel to save signal to.
+	 */
+	private FileChannel fileChannel;
+
+	/**
+	 * The buffer in which samples are converted before they are written,
+	 * used only by the {@link #writerThread}.
+	 */
+	private ByteBuffer byteBuffer;
 
 	/**
 	 * Path to data file.
@@ -57,7 +117,7 @@ public class SignalRecorderWorker {
 	private ExperimentDescriptor monitorDescriptor;
 
 	/**
-	 * How many samples have been received.
+	 * How many samples have been written.
 	 */
 	private int savedSampleCount;
 
@@ -69,7 +129,7 @@ public class SignalRecorderWorker {
 	/**
 	 * The timestamp of the first recorded sample.
 	 */
-	private double firstSampleTimestamp;
+	private volatile double firstSampleTimestamp;
 
 	/**
 	 * Whether the worker is finished.
@@ -77,20 +137,33 @@ public class SignalRecorderWorker {
 	private volatile boolean finished;
 
 	/**
-	 * Timestamp of last offer.
+	 * The number of samples (per channel) which were replaced with zeros
+	 * because the {@link #queue} was full.
+	 */
+	private volatile int fillerSampleCount;
+
+	/**
+	 * The number of samples (per channel) which did not fit in the
+	 * {@link #queue} and for which the filler block is not queued yet.
 	 */
-	private long lastOffer;
+	private int pendingFillerSampleCount;
 
 	/**
-	 * Sum of time elapsed between offers;
+	 * The number of channels of the last offered block.
 	 */
-	private long timeElapsed;
+	private int channelCount;
+
+	/**
+	 * The first error which occurred while writing samples, null if
+	 * there was none.
+	 */
+	private volatile IOException writeException;
 
 	/**
 	 * Tags recorder related to current recording.
 	 * This object calls the backup method, so it is synchronized.
 	 */
-	private TagRecorder tagRecorder;
+	private volatile TagRecorder tagRecorder;
 
 	/**
 	 * Descriptor for recorded samples.
@@ -116,12 +189,9 @@ public SignalRecorderWorker(String dataPath, ExperimentDescriptor experimentDesc
 		this.dataFilePath = dataPath;
 		this.metadataFilePath = metadataPath;
 
-		this.sampleList = new ArrayList<float[]>();
 		this.monitorDescriptor = experimentDescriptor;
 
 		this.backupFrequencyInMiliseconds = experimentDescriptor.getBackupFrequency() * 1000;
-		this.lastOffer = System.currentTimeMillis();
-		this.timeElapsed = 0;
 
 		this.finished = false;
 		this.savedSampleCount = 0;
@@ -133,112 +203,248 @@ public SignalRecorderWorker(String dataPath, ExperimentDescriptor experimentDesc
 		rawSignalDescriptor.setByteOrder(RawSignalByteOrder.LITTLE_ENDIAN);
 
 		logger.setLevel((Level) Level.INFO);
+
+		fileChannel = new FileOutputStream(dataFilePath).getChannel();
+
+		writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeSamples();
+			}
+		}, "SignalRecorderWriter");
+		writerThread.setDaemon(true);
+	}
+
+	/**
+	 * Starts the thread writing the offered samples to the file.
+	 */
+	public synchronized void start() {
+		if (!started) {
+			started = true;
+			writerThread.start();
+		}
 	}
 
 	/**
-	 * Adds samples to the list, and if it is time for a backup - saves them.
+	 * Adds a sample (a value for each channel) to the recording.
 	 * @param samples samples to be recorded
 	 */
 	public void offerChunk(float[] samples) {
 
-		synchronized (this) {
-
-			if (!finished) {
-
-				sampleList.add(samples);
-
-				long currentTimestamp = System.currentTimeMillis();
-				timeElapsed += currentTimestamp - lastOffer;
-				lastOffer = currentTimestamp;
+		float[][] block = new float[samples.length][1];
+		for (int i = 0; i < samples.length; i++) {
+			block[i][0] = samples[i];
+		}
+		offerBlock(block, 1);
+	}
 
-				if (timeElapsed > backupFrequencyInMiliseconds) {
+	/**
+	 * Adds a block of samples to the recording. The block is written
+	 * by the writer thread, so it must not be modified after it is offered.
+	 * If the queue is full this method waits for at most
+	 * {@link #OFFER_TIMEOUT_IN_MILISECONDS}; if the writer still can't keep
+	 * up, zeros are written instead of the block as soon as there is room.
+	 * @param block samples to be recorded, <code>block[channel][sample]</code>
+	 * @param count the number of samples of every channel in the block
+	 */
+	public synchronized void offerBlock(float[][] block, int count) {
 
-					timeElapsed = 0;
-					doSave(true);
+		if (finished || count <= 0) {
+			return;
+		}
+		channelCount = block.length;
 
-					// it's time for a backup - let the TagRecorder know
-					if (tagRecorder != null)
-						tagRecorder.doBackup();
+		try {
+			if (pendingFillerSampleCount > 0) {
+				if (!queue.offer(new SampleBlock(channelCount, pendingFillerSampleCount), OFFER_TIMEOUT_IN_MILISECONDS, TimeUnit.MILLISECONDS)) {
+					addFiller(count);
+					return;
 				}
+				pendingFillerSampleCount = 0;
+			}
+			if (!queue.offer(new SampleBlock(block, count), OFFER_TIMEOUT_IN_MILISECONDS, TimeUnit.MILLISECONDS)) {
+				addFiller(count);
 			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			addFiller(count);
 		}
 	}
 
 	/**
-	 * Saves all remaining samples.
+	 * Records that the given number of samples will be replaced with zeros.
+	 * @param count the number of samples (per channel)
+	 */
+	private void addFiller(int count) {
+		if (fillerSampleCount == 0) {
+			logger.warn("Signal recorder can't keep up, replacing samples with zeros");
+		}
+		pendingFillerSampleCount += count;
+		fillerSampleCount += count;
+	}
+
+	/**
+	 * Returns the number of samples (per channel) which were replaced
+	 * with zeros because the writer could not keep up.
+	 * @return the number of filler samples
+	 */
+	public int getFillerSampleCount() {
+		return fillerSampleCount;
+	}
+
+	/**
+	 * Writes all remaining samples and saves the metadata. No samples can
+	 * be offered after this method was called.
 	 */
 	public void save() {
 
 		synchronized (this) {
 
-			doSave(false);
+			if (finished) {
+				return;
+			}
 			finished = true;
-		}
-	}
+			start();
 
-	/**
-	 * Saves all data to the disk.
-	 * @param isBackup whether the save is a backup
-	 */
-	private void doSave(boolean isBackup) {
+			try {
+				if (pendingFillerSampleCount > 0) {
+					queue.put(new SampleBlock(channelCount, pendingFillerSampleCount));
+					pendingFillerSampleCount = 0;
+				}
+				queue.put(END_OF_RECORDING);
+				writerThread.join();
+			} catch (InterruptedException ex) {
+				logger.error("Interrupted while waiting for the signal recorder", ex);
+				Thread.currentThread().interrupt();
+				writerThread.interrupt();
+				closeFileChannel();
+				return;
+			}
 
-		try {
-			flushSamples();
-			saveMetadata(isBackup);
-		} catch (IOException ex) { }
+			try {
+				if (fileChannel.isOpen()) {
+					fileChannel.force(true);
+				}
+				saveMetadata(false);
+			} catch (IOException ex) {
+				logger.error("Failed to save the recorded signal", ex);
+			} finally {
+				closeFileChannel();
+			}
+
+			if (writeException != null) {
+				logger.error("Some samples could not be recorded", writeException);
+			}
+			if (fillerSampleCount > 0) {
+				logger.error(fillerSampleCount + " samples were replaced with zeros because the recorder could not keep up");
+			}
+		}
 	}
 
 	/**
-	 * Saves all samples from the list to the output.
+	 * The body of the {@link #writerThread}: writes blocks from the queue
+	 * until the {@link #END_OF_RECORDING} block is taken.
 	 */
-	private void flushSamples() throws IOException {
+	private void writeSamples() {
 
-		if (outputStream == null)
-			outputStream = new FileOutputStream(dataFilePath);
+		long lastBackup = System.currentTimeMillis();
 
-		int chunkCount = sampleList.size();
-		if (chunkCount == 0)
-			return;
+		while (true) {
 
-		int sampleSize = rawSignalDescriptor.getSampleType().getByteWidth();
-		int chunkSize = sampleList.get(0).length * sampleSize;
-
-		byte[] toSave = new byte[chunkSize * chunkCount];
+			SampleBlock block;
+			try {
+				block = queue.poll(POLL_TIMEOUT_IN_MILISECONDS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException ex) {
+				logger.error("Signal recorder writer interrupted", ex);
+				closeFileChannel();
+				return;
+			}
 
-		int position = 0;
-		for (int i = 0; i < chunkCount; i++) {
+			if (block == END_OF_RECORDING) {
+				return;
+			}
 
-			float[] chunk = sampleList.get(i);
-			byte[] processedChunk = processChunk(chunk);
+			try {
+				if (block != null) {
+					writeBlock(block);
+				}
 
-			for (int j = 0; j < processedChunk.length; j++) {
-				toSave[position++] = processedChunk[j];
+				long currentTimestamp = System.currentTimeMillis();
+				if (currentTimestamp - lastBackup > backupFrequencyInMiliseconds) {
+					lastBackup = currentTimestamp;
+					backup();
+				}
+			} catch (IOException ex) {
+				if (writeException == null) {
+					logger.error("Failed to record samples", ex);
+					writeException = ex;
+				}
 			}
 		}
+	}
 
-		outputStream.write(toSave, 0, toSave.length);
-		outputStream.flush();
+	/**
+	 * Closes the {@link #fileChannel}, logging the errors.
+	 */
+	private void closeFileChannel() {
+		try {
+			fileChannel.close();
+		} catch (IOException ex) {
+			logger.error("Failed to close the recorded signal file", ex);
+		}
+	}
 
-		savedSampleCount += chunkCount;
-		sampleList.clear();
+	/**
+	 * Forces the written samples to the disk and saves a backup of the
+	 * metadata.
+	 * @throws IOException when the files cannot be written
+	 */
+	private void backup() throws IOException {
+
+		fileChannel.force(false);
+		saveMetadata(true);
+
+		// it's time for a backup - let the TagRecorder know
+		TagRecorder recorder = tagRecorder;
+		if (recorder != null)
+			recorder.doBackup();
 	}
 
 	/**
-	 * Processes a chunk to be saved.
-	 * @param chunk chunk to be saved
-	 * @return processed chunk
+	 * Converts a block of samples to little endian floats and writes it
+	 * to the {@link #fileChannel}. A filler block is written as zeros.
+	 * @param block the block to be written
+	 * @throws IOException when the samples cannot be written
 	 */
-	private byte[] processChunk(float[] chunk) {
+	private void writeBlock(SampleBlock block) throws IOException {
+
+		float[][] samples = block.samples;
+		int channelCount = block.channelCount;
+		int sampleSize = channelCount * RawSignalSampleType.FLOAT.getByteWidth();
+
+		if (byteBuffer == null || byteBuffer.capacity() < sampleSize) {
+			byteBuffer = ByteBuffer.allocateDirect(BUFFER_SAMPLE_COUNT * sampleSize);
+			byteBuffer.order(rawSignalDescriptor.getByteOrder().getByteOrder());
+		}
+		int bufferSampleCount = byteBuffer.capacity() / sampleSize;
 
-		byte[] byteBuffer = new byte[chunk.length * rawSignalDescriptor.getSampleType().getByteWidth()];
+		for (int start = 0; start < block.count; start += bufferSampleCount) {
 
-		ByteBuffer bBuffer = ByteBuffer.wrap(byteBuffer).order(rawSignalDescriptor.getByteOrder().getByteOrder());
-		FloatBuffer buf = bBuffer.asFloatBuffer();
+			int end = Math.min(block.count, start + bufferSampleCount);
+			byteBuffer.clear();
+			for (int j = start; j < end; j++) {
+				for (int i = 0; i < channelCount; i++) {
+					byteBuffer.putFloat(samples == null ? 0F : samples[i][j]);
+				}
+			}
 
-		buf.clear();
-		buf.put(chunk, 0, chunk.length);
+			byteBuffer.flip();
+			while (byteBuffer.hasRemaining()) {
+				fileChannel.write(byteBuffer);
+			}
+		}
 
-		return byteBuffer;
+		savedSampleCount += block.count;
 	}
 
 	/**
@@ -303,4 +509,44 @@ public void setTagRecorder(TagRecorder tagRecorder) {
 		this.tagRecorder = tagRecorder;
 	}
 
+	/**
+	 * A block of samples waiting in the {@link SignalRecorderWorker#queue}.
+	 */
+	private static final class SampleBlock {
+
+		/**
+		 * the samples, <code>samples[channel][sample]</code>, null for
+		 * a block of zeros
+		 */
+		private final float[][] samples;
+
+		/**
+		 * the number of channels
+		 */
+		private final int channelCount;
+
+		/**
+		 * the number of samples of every channel
+		 */
+		private final int count;
+
+		private SampleBlock(float[][] samples, int count) {
+			this.samples = samples;
+			this.channelCount = samples.length;
+			this.count = count;
+		}
+
+		/**
+		 * Creates a block of zeros.
+		 * @param channelCount the number of channels
+		 * @param count the number of samples of every channel
+		 */
+		private SampleBlock(int channelCount, int count) {
+			this.samples = null;
+			this.channelCount = channelCount;
+			this.count = count;
+		}
+
+	}
+
 }
@@ -0,0 +1,91 @@
+package org.signalml.app.worker.signal;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingWorker;
+
+import org.apache.log4j.Logger;
+import org.signalml.app.view.signal.SignalPlot;
+import org.signalml.domain.signal.MinMaxPyramid;
+import org.signalml.domain.signal.SignalProcessingChain;
+
+/**
+ * This worker builds the {@link MinMaxPyramid} of the signal displayed
+ * in a {@link SignalPlot} in the background and passes it to the plot
+ * when it is ready.
+ * The samples are read from a copy of the plot's signal processing chain,
+ * so the plot may be painted while the pyramid is being built.
+ */
+public class BuildMinMaxPyramidWorker extends SwingWorker<MinMaxPyramid, Void> {
+
+	protected static final Logger logger = Logger.getLogger(BuildMinMaxPyramidWorker.class);
+
+	private final SignalPlot plot;
+	private final SignalProcessingChain chain;
+
+	/**
+	 * the built pyramid, released if the worker is cancelled after building it
+	 */
+	private volatile MinMaxPyramid result;
+
+	/**
+	 * Constructor.
+	 * @param plot the plot which will receive the pyramid
+	 * @param chain the chain from which samples will be read; the built
+	 * pyramid takes it over to compute its finer levels, otherwise it is
+	 * destroyed
+	 */
+	public BuildMinMaxPyramidWorker(SignalPlot plot, SignalProcessingChain chain) {
+		this.plot = plot;
+		this.chain = chain;
+	}
+
+	@Override
+	protected MinMaxPyramid doInBackground() throws Exception {
+		MinMaxPyramid pyramid = null;
+		boolean built = false;
+		try {
+			pyramid = MinMaxPyramid.createFor(chain);
+			built = pyramid.build(chain);
+		} finally {
+			if (!built) {
+				chain.destroy();
+			}
+		}
+		if (!built) {
+			return null;
+		}
+		pyramid.setSource(chain);
+		result = pyramid;
+		// done() may have already run and missed the result
+		if (isCancelled()) {
+			pyramid.destroy();
+		}
+		return pyramid;
+	}
+
+	@Override
+	protected void done() {
+		if (isCancelled()) {
+			MinMaxPyramid pyramid = result;
+			if (pyramid != null) {
+				pyramid.destroy();
+			}
+			return;
+		}
+		try {
+			MinMaxPyramid pyramid = get();
+			if (pyramid != null) {
+				plot.setMinMaxPyramid(pyramid);
+			}
+		} catch (InterruptedException ex) {
+			logger.debug("Interrupted while building the min/max pyramid", ex);
+		} catch (CancellationException ex) {
+			logger.debug("Building the min/max pyramid was cancelled", ex);
+		} catch (ExecutionException ex) {
+			logger.error("Failed to build the min/max pyramid", ex.getCause());
+		}
+	}
+
+}
@@ -157,6 +157,26 @@ public float getChannelSample(long offset, int chn) throws SignalMLCodecExceptio
 		}
 	}
 
+	@Override
+	public void getChannelSamples(long offset, int chn, float[] target, int arrayOffset, int count)
+		throws SignalMLCodecException
+	{
+		try {
+			this.source.get_set().getChannel(chn).getSamples(FloatBuffer.wrap(target, arrayOffset, count), offset);
+		} catch(RuntimeException e) {
+			log.info(format("%d / %d: %s", offset, chn, e));
+			throw new SignalMLCodecException(e);
+		}
+	}
+
+	@Override
+	public void getSamples(long offset, float[][] target, int arrayOffset, int count)
+		throws SignalMLCodecException
+	{
+		for (int chn = 0; chn < target.length; chn++)
+			this.getChannelSamples(offset, chn, target[chn], arrayOffset, count);
+	}
+
 	@Override
 	public void getSamples(FloatBuffer dst, int chn, long sample)
 		throws BufferUnderflowException
@@ -45,6 +45,7 @@ the source code of Signal (the version of Signal used to produce the
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 
 import org.signalml.codec.generator.xml.XMLCodecException;
 
@@ -58,6 +59,22 @@ public abstract class SMLCodec {
 	private ByteBuffer shortBuffer;
 	private byte[] shortByteArray;
 
+	/**
+	 * The maximum number of bytes read from the file at once by the block
+	 * decoding methods.
+	 */
+	private static final int BLOCK_SIZE = 1024 * 1024;
+
+	private static final int TYPE_SHORT = 0;
+	private static final int TYPE_INT = 1;
+	private static final int TYPE_FLOAT = 2;
+	private static final int TYPE_DOUBLE = 3;
+	private static final int TYPE_LONG = 4;
+
+	private static final int[] TYPE_SIZES = { 2, 4, 4, 8, 8 };
+
+	private ByteBuffer blockBuffer;
+
 	public void init() throws XMLCodecException {
 	}
 	/*
@@ -304,6 +321,76 @@ public long[] read_long_array(long offset, int size) throws XMLCodecException {
 		}
 	}
 
+	/**
+	 * Reads the given number of bytes from the file to a buffer, which is
+	 * reused by the subsequent calls. The bytes past the end of the file
+	 * are zeros.
+	 * @param offset the position in the file
+	 * @param length the number of bytes to read
+	 * @return the buffer with the bytes starting at position 0, in the
+	 * byte order of this codec
+	 * @throws XMLCodecException if the file could not be read
+	 */
+	protected final ByteBuffer read_block(long offset, int length) throws XMLCodecException {
+		if (blockBuffer == null || blockBuffer.capacity() < length) {
+			blockBuffer = ByteBuffer.allocate(length);
+		}
+		byte[] array = blockBuffer.array();
+		try {
+			file.seek(offset);
+			int read = 0;
+			while (read < length) {
+				int count = file.read(array, read, length - read);
+				if (count < 0) {
+					Arrays.fill(array, read, length, (byte) 0);
+					break;
+				}
+				read += count;
+			}
+		} catch (IOException e) {
+			throw new XMLCodecException(e);
+		}
+		blockBuffer.clear();
+		blockBuffer.limit(length);
+		blockBuffer.order(byteOrder);
+		return blockBuffer;
+	}
+
+	///////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Decodes the given number of consecutive samples of one channel.
+	 * Codecs which can read many samples at once override this method,
+	 * the default implementation calls {@link #getChannelSample(long, int)}
+	 * for each sample.
+	 * @param offset the first sample
+	 * @param chn the channel
+	 * @param target the array to which the samples are written
+	 * @param arrayOffset the position in the target array of the first sample
+	 * @param count the number of samples
+	 * @throws XMLCodecException if the samples could not be read
+	 */
+	public void getChannelSamples(long offset, int chn, float[] target, int arrayOffset, int count) throws XMLCodecException {
+		for (int i=0 ; i<count ; i++)
+			target[arrayOffset+i]=getChannelSample(offset+i, chn);
+	}
+
+	/**
+	 * Decodes the given number of consecutive frames (samples of all
+	 * channels). The default implementation calls
+	 * {@link #getChannelSamples(long, int, float[], int, int)} for each channel.
+	 * @param offset the first sample
+	 * @param target the arrays to which the samples of the channels are
+	 * written, one array for each channel
+	 * @param arrayOffset the position in the target arrays of the first sample
+	 * @param count the number of samples in each channel
+	 * @throws XMLCodecException if the samples could not be read
+	 */
+	public void getSamples(long offset, float[][] target, int arrayOffset, int count) throws XMLCodecException {
+		for (int chn=0 ; chn<target.length ; chn++)
+			getChannelSamples(offset, chn, target[chn], arrayOffset, count);
+	}
+
 	///////////////////////////////////////////////////////////////////////////////
 
 	public float[] getMultiplexSample_short(long offset, long off, int chn) throws XMLCodecException {
@@ -372,6 +459,105 @@ public float getMultiplexChannelSample_long(long offset,long off, int chn, int m
 		return (float)read_long(offset+8*(max_chn*off+chn));
 	}
 
+	///////////////////////////////////////////////////////////////////////////////
+
+	public void getMultiplexChannelSamples_short(long offset, long off, int chn, int max_chn, float[] target, int arrayOffset, int count) throws XMLCodecException {
+		getMultiplexSamples(TYPE_SHORT, offset, off, chn, 1, max_chn, target, null, arrayOffset, count);
+	}
+
+	public void getMultiplexChannelSamples_float(long offset, long off, int chn, int max_chn, float[] target, int arrayOffset, int count) throws XMLCodecException {
+		getMultiplexSamples(TYPE_FLOAT, offset, off, chn, 1, max_chn, target, null, arrayOffset, count);
+	}
+
+	public void getMultiplexChannelSamples_int(long offset, long off, int chn, int max_chn, float[] target, int arrayOffset, int count) throws XMLCodecException {
+		getMultiplexSamples(TYPE_INT, offset, off, chn, 1, max_chn, target, null, arrayOffset, count);
+	}
+
+	public void getMultiplexChannelSamples_double(long offset, long off, int chn, int max_chn, float[] target, int arrayOffset, int count) throws XMLCodecException {
+		getMultiplexSamples(TYPE_DOUBLE, offset, off, chn, 1, max_chn, target, null, arrayOffset, count);
+	}
+
+	public void getMultiplexChannelSamples_long(long offset, long off, int chn, int max_chn, float[] target, int arrayOffset, int count) throws XMLCodecException {
+		getMultiplexSamples(TYPE_LONG, offset, off, chn, 1, max_chn, target, null, arrayOffset, count);
+	}
+
+	public void getMultiplexSamples_short(long offset, long off, int max_chn, float[][] target, int arrayOffset, int count) throws XMLCodecException {
+		getMultiplexSamples(TYPE_SHORT, offset, off, 0, target.length, max_chn, null, target, arrayOffset, count);
+	}
+
+	public void getMultiplexSamples_float(long offset, long off, int max_chn, float[][] target, int arrayOffset, int count) throws XMLCodecException {
+		getMultiplexSamples(TYPE_FLOAT, offset, off, 0, target.length, max_chn, null, target, arrayOffset, count);
+	}
+
+	public void getMultiplexSamples_int(long offset, long off, int max_chn, float[][] target, int arrayOffset, int count) throws XMLCodecException {
+		getMultiplexSamples(TYPE_INT, offset, off, 0, target.length, max_chn, null, target, arrayOffset, count);
+	}
+
+	public void getMultiplexSamples_double(long offset, long off, int max_chn, float[][] target, int arrayOffset, int count) throws XMLCodecException {
+		getMultiplexSamples(TYPE_DOUBLE, offset, off, 0, target.length, max_chn, null, target, arrayOffset, count);
+	}
+
+	public void getMultiplexSamples_long(long offset, long off, int max_chn, float[][] target, int arrayOffset, int count) throws XMLCodecException {
+		getMultiplexSamples(TYPE_LONG, offset, off, 0, target.length, max_chn, null, target, arrayOffset, count);
+	}
+
+	/**
+	 * Decodes the samples of the given channels from the multiplexed
+	 * frames, reading many frames from the file at once.
+	 * @param type the type of the samples
+	 * @param offset the position of the first frame in the file
+	 * @param off the first frame to decode
+	 * @param firstChannel the first channel to decode
+	 * @param channelCount the number of channels to decode
+	 * @param max_chn the number of channels in a frame
+	 * @param channelTarget the array for the samples of a single channel
+	 * or null if the samples are written to <code>target</code>
+	 * @param target the arrays for the samples of the channels
+	 * @param arrayOffset the position in the target arrays of the first sample
+	 * @param count the number of frames to decode
+	 * @throws XMLCodecException if the file could not be read
+	 */
+	private void getMultiplexSamples(int type, long offset, long off, int firstChannel, int channelCount, int max_chn,
+									 float[] channelTarget, float[][] target, int arrayOffset, int count) throws XMLCodecException {
+		int sampleSize=TYPE_SIZES[type];
+		int frameSize=sampleSize*max_chn;
+		int framesPerBlock=Math.max(1, BLOCK_SIZE/frameSize);
+
+		while (count>0) {
+			int frames=Math.min(count, framesPerBlock);
+			ByteBuffer buffer=read_block(offset+frameSize*off, frameSize*frames);
+			for (int chn=0 ; chn<channelCount ; chn++) {
+				float[] dest=(channelTarget!=null) ? channelTarget : target[chn];
+				int position=sampleSize*(firstChannel+chn);
+				switch (type) {
+				case TYPE_SHORT:
+					for (int i=0 ; i<frames ; i++, position+=frameSize)
+						dest[arrayOffset+i]=buffer.getShort(position);
+					break;
+				case TYPE_INT:
+					for (int i=0 ; i<frames ; i++, position+=frameSize)
+						dest[arrayOffset+i]=buffer.getInt(position);
+					break;
+				case TYPE_FLOAT:
+					for (int i=0 ; i<frames ; i++, position+=frameSize)
+						dest[arrayOffset+i]=buffer.getFloat(position);
+					break;
+				case TYPE_DOUBLE:
+					for (int i=0 ; i<frames ; i++, position+=frameSize)
+						dest[arrayOffset+i]=(float)buffer.getDouble(position);
+					break;
+				default:
+					for (int i=0 ; i<frames ; i++, position+=frameSize)
+						dest[arrayOffset+i]=buffer.getLong(position);
+					break;
+				}
+			}
+			off+=frames;
+			arrayOffset+=frames;
+			count-=frames;
+		}
+	}
+
 	private int m_edf_record_size;
 	private int m_chn_size[];
 	private int m_chn_offset[];
@@ -421,6 +607,46 @@ public float getEDFChannelSample(long offset,int chn) throws XMLCodecException {
 		}
 	}
 
+	/**
+	 * Decodes the given number of consecutive samples of one channel of
+	 * an EDF file, reading many data records from the file at once.
+	 * @param offset the first sample
+	 * @param chn the channel
+	 * @param target the array to which the samples are written
+	 * @param arrayOffset the position in the target array of the first sample
+	 * @param count the number of samples
+	 * @throws XMLCodecException if the samples could not be read
+	 */
+	public void getEDFChannelSamples(long offset, int chn, float[] target, int arrayOffset, int count) throws XMLCodecException {
+		try {
+			int size=m_chn_size[chn];
+			int recordsPerBlock=Math.max(1, BLOCK_SIZE/m_edf_record_size);
+
+			while (count>0) {
+				long record=offset/size;
+				int first=(int)(offset % size);
+				int records=(int)Math.min(recordsPerBlock, ((long) first+count+size-1)/size);
+				ByteBuffer buffer=read_block(m_edf_record_size*record, m_edf_record_size*records);
+				buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+				for (int r=0 ; r<records && count>0 ; r++) {
+					int position=r*m_edf_record_size+m_chn_offset[chn]+EDF_INT_SIZE*first;
+					int length=Math.min(count, size-first);
+					for (int i=0 ; i<length ; i++, position+=EDF_INT_SIZE)
+						target[arrayOffset+i]=buffer.getShort(position);
+					arrayOffset+=length;
+					offset+=length;
+					count-=length;
+					first=0;
+				}
+			}
+		} catch (XMLCodecException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new XMLCodecException("getEDFChannelSamples: "+e.getMessage());
+		}
+	}
+
 	//////////////////////////////////////////////////////////////////////
 
 	public static float to_float(float x) throws XMLCodecException  {
@@ -47,6 +47,32 @@ public interface SignalMLCodecReader {
 
 	public float getChannelSample(long offset, int chn) throws SignalMLCodecException;
 
+	/**
+	 * Decodes the given number of consecutive samples of one channel
+	 * at once.
+	 * @param offset the first sample
+	 * @param chn the channel
+	 * @param target the array to which the samples are written
+	 * @param arrayOffset the position in the target array of the first sample
+	 * @param count the number of samples
+	 * @throws SignalMLCodecException if the samples could not be read
+	 */
+	public void getChannelSamples(long offset, int chn, float[] target, int arrayOffset, int count)
+		throws SignalMLCodecException;
+
+	/**
+	 * Decodes the given number of consecutive samples of all channels
+	 * at once.
+	 * @param offset the first sample
+	 * @param target the arrays to which the samples of the channels are
+	 * written, one array for each channel
+	 * @param arrayOffset the position in the target arrays of the first sample
+	 * @param count the number of samples in each channel
+	 * @throws SignalMLCodecException if the samples could not be read
+	 */
+	public void getSamples(long offset, float[][] target, int arrayOffset, int count)
+		throws SignalMLCodecException;
+
 	public void getSamples(FloatBuffer dst, int chn, long sample)
 		throws SignalMLCodecException;
 
@@ -8,7 +8,6 @@
 import java.util.HashMap;
 import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
-import java.nio.BufferUnderflowException;
 
 import org.apache.log4j.Logger;
 import org.signalml.codec.generator.xml.XMLCodecException;
@@ -363,15 +362,48 @@ public float getChannelSample(long offset, int chn) throws SignalMLCodecExceptio
 		}
 	}
 
+	@Override
+	public void getChannelSamples(long offset, int chn, float[] target, int arrayOffset, int count)
+		throws SignalMLCodecException
+	{
+		if (delegate != null) {
+			try {
+				delegate.getChannelSamples(offset, chn, target, arrayOffset, count);
+			} catch (Exception e) {
+				throw new SignalMLCodecException(e);
+			}
+		} else {
+			throw new SignalMLCodecException("object is null");
+		}
+	}
+
+	@Override
+	public void getSamples(long offset, float[][] target, int arrayOffset, int count)
+		throws SignalMLCodecException
+	{
+		if (delegate != null) {
+			try {
+				delegate.getSamples(offset, target, arrayOffset, count);
+			} catch (Exception e) {
+				throw new SignalMLCodecException(e);
+			}
+		} else {
+			throw new SignalMLCodecException("object is null");
+		}
+	}
+
 	@Override
 	public void getSamples(FloatBuffer dst, int chn, long sample)
 		throws SignalMLCodecException
 	{
-		try{
-			while(dst.hasRemaining())
-				dst.put(this.getChannelSample(sample++, chn));
-		} catch(BufferUnderflowException e) {
-			throw new SignalMLCodecException("empty", e);
+		int count = dst.remaining();
+		if (dst.hasArray()) {
+			getChannelSamples(sample, chn, dst.array(), dst.arrayOffset() + dst.position(), count);
+			dst.position(dst.position() + count);
+		} else {
+			float[] samples = new float[count];
+			getChannelSamples(sample, chn, samples, 0, count);
+			dst.put(samples);
 		}
 	}
 
@@ -379,12 +411,10 @@ public void getSamples(FloatBuffer dst, int chn, long sample)
 	public void getSamples(DoubleBuffer dst, int chn, long sample)
 		throws SignalMLCodecException
 	{
-		try{
-			while(dst.hasRemaining())
-				dst.put(this.getChannelSample(sample++, chn));
-		} catch(BufferUnderflowException e) {
-			throw new SignalMLCodecException("empty", e);
-		}
+		float[] samples = new float[dst.remaining()];
+		getChannelSamples(sample, chn, samples, 0, samples.length);
+		for (int i = 0; i < samples.length; i++)
+			dst.put(samples[i]);
 	}
 
 	private short get_data_offset() throws XMLCodecException {
@@ -732,6 +732,20 @@ private String genChannelDataFormat() throws XMLCodecException {
 			}
 
 			buf.append("}");
+
+			if (frame_type.equals("multiplex")) {
+				buf.append("\n\npublic void getChannelSamples(long offset, int chn, float[] target, int arrayOffset, int count) throws XMLCodecException {\n");
+				buf.append("   getMultiplexChannelSamples_");
+				buf.append(genTypeName(sample_type.trim(), null));
+				buf.append("(");
+				buf.append(offset);
+				buf.append(", offset, chn, get_number_of_channels(), target, arrayOffset, count);\n");
+				buf.append("}");
+			} else if (frame_type.equals("edf_frame")) {
+				buf.append("\n\npublic void getChannelSamples(long offset, int chn, float[] target, int arrayOffset, int count) throws XMLCodecException {\n");
+				buf.append("   getEDFChannelSamples(offset, chn, target, arrayOffset, count);\n");
+				buf.append("}");
+			}
 			return identLines(buf.toString());
 		}
 
@@ -770,6 +784,16 @@ private String genDataFormat() throws XMLCodecException {
 				throw new XMLCodecException("unknown frame type: "+frame_type);
 			}
 			buf.append("}");
+
+			if (frame_type.equals("multiplex")) {
+				buf.append("\n\npublic void getSamples(long offset, float[][] target, int arrayOffset, int count) throws XMLCodecException {\n");
+				buf.append("   getMultiplexSamples_");
+				buf.append(genTypeName(sample_type.trim(), null));
+				buf.append("(");
+				buf.append(offset);
+				buf.append(", offset, get_number_of_channels(), target, arrayOffset, count);\n");
+				buf.append("}");
+			}
 			return identLines(buf.toString());
 		} else {
 			throw new XMLCodecException(TAG_DATA+" not found !");
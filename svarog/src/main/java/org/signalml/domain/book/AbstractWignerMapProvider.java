@@ -5,7 +5,6 @@
 package org.signalml.domain.book;
 
 import org.signalml.exception.SanityCheckException;
-import pl.edu.fuw.MP.WignerMap.WignerMap;
 
 
 /** AbstractWignerMapProvider
@@ -35,6 +34,8 @@ public abstract class AbstractWignerMapProvider {
 
 	protected float samplingFrequency;
 
+	protected WignerMapTileRenderer renderer = new WignerMapTileRenderer();
+
 	public AbstractWignerMapProvider(float samplingFrequency) {
 		this.samplingFrequency = samplingFrequency;
 	}
@@ -201,15 +202,19 @@ public double[][] getMap() {
 
 	public abstract double[][] getNormalMap();
 
-	public void calculateNormalMap(StandardBookSegment segment, double[][] map) {
+	/**
+	 * Calculates the normalized map of the given segment.
+	 * @param segment the segment, may be null
+	 * @param map the map to which the result is written
+	 * @return true if the map was calculated, false if the current thread
+	 * was interrupted, in which case the map is cleared and should not
+	 * be used
+	 */
+	public boolean calculateNormalMap(StandardBookSegment segment, double[][] map) {
 
 		if (segment == null || segment.getAtomCount() == 0) {
-			for (int x=0; x<width; x++) {
-				for (int y=0; y<height; y++) {
-					map[x][y] = 0;
-				}
-			}
-			return;
+			clearMap(map, width, height);
+			return true;
 		}
 
 		// XXX test Wigner map calculation below, remove when not needed
@@ -240,15 +245,59 @@ public void calculateNormalMap(StandardBookSegment segment, double[][] map) {
 		int pointMinPosition = (int) Math.round(minPosition * samplingFrequency);
 		int pointMaxPosition = (int) Math.round(maxPosition * samplingFrequency);
 
-		WignerMap wignerMap = new WignerMap(width, height, pointMinPosition, pointMaxPosition, naturalMinFrequency, naturalMaxFrequency);
-		wignerMap.setBook(segment);
+		if (!renderer.render(segment, map, width, height, pointMinPosition, pointMaxPosition, naturalMinFrequency, naturalMaxFrequency)) {
+			clearMap(map, width, height);
+			return false;
+		}
+
+		normalizeMap(map, width, height);
+		return true;
+
+	}
+
+	/**
+	 * Stops the threads used to calculate the maps, to be called by the
+	 * owner of this provider when it is no longer needed.
+	 */
+	public void shutdown() {
+		renderer.shutdown();
+	}
+
+	private static void clearMap(double[][] map, int width, int height) {
+		for (int x=0; x<width; x++) {
+			for (int y=0; y<height; y++) {
+				map[x][y] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Scales the map so that its values are between 0 and 1 (the map
+	 * of energy is non-negative).
+	 * @param map the map
+	 * @param width the width of the map
+	 * @param height the height of the map
+	 */
+	static void normalizeMap(double[][] map, int width, int height) {
+
+		double minVal = 0.0;
+		double maxVal = 0.0;
+		for (int x=0; x<width; x++) {
+			for (int y=0; y<height; y++) {
+				if (map[x][y] > maxVal) {
+					maxVal = map[x][y];
+				}
+				if (map[x][y] < minVal) {
+					minVal = map[x][y];
+				}
+			}
+		}
 
-		double[][] normMap = wignerMap.getWignerMap();
-		double scaleFactor = 1.0 / (wignerMap.getMaxVal()-wignerMap.getMinVal());
+		double scaleFactor = (maxVal > minVal) ? 1.0 / (maxVal-minVal) : 0.0;
 
 		for (int x=0; x<width; x++) {
 			for (int y=0; y<height; y++) {
-				map[x][y] = normMap[x][y] * scaleFactor;
+				map[x][y] *= scaleFactor;
 			}
 		}
 
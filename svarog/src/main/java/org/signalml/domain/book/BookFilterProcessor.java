@@ -5,19 +5,27 @@
 package org.signalml.domain.book;
 
 import java.beans.PropertyChangeEvent;
+import java.util.BitSet;
 import java.util.LinkedHashMap;
 import java.util.Map.Entry;
 
 import org.signalml.domain.book.filter.AtomFilterChain;
+import org.signalml.domain.book.filter.SegmentAtomColumns;
 
 /** BookFilterProcessor
  *
+ * Filters the segments of the source book with an {@link AtomFilterChain}.
+ * The chain is evaluated for all atoms of a segment at once and the
+ * resulting bitmaps of accepted atoms are cached for every segment and
+ * channel, so they are computed again only when the chain is changed
+ * (or when the book is changed), not every time a segment is paged in.
  *
  * @author Michal Dobaczewski &copy; 2007-2008 CC Otwarte Systemy Komputerowe Sp. z o.o.
  */
 public class BookFilterProcessor extends BookProcessor {
 
 	private static int CACHE_SIZE = 16;
+	private static int BITMAP_CACHE_SIZE = 4096;
 
 	public static final String FILTER_CHAIN_PROPERTY = "filterChain";
 
@@ -25,6 +33,16 @@ public class BookFilterProcessor extends BookProcessor {
 
 	private LinkedHashMap<Integer, StandardBookSegment[]> segmentCache;
 
+	/**
+	 * the version of the filter chain, incremented whenever the chain is changed
+	 */
+	private int chainVersion;
+
+	/**
+	 * the bitmaps of accepted atoms for the current version of the chain
+	 */
+	private LinkedHashMap<BitmapKey, BitSet> bitmapCache;
+
 	public BookFilterProcessor(StandardBook source) {
 		super(source);
 		segmentCache = new LinkedHashMap<Integer, StandardBookSegment[]>() {
@@ -37,6 +55,16 @@ protected boolean removeEldestEntry(Entry<Integer, StandardBookSegment[]> eldest
 			}
 
 		};
+		bitmapCache = new LinkedHashMap<BitmapKey, BitSet>(16, 0.75F, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<BitmapKey, BitSet> eldest) {
+				return(size() > BITMAP_CACHE_SIZE);
+			}
+
+		};
 	}
 
 	public AtomFilterChain getFilterChain() {
@@ -47,6 +75,8 @@ public void setFilterChain(AtomFilterChain filterChain) {
 		if (this.filterChain != filterChain) {
 			AtomFilterChain oldChain = this.filterChain;
 			this.filterChain = filterChain;
+			chainVersion++;
+			bitmapCache.clear();
 			segmentCache.clear();
 			pcSupport.firePropertyChange(FILTER_CHAIN_PROPERTY, oldChain, filterChain);
 		}
@@ -65,7 +95,7 @@ public StandardBookSegment[] getSegmentAt(int segmentIndex) {
 				int channelCount = source.getChannelCount();
 				segments = new FilteredBookSegment[ channelCount ];
 				for (int i=0; i<channelCount; i++) {
-					segments[i] = new FilteredBookSegment(sourceSegments[i], filterChain);
+					segments[i] = new FilteredBookSegment(sourceSegments[i], getAcceptedAtomBitmap(segmentIndex, i, sourceSegments[i]));
 				}
 			}
 
@@ -77,6 +107,24 @@ public StandardBookSegment[] getSegmentAt(int segmentIndex) {
 
 	}
 
+	/**
+	 * Returns the bitmap of atoms of the given segment accepted by
+	 * the current filter chain, computes it if it is not cached.
+	 * @param segmentIndex the index of the segment
+	 * @param channelIndex the index of the channel
+	 * @param segment the source segment
+	 * @return the bitmap of accepted atoms
+	 */
+	private BitSet getAcceptedAtomBitmap(int segmentIndex, int channelIndex, StandardBookSegment segment) {
+		BitmapKey key = new BitmapKey(segmentIndex, channelIndex, chainVersion);
+		BitSet bitmap = bitmapCache.get(key);
+		if (bitmap == null) {
+			bitmap = filterChain.matches(new SegmentAtomColumns(segment));
+			bitmapCache.put(key, bitmap);
+		}
+		return bitmap;
+	}
+
 	@Override
 	public StandardBookSegment getSegmentAt(int segmentIndex, int channelIndex) {
 		return getSegmentAt(segmentIndex)[channelIndex];
@@ -90,8 +138,42 @@ public void propertyChange(PropertyChangeEvent evt) {
 
 	@Override
 	protected void onAnyBookEvent(BookEvent ev) {
+		// the atoms may have changed
+		bitmapCache.clear();
 		segmentCache.clear();
 		super.onAnyBookEvent(ev);
 	}
 
+	/**
+	 * The key of a cached bitmap: a segment and a channel of the book
+	 * and the version of the filter chain.
+	 */
+	private static class BitmapKey {
+
+		private final int segmentIndex;
+		private final int channelIndex;
+		private final int chainVersion;
+
+		public BitmapKey(int segmentIndex, int channelIndex, int chainVersion) {
+			this.segmentIndex = segmentIndex;
+			this.channelIndex = channelIndex;
+			this.chainVersion = chainVersion;
+		}
+
+		@Override
+		public int hashCode() {
+			return (segmentIndex * 31 + channelIndex) * 31 + chainVersion;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof BitmapKey)) {
+				return false;
+			}
+			BitmapKey key = (BitmapKey) obj;
+			return segmentIndex == key.segmentIndex && channelIndex == key.channelIndex && chainVersion == key.chainVersion;
+		}
+
+	}
+
 }
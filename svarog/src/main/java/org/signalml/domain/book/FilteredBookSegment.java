@@ -4,11 +4,13 @@
 
 package org.signalml.domain.book;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.LinkedList;
 
 import org.signalml.domain.book.filter.AtomFilterChain;
+import org.signalml.domain.book.filter.SegmentAtomColumns;
 
 /** FilteredBookSegment
  *
@@ -23,24 +25,40 @@ public class FilteredBookSegment implements StandardBookSegment {
 	private HashMap<StandardBookAtom,Integer> atomIndexMap;
 
 	public FilteredBookSegment(StandardBookSegment source, AtomFilterChain filter) {
-		this.source = source;
-
-		LinkedList<StandardBookAtom> atoms = new LinkedList<StandardBookAtom>();
+		this(source, (filter != null) ? filter.matches(new SegmentAtomColumns(source)) : null);
+	}
 
-		atomIndexMap = new HashMap<StandardBookAtom, Integer>();
+	/**
+	 * Creates a segment with the given atoms of the source segment.
+	 * Only the accepted atoms are obtained from the source.
+	 * @param source the source segment
+	 * @param acceptedAtomBitmap the bitmap in which bit <i>i</i> is set if
+	 * the atom with index <i>i</i> is accepted, null to accept all atoms
+	 */
+	public FilteredBookSegment(StandardBookSegment source, BitSet acceptedAtomBitmap) {
+		this.source = source;
 
 		int atomCount = source.getAtomCount();
-		StandardBookAtom atom;
-		for (int i=0; i<atomCount; i++) {
-			atom = source.getAtomAt(i);
-			if (filter == null || filter.matches(source, atom)) {
-				atomIndexMap.put(atom, atoms.size());
-				atoms.add(atom);
+		if (acceptedAtomBitmap == null) {
+			acceptedAtoms = new StandardBookAtom[atomCount];
+			for (int i=0; i<atomCount; i++) {
+				acceptedAtoms[i] = source.getAtomAt(i);
+			}
+		} else {
+			acceptedAtoms = new StandardBookAtom[acceptedAtomBitmap.cardinality()];
+			int index = 0;
+			for (int i=acceptedAtomBitmap.nextSetBit(0); i>=0 && i<atomCount; i=acceptedAtomBitmap.nextSetBit(i+1)) {
+				acceptedAtoms[index++] = source.getAtomAt(i);
+			}
+			if (index < acceptedAtoms.length) {
+				acceptedAtoms = Arrays.copyOf(acceptedAtoms, index);
 			}
 		}
 
-		acceptedAtoms = new StandardBookAtom[atoms.size()];
-		atoms.toArray(acceptedAtoms);
+		atomIndexMap = new HashMap<StandardBookAtom, Integer>();
+		for (int i=0; i<acceptedAtoms.length; i++) {
+			atomIndexMap.put(acceptedAtoms[i], i);
+		}
 
 	}
 
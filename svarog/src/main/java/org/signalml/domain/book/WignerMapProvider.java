@@ -36,8 +36,12 @@ public double[][] getNormalMap() {
 			normalMap = new double[width][height];
 			normalMapDirty = true;
 		}
-		if (normalMapDirty) {
-			calculateNormalMap(segment, normalMap);
+		if (normalMapDirty && !calculateNormalMap(segment, normalMap)) {
+			// an interrupted calculation is discarded, the blank map
+			// is not kept
+			double[][] blankMap = normalMap;
+			normalMap = null;
+			return blankMap;
 		}
 		return normalMap;
 	}
@@ -0,0 +1,262 @@
+package org.signalml.domain.book;
+
+import java.util.HashMap;
+
+import pl.edu.fuw.MP.WignerMap.WignerMap;
+
+/**
+ * Computes normal (normalized) Wigner maps of many segments for
+ * the same view, e.g. to average them.
+ * <p>
+ * The energy of a Gabor atom on the map is the product of a profile in
+ * time, which depends only on the scale and the position of the atom, and
+ * a profile in frequency, which depends only on the scale and
+ * the frequency of the atom (and the length of the segment). Atoms with
+ * the same parameters appear in many segments of a book (the parameters
+ * come from the same dictionary), so the computed profiles are cached and
+ * reused for all segments. Profiles are computed only over the effective
+ * support of atoms, in the same way as in {@link WignerMapTileRenderer}.
+ * <p>
+ * This class is not thread safe, every thread should use its own
+ * rasterizer.
+ */
+public class WignerMapRasterizer {
+
+	/**
+	 * the maximal number of values of all cached profiles, the cache is
+	 * cleared when this number is exceeded
+	 */
+	private static final int MAX_CACHED_VALUES = 1 << 20;
+
+	private final float samplingFrequency;
+	private final int width;
+	private final int height;
+	private final double minFrequency;
+	private final double maxFrequency;
+
+	/**
+	 * the position (in samples) of the first column
+	 */
+	private final int pointMinPosition;
+
+	/**
+	 * the number of samples per pixel
+	 */
+	private final double timeStep;
+
+	/**
+	 * the index of the first column on the grid of pixels
+	 */
+	private final int originX;
+
+	/**
+	 * the cached profiles in time, keyed by scale and position
+	 */
+	private HashMap<ProfileKey, Profile> timeProfiles = new HashMap<ProfileKey, Profile>();
+
+	/**
+	 * the cached profiles in frequency, keyed by scale, frequency and
+	 * the length of the segment
+	 */
+	private HashMap<ProfileKey, Profile> frequencyProfiles = new HashMap<ProfileKey, Profile>();
+
+	/**
+	 * the number of values of all cached profiles
+	 */
+	private int cachedValueCount;
+
+	/**
+	 * Constructor. Creates a rasterizer for the given view, the parameters
+	 * have the same meaning as in {@link AbstractWignerMapProvider}.
+	 * @param samplingFrequency the sampling frequency of the book
+	 * @param width the width of the map in pixels
+	 * @param height the height of the map in pixels
+	 * @param minFrequency the frequency (in Hz) of the first row
+	 * @param maxFrequency the frequency (in Hz) of the last row
+	 * @param minPosition the position (in seconds) of the first column
+	 * @param maxPosition the position (in seconds) of the last column
+	 */
+	public WignerMapRasterizer(float samplingFrequency, int width, int height, double minFrequency, double maxFrequency, double minPosition, double maxPosition) {
+		this.samplingFrequency = samplingFrequency;
+		this.width = width;
+		this.height = height;
+		this.minFrequency = minFrequency;
+		this.maxFrequency = maxFrequency;
+		this.pointMinPosition = (int) Math.round(minPosition * samplingFrequency);
+		int pointMaxPosition = (int) Math.round(maxPosition * samplingFrequency);
+		this.timeStep = ((double)(pointMaxPosition - pointMinPosition)) / Math.max(1, width - 1);
+		this.originX = (timeStep > 0) ? (int) Math.round(pointMinPosition / timeStep) : 0;
+	}
+
+	/**
+	 * Computes the normal map of the given segment, the same as
+	 * {@link AbstractWignerMapProvider#calculateNormalMap(StandardBookSegment, double[][])}
+	 * for the view of this rasterizer.
+	 * @param segment the segment
+	 * @param map the map to which the result will be written, at least
+	 * <code>[width][height]</code>
+	 */
+	public void calculateNormalMap(StandardBookSegment segment, double[][] map) {
+
+		for (int x=0; x<width; x++) {
+			double[] column = map[x];
+			for (int y=0; y<height; y++) {
+				column[y] = 0;
+			}
+		}
+
+		if (segment == null || segment.getAtomCount() == 0 || width <= 0 || height <= 0 || timeStep <= 0) {
+			return;
+		}
+
+		int segmentLength = segment.getSegmentLength();
+		int naturalMinFrequency = (int) Math.round((minFrequency / samplingFrequency) * segmentLength);
+		int naturalMaxFrequency = (int) Math.round((maxFrequency / samplingFrequency) * segmentLength);
+		double frequencyStep = ((double)(naturalMaxFrequency - naturalMinFrequency)) / Math.max(1, height - 1);
+		if (frequencyStep <= 0) {
+			return;
+		}
+		int originY = (int) Math.round(naturalMinFrequency / frequencyStep);
+
+		int atomCount = segment.getAtomCount();
+		for (int i=0; i<atomCount; i++) {
+
+			StandardBookAtom atom = segment.getAtomAt(i);
+			int scale = atom.getScale();
+			double modulus = atom.getModulus();
+			double energy = modulus * modulus;
+
+			if (scale == 0) {
+				int x = (int) Math.floor(atom.getPosition() / timeStep) - originX;
+				if (x >= 0 && x < width) {
+					double[] column = map[x];
+					for (int y=0; y<height; y++) {
+						column[y] += energy;
+					}
+				}
+			} else if (scale == segmentLength) {
+				int y = (int) Math.round(atom.getNaturalFrequency() / frequencyStep) - originY;
+				if (y >= 0 && y < height) {
+					for (int x=0; x<width; x++) {
+						map[x][y] += energy;
+					}
+				}
+			} else {
+				Profile timeProfile = getTimeProfile(scale, atom.getPosition());
+				if (timeProfile.values.length == 0) {
+					continue;
+				}
+				Profile frequencyProfile = getFrequencyProfile(scale, atom.getNaturalFrequency(), segmentLength, frequencyStep, originY);
+				if (frequencyProfile.values.length == 0) {
+					continue;
+				}
+				double[] timeValues = timeProfile.values;
+				double[] frequencyValues = frequencyProfile.values;
+				int startY = frequencyProfile.start;
+				for (int x=0; x<timeValues.length; x++) {
+					double factor = energy * timeValues[x];
+					double[] column = map[timeProfile.start + x];
+					for (int y=0; y<frequencyValues.length; y++) {
+						column[startY + y] += factor * frequencyValues[y];
+					}
+				}
+			}
+
+		}
+
+		AbstractWignerMapProvider.normalizeMap(map, width, height);
+
+	}
+
+	private Profile getTimeProfile(int scale, int position) {
+		ProfileKey key = new ProfileKey(scale, position, 0);
+		Profile profile = timeProfiles.get(key);
+		if (profile == null) {
+			double alpha = WignerMapTileRenderer.getTimeAlpha(scale, timeStep);
+			int center = (int) Math.round(position / timeStep) - originX;
+			profile = createProfile(alpha, center, width);
+			timeProfiles.put(key, profile);
+		}
+		return profile;
+	}
+
+	private Profile getFrequencyProfile(int scale, int frequency, int segmentLength, double frequencyStep, int originY) {
+		ProfileKey key = new ProfileKey(scale, frequency, segmentLength);
+		Profile profile = frequencyProfiles.get(key);
+		if (profile == null) {
+			double alpha = WignerMapTileRenderer.getFrequencyAlpha(scale, segmentLength, frequencyStep);
+			int center = (int) Math.round(frequency / frequencyStep) - originY;
+			profile = createProfile(alpha, center, height);
+			frequencyProfiles.put(key, profile);
+		}
+		return profile;
+	}
+
+	private Profile createProfile(double alpha, int center, int size) {
+		int halfWidth = WignerMapTileRenderer.getSupportHalfWidth(alpha);
+		int start = Math.max(0, center - halfWidth);
+		int stop = Math.min(size - 1, center + halfWidth);
+		Profile profile = new Profile();
+		profile.start = start;
+		if (start > stop) {
+			profile.values = new double[0];
+		} else {
+			profile.values = new double[stop - start + 1];
+			WignerMap.MakeExpTable(profile.values, alpha, center - start, 0, stop - start);
+		}
+
+		cachedValueCount += profile.values.length;
+		if (cachedValueCount > MAX_CACHED_VALUES) {
+			timeProfiles.clear();
+			frequencyProfiles.clear();
+			cachedValueCount = profile.values.length;
+		}
+		return profile;
+	}
+
+	/**
+	 * The values of a profile of an atom over the map.
+	 */
+	private static class Profile {
+
+		/**
+		 * the index of the pixel of the first value
+		 */
+		private int start;
+
+		private double[] values;
+
+	}
+
+	/**
+	 * The parameters of an atom on which a profile depends.
+	 */
+	private static class ProfileKey {
+
+		private final int scale;
+		private final int center;
+		private final int segmentLength;
+
+		public ProfileKey(int scale, int center, int segmentLength) {
+			this.scale = scale;
+			this.center = center;
+			this.segmentLength = segmentLength;
+		}
+
+		@Override
+		public int hashCode() {
+			return (scale * 31 + center) * 31 + segmentLength;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ProfileKey)) {
+				return false;
+			}
+			ProfileKey key = (ProfileKey) obj;
+			return scale == key.scale && center == key.center && segmentLength == key.segmentLength;
+		}
+
+	}
+
+}
@@ -0,0 +1,611 @@
+package org.signalml.domain.book;
+
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.signalml.exception.SanityCheckException;
+
+import pl.edu.fuw.MP.WignerMap.WignerMap;
+
+/**
+ * Renders the Wigner map (the time-frequency distribution of energy) of
+ * a {@link StandardBookSegment} from square tiles.
+ * <p>
+ * The tiles are aligned to a grid of pixels which depends only on
+ * the resolution of the map (the number of samples and the number of
+ * natural frequency units per pixel), so the tiles computed for one view
+ * are reused when the view is panned. Tiles missing for a view are computed
+ * in parallel and the last {@link #TILE_CACHE_SIZE} tiles are kept in
+ * a LRU cache keyed by the content of the segment (the parameters of its
+ * atoms), the resolution and the position of the tile. A segment whose
+ * atoms change gets new tiles and the tiles of its old content are removed.
+ * The cached tiles are softly referenced, so they are released when memory
+ * is low, and no segment is referenced by the cache.
+ * <p>
+ * The tiles are computed by the threads of this renderer, which finish
+ * when they are idle for {@link #THREAD_KEEP_ALIVE_SECONDS} seconds or when
+ * the owner of the renderer calls {@link #shutdown()}.
+ * <p>
+ * Gabor atoms are rasterized only over their effective support,
+ * {@link #SUPPORT_SIGMAS} standard deviations of the energy in time and
+ * in frequency. The raster parameters of atoms are computed once for
+ * a segment and a resolution.
+ * <p>
+ * The positions of pixels are rounded to the grid, so the map may be
+ * shifted by at most half a pixel compared to the exact view.
+ * <p>
+ * This class is not thread safe.
+ */
+public class WignerMapTileRenderer {
+
+	/**
+	 * the width and height of a tile in pixels
+	 */
+	public static final int TILE_SIZE = 64;
+
+	/**
+	 * the maximal number of cached tiles
+	 */
+	public static final int TILE_CACHE_SIZE = 1024;
+
+	/**
+	 * the number of standard deviations of the energy of a Gabor atom
+	 * (in every direction) over which the atom is rasterized
+	 */
+	public static final double SUPPORT_SIGMAS = 5.0;
+
+	/**
+	 * the time after which an idle thread computing the tiles finishes
+	 */
+	public static final int THREAD_KEEP_ALIVE_SECONDS = 30;
+
+	/**
+	 * the executor computing the tiles, created when needed
+	 */
+	private ThreadPoolExecutor executor;
+
+	/**
+	 * the cached tiles
+	 */
+	private LinkedHashMap<TileKey, SoftReference<float[][]>> tileCache;
+
+	/**
+	 * the last rendered segment, used to find out that the atoms of
+	 * a segment have changed
+	 */
+	private WeakReference<StandardBookSegment> lastSegment;
+
+	/**
+	 * the content of the {@link #lastSegment}
+	 */
+	private SegmentContent lastContent;
+
+	/**
+	 * the content of the segment for which {@link #atoms} were computed
+	 */
+	private SegmentContent atomContent;
+
+	/**
+	 * the number of samples per pixel for which {@link #atoms} were computed
+	 */
+	private double atomTimeStep;
+
+	/**
+	 * the number of natural frequency units per pixel for which
+	 * {@link #atoms} were computed
+	 */
+	private double atomFrequencyStep;
+
+	/**
+	 * the raster parameters of atoms of the {@link #atomContent}
+	 */
+	private AtomRaster[] atoms;
+
+	/**
+	 * Constructor. Creates a renderer with an empty cache.
+	 */
+	public WignerMapTileRenderer() {
+		tileCache = new LinkedHashMap<TileKey, SoftReference<float[][]>>(16, 0.75F, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<TileKey, SoftReference<float[][]>> eldest) {
+				return(size() > TILE_CACHE_SIZE);
+			}
+
+		};
+	}
+
+	/**
+	 * Removes all cached tiles.
+	 */
+	public void clearCache() {
+		tileCache.clear();
+		lastSegment = null;
+		lastContent = null;
+		atomContent = null;
+		atoms = null;
+	}
+
+	/**
+	 * Stops the threads computing the tiles. The renderer may still be
+	 * used, the threads are started again when needed.
+	 */
+	public void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	/**
+	 * Renders the (not normalized) energy of atoms of the given segment.
+	 * Pixel <code>map[x][y]</code> corresponds to the position
+	 * <code>minPosition + x * (maxPosition - minPosition) / (width - 1)</code>
+	 * and to the natural frequency computed in the same way.
+	 * @param segment the segment to render, may be null
+	 * @param map the map to which the energy will be written, at least
+	 * <code>[width][height]</code>
+	 * @param width the width of the map in pixels
+	 * @param height the height of the map in pixels
+	 * @param minPosition the position (in samples) of the first column
+	 * @param maxPosition the position (in samples) of the last column
+	 * @param minFrequency the natural frequency of the first row
+	 * @param maxFrequency the natural frequency of the last row
+	 * @return true if the map was rendered, false if the current thread
+	 * was interrupted (in which case the map is not modified)
+	 */
+	public boolean render(StandardBookSegment segment, double[][] map, int width, int height, int minPosition, int maxPosition, int minFrequency, int maxFrequency) {
+
+		if (width <= 0 || height <= 0) {
+			return true;
+		}
+
+		double timeStep = ((double)(maxPosition - minPosition)) / Math.max(1, width - 1);
+		double frequencyStep = ((double)(maxFrequency - minFrequency)) / Math.max(1, height - 1);
+
+		if (segment == null || segment.getAtomCount() == 0 || timeStep <= 0 || frequencyStep <= 0) {
+			for (int x=0; x<width; x++) {
+				for (int y=0; y<height; y++) {
+					map[x][y] = 0;
+				}
+			}
+			return true;
+		}
+
+		SegmentContent content = getContent(segment);
+		if (atoms == null || !content.equals(atomContent) || atomTimeStep != timeStep || atomFrequencyStep != frequencyStep) {
+			atoms = createAtomRasters(segment, timeStep, frequencyStep);
+			atomContent = content;
+			atomTimeStep = timeStep;
+			atomFrequencyStep = frequencyStep;
+		}
+
+		int originX = (int) Math.round(minPosition / timeStep);
+		int originY = (int) Math.round(minFrequency / frequencyStep);
+		int firstTileX = floorDiv(originX, TILE_SIZE);
+		int firstTileY = floorDiv(originY, TILE_SIZE);
+		int tileCountX = floorDiv(originX + width - 1, TILE_SIZE) - firstTileX + 1;
+		int tileCountY = floorDiv(originY + height - 1, TILE_SIZE) - firstTileY + 1;
+
+		float[][][][] tiles = new float[tileCountX][tileCountY][][];
+		List<TileTask> tasks = new ArrayList<TileTask>();
+		for (int tx=0; tx<tileCountX; tx++) {
+			for (int ty=0; ty<tileCountY; ty++) {
+				TileKey key = new TileKey(content, timeStep, frequencyStep, firstTileX + tx, firstTileY + ty);
+				SoftReference<float[][]> cached = tileCache.get(key);
+				tiles[tx][ty] = (cached != null) ? cached.get() : null;
+				if (tiles[tx][ty] == null) {
+					tasks.add(new TileTask(atoms, key, tx, ty));
+				}
+			}
+		}
+
+		if (tasks.size() == 1) {
+			TileTask task = tasks.get(0);
+			tiles[task.tileIndexX][task.tileIndexY] = task.call();
+			tileCache.put(task.key, new SoftReference<float[][]>(tiles[task.tileIndexX][task.tileIndexY]));
+		} else if (!tasks.isEmpty()) {
+			List<Future<float[][]>> futures;
+			try {
+				futures = getExecutor().invokeAll(tasks);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+			for (int i=0; i<futures.size(); i++) {
+				TileTask task = tasks.get(i);
+				try {
+					tiles[task.tileIndexX][task.tileIndexY] = futures.get(i).get();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					return false;
+				} catch (ExecutionException ex) {
+					throw new SanityCheckException("Failed to compute a tile of the Wigner map", ex.getCause());
+				}
+				tileCache.put(task.key, new SoftReference<float[][]>(tiles[task.tileIndexX][task.tileIndexY]));
+			}
+		}
+
+		for (int x=0; x<width; x++) {
+			int gx = originX + x;
+			int tileX = floorDiv(gx, TILE_SIZE);
+			double[] target = map[x];
+			int y = 0;
+			while (y < height) {
+				int gy = originY + y;
+				int tileY = floorDiv(gy, TILE_SIZE);
+				float[] tileColumn = tiles[tileX - firstTileX][tileY - firstTileY][gx - tileX * TILE_SIZE];
+				int tileOffset = gy - tileY * TILE_SIZE;
+				int length = Math.min(TILE_SIZE - tileOffset, height - y);
+				for (int i=0; i<length; i++) {
+					target[y + i] = tileColumn[tileOffset + i];
+				}
+				y += length;
+			}
+		}
+
+		return true;
+
+	}
+
+	/**
+	 * Returns the content of the given segment. If the atoms of the last
+	 * rendered segment have changed, the tiles of its old content are
+	 * removed from the cache.
+	 * @param segment the segment
+	 * @return the content of the segment
+	 */
+	private SegmentContent getContent(StandardBookSegment segment) {
+
+		SegmentContent content = new SegmentContent(segment);
+		if (lastSegment != null && lastSegment.get() == segment && !content.equals(lastContent)) {
+			Iterator<TileKey> it = tileCache.keySet().iterator();
+			while (it.hasNext()) {
+				if (it.next().content.equals(lastContent)) {
+					it.remove();
+				}
+			}
+		}
+		if (content.equals(lastContent)) {
+			// the tile keys share the same content object
+			content = lastContent;
+		}
+		lastSegment = new WeakReference<StandardBookSegment>(segment);
+		lastContent = content;
+		return content;
+
+	}
+
+	private ThreadPoolExecutor getExecutor() {
+		if (executor == null) {
+			int threadCount = Runtime.getRuntime().availableProcessors();
+			executor = new ThreadPoolExecutor(threadCount, threadCount, THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					private int threadNumber = 0;
+
+					@Override
+					public synchronized Thread newThread(Runnable runnable) {
+						threadNumber++;
+						Thread thread = new Thread(runnable, "WignerMapTileRenderer-" + threadNumber);
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+
+	/**
+	 * Computes the raster parameters of all atoms of the segment.
+	 * @param segment the segment
+	 * @param timeStep the number of samples per pixel
+	 * @param frequencyStep the number of natural frequency units per pixel
+	 * @return the raster parameters of atoms, in the order of atoms
+	 */
+	private static AtomRaster[] createAtomRasters(StandardBookSegment segment, double timeStep, double frequencyStep) {
+
+		int segmentLength = segment.getSegmentLength();
+		int atomCount = segment.getAtomCount();
+		AtomRaster[] rasters = new AtomRaster[atomCount];
+
+		for (int i=0; i<atomCount; i++) {
+
+			StandardBookAtom atom = segment.getAtomAt(i);
+			AtomRaster raster = new AtomRaster();
+			int scale = atom.getScale();
+			double modulus = atom.getModulus();
+			raster.energy = modulus * modulus;
+
+			if (scale == 0) {
+				// a vertical line at the position of the atom
+				raster.kind = AtomRaster.TIME_LINE;
+				raster.minX = raster.maxX = (int) Math.floor(atom.getPosition() / timeStep);
+				raster.minY = Integer.MIN_VALUE;
+				raster.maxY = Integer.MAX_VALUE;
+			} else if (scale == segmentLength) {
+				// a horizontal line at the frequency of the atom
+				raster.kind = AtomRaster.FREQUENCY_LINE;
+				raster.minX = Integer.MIN_VALUE;
+				raster.maxX = Integer.MAX_VALUE;
+				raster.minY = raster.maxY = (int) Math.round(atom.getNaturalFrequency() / frequencyStep);
+			} else {
+				raster.kind = AtomRaster.GAUSSIAN;
+				raster.alphaTime = getTimeAlpha(scale, timeStep);
+				raster.alphaFrequency = getFrequencyAlpha(scale, segmentLength, frequencyStep);
+				raster.centerX = (int) Math.round(atom.getPosition() / timeStep);
+				raster.centerY = (int) Math.round(atom.getNaturalFrequency() / frequencyStep);
+
+				int halfWidth = getSupportHalfWidth(raster.alphaTime);
+				int halfHeight = getSupportHalfWidth(raster.alphaFrequency);
+				raster.minX = raster.centerX - halfWidth;
+				raster.maxX = raster.centerX + halfWidth;
+				raster.minY = raster.centerY - halfHeight;
+				raster.maxY = raster.centerY + halfHeight;
+			}
+
+			rasters[i] = raster;
+
+		}
+
+		return rasters;
+
+	}
+
+	/**
+	 * Returns the coefficient of the energy of a Gabor atom in time,
+	 * the energy is proportional to <code>exp(-alpha*x^2)</code> where
+	 * <code>x</code> is the distance from the center in pixels.
+	 * @param scale the scale of the atom
+	 * @param timeStep the number of samples per pixel
+	 * @return the coefficient
+	 */
+	static double getTimeAlpha(int scale, double timeStep) {
+		return (4.0 * Math.PI / (((double) scale) * scale)) * timeStep * timeStep;
+	}
+
+	/**
+	 * Returns the coefficient of the energy of a Gabor atom in frequency,
+	 * the energy is proportional to <code>exp(-alpha*y^2)</code> where
+	 * <code>y</code> is the distance from the center in pixels.
+	 * @param scale the scale of the atom
+	 * @param segmentLength the length of the segment in samples
+	 * @param frequencyStep the number of natural frequency units per pixel
+	 * @return the coefficient
+	 */
+	static double getFrequencyAlpha(int scale, int segmentLength, double frequencyStep) {
+		double frequencyWidth = (Math.PI / segmentLength) * scale / (2.0 * Math.PI);
+		return 4.0 * Math.PI * frequencyWidth * frequencyWidth * frequencyStep * frequencyStep;
+	}
+
+	/**
+	 * Returns the number of pixels on each side of the center of an atom
+	 * over which the atom is rasterized.
+	 * @param alpha the coefficient of the energy
+	 * @return the number of pixels
+	 */
+	static int getSupportHalfWidth(double alpha) {
+		// exp(-alpha*x^2) has the standard deviation 1/sqrt(2*alpha)
+		return (int) Math.min(Integer.MAX_VALUE / 4, Math.ceil(SUPPORT_SIGMAS / Math.sqrt(2.0 * alpha)));
+	}
+
+	static int floorDiv(int value, int divisor) {
+		int result = value / divisor;
+		if (value < 0 && result * divisor != value) {
+			result--;
+		}
+		return result;
+	}
+
+	/**
+	 * The parameters of an atom on the grid of pixels.
+	 */
+	private static class AtomRaster {
+
+		private static final int GAUSSIAN = 0;
+		private static final int TIME_LINE = 1;
+		private static final int FREQUENCY_LINE = 2;
+
+		private int kind;
+
+		/**
+		 * the square of the modulus of the atom
+		 */
+		private double energy;
+
+		private int centerX;
+		private int centerY;
+
+		private double alphaTime;
+		private double alphaFrequency;
+
+		/**
+		 * the bounds (inclusive) of the support of the atom
+		 */
+		private int minX;
+		private int maxX;
+		private int minY;
+		private int maxY;
+
+	}
+
+	/**
+	 * The parameters of all atoms of a segment which affect its map.
+	 */
+	private static class SegmentContent {
+
+		private final int segmentLength;
+
+		/**
+		 * the type, position, scale and natural frequency of every atom
+		 */
+		private final int[] parameters;
+
+		private final float[] moduli;
+
+		private final int hash;
+
+		public SegmentContent(StandardBookSegment segment) {
+			segmentLength = segment.getSegmentLength();
+			int atomCount = segment.getAtomCount();
+			parameters = new int[4 * atomCount];
+			moduli = new float[atomCount];
+			for (int i=0; i<atomCount; i++) {
+				StandardBookAtom atom = segment.getAtomAt(i);
+				parameters[4*i] = atom.getType();
+				parameters[4*i + 1] = atom.getPosition();
+				parameters[4*i + 2] = atom.getScale();
+				parameters[4*i + 3] = atom.getNaturalFrequency();
+				moduli[i] = atom.getModulus();
+			}
+			hash = (segmentLength * 31 + Arrays.hashCode(parameters)) * 31 + Arrays.hashCode(moduli);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (!(obj instanceof SegmentContent)) {
+				return false;
+			}
+			SegmentContent content = (SegmentContent) obj;
+			return hash == content.hash && segmentLength == content.segmentLength
+				&& Arrays.equals(parameters, content.parameters) && Arrays.equals(moduli, content.moduli);
+		}
+
+	}
+
+	/**
+	 * The key of a cached tile.
+	 */
+	private static class TileKey {
+
+		private final SegmentContent content;
+		private final double timeStep;
+		private final double frequencyStep;
+		private final int tileX;
+		private final int tileY;
+
+		public TileKey(SegmentContent content, double timeStep, double frequencyStep, int tileX, int tileY) {
+			this.content = content;
+			this.timeStep = timeStep;
+			this.frequencyStep = frequencyStep;
+			this.tileX = tileX;
+			this.tileY = tileY;
+		}
+
+		@Override
+		public int hashCode() {
+			long bits = Double.doubleToLongBits(timeStep) * 31 + Double.doubleToLongBits(frequencyStep);
+			return ((content.hashCode() * 31 + (int)(bits ^ (bits >>> 32))) * 31 + tileX) * 31 + tileY;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof TileKey)) {
+				return false;
+			}
+			TileKey key = (TileKey) obj;
+			return content.equals(key.content) && timeStep == key.timeStep && frequencyStep == key.frequencyStep && tileX == key.tileX && tileY == key.tileY;
+		}
+
+	}
+
+	/**
+	 * Computes one tile from the raster parameters of atoms.
+	 */
+	private static class TileTask implements Callable<float[][]> {
+
+		private final AtomRaster[] atoms;
+		private final TileKey key;
+
+		/**
+		 * the indexes of the tile among the tiles of the rendered view
+		 */
+		private final int tileIndexX;
+		private final int tileIndexY;
+
+		public TileTask(AtomRaster[] atoms, TileKey key, int tileIndexX, int tileIndexY) {
+			this.atoms = atoms;
+			this.key = key;
+			this.tileIndexX = tileIndexX;
+			this.tileIndexY = tileIndexY;
+		}
+
+		@Override
+		public float[][] call() {
+
+			int x0 = key.tileX * TILE_SIZE;
+			int y0 = key.tileY * TILE_SIZE;
+			int x1 = x0 + TILE_SIZE - 1;
+			int y1 = y0 + TILE_SIZE - 1;
+
+			double[][] sums = new double[TILE_SIZE][TILE_SIZE];
+			double[] timeFactors = new double[TILE_SIZE];
+			double[] frequencyFactors = new double[TILE_SIZE];
+
+			for (AtomRaster atom : atoms) {
+
+				if (atom.maxX < x0 || atom.minX > x1 || atom.maxY < y0 || atom.minY > y1) {
+					continue;
+				}
+				int startX = Math.max(atom.minX, x0) - x0;
+				int stopX = Math.min(atom.maxX, x1) - x0;
+				int startY = Math.max(atom.minY, y0) - y0;
+				int stopY = Math.min(atom.maxY, y1) - y0;
+
+				if (atom.kind == AtomRaster.GAUSSIAN) {
+					WignerMap.MakeExpTable(timeFactors, atom.alphaTime, atom.centerX - x0, startX, stopX);
+					WignerMap.MakeExpTable(frequencyFactors, atom.alphaFrequency, atom.centerY - y0, startY, stopY);
+					for (int x=startX; x<=stopX; x++) {
+						double factor = atom.energy * timeFactors[x];
+						double[] column = sums[x];
+						for (int y=startY; y<=stopY; y++) {
+							column[y] += factor * frequencyFactors[y];
+						}
+					}
+				} else {
+					for (int x=startX; x<=stopX; x++) {
+						double[] column = sums[x];
+						for (int y=startY; y<=stopY; y++) {
+							column[y] += atom.energy;
+						}
+					}
+				}
+
+			}
+
+			float[][] tile = new float[TILE_SIZE][TILE_SIZE];
+			for (int x=0; x<TILE_SIZE; x++) {
+				for (int y=0; y<TILE_SIZE; y++) {
+					tile[x][y] = (float) sums[x][y];
+				}
+			}
+			return tile;
+
+		}
+
+	}
+
+}
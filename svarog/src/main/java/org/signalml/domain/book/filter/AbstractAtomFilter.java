@@ -5,7 +5,9 @@
 package org.signalml.domain.book.filter;
 
 import java.io.Serializable;
+import java.util.BitSet;
 
+import org.signalml.domain.book.StandardBookSegment;
 import org.signalml.plugin.export.SignalMLException;
 import org.springframework.context.MessageSourceResolvable;
 
@@ -73,6 +75,27 @@ public void setBlocking(boolean blocking) {
 		this.blocking = blocking;
 	}
 
+	/**
+	 * Evaluates this filter for all atoms of a segment. Bit <i>i</i> of
+	 * the result is set if and only if the atom with index <i>i</i> matches
+	 * this filter (the blocking flag is not applied).
+	 * <p>
+	 * This implementation calls {@link #matches(StandardBookSegment, org.signalml.domain.book.StandardBookAtom)}
+	 * for every atom, subclasses may override it to use the columns.
+	 * @param columns the parameters of the atoms of the segment
+	 * @param result the bitmap to which the result is written
+	 */
+	public void matches(SegmentAtomColumns columns, BitSet result) {
+		StandardBookSegment segment = columns.getSegment();
+		int atomCount = columns.getAtomCount();
+		result.clear();
+		for (int i=0; i<atomCount; i++) {
+			if (matches(segment, segment.getAtomAt(i))) {
+				result.set(i);
+			}
+		}
+	}
+
 	public void initialize() throws SignalMLException {
 		// do nothing, subclasses may override
 	}
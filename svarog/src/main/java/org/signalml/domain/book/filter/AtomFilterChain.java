@@ -5,6 +5,7 @@
 package org.signalml.domain.book.filter;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 
 import org.signalml.app.config.preset.Preset;
@@ -148,6 +149,57 @@ public boolean matches(StandardBookSegment segment, StandardBookAtom atom) {
 
 	}
 
+	/**
+	 * Evaluates this chain for all atoms of a segment, with the same
+	 * result as {@link #matches(StandardBookSegment, StandardBookAtom)}
+	 * called for every atom. Every enabled filter is evaluated over
+	 * the columns of the segment once and the results are combined as
+	 * bitmaps.
+	 * @param columns the parameters of the atoms of the segment
+	 * @return the bitmap in which bit <i>i</i> is set if and only if
+	 * the atom with index <i>i</i> passes this chain
+	 */
+	public BitSet matches(SegmentAtomColumns columns) {
+
+		int atomCount = columns.getAtomCount();
+		BitSet result = new BitSet(atomCount);
+		boolean anyTried = false;
+
+		if (filteringEnabled) {
+
+			BitSet filterResult = new BitSet(atomCount);
+			for (AbstractAtomFilter filter : chain) {
+				if (!filter.isEnabled()) {
+					continue;
+				}
+				if (!alternative && anyTried && result.isEmpty()) {
+					// no atom can pass anymore
+					break;
+				}
+				filter.matches(columns, filterResult);
+				if (filter.isBlocking()) {
+					filterResult.flip(0, atomCount);
+				}
+				if (alternative) {
+					result.or(filterResult);
+				} else if (anyTried) {
+					result.and(filterResult);
+				} else {
+					result.or(filterResult);
+				}
+				anyTried = true;
+			}
+
+		}
+
+		if (!anyTried) {
+			result.set(0, atomCount);
+		}
+
+		return result;
+
+	}
+
 	public boolean isEmpty() {
 		return chain.isEmpty();
 	}
@@ -4,6 +4,8 @@
 
 package org.signalml.domain.book.filter;
 
+import java.util.BitSet;
+
 import org.signalml.domain.book.StandardBookAtom;
 import org.signalml.domain.book.StandardBookSegment;
 import org.signalml.util.MinMaxRange;
@@ -120,6 +122,40 @@ public boolean matches(StandardBookSegment segment, StandardBookAtom atom) {
 
 	}
 
+	@Override
+	public void matches(SegmentAtomColumns columns, BitSet result) {
+
+		result.clear();
+		result.set(0, columns.getAtomCount());
+
+		retainInRange(modulus, columns.getModulus(), result);
+		retainInRange(amplitude, columns.getAmplitude(), result);
+		retainInRange(position, columns.getTimePosition(), result);
+		retainInRange(scale, columns.getTimeScale(), result);
+		retainInRange(frequency, columns.getHzFrequency(), result);
+		retainInRange(phase, columns.getPhase(), result);
+
+		if (!iteration.isMinUnlimited() || !iteration.isMaxUnlimited()) {
+			for (int i=result.nextSetBit(0); i>=0; i=result.nextSetBit(i+1)) {
+				if (!iteration.isInRangeInclusive(i+1)) {
+					result.clear(i);
+				}
+			}
+		}
+
+	}
+
+	private static void retainInRange(MinMaxRangeFloat range, float[] values, BitSet result) {
+		if (range.isMinUnlimited() && range.isMaxUnlimited()) {
+			return;
+		}
+		for (int i=result.nextSetBit(0); i>=0; i=result.nextSetBit(i+1)) {
+			if (!range.isInRangeInclusive(values[i])) {
+				result.clear(i);
+			}
+		}
+	}
+
 	@Override
 	public Object[] getArguments() {
 		return ARGUMENTS;
@@ -0,0 +1,117 @@
+package org.signalml.domain.book.filter;
+
+import org.signalml.domain.book.StandardBookAtom;
+import org.signalml.domain.book.StandardBookSegment;
+
+import pl.edu.fuw.MP.Core.AtomColumnsV5;
+import pl.edu.fuw.MP.Core.MappedSegmentV5;
+
+/**
+ * The parameters of all atoms of a {@link StandardBookSegment segment}
+ * on which {@link AbstractAtomFilter filters} depend, stored as columns of
+ * primitive values (in the same units as returned by
+ * {@link StandardBookAtom}), so that filters can be evaluated for the whole
+ * segment at once.
+ * <p>
+ * The columns are read in one pass over the atoms of the segment. For
+ * segments of MPv5 books read through an index ({@link MappedSegmentV5})
+ * they are computed directly from the decoded atoms, without creating
+ * an object for any atom.
+ */
+public class SegmentAtomColumns {
+
+	private final StandardBookSegment segment;
+	private final int atomCount;
+
+	private final float[] modulus;
+	private final float[] amplitude;
+	private final float[] timePosition;
+	private final float[] timeScale;
+	private final float[] hzFrequency;
+	private final float[] phase;
+
+	/**
+	 * Creates the columns of the given segment.
+	 * @param segment the segment
+	 */
+	public SegmentAtomColumns(StandardBookSegment segment) {
+		this.segment = segment;
+		atomCount = segment.getAtomCount();
+
+		modulus = new float[atomCount];
+		amplitude = new float[atomCount];
+		timePosition = new float[atomCount];
+		timeScale = new float[atomCount];
+		hzFrequency = new float[atomCount];
+		phase = new float[atomCount];
+
+		if (segment instanceof MappedSegmentV5) {
+			MappedSegmentV5 mappedSegment = (MappedSegmentV5) segment;
+			AtomColumnsV5 columns = mappedSegment.getAtomColumns();
+			float samplingFrequency = mappedSegment.getSamplingFrequency();
+			float convFactor = mappedSegment.getConvFactor();
+			// the same arithmetic as in AtomV5
+			for (int i=0; i<atomCount; i++) {
+				modulus[i] = columns.modulus[i];
+				amplitude[i] = columns.amplitude[i] * convFactor;
+				timePosition[i] = columns.position[i] / samplingFrequency;
+				timeScale[i] = columns.scale[i] / samplingFrequency;
+				hzFrequency[i] = 0.5f * columns.frequency[i] * samplingFrequency;
+				phase[i] = columns.phase[i];
+			}
+		} else {
+			StandardBookAtom atom;
+			for (int i=0; i<atomCount; i++) {
+				atom = segment.getAtomAt(i);
+				modulus[i] = atom.getModulus();
+				amplitude[i] = atom.getAmplitude();
+				timePosition[i] = atom.getTimePosition();
+				timeScale[i] = atom.getTimeScale();
+				hzFrequency[i] = atom.getHzFrequency();
+				phase[i] = atom.getPhase();
+			}
+		}
+	}
+
+	public StandardBookSegment getSegment() {
+		return segment;
+	}
+
+	public int getAtomCount() {
+		return atomCount;
+	}
+
+	public float[] getModulus() {
+		return modulus;
+	}
+
+	public float[] getAmplitude() {
+		return amplitude;
+	}
+
+	/**
+	 * @return the positions of atoms in seconds from the start of the segment
+	 */
+	public float[] getTimePosition() {
+		return timePosition;
+	}
+
+	/**
+	 * @return the scales of atoms in seconds
+	 */
+	public float[] getTimeScale() {
+		return timeScale;
+	}
+
+	/**
+	 * @return the frequencies of atoms in Hz
+	 */
+	public float[] getHzFrequency() {
+		return hzFrequency;
+	}
+
+	public float[] getPhase() {
+		return phase;
+	}
+
+}
@@ -6,6 +6,7 @@
 
 import java.io.File;
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.LinkedHashSet;
 import java.util.SortedSet;
 
@@ -73,9 +74,7 @@ public TagDocument getTagDocument() throws SignalMLException, IOException {
 		return tagDocument;
 	}
 
-	@Override
-	public boolean matches(StandardBookSegment segment, StandardBookAtom atom) {
-
+	private void verifyTagDocument() {
 		if (tagDocument == null) {
 			try {
 				getTagDocument();
@@ -87,6 +86,12 @@ public boolean matches(StandardBookSegment segment, StandardBookAtom atom) {
 				throw new SanityCheckException("Failed to instantiate verified filter", ex);
 			}
 		}
+	}
+
+	@Override
+	public boolean matches(StandardBookSegment segment, StandardBookAtom atom) {
+
+		verifyTagDocument();
 
 		float position = segment.getSegmentTime() + atom.getTimePosition();
 		SortedSet<Tag> tags = tagDocument.getTagSet().getTagsBetween((float)(position-secondsBefore), (float)(position+secondsAfter));
@@ -114,6 +119,82 @@ public boolean matches(StandardBookSegment segment, StandardBookAtom atom) {
 
 	}
 
+	/**
+	 * Evaluates this filter for all atoms of the segment with a single
+	 * query for tags. The tags which may accept any atom of the segment
+	 * are found once and then every atom is checked against them in
+	 * the same way as in {@link #matches(StandardBookSegment, StandardBookAtom)}.
+	 */
+	@Override
+	public void matches(SegmentAtomColumns columns, BitSet result) {
+
+		verifyTagDocument();
+
+		result.clear();
+		int atomCount = columns.getAtomCount();
+		if (atomCount == 0) {
+			return;
+		}
+
+		float segmentTime = columns.getSegment().getSegmentTime();
+		float[] timePosition = columns.getTimePosition();
+		float[] positions = new float[atomCount];
+		float minPosition = Float.POSITIVE_INFINITY;
+		float maxPosition = Float.NEGATIVE_INFINITY;
+		for (int i=0; i<atomCount; i++) {
+			positions[i] = segmentTime + timePosition[i];
+			minPosition = Math.min(minPosition, positions[i]);
+			maxPosition = Math.max(maxPosition, positions[i]);
+		}
+
+		SortedSet<Tag> tags = tagDocument.getTagSet().getTagsBetween((float)(minPosition-secondsBefore), (float)(maxPosition+secondsAfter));
+		double[] tagStarts = new double[tags.size()];
+		double[] tagEnds = new double[tags.size()];
+		double[] acceptedEnds = new double[tags.size()];
+		boolean[] markers = new boolean[tags.size()];
+		int tagCount = 0;
+		for (Tag tag : tags) {
+			TagStyle style = tag.getStyle();
+			if (styleNames.contains(style.getName())) {
+				tagStarts[tagCount] = tag.getPosition();
+				tagEnds[tagCount] = tag.getPosition() + tag.getLength();
+				acceptedEnds[tagCount] = tag.getEndPosition();
+				markers[tagCount] = style.isMarker();
+				tagCount++;
+			}
+		}
+		if (tagCount == 0) {
+			return;
+		}
+
+		float position;
+		double windowStart;
+		double windowEnd;
+		for (int i=0; i<atomCount; i++) {
+			position = positions[i];
+			windowStart = (float)(position-secondsBefore);
+			windowEnd = (float)(position+secondsAfter);
+			for (int k=0; k<tagCount; k++) {
+				if (tagStarts[k] > windowEnd || tagEnds[k] < windowStart) {
+					// not a tag found for this atom alone
+					continue;
+				}
+				if (markers[k]) {
+					if (position >= (tagStarts[k]-secondsBefore) && position <= (tagStarts[k]+secondsAfter)) {
+						result.set(i);
+						break;
+					}
+				} else {
+					if (position >= (tagStarts[k]-secondsBefore) && position < (acceptedEnds[k]+secondsAfter)) {
+						result.set(i);
+						break;
+					}
+				}
+			}
+		}
+
+	}
+
 	public String getTagFilePath() {
 		return tagFilePath;
 	}
@@ -0,0 +1,630 @@
+package org.signalml.domain.signal;
+
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import org.signalml.domain.signal.samplesource.MultichannelBlockSampleSource;
+import org.signalml.domain.signal.samplesource.MultichannelSampleSource;
+
+/**
+ * This class represents a multi-resolution (level of detail) summary of a
+ * multichannel signal. For every channel it holds a pyramid of levels,
+ * where the level 0 stores the minimum, maximum and mean value of every
+ * block of {@link #BASE_BLOCK_SIZE} samples and every next level
+ * summarizes two blocks of the previous level. The size of the base block
+ * does not depend on the length of the signal.
+ * <p>
+ * The pyramid is built once by {@link #build(MultichannelSampleSource)} and
+ * then answers the query "one minimum/maximum pair per pixel column"
+ * ({@link #getColumns(int, double, double, int, double[], double[], double[])})
+ * in time proportional to the number of columns, independently of the
+ * length of the signal. Blocks are never split between columns - a block
+ * crossing a column boundary contributes to both columns - so no peak
+ * is ever hidden.
+ * <p>
+ * The memory used by the pyramid is bounded: only the coarse levels which
+ * fit in {@link #MAX_STORED_BYTES} (for all channels together) are built
+ * and kept. The blocks of the finer levels are computed on demand, in pages
+ * of {@link #PAGE_BLOCK_COUNT} base blocks, from the source given to
+ * {@link #setSource(MultichannelSampleSource)}, and the last pages are kept
+ * in a cache of at most {@link #MAX_PAGE_CACHE_BYTES}. Without a source the
+ * finest stored level is used instead.
+ */
+public class MinMaxPyramid {
+
+	/**
+	 * The number of samples summarized by one block of the level 0.
+	 */
+	public static final int BASE_BLOCK_SIZE = 64;
+
+	/**
+	 * The maximal size (in bytes) of the levels built by
+	 * {@link #build(MultichannelSampleSource)}, for all channels together.
+	 */
+	public static final long MAX_STORED_BYTES = 16L << 20;
+
+	/**
+	 * The number of base blocks in a page computed on demand.
+	 */
+	public static final int PAGE_BLOCK_COUNT = 1024;
+
+	/**
+	 * The maximal size (in bytes) of the cached pages computed on demand.
+	 */
+	public static final long MAX_PAGE_CACHE_BYTES = 8L << 20;
+
+	/**
+	 * The size of one block (minimum, maximum and mean) in bytes.
+	 */
+	private static final int BLOCK_BYTES = 12;
+
+	/**
+	 * The number of samples of every channel read from the source at once
+	 * while building the pyramid.
+	 */
+	private static final int READ_SAMPLE_COUNT = 8192;
+
+	private final int channelCount;
+	private final int[] sampleCount;
+
+	/**
+	 * the finest level built by {@link #build(MultichannelSampleSource)},
+	 * the same for all channels
+	 */
+	private final int firstStoredLevel;
+
+	/**
+	 * minimal, maximal and mean values of blocks - indexed by
+	 * [channel][level][block], null for levels below the
+	 * {@link #firstStoredLevel}
+	 */
+	private final float[][][] minimum;
+	private final float[][][] maximum;
+	private final float[][][] mean;
+
+	/**
+	 * the sum of samples of the last block of every channel summarized
+	 * so far
+	 */
+	private final double[] blockSum;
+
+	/**
+	 * true if the pyramid was completely built
+	 */
+	private volatile boolean complete;
+
+	/**
+	 * the source from which the pages are computed, null if there is none
+	 */
+	private MultichannelSampleSource source;
+
+	/**
+	 * the cached pages of base blocks - indexed by the channel and
+	 * the page number, see {@link #getPageKey(int, int)}
+	 */
+	private final LinkedHashMap<Long, float[][]> pages;
+
+	/**
+	 * the buffer for samples of a page
+	 */
+	private double[] pageSamples;
+
+	/**
+	 * Constructor. Creates an empty pyramid for a signal of the given size.
+	 * @param channelCount the number of channels in the signal
+	 * @param sampleCount the number of samples in each channel
+	 */
+	public MinMaxPyramid(int channelCount, int[] sampleCount) {
+		this(channelCount, sampleCount, MAX_STORED_BYTES);
+	}
+
+	/**
+	 * Constructor. Creates an empty pyramid for a signal of the given size,
+	 * which builds at most the given number of bytes.
+	 * @param channelCount the number of channels in the signal
+	 * @param sampleCount the number of samples in each channel
+	 * @param maxStoredBytes the maximal size of the built levels
+	 */
+	MinMaxPyramid(int channelCount, int[] sampleCount, long maxStoredBytes) {
+		this.channelCount = channelCount;
+		this.sampleCount = sampleCount.clone();
+
+		int maxLevelCount = 1;
+		int[] levelCount = new int[channelCount];
+		for (int i = 0; i < channelCount; i++) {
+			levelCount[i] = 1;
+			int blockCount = getBlockCount(sampleCount[i], BASE_BLOCK_SIZE);
+			while (blockCount > 1) {
+				blockCount = (blockCount + 1) / 2;
+				levelCount[i]++;
+			}
+			maxLevelCount = Math.max(maxLevelCount, levelCount[i]);
+		}
+
+		int level = 0;
+		while (level < maxLevelCount - 1 && getStoredBytes(level) > maxStoredBytes) {
+			level++;
+		}
+		this.firstStoredLevel = level;
+
+		minimum = new float[channelCount][][];
+		maximum = new float[channelCount][][];
+		mean = new float[channelCount][][];
+		for (int i = 0; i < channelCount; i++) {
+			int count = Math.max(levelCount[i], firstStoredLevel + 1);
+			minimum[i] = new float[count][];
+			maximum[i] = new float[count][];
+			mean[i] = new float[count][];
+			for (level = firstStoredLevel; level < count; level++) {
+				int blockCount = getBlockCount(sampleCount[i], getBlockSize(level));
+				minimum[i][level] = new float[blockCount];
+				maximum[i][level] = new float[blockCount];
+				mean[i][level] = new float[blockCount];
+			}
+		}
+		blockSum = new double[channelCount];
+
+		final int maxPageCount = (int) Math.max(1, MAX_PAGE_CACHE_BYTES / ((long) PAGE_BLOCK_COUNT * BLOCK_BYTES));
+		pages = new LinkedHashMap<Long, float[][]>(16, 0.75F, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<Long, float[][]> eldest) {
+				return size() > maxPageCount;
+			}
+
+		};
+	}
+
+	/**
+	 * Creates an empty pyramid for the given source.
+	 * @param source the source of samples
+	 * @return the created pyramid
+	 */
+	public static MinMaxPyramid createFor(MultichannelSampleSource source) {
+		int channelCount = source.getChannelCount();
+		int[] sampleCount = new int[channelCount];
+		for (int i = 0; i < channelCount; i++) {
+			sampleCount[i] = source.getSampleCount(i);
+		}
+		return new MinMaxPyramid(channelCount, sampleCount);
+	}
+
+	private static int getBlockCount(int sampleCount, int blockSize) {
+		return (int) (((long) sampleCount + blockSize - 1) / blockSize);
+	}
+
+	/**
+	 * Returns the size of all levels from the given one up, for all channels.
+	 * @param firstLevel the finest level
+	 * @return the size in bytes
+	 */
+	private long getStoredBytes(int firstLevel) {
+		long bytes = 0;
+		for (int i = 0; i < channelCount; i++) {
+			int blockCount = getBlockCount(sampleCount[i], getBlockSize(firstLevel));
+			while (true) {
+				bytes += (long) blockCount * BLOCK_BYTES;
+				if (blockCount <= 1) {
+					break;
+				}
+				blockCount = (blockCount + 1) / 2;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of samples summarized by one block of the level 0.
+	 * @return the size of the base block
+	 */
+	public int getBaseBlockSize() {
+		return BASE_BLOCK_SIZE;
+	}
+
+	/**
+	 * Returns the number of samples summarized by one block of the given level.
+	 * @param level the level of the pyramid
+	 * @return the size of the block
+	 */
+	public int getBlockSize(int level) {
+		return BASE_BLOCK_SIZE << level;
+	}
+
+	/**
+	 * Returns the finest level built by {@link #build(MultichannelSampleSource)},
+	 * the finer levels are computed on demand.
+	 * @return the level
+	 */
+	public int getFirstStoredLevel() {
+		return firstStoredLevel;
+	}
+
+	/**
+	 * Returns the number of channels.
+	 * @return the number of channels
+	 */
+	public int getChannelCount() {
+		return channelCount;
+	}
+
+	/**
+	 * Returns the number of samples in the given channel.
+	 * @param channel the index of the channel
+	 * @return the number of samples
+	 */
+	public int getSampleCount(int channel) {
+		return sampleCount[channel];
+	}
+
+	/**
+	 * Returns true if the pyramid was completely built.
+	 * @return true if the pyramid may be queried
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Returns true if the pyramid is able to answer queries for columns
+	 * of the given width faster than reading the samples. That is the case
+	 * when at least two blocks of the finest available level fit into
+	 * one column.
+	 * @param samplesPerColumn the number of samples in one pixel column
+	 * @return true if the pyramid should be used
+	 */
+	public synchronized boolean isUsable(double samplesPerColumn) {
+		int finestLevel = (source != null) ? 0 : firstStoredLevel;
+		return complete && samplesPerColumn >= 2 * getBlockSize(finestLevel);
+	}
+
+	/**
+	 * Returns true if this pyramid summarizes a signal of the same size
+	 * as the given source.
+	 * @param source the source of samples
+	 * @return true if the sizes of the signals are equal
+	 */
+	public boolean matches(MultichannelSampleSource source) {
+		if (source.getChannelCount() != channelCount) {
+			return false;
+		}
+		for (int i = 0; i < channelCount; i++) {
+			if (source.getSampleCount(i) != sampleCount[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Sets the source from which the blocks of levels finer than
+	 * {@link #getFirstStoredLevel()} are computed. The pyramid becomes the
+	 * owner of the source and destroys it in {@link #destroy()}.
+	 * @param source the source of samples, of the same signal as the one
+	 * given to {@link #build(MultichannelSampleSource)}, or null
+	 */
+	public synchronized void setSource(MultichannelSampleSource source) {
+		this.source = source;
+		pages.clear();
+	}
+
+	/**
+	 * Releases the cached pages and destroys the source set by
+	 * {@link #setSource(MultichannelSampleSource)}. The built levels may
+	 * still be queried.
+	 */
+	public synchronized void destroy() {
+		if (source != null) {
+			source.destroy();
+			source = null;
+		}
+		pages.clear();
+		pageSamples = null;
+	}
+
+	/**
+	 * Builds the pyramid reading all samples of the given source once.
+	 * Building may be interrupted by interrupting the current thread,
+	 * in which case the pyramid stays incomplete.
+	 * @param source the source of samples, must have the same size
+	 * as given in the constructor
+	 * @return true if the pyramid was completely built, false if
+	 * building was interrupted
+	 */
+	public boolean build(MultichannelSampleSource source) {
+
+		double[][] buffers = new double[channelCount][READ_SAMPLE_COUNT];
+
+		int[] channels = new int[channelCount];
+		for (int i = 0; i < channelCount; i++) {
+			channels[i] = i;
+		}
+
+		int maxSampleCount = 0;
+		for (int i = 0; i < channelCount; i++) {
+			maxSampleCount = Math.max(maxSampleCount, sampleCount[i]);
+		}
+
+		int blockSize = getBlockSize(firstStoredLevel);
+		for (int offset = 0; offset < maxSampleCount; offset += READ_SAMPLE_COUNT) {
+
+			if (Thread.currentThread().isInterrupted()) {
+				return false;
+			}
+
+			int count = Math.min(READ_SAMPLE_COUNT, maxSampleCount - offset);
+			if (source instanceof MultichannelBlockSampleSource && allChannelsHave(offset + count)) {
+				((MultichannelBlockSampleSource) source).getSamples(channels, buffers, offset, count, 0);
+				for (int i = 0; i < channelCount; i++) {
+					summarizeSamples(i, buffers[i], offset, count, blockSize, 0, minimum[i][firstStoredLevel], maximum[i][firstStoredLevel], mean[i][firstStoredLevel]);
+				}
+			} else {
+				for (int i = 0; i < channelCount; i++) {
+					int channelSampleCount = Math.min(count, sampleCount[i] - offset);
+					if (channelSampleCount > 0) {
+						source.getSamples(i, buffers[i], offset, channelSampleCount, 0);
+						summarizeSamples(i, buffers[i], offset, channelSampleCount, blockSize, 0, minimum[i][firstStoredLevel], maximum[i][firstStoredLevel], mean[i][firstStoredLevel]);
+					}
+				}
+			}
+		}
+
+		for (int i = 0; i < channelCount; i++) {
+			for (int level = firstStoredLevel + 1; level < minimum[i].length; level++) {
+				summarizeLevel(i, level);
+			}
+		}
+
+		complete = true;
+		return true;
+	}
+
+	private boolean allChannelsHave(int samples) {
+		for (int i = 0; i < channelCount; i++) {
+			if (sampleCount[i] < samples) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the blocks of the given size from the given samples. The
+	 * samples may start and end in the middle of a block, in which case
+	 * they are merged with the samples given before.
+	 * @param channel the index of the channel
+	 * @param samples the samples
+	 * @param offset the index of the first sample in the signal
+	 * @param count the number of samples
+	 * @param blockSize the size of blocks
+	 * @param firstBlock the number of the block stored at the index 0
+	 * of the arrays
+	 * @param min the minimal values of blocks, indexed by the block
+	 * number in the signal minus <code>firstBlock</code>
+	 * @param max the maximal values of blocks
+	 * @param avg the mean values of blocks
+	 */
+	private void summarizeSamples(int channel, double[] samples, int offset, int count, int blockSize, int firstBlock, float[] min, float[] max, float[] avg) {
+
+		int start = 0;
+		while (start < count) {
+			long position = (long) offset + start;
+			int block = (int) (position / blockSize);
+			int blockStart = (int) (position - (long) block * blockSize);
+			int end = Math.min(count, start + blockSize - blockStart);
+
+			double blockMin = samples[start];
+			double blockMax = samples[start];
+			double sum = 0;
+			for (int i = start; i < end; i++) {
+				double value = samples[i];
+				if (value < blockMin) {
+					blockMin = value;
+				} else if (value > blockMax) {
+					blockMax = value;
+				}
+				sum += value;
+			}
+
+			int index = block - firstBlock;
+			if (blockStart == 0) {
+				min[index] = (float) blockMin;
+				max[index] = (float) blockMax;
+				blockSum[channel] = sum;
+			} else {
+				min[index] = Math.min(min[index], (float) blockMin);
+				max[index] = Math.max(max[index], (float) blockMax);
+				blockSum[channel] += sum;
+			}
+			avg[index] = (float) (blockSum[channel] / (blockStart + end - start));
+
+			start = end;
+		}
+
+	}
+
+	/**
+	 * Computes the blocks of the given level from the previous level.
+	 * @param channel the index of the channel
+	 * @param level the level to compute
+	 */
+	private void summarizeLevel(int channel, int level) {
+
+		float[] lowerMin = minimum[channel][level - 1];
+		float[] lowerMax = maximum[channel][level - 1];
+		float[] lowerMean = mean[channel][level - 1];
+		float[] min = minimum[channel][level];
+		float[] max = maximum[channel][level];
+		float[] avg = mean[channel][level];
+
+		int lowerBlockSize = getBlockSize(level - 1);
+		int lastLowerBlock = lowerMin.length - 1;
+
+		for (int block = 0; block < min.length; block++) {
+			int first = 2 * block;
+			int second = first + 1;
+			if (second > lastLowerBlock) {
+				min[block] = lowerMin[first];
+				max[block] = lowerMax[first];
+				avg[block] = lowerMean[first];
+			} else {
+				min[block] = Math.min(lowerMin[first], lowerMin[second]);
+				max[block] = Math.max(lowerMax[first], lowerMax[second]);
+				int secondSize = Math.min(lowerBlockSize, sampleCount[channel] - second * lowerBlockSize);
+				avg[block] = (float) (((double) lowerMean[first] * lowerBlockSize + (double) lowerMean[second] * secondSize) / (lowerBlockSize + secondSize));
+			}
+		}
+
+	}
+
+	/**
+	 * Returns the level with the biggest blocks which still fit
+	 * at least twice in a column of the given width. Levels below the
+	 * {@link #firstStoredLevel} are returned only if there is a source
+	 * to compute them from, and then the level 0 is returned.
+	 * @param channel the index of the channel
+	 * @param samplesPerColumn the number of samples in one column
+	 * @return the level of the pyramid
+	 */
+	private int getLevelFor(int channel, double samplesPerColumn) {
+		int level = 0;
+		int lastLevel = minimum[channel].length - 1;
+		while (level < lastLevel && 2 * getBlockSize(level + 1) <= samplesPerColumn) {
+			level++;
+		}
+		if (level < firstStoredLevel) {
+			return (source != null) ? 0 : firstStoredLevel;
+		}
+		return level;
+	}
+
+	private static long getPageKey(int channel, int page) {
+		return ((long) channel << 32) | page;
+	}
+
+	/**
+	 * Returns the page of base blocks, computing it from the source
+	 * if it is not cached.
+	 * @param channel the index of the channel
+	 * @param page the number of the page
+	 * @return the minimal, maximal and mean values of the blocks of the page
+	 */
+	private float[][] getPage(int channel, int page) {
+
+		Long key = getPageKey(channel, page);
+		float[][] values = pages.get(key);
+		if (values != null) {
+			return values;
+		}
+
+		int firstBlock = page * PAGE_BLOCK_COUNT;
+		int blockCount = Math.min(PAGE_BLOCK_COUNT, getBlockCount(sampleCount[channel], BASE_BLOCK_SIZE) - firstBlock);
+		int offset = firstBlock * BASE_BLOCK_SIZE;
+		int count = Math.min(blockCount * BASE_BLOCK_SIZE, sampleCount[channel] - offset);
+		if (pageSamples == null) {
+			pageSamples = new double[PAGE_BLOCK_COUNT * BASE_BLOCK_SIZE];
+		}
+		source.getSamples(channel, pageSamples, offset, count, 0);
+
+		values = new float[3][blockCount];
+		summarizeSamples(channel, pageSamples, offset, count, BASE_BLOCK_SIZE, firstBlock, values[0], values[1], values[2]);
+		pages.put(key, values);
+		return values;
+
+	}
+
+	/**
+	 * Computes the minimal, maximal and mean values of the signal in
+	 * consecutive columns. The column <code>i</code> contains samples
+	 * from <code>firstSample + i * samplesPerColumn</code> (inclusive) to
+	 * <code>firstSample + (i+1) * samplesPerColumn</code> (exclusive),
+	 * widened to the nearest block boundaries. Columns which lie outside
+	 * the signal are set to {@link Double#NaN}.
+	 * @param channel the index of the channel
+	 * @param firstSample the position of the beginning of the first column
+	 * @param samplesPerColumn the number of samples in one column
+	 * @param columnCount the number of columns
+	 * @param min the array to which minimal values will be written
+	 * @param max the array to which maximal values will be written
+	 * @param avg the array to which mean values will be written, may be null
+	 */
+	public synchronized void getColumns(int channel, double firstSample, double samplesPerColumn, int columnCount, double[] min, double[] max, double[] avg) {
+
+		int level = getLevelFor(channel, samplesPerColumn);
+		boolean paged = level < firstStoredLevel;
+		int blockSize = getBlockSize(level);
+		int channelSampleCount = sampleCount[channel];
+
+		for (int column = 0; column < columnCount; column++) {
+
+			long start = (long) Math.floor(firstSample + column * samplesPerColumn);
+			long end = (long) Math.ceil(firstSample + (column + 1) * samplesPerColumn);
+			if (start < 0) {
+				start = 0;
+			}
+			if (end > channelSampleCount) {
+				end = channelSampleCount;
+			}
+			if (end <= start) {
+				min[column] = Double.NaN;
+				max[column] = Double.NaN;
+				if (avg != null) {
+					avg[column] = Double.NaN;
+				}
+				continue;
+			}
+
+			int firstBlock = (int) (start / blockSize);
+			int lastBlock = (int) ((end - 1) / blockSize);
+
+			float columnMin = Float.POSITIVE_INFINITY;
+			float columnMax = Float.NEGATIVE_INFINITY;
+			double sum = 0;
+			long count = 0;
+
+			int block = firstBlock;
+			while (block <= lastBlock) {
+				float[] levelMin, levelMax, levelMean;
+				int pageFirstBlock;
+				if (paged) {
+					int page = block / PAGE_BLOCK_COUNT;
+					float[][] values = getPage(channel, page);
+					levelMin = values[0];
+					levelMax = values[1];
+					levelMean = values[2];
+					pageFirstBlock = page * PAGE_BLOCK_COUNT;
+				} else {
+					levelMin = minimum[channel][level];
+					levelMax = maximum[channel][level];
+					levelMean = mean[channel][level];
+					pageFirstBlock = 0;
+				}
+				int pageLastBlock = Math.min(lastBlock, pageFirstBlock + levelMin.length - 1);
+
+				for (; block <= pageLastBlock; block++) {
+					int index = block - pageFirstBlock;
+					if (levelMin[index] < columnMin) {
+						columnMin = levelMin[index];
+					}
+					if (levelMax[index] > columnMax) {
+						columnMax = levelMax[index];
+					}
+					if (avg != null) {
+						int blockSampleCount = Math.min(blockSize, channelSampleCount - block * blockSize);
+						sum += (double) levelMean[index] * blockSampleCount;
+						count += blockSampleCount;
+					}
+				}
+			}
+
+			min[column] = columnMin;
+			max[column] = columnMax;
+			if (avg != null) {
+				avg[column] = sum / count;
+			}
+		}
+
+	}
+
+}
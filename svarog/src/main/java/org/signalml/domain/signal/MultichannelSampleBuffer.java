@@ -10,6 +10,7 @@
 import static java.lang.String.format;
 
 import org.apache.log4j.Logger;
+import org.signalml.domain.signal.samplesource.MultichannelBlockSampleSource;
 import org.signalml.domain.signal.samplesource.MultichannelSampleSource;
 
 /**
@@ -18,7 +19,7 @@
  *
  * @author Michal Dobaczewski &copy; 2007-2008 CC Otwarte Systemy Komputerowe Sp. z o.o.
  */
-public class MultichannelSampleBuffer extends MultichannelSampleProcessor {
+public class MultichannelSampleBuffer extends MultichannelSampleProcessor implements MultichannelBlockSampleSource {
 
 	public static final int INITIAL_BUFFER_SIZE = 128*60*3; // buffer 3 minutes of signal @ 128Hz
 
@@ -218,6 +219,76 @@ public void getSamples(int channel, double[] target, int signalOffset, int count
 
 	}
 
+	/**
+	 * Returns the given number of samples for the given channels starting
+	 * from a given position in time.
+	 * The channels which have to be buffered anew are read from the source
+	 * at once (in one call if it is a {@link MultichannelBlockSampleSource}),
+	 * then the samples of every channel are returned as by
+	 * {@link #getSamples(int, double[], int, int, int)}.
+	 * @param channels the numbers of channels
+	 * @param targets the arrays to which results will be written, one
+	 * array for every channel
+	 * @param signalOffset the position (in samples) in the signal starting
+	 * from which samples will be returned
+	 * @param count the number of samples to be returned
+	 * @param arrayOffset the offset in <code>targets</code> arrays starting
+	 * from which samples will be written
+	 */
+	@Override
+	public void getSamples(int[] channels, double[][] targets, int signalOffset, int count, int arrayOffset) {
+		if (count > bufferLength || count <= 0) {
+			getSourceSamples(channels, targets, signalOffset, count, arrayOffset);
+			return;
+		}
+
+		int maxSignalOffset = signalOffset + (count - 1);
+		int rebufferCount = 0;
+		for (int channel : channels) {
+			if (needsRebuffering(channel, signalOffset, maxSignalOffset)) {
+				rebufferCount++;
+			}
+		}
+
+		if (rebufferCount > 0) {
+			int[] rebufferChannels = new int[rebufferCount];
+			double[][] rebufferTargets = new double[rebufferCount][];
+			int e = 0;
+			for (int channel : channels) {
+				if (needsRebuffering(channel, signalOffset, maxSignalOffset)) {
+					rebufferChannels[e] = channel;
+					rebufferTargets[e] = buffer[channel];
+					e++;
+				}
+			}
+
+			getSourceSamples(rebufferChannels, rebufferTargets, signalOffset, count, 0);
+
+			for (int channel : rebufferChannels) {
+				boundary[channel] = 0;
+				minSample[channel] = signalOffset;
+				maxSample[channel] = maxSignalOffset+1;
+			}
+		}
+
+		// the rebuffered channels are now copied from the buffer
+		for (int i=0; i<channels.length; i++) {
+			getSamples(channels[i], targets[i], signalOffset, count, arrayOffset);
+		}
+	}
+
+	/**
+	 * Returns whether the buffer of the given channel is empty or does
+	 * not overlap nor adjoin the requested range of samples, so that
+	 * the whole range must be read from the source.
+	 */
+	private boolean needsRebuffering(int channel, int signalOffset, int maxSignalOffset) {
+		if (minSample[channel] == 0 && maxSample[channel] == 0) {
+			return true;
+		}
+		return (signalOffset > maxSample[channel]) || (maxSignalOffset < (minSample[channel]-1));
+	}
+
 	/**
 	 * Clears the buffer (actually creates a new one).
 	 */
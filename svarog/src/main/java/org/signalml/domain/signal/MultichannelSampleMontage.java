@@ -6,6 +6,7 @@
 
 import java.beans.PropertyChangeEvent;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 
@@ -17,6 +18,7 @@
 import org.signalml.domain.montage.SourceChannel;
 import org.signalml.domain.montage.system.ChannelFunction;
 import org.signalml.domain.montage.SignalConfigurer;
+import org.signalml.domain.signal.samplesource.MultichannelBlockSampleSource;
 import org.signalml.domain.signal.samplesource.MultichannelSampleSource;
 import org.signalml.exception.SanityCheckException;
 
@@ -24,10 +26,15 @@
  * This class represents a source of samples for a {@link Montage montage}.
  * Using the given montage and source of samples combines (adds with coefficients) different
  * {@link SourceChannel source channels} to provide desired output.
+ * <p>
+ * The montage matrix is kept as a sparse matrix (only non-zero
+ * coefficients of every montage channel). Samples of many montage channels
+ * can be {@link #getSamples(int[], double[][], int, int, int) computed at
+ * once}, in which case every referenced source channel is read only once.
  *
  * @author Michal Dobaczewski &copy; 2007-2008 CC Otwarte Systemy Komputerowe Sp. z o.o.
  */
-public class MultichannelSampleMontage extends MultichannelSampleProcessor {
+public class MultichannelSampleMontage extends MultichannelSampleProcessor implements MultichannelBlockSampleSource {
 
 	protected static final Logger logger = Logger.getLogger(MultichannelSampleMontage.class);
 
@@ -61,9 +68,42 @@ public class MultichannelSampleMontage extends MultichannelSampleProcessor {
 	private float[][] matrixData;
 
 	/**
-	 * an auxiliary array to hold samples of source channels
+	 * the indexes of {@link SourceChannel source channels} used to compute
+	 * every {@link MontageChannel montage channel}.
+	 * <code>referencedChannels[i]</code> - the primary channel of the montage
+	 * channel of index <code>i</code> followed by the other source channels
+	 * with non-zero coefficients, in ascending order.
 	 */
-	private double[] auxSamples;
+	private int[][] referencedChannels;
+
+	/**
+	 * the coefficients of source channels from {@link #referencedChannels},
+	 * in the same order
+	 */
+	private float[][] referencedCoefficients;
+
+	/**
+	 * <code>constantChannels[j]</code> - true if the source channel of index
+	 * <code>j</code> is a 'fake' channel (eg. added by 'add empty channel')
+	 * which is not read from the source
+	 */
+	private boolean[] constantChannels;
+
+	/**
+	 * the values of samples of the 'fake' source channels
+	 */
+	private double[] constantValues;
+
+	/**
+	 * the auxiliary arrays of the thread reading samples, so that many
+	 * threads can read at the same time
+	 */
+	private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
 
 	/**
 	 * the montage used to set parameters of this source
@@ -241,61 +281,151 @@ public int getSampleCount(int channel) {
 	@Override
 	public void getSamples(int channel, double[] target, int signalOffset, int count, int arrayOffset) {
 
-		int channelCnt = this.currentMontage.getSourceChannelCount();
-		int primaryChannel = montage[channel].primaryChannel;
-		int i, e;
+		int[] channels = referencedChannels[channel];
+		float[] coefficients = referencedCoefficients[channel];
 
 		//In case we have 'fake' primaryChannel (eg. in montage there is a channel added by 'add empty channel'
 		//we need to immitate source samples as 0
-		if (currentMontage.getSourceChannelAt(primaryChannel).getFunction() == ChannelFunction.ZERO) {
-			this.fillSamplesWith((double) 0.0, target, signalOffset, count, arrayOffset);
-		} else if (currentMontage.getSourceChannelAt(primaryChannel).getFunction() == ChannelFunction.ONE) {
-			this.fillSamplesWith((double) 1.0, target, signalOffset, count, arrayOffset);
+		int primaryChannel = channels[0];
+		if (constantChannels[primaryChannel]) {
+			this.fillSamplesWith(constantValues[primaryChannel], target, signalOffset, count, arrayOffset);
 		} else {
 			source.getSamples(primaryChannel, target, signalOffset, count, arrayOffset);
 		}
+		scale(target, arrayOffset, count, coefficients[0]);
+
+		for (int i=1; i<channels.length; i++) {
+			if (constantChannels[channels[i]]) {
+				addConstant(target, arrayOffset, count, constantValues[channels[i]], coefficients[i]);
+			} else {
+				double[] auxSamples = scratch.get().getAuxSamples(count);
+				source.getSamples(channels[i], auxSamples, signalOffset, count, 0);
+				add(target, arrayOffset, count, auxSamples, coefficients[i]);
+			}
+		}
+
+	}
 
-		float coeff = matrixData[channel][primaryChannel];
-		int idx;
+	/**
+	 * Returns the given number of samples for the given
+	 * {@link MontageChannel montage channels} starting from a given position
+	 * in time.
+	 * Every {@link SourceChannel source channel} referenced by any of the
+	 * montage channels is read from the source only once (in one call
+	 * if the source is a {@link MultichannelBlockSampleSource}) and
+	 * the montage channels are computed from these samples.
+	 * @param channels the numbers of the montage channels
+	 * @param targets the arrays to which results will be written starting
+	 * from position <code>arrayOffset</code>, one array for every channel
+	 * @param signalOffset the position (in time) in the signal starting
+	 * from which samples will be returned
+	 * @param count the number of samples to be returned
+	 * @param arrayOffset the offset in <code>targets</code> arrays starting
+	 * from which samples will be written
+	 */
+	@Override
+	public void getSamples(int[] channels, double[][] targets, int signalOffset, int count, int arrayOffset) {
+
+		int sourceChannelCount = constantChannels.length;
+		Scratch buffers = scratch.get();
+		boolean[] requestedChannels = buffers.getRequestedChannels(sourceChannelCount);
+		double[][] blockSamples = buffers.blockSamples;
+
+		int requestedCount = 0;
+		for (int channel : channels) {
+			for (int sourceChannel : referencedChannels[channel]) {
+				if (!constantChannels[sourceChannel] && !requestedChannels[sourceChannel]) {
+					requestedChannels[sourceChannel] = true;
+					requestedCount++;
+				}
+			}
+		}
+
+		int[] sourceChannels = buffers.getSourceChannels(requestedCount);
+		double[][] sourceTargets = buffers.getSourceTargets(requestedCount);
+		int e = 0;
+		for (int i=0; i<sourceChannelCount; i++) {
+			if (requestedChannels[i]) {
+				if (blockSamples[i] == null || blockSamples[i].length < count) {
+					blockSamples[i] = new double[count];
+				}
+				sourceChannels[e] = i;
+				sourceTargets[e] = blockSamples[i];
+				e++;
+			}
+		}
+
+		getSourceSamples(sourceChannels, sourceTargets, signalOffset, count, 0);
+
+		for (int i=0; i<channels.length; i++) {
+			combine(channels[i], targets[i], count, arrayOffset, blockSamples);
+		}
+
+	}
+
+	/**
+	 * Computes samples of a {@link MontageChannel montage channel} from
+	 * samples of source channels read at once.
+	 * @param channel the number of the montage channel
+	 * @param target the array to which results will be written
+	 * @param count the number of samples
+	 * @param arrayOffset the offset in <code>target</code> array
+	 * @param blockSamples the samples of source channels, indexed by
+	 * source channel
+	 */
+	private void combine(int channel, double[] target, int count, int arrayOffset, double[][] blockSamples) {
+
+		int[] channels = referencedChannels[channel];
+		float[] coefficients = referencedCoefficients[channel];
+
+		int primaryChannel = channels[0];
+		if (constantChannels[primaryChannel]) {
+			Arrays.fill(target, arrayOffset, arrayOffset + count, constantValues[primaryChannel]);
+		} else {
+			System.arraycopy(blockSamples[primaryChannel], 0, target, arrayOffset, count);
+		}
+		scale(target, arrayOffset, count, coefficients[0]);
+
+		for (int i=1; i<channels.length; i++) {
+			if (constantChannels[channels[i]]) {
+				addConstant(target, arrayOffset, count, constantValues[channels[i]], coefficients[i]);
+			} else {
+				add(target, arrayOffset, count, blockSamples[channels[i]], coefficients[i]);
+			}
+		}
+
+	}
+
+	private static void scale(double[] target, int arrayOffset, int count, float coeff) {
 		if (coeff != 1) {
-			idx = arrayOffset;
-			for (e=0; e<count; e++) {
-				target[idx] *= coeff;
-				idx++;
+			for (int e=arrayOffset; e<arrayOffset+count; e++) {
+				target[e] *= coeff;
 			}
 		}
+	}
 
-		for (i=0; i<channelCnt; i++) {
-			if (i == primaryChannel) {
-				continue;
+	private static void add(double[] target, int arrayOffset, int count, double[] samples, float coeff) {
+		int idx = arrayOffset;
+		if (coeff != 1) {
+			for (int e=0; e<count; e++) {
+				target[idx] += samples[e] * coeff;
+				idx++;
 			}
-			coeff = matrixData[channel][i];
-			if (coeff != 0) {
-				if (auxSamples == null || auxSamples.length < count) {
-					auxSamples = new double[count];
-				}
-				if (currentMontage.getSourceChannelAt(i).getFunction() == ChannelFunction.ZERO)
-					this.fillSamplesWith((double) 0.0, auxSamples, signalOffset, count, 0);
-				else if (currentMontage.getSourceChannelAt(i).getFunction() == ChannelFunction.ONE)
-					this.fillSamplesWith((double) 1.0, auxSamples, signalOffset, count, 0);
-				else
-					source.getSamples(i, auxSamples, signalOffset, count, 0);
-				idx = arrayOffset;
-				if (coeff != 1) {
-					for (e=0; e<count; e++) {
-						target[idx] += auxSamples[e] * coeff;
-						idx++;
-					}
-				} else {
-					for (e=0; e<count; e++) {
-						target[idx] += auxSamples[e];
-						idx++;
-					}
-				}
+		} else {
+			for (int e=0; e<count; e++) {
+				target[idx] += samples[e];
+				idx++;
 			}
 		}
+	}
 
+	private static void addConstant(double[] target, int arrayOffset, int count, double value, float coeff) {
+		double product = value * coeff;
+		for (int e=arrayOffset; e<arrayOffset+count; e++) {
+			target[e] += product;
+		}
 	}
+
 	protected void fillSamplesWith(double value, double[] target, int signalOffset, int count, int arrayOffset) {
 		for (int i=arrayOffset; i<arrayOffset+count; i++)
 			target[i] = value;
@@ -390,6 +520,8 @@ private void applyMontage(Montage montage) throws MontageMismatchException {
 		Entry[] entries = new Entry[cnt];
 		float[][] matrix = new float[cnt][];
 		int[] sampleCounts = new int[cnt];
+		int[][] channels = new int[cnt][];
+		float[][] coefficients = new float[cnt][];
 		ArrayList<LinkedList<Integer>> backRefs = new ArrayList<LinkedList<Integer>>(srcCnt);
 		for (i=0; i<srcCnt; i++) {
 			backRefs.add(new LinkedList<Integer>());
@@ -416,6 +548,37 @@ private void applyMontage(Montage montage) throws MontageMismatchException {
 				}
 			}
 
+			int referenceCount = 1;
+			for (e=0; e<matrix[i].length; e++) {
+				if (e != primaryChannel && matrix[i][e] != 0) {
+					referenceCount++;
+				}
+			}
+			channels[i] = new int[referenceCount];
+			coefficients[i] = new float[referenceCount];
+			channels[i][0] = primaryChannel;
+			coefficients[i][0] = matrix[i][primaryChannel];
+			referenceCount = 1;
+			for (e=0; e<matrix[i].length; e++) {
+				if (e != primaryChannel && matrix[i][e] != 0) {
+					channels[i][referenceCount] = e;
+					coefficients[i][referenceCount] = matrix[i][e];
+					referenceCount++;
+				}
+			}
+
+		}
+
+		boolean[] constantChannels = new boolean[srcCnt];
+		double[] constantValues = new double[srcCnt];
+		for (i=0; i<srcCnt; i++) {
+			if (montage.getSourceChannelAt(i).getFunction() == ChannelFunction.ZERO) {
+				constantChannels[i] = true;
+				constantValues[i] = 0.0;
+			} else if (montage.getSourceChannelAt(i).getFunction() == ChannelFunction.ONE) {
+				constantChannels[i] = true;
+				constantValues[i] = 1.0;
+			}
 		}
 
 		int[][] backRefArr = new int[srcCnt][];
@@ -443,6 +606,10 @@ private void applyMontage(Montage montage) throws MontageMismatchException {
 		float[][] oldMatrixData = this.matrixData;
 		this.matrixData = matrix;
 		this.sampleCounts = sampleCounts;
+		this.referencedChannels = channels;
+		this.referencedCoefficients = coefficients;
+		this.constantChannels = constantChannels;
+		this.constantValues = constantValues;
 
 		pcSupport.firePropertyChange(MATRIX_PROPERTY, oldMatrixData, matrixData);
 
@@ -490,4 +657,69 @@ public Entry(int sourceChannel, String primaryLabel, String label) {
 
 	}
 
+	/**
+	 * The auxiliary arrays used by a single thread to read samples.
+	 */
+	private static class Scratch {
+
+		/**
+		 * an array to hold samples of a source channel
+		 */
+		private double[] auxSamples;
+
+		/**
+		 * arrays to hold samples of source channels read at once,
+		 * indexed by source channel
+		 */
+		private double[][] blockSamples;
+
+		/**
+		 * an array marking source channels which must be read
+		 */
+		private boolean[] requestedChannels;
+
+		/**
+		 * the numbers of source channels read at once and the arrays
+		 * they are read to
+		 */
+		private int[] sourceChannels;
+		private double[][] sourceTargets;
+
+		private double[] getAuxSamples(int count) {
+			if (auxSamples == null || auxSamples.length < count) {
+				auxSamples = new double[count];
+			}
+			return auxSamples;
+		}
+
+		/**
+		 * Returns the cleared {@link #requestedChannels} array, also makes
+		 * {@link #blockSamples} hold the given number of channels.
+		 */
+		private boolean[] getRequestedChannels(int sourceChannelCount) {
+			if (requestedChannels == null || requestedChannels.length != sourceChannelCount) {
+				requestedChannels = new boolean[sourceChannelCount];
+				blockSamples = new double[sourceChannelCount][];
+			} else {
+				Arrays.fill(requestedChannels, false);
+			}
+			return requestedChannels;
+		}
+
+		private int[] getSourceChannels(int length) {
+			if (sourceChannels == null || sourceChannels.length != length) {
+				sourceChannels = new int[length];
+			}
+			return sourceChannels;
+		}
+
+		private double[][] getSourceTargets(int length) {
+			if (sourceTargets == null || sourceTargets.length != length) {
+				sourceTargets = new double[length][];
+			}
+			return sourceTargets;
+		}
+
+	}
+
 }
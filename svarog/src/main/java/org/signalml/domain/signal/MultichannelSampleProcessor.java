@@ -8,6 +8,7 @@
 import java.beans.PropertyChangeListener;
 
 import org.signalml.domain.signal.samplesource.AbstractMultichannelSampleSource;
+import org.signalml.domain.signal.samplesource.MultichannelBlockSampleSource;
 import org.signalml.domain.signal.samplesource.MultichannelSampleSource;
 import org.signalml.domain.signal.space.ChannelSubsetSampleSource;
 import org.signalml.domain.signal.space.MarkerSegmentedSampleSource;
@@ -58,6 +59,29 @@ public MultichannelSampleSource getSource() {
 		return source;
 	}
 
+	/**
+	 * Reads samples of many channels from the {@link #source}, in one call
+	 * if it is a {@link MultichannelBlockSampleSource}, otherwise channel
+	 * by channel.
+	 * @param channels the numbers of channels
+	 * @param targets the arrays to which results will be written, one
+	 * array for every channel
+	 * @param signalOffset the position (in time) in the signal starting
+	 * from which samples will be returned
+	 * @param count the number of samples to be returned
+	 * @param arrayOffset the offset in <code>targets</code> arrays starting
+	 * from which samples will be written
+	 */
+	protected void getSourceSamples(int[] channels, double[][] targets, int signalOffset, int count, int arrayOffset) {
+		if (source instanceof MultichannelBlockSampleSource) {
+			((MultichannelBlockSampleSource) source).getSamples(channels, targets, signalOffset, count, arrayOffset);
+		} else {
+			for (int i=0; i<channels.length; i++) {
+				source.getSamples(channels[i], targets[i], signalOffset, count, arrayOffset);
+			}
+		}
+	}
+
 	@Override
 	public int getChannelCount() {
 		return source.getChannelCount();
@@ -0,0 +1,89 @@
+package org.signalml.domain.signal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the {@link SignalChecksum checksums} of the signal files,
+ * so that they are not calculated again when a file is opened again.
+ * <p>
+ * The files are identified by their canonical path, size and the time
+ * of the last modification, so the checksums of a changed file are not
+ * used. The checksums of the recently used files are kept.
+ */
+public class SignalChecksumCache {
+
+	/**
+	 * The maximum number of files whose checksums are kept.
+	 */
+	private static final int MAX_FILE_COUNT = 64;
+
+	private static final SignalChecksumCache sharedInstance = new SignalChecksumCache();
+
+	/**
+	 * the checksums of the files (by their types), the least recently
+	 * used file first
+	 */
+	private LinkedHashMap<String,HashMap<String,SignalChecksum>> checksums = new LinkedHashMap<String,HashMap<String,SignalChecksum>>(16, 0.75F, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String,HashMap<String,SignalChecksum>> eldest) {
+			return size() > MAX_FILE_COUNT;
+		}
+
+	};
+
+	public static SignalChecksumCache getSharedInstance() {
+		return sharedInstance;
+	}
+
+	/**
+	 * Returns the remembered checksum of the given file.
+	 * @param file the file
+	 * @param method the type of the checksum, for example 'crc32'
+	 * @return the checksum or null if it is not known for the current
+	 * contents of the file
+	 */
+	public synchronized SignalChecksum get(File file, String method) {
+		HashMap<String,SignalChecksum> fileChecksums = checksums.get(getKey(file));
+		if (fileChecksums == null) {
+			return null;
+		}
+		return fileChecksums.get(method.toLowerCase());
+	}
+
+	/**
+	 * Remembers the checksum of the given file.
+	 * @param file the file
+	 * @param checksum the checksum of the whole file
+	 */
+	public synchronized void put(File file, SignalChecksum checksum) {
+		String key = getKey(file);
+		HashMap<String,SignalChecksum> fileChecksums = checksums.get(key);
+		if (fileChecksums == null) {
+			fileChecksums = new HashMap<String,SignalChecksum>();
+			checksums.put(key, fileChecksums);
+		}
+		fileChecksums.put(checksum.getMethod().toLowerCase(), checksum);
+	}
+
+	public synchronized void clear() {
+		checksums.clear();
+	}
+
+	private String getKey(File file) {
+		String path;
+		try {
+			path = file.getCanonicalPath();
+		} catch (IOException ex) {
+			path = file.getAbsolutePath();
+		}
+		return path + "|" + file.length() + "|" + file.lastModified();
+	}
+
+}
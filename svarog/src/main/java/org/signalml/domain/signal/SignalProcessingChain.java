@@ -27,9 +27,11 @@
 import org.signalml.domain.montage.MontageMismatchException;
 import org.signalml.domain.signal.filter.MultichannelSampleFilter;
 import org.signalml.domain.signal.filter.export.MultichannelSampleFilterForExport;
+import org.signalml.domain.signal.raw.MappedRawSignalSampleSource;
 import org.signalml.domain.signal.raw.RawSignalDescriptor;
 import org.signalml.domain.signal.raw.RawSignalSampleSource;
 import org.signalml.domain.signal.samplesource.AbstractMultichannelSampleSource;
+import org.signalml.domain.signal.samplesource.MultichannelBlockSampleSource;
 import org.signalml.domain.signal.samplesource.MultichannelSampleSource;
 import org.signalml.domain.signal.samplesource.OriginalMultichannelSampleSource;
 import org.signalml.domain.signal.samplesource.SignalMLCodecSampleSource;
@@ -48,7 +50,7 @@
  *
  * @author Michal Dobaczewski &copy; 2007-2008 CC Otwarte Systemy Komputerowe Sp. z o.o.
  */
-public class SignalProcessingChain extends AbstractMultichannelSampleSource implements MultichannelSampleSource, PropertyChangeListener {
+public class SignalProcessingChain extends AbstractMultichannelSampleSource implements MultichannelBlockSampleSource, PropertyChangeListener {
 
 	protected static final Logger logger = Logger.getLogger(SignalProcessingChain.class);
 
@@ -151,7 +153,7 @@ else if (mrud instanceof RawSignalMRUDEntry) {
 			RawSignalMRUDEntry rawEntry = (RawSignalMRUDEntry) mrud;
 			RawSignalDescriptor rawDescriptor = rawEntry.getDescriptor();
 
-			source = new RawSignalSampleSource(rawEntry.getFile(), rawDescriptor.getChannelCount(), rawDescriptor.getSamplingFrequency(), rawDescriptor.getSampleType(), rawDescriptor.getByteOrder());
+			source = new MappedRawSignalSampleSource(rawEntry.getFile(), rawDescriptor.getChannelCount(), rawDescriptor.getSamplingFrequency(), rawDescriptor.getSampleType(), rawDescriptor.getByteOrder());
 			source.setCalibrationGain(rawDescriptor.getCalibrationGain());
 			source.setCalibrationOffset(rawDescriptor.getCalibrationOffset());
 
@@ -771,6 +773,32 @@ public void getSamples(int channel, double[] target, int signalOffset, int count
 		output.getSamples(channel, target, signalOffset, count, arrayOffset);
 	}
 
+	/**
+	 * Returns samples of many channels at once. If the last source in
+	 * the chain is able to return samples of many channels at once (the
+	 * buffers, the {@link MultichannelSampleMontage montage} and the
+	 * filter pass such requests down the chain) the request is passed
+	 * to it, otherwise channels are read one by one.
+	 * @param channels the numbers of channels
+	 * @param targets the arrays to which results will be written, one
+	 * array for every channel
+	 * @param signalOffset the position (in time) in the signal starting
+	 * from which samples will be returned
+	 * @param count the number of samples to be returned
+	 * @param arrayOffset the offset in <code>targets</code> arrays starting
+	 * from which samples will be written
+	 */
+	@Override
+	public void getSamples(int[] channels, double[][] targets, int signalOffset, int count, int arrayOffset) {
+		if (output instanceof MultichannelBlockSampleSource) {
+			((MultichannelBlockSampleSource) output).getSamples(channels, targets, signalOffset, count, arrayOffset);
+		} else {
+			for (int i=0; i<channels.length; i++) {
+				output.getSamples(channels[i], targets[i], signalOffset, count, arrayOffset);
+			}
+		}
+	}
+
 	@Override
 	public float getSamplingFrequency() {
 		return output.getSamplingFrequency();
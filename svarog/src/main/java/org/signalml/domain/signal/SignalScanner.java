@@ -14,12 +14,11 @@
  */
 public class SignalScanner {
 
-	private static final int BUFFER_SIZE = 8192;
-
 	/**
 	 * Looks for the minimal and maximal value (of the sample) in the signal.
 	 * Informs the <code>monitor</code> about the number of already
 	 * processed samples and aborts operation if monitor says to do so.
+	 * The signal is scanned by a {@link SignalStatisticsCalculator}.
 	 * @param sampleSource the {@link MultichannelSampleSource source}
 	 * of samples
 	 * @param monitor the {@link SignalWriterMonitor monitor} for this
@@ -29,72 +28,22 @@ public class SignalScanner {
 	 */
 	public SignalScanResult scanSignal(MultichannelSampleSource sampleSource, SignalWriterMonitor monitor) {
 
-		int channelCount = sampleSource.getChannelCount();
-		int[] sampleCounts = new int[channelCount];
-		int[] processedCounts = new int[channelCount];
-
-		double[] data = new double[BUFFER_SIZE];
-
-		double minSampleValue = Double.MAX_VALUE;
-		double maxSampleValue = Double.MIN_VALUE;
-		int i;
-		int e;
-
-		boolean moreSamples = false;
+		SignalStatisticsCalculator calculator = new SignalStatisticsCalculator();
+		calculator.setHistogramBinCount(0);
 
-		for (i=0; i<channelCount; i++) {
-			sampleCounts[i] = sampleSource.getSampleCount(i);
-			if (sampleCounts[i] > 0) {
-				moreSamples = true;
-			}
+		SignalStatistics[] statistics = calculator.calculate(sampleSource, monitor);
+		if (statistics == null) {
+			return null;
 		}
 
-		int toGet;
-		int totalProcessed = 0;
-
-		while (moreSamples) {
-
-			moreSamples = false;
-
-			for (i=0; i<channelCount; i++) {
-
-				if (sampleCounts[i] > processedCounts[i]) {
-
-					if (monitor != null && monitor.isRequestingAbort()) {
-						return null;
-					}
-
-					toGet = sampleCounts[i] - processedCounts[i];
-					if (toGet > BUFFER_SIZE) {
-						toGet = BUFFER_SIZE;
-						moreSamples = true;
-					}
-
-					sampleSource.getSamples(i, data, processedCounts[i], toGet, 0);
-
-					for (e=0; e<toGet; e++) {
-
-						if (data[e] < minSampleValue) {
-							minSampleValue = data[e];
-						}
-						if (data[e] > maxSampleValue) {
-							maxSampleValue = data[e];
-						}
-
-					}
-
-					processedCounts[i] += toGet;
-					if (processedCounts[i] > totalProcessed) {
-						totalProcessed = processedCounts[i];
-						if (monitor != null) {
-							monitor.setProcessedSampleCount(totalProcessed);
-						}
-					}
-
-				}
+		double minSampleValue = Double.MAX_VALUE;
+		double maxSampleValue = -Double.MAX_VALUE;
 
+		for (SignalStatistics channelStatistics : statistics) {
+			if (channelStatistics.getFiniteSampleCount() > 0) {
+				minSampleValue = Math.min(minSampleValue, channelStatistics.getMinValue());
+				maxSampleValue = Math.max(maxSampleValue, channelStatistics.getMaxValue());
 			}
-
 		}
 
 		SignalScanResult result = new SignalScanResult();
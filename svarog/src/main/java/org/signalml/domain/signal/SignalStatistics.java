@@ -0,0 +1,167 @@
+package org.signalml.domain.signal;
+
+/**
+ * The statistics of the samples of one channel of a signal, calculated
+ * by a {@link SignalStatisticsCalculator}.
+ * <p>
+ * The histogram has bins of equal width, the first of which begins at
+ * {@link #getHistogramStart()}. Values which are not finite are not
+ * included in the minimum, maximum, mean, RMS and histogram.
+ */
+public class SignalStatistics {
+
+	/**
+	 * the number of samples of the channel
+	 */
+	private int sampleCount;
+
+	/**
+	 * the number of finite samples of the channel
+	 */
+	private int finiteSampleCount;
+
+	private double minValue;
+	private int minPosition = -1;
+
+	private double maxValue;
+	private int maxPosition = -1;
+
+	private double mean;
+	private double rms;
+
+	/**
+	 * the numbers of samples in the bins of the histogram, null if
+	 * the histogram was not calculated
+	 */
+	private int[] histogram;
+	private double histogramStart;
+	private double histogramBinWidth;
+
+	/**
+	 * the checksums of the sample values (written as big-endian doubles)
+	 */
+	private SignalChecksum[] checksums = new SignalChecksum[0];
+
+	public int getSampleCount() {
+		return sampleCount;
+	}
+
+	public void setSampleCount(int sampleCount) {
+		this.sampleCount = sampleCount;
+	}
+
+	public int getFiniteSampleCount() {
+		return finiteSampleCount;
+	}
+
+	public void setFiniteSampleCount(int finiteSampleCount) {
+		this.finiteSampleCount = finiteSampleCount;
+	}
+
+	public double getMinValue() {
+		return minValue;
+	}
+
+	public void setMinValue(double minValue) {
+		this.minValue = minValue;
+	}
+
+	/**
+	 * Returns the index of the first sample with the minimal value.
+	 * @return the index of the sample or -1 if there are no finite samples
+	 */
+	public int getMinPosition() {
+		return minPosition;
+	}
+
+	public void setMinPosition(int minPosition) {
+		this.minPosition = minPosition;
+	}
+
+	public double getMaxValue() {
+		return maxValue;
+	}
+
+	public void setMaxValue(double maxValue) {
+		this.maxValue = maxValue;
+	}
+
+	/**
+	 * Returns the index of the first sample with the maximal value.
+	 * @return the index of the sample or -1 if there are no finite samples
+	 */
+	public int getMaxPosition() {
+		return maxPosition;
+	}
+
+	public void setMaxPosition(int maxPosition) {
+		this.maxPosition = maxPosition;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public void setMean(double mean) {
+		this.mean = mean;
+	}
+
+	public double getRms() {
+		return rms;
+	}
+
+	public void setRms(double rms) {
+		this.rms = rms;
+	}
+
+	public int[] getHistogram() {
+		return histogram;
+	}
+
+	public void setHistogram(int[] histogram) {
+		this.histogram = histogram;
+	}
+
+	/**
+	 * Returns the value at which the first bin of the histogram begins.
+	 * @return the beginning of the first bin
+	 */
+	public double getHistogramStart() {
+		return histogramStart;
+	}
+
+	public void setHistogramStart(double histogramStart) {
+		this.histogramStart = histogramStart;
+	}
+
+	public double getHistogramBinWidth() {
+		return histogramBinWidth;
+	}
+
+	public void setHistogramBinWidth(double histogramBinWidth) {
+		this.histogramBinWidth = histogramBinWidth;
+	}
+
+	public SignalChecksum[] getChecksums() {
+		return checksums;
+	}
+
+	public void setChecksums(SignalChecksum[] checksums) {
+		this.checksums = checksums;
+	}
+
+	/**
+	 * Returns the checksum of the given type.
+	 * @param method the type of the checksum, for example 'crc32'
+	 * @return the checksum or null if it was not calculated
+	 */
+	public SignalChecksum getChecksum(String method) {
+		for (SignalChecksum checksum : checksums) {
+			if (checksum.getMethod().equalsIgnoreCase(method)) {
+				return checksum;
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,450 @@
+package org.signalml.domain.signal;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import org.signalml.domain.signal.samplesource.MultichannelSampleSource;
+import org.signalml.util.Util;
+
+/**
+ * Calculates the {@link SignalStatistics statistics} of all channels of
+ * a {@link MultichannelSampleSource} in one pass over the signal.
+ * <p>
+ * The samples are read in blocks of time, one block for all channels
+ * at once, on the calling thread (the sample sources are not thread safe).
+ * The channels are divided into groups and the blocks of the groups are
+ * processed on a number of threads while the next block is read.
+ * <p>
+ * The histogram is built in the same pass: its range is taken from the
+ * first block and doubled whenever a later sample does not fit in it,
+ * by merging pairs of neighbouring bins.
+ */
+public class SignalStatisticsCalculator {
+
+	/**
+	 * The number of samples of each channel read at once.
+	 */
+	private static final int BLOCK_SIZE = 4096;
+
+	public static final int DEFAULT_HISTOGRAM_BIN_COUNT = 256;
+
+	/**
+	 * the types of the checksums of the samples which are calculated
+	 * ('crc32', 'adler32' or 'md5')
+	 */
+	private String[] checksumTypes = new String[0];
+
+	/**
+	 * the number of bins of the histograms, 0 if no histograms are calculated
+	 */
+	private int histogramBinCount = DEFAULT_HISTOGRAM_BIN_COUNT;
+
+	/**
+	 * the number of threads processing the groups of channels
+	 */
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+
+	public String[] getChecksumTypes() {
+		return checksumTypes;
+	}
+
+	/**
+	 * Sets the types of the checksums of the samples which are calculated.
+	 * @param checksumTypes the types of the checksums: 'crc32', 'adler32'
+	 * or 'md5'
+	 * @throws IllegalArgumentException if a type is not supported
+	 */
+	public void setChecksumTypes(String[] checksumTypes) {
+		for (String type : checksumTypes) {
+			if (!type.equalsIgnoreCase("crc32") && !type.equalsIgnoreCase("adler32") && !type.equalsIgnoreCase("md5")) {
+				throw new IllegalArgumentException("Unsupported checksum type [" + type + "]");
+			}
+		}
+		this.checksumTypes = checksumTypes;
+	}
+
+	public int getHistogramBinCount() {
+		return histogramBinCount;
+	}
+
+	/**
+	 * Sets the number of bins of the histograms.
+	 * @param histogramBinCount an even number of bins or 0 if no histograms
+	 * should be calculated
+	 */
+	public void setHistogramBinCount(int histogramBinCount) {
+		if (histogramBinCount < 0 || histogramBinCount % 2 != 0) {
+			throw new IllegalArgumentException("Bad histogram bin count [" + histogramBinCount + "]");
+		}
+		this.histogramBinCount = histogramBinCount;
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	public void setThreadCount(int threadCount) {
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Calculates the statistics of all channels of the signal.
+	 * Informs the <code>monitor</code> about the number of already
+	 * processed samples and aborts operation if monitor says to do so.
+	 * @param sampleSource the {@link MultichannelSampleSource source}
+	 * of samples
+	 * @param monitor the {@link SignalWriterMonitor monitor} for this
+	 * operation, may be null
+	 * @return the statistics of the channels or null if the operation
+	 * was aborted
+	 */
+	public SignalStatistics[] calculate(MultichannelSampleSource sampleSource, SignalWriterMonitor monitor) {
+
+		int channelCount = sampleSource.getChannelCount();
+		int[] sampleCounts = new int[channelCount];
+		int maxSampleCount = 0;
+		ChannelAccumulator[] accumulators = new ChannelAccumulator[channelCount];
+		for (int i = 0; i < channelCount; i++) {
+			sampleCounts[i] = sampleSource.getSampleCount(i);
+			maxSampleCount = Math.max(maxSampleCount, sampleCounts[i]);
+			accumulators[i] = new ChannelAccumulator(sampleCounts[i]);
+		}
+
+		int groupCount = Math.max(1, Math.min(threadCount, channelCount));
+		ExecutorService executor = Executors.newFixedThreadPool(groupCount);
+		LinkedList<Future<?>> pendingGroups = new LinkedList<Future<?>>();
+
+		// the block being processed and the block being read
+		double[][][] blocks = new double[2][channelCount][BLOCK_SIZE];
+
+		try {
+			int current = 0;
+			if (maxSampleCount > 0) {
+				readBlock(sampleSource, sampleCounts, 0, blocks[current]);
+			}
+
+			for (int start = 0; start < maxSampleCount; start += BLOCK_SIZE) {
+
+				for (int group = 0; group < groupCount; group++) {
+					int firstChannel = group * channelCount / groupCount;
+					int lastChannel = (group + 1) * channelCount / groupCount;
+					pendingGroups.add(executor.submit(new GroupTask(accumulators, firstChannel, lastChannel, blocks[current], start)));
+				}
+
+				if (start + BLOCK_SIZE < maxSampleCount) {
+					readBlock(sampleSource, sampleCounts, start + BLOCK_SIZE, blocks[1 - current]);
+				}
+
+				while (!pendingGroups.isEmpty()) {
+					waitFor(pendingGroups.removeFirst());
+				}
+
+				if (monitor != null) {
+					if (monitor.isRequestingAbort()) {
+						return null;
+					}
+					monitor.setProcessedSampleCount(Math.min(maxSampleCount, start + BLOCK_SIZE));
+				}
+
+				current = 1 - current;
+
+			}
+		} finally {
+			for (Future<?> future : pendingGroups) {
+				future.cancel(true);
+			}
+			executor.shutdownNow();
+		}
+
+		SignalStatistics[] statistics = new SignalStatistics[channelCount];
+		for (int i = 0; i < channelCount; i++) {
+			statistics[i] = accumulators[i].getStatistics();
+		}
+		return statistics;
+
+	}
+
+	private void readBlock(MultichannelSampleSource sampleSource, int[] sampleCounts, int start, double[][] block) {
+		for (int i = 0; i < sampleCounts.length; i++) {
+			int length = Math.min(BLOCK_SIZE, sampleCounts[i] - start);
+			if (length > 0) {
+				sampleSource.getSamples(i, block[i], start, length, 0);
+			}
+		}
+	}
+
+	private void waitFor(Future<?> future) {
+		try {
+			future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while calculating statistics", ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			if (ex.getCause() instanceof Error) {
+				throw (Error) ex.getCause();
+			}
+			throw new RuntimeException(ex.getCause());
+		}
+	}
+
+	/**
+	 * Processes one block of a group of channels.
+	 */
+	private static class GroupTask implements Callable<Object> {
+
+		private ChannelAccumulator[] accumulators;
+		private int firstChannel;
+		private int lastChannel;
+		private double[][] block;
+		private int start;
+
+		public GroupTask(ChannelAccumulator[] accumulators, int firstChannel, int lastChannel, double[][] block, int start) {
+			this.accumulators = accumulators;
+			this.firstChannel = firstChannel;
+			this.lastChannel = lastChannel;
+			this.block = block;
+			this.start = start;
+		}
+
+		@Override
+		public Object call() {
+			for (int i = firstChannel; i < lastChannel; i++) {
+				accumulators[i].add(block[i], start);
+			}
+			return null;
+		}
+
+	}
+
+	/**
+	 * Accumulates the statistics of one channel. Each accumulator is used
+	 * by one thread at a time.
+	 */
+	private class ChannelAccumulator {
+
+		private int sampleCount;
+		private int finiteSampleCount;
+
+		private double minValue = Double.POSITIVE_INFINITY;
+		private int minPosition = -1;
+		private double maxValue = Double.NEGATIVE_INFINITY;
+		private int maxPosition = -1;
+
+		private double sum;
+		private double sumOfSquares;
+
+		private Checksum[] checksums;
+		private MessageDigest[] digests;
+		private byte[] bytes;
+
+		private Histogram histogram;
+
+		public ChannelAccumulator(int sampleCount) {
+			this.sampleCount = sampleCount;
+			checksums = new Checksum[checksumTypes.length];
+			digests = new MessageDigest[checksumTypes.length];
+			for (int i = 0; i < checksumTypes.length; i++) {
+				if (checksumTypes[i].equalsIgnoreCase("crc32")) {
+					checksums[i] = new CRC32();
+				} else if (checksumTypes[i].equalsIgnoreCase("adler32")) {
+					checksums[i] = new Adler32();
+				} else {
+					try {
+						digests[i] = MessageDigest.getInstance("MD5");
+					} catch (NoSuchAlgorithmException ex) {
+						throw new RuntimeException(ex);
+					}
+				}
+			}
+			if (checksumTypes.length > 0) {
+				bytes = new byte[8 * BLOCK_SIZE];
+			}
+			if (histogramBinCount > 0) {
+				histogram = new Histogram(histogramBinCount);
+			}
+		}
+
+		public void add(double[] samples, int start) {
+			int length = Math.min(BLOCK_SIZE, sampleCount - start);
+			if (length <= 0) {
+				return;
+			}
+
+			double value;
+			for (int i = 0; i < length; i++) {
+				value = samples[i];
+				if (Double.isNaN(value) || Double.isInfinite(value)) {
+					continue;
+				}
+				finiteSampleCount++;
+				sum += value;
+				sumOfSquares += value * value;
+				if (value < minValue) {
+					minValue = value;
+					minPosition = start + i;
+				}
+				if (value > maxValue) {
+					maxValue = value;
+					maxPosition = start + i;
+				}
+			}
+
+			if (bytes != null) {
+				ByteBuffer.wrap(bytes).asDoubleBuffer().put(samples, 0, length);
+				for (int i = 0; i < checksumTypes.length; i++) {
+					if (checksums[i] != null) {
+						checksums[i].update(bytes, 0, 8 * length);
+					} else {
+						digests[i].update(bytes, 0, 8 * length);
+					}
+				}
+			}
+
+			if (histogram != null) {
+				histogram.add(samples, length);
+			}
+		}
+
+		public SignalStatistics getStatistics() {
+			SignalStatistics statistics = new SignalStatistics();
+			statistics.setSampleCount(sampleCount);
+			statistics.setFiniteSampleCount(finiteSampleCount);
+			if (finiteSampleCount > 0) {
+				statistics.setMinValue(minValue);
+				statistics.setMinPosition(minPosition);
+				statistics.setMaxValue(maxValue);
+				statistics.setMaxPosition(maxPosition);
+				statistics.setMean(sum / finiteSampleCount);
+				statistics.setRms(Math.sqrt(sumOfSquares / finiteSampleCount));
+			}
+
+			if (histogram != null) {
+				statistics.setHistogram(histogram.bins);
+				statistics.setHistogramStart(histogram.start);
+				statistics.setHistogramBinWidth(histogram.width);
+			}
+
+			SignalChecksum[] results = new SignalChecksum[checksumTypes.length];
+			for (int i = 0; i < checksumTypes.length; i++) {
+				byte[] value;
+				if (checksums[i] != null) {
+					long checksum = checksums[i].getValue();
+					value = new byte[] {
+						(byte) (checksum >> 24), (byte) (checksum >> 16), (byte) (checksum >> 8), (byte) checksum
+					};
+				} else {
+					value = digests[i].digest();
+				}
+				results[i] = new SignalChecksum(checksumTypes[i], 0, sampleCount, Util.toHexString(value));
+			}
+			statistics.setChecksums(results);
+
+			return statistics;
+		}
+
+	}
+
+	/**
+	 * A histogram with a fixed (even) number of bins, whose range is
+	 * doubled when needed.
+	 */
+	private static class Histogram {
+
+		private int[] bins;
+		private double start;
+		private double width;
+		private boolean initialized;
+
+		public Histogram(int binCount) {
+			bins = new int[binCount];
+		}
+
+		public void add(double[] samples, int length) {
+			if (!initialized && !initialize(samples, length)) {
+				return;
+			}
+			int binCount = bins.length;
+			double value;
+			for (int i = 0; i < length; i++) {
+				value = samples[i];
+				if (Double.isNaN(value) || Double.isInfinite(value)) {
+					continue;
+				}
+				while (value < start) {
+					growDownwards();
+				}
+				while (value >= start + binCount * width) {
+					growUpwards();
+				}
+				int bin = (int) ((value - start) / width);
+				bins[Math.min(bin, binCount - 1)]++;
+			}
+		}
+
+		/**
+		 * Sets the range of this histogram to the range of the finite
+		 * values in the given samples.
+		 * @return false if there are no finite values
+		 */
+		private boolean initialize(double[] samples, int length) {
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < length; i++) {
+				if (!Double.isNaN(samples[i]) && !Double.isInfinite(samples[i])) {
+					min = Math.min(min, samples[i]);
+					max = Math.max(max, samples[i]);
+				}
+			}
+			if (min > max) {
+				return false;
+			}
+			start = min;
+			// the maximum falls into the last bin
+			width = (max - min) / (bins.length - 1);
+			if (!(width > 0) || Double.isInfinite(width)) {
+				width = Math.max(Math.abs(min), 1.0) / (1 << 20);
+			}
+			initialized = true;
+			return true;
+		}
+
+		private void growUpwards() {
+			int half = bins.length / 2;
+			for (int i = 0; i < half; i++) {
+				bins[i] = bins[2 * i] + bins[2 * i + 1];
+			}
+			for (int i = half; i < bins.length; i++) {
+				bins[i] = 0;
+			}
+			width *= 2;
+		}
+
+		private void growDownwards() {
+			int half = bins.length / 2;
+			for (int i = bins.length - 1; i >= half; i--) {
+				int j = 2 * (i - half);
+				bins[i] = bins[j] + bins[j + 1];
+			}
+			for (int i = 0; i < half; i++) {
+				bins[i] = 0;
+			}
+			start -= bins.length * width;
+			width *= 2;
+		}
+
+	}
+
+}
@@ -0,0 +1,38 @@
+package org.signalml.domain.signal.export.ascii;
+
+import static org.signalml.app.util.i18n.SvarogI18n._;
+
+/**
+ * The layout of the samples in the file written by the
+ * {@link ASCIISignalWriter}.
+ */
+public enum ASCIILayout {
+
+	/**
+	 * Each channel is written in a separate row, the samples are
+	 * followed by the separator.
+	 */
+	CHANNELS_IN_ROWS(_("channels in rows")),
+
+	/**
+	 * The first row contains the labels of the channels, each following
+	 * row contains one sample of all channels (CSV).
+	 */
+	SAMPLES_IN_ROWS(_("samples in rows (CSV)"));
+
+	/**
+	 * Value which is displayed in GUI when
+	 * the user needs to choose one of the layouts.
+	 */
+	private String displayValue;
+
+	private ASCIILayout(String displayValue) {
+		this.displayValue = displayValue;
+	}
+
+	@Override
+	public String toString() {
+		return displayValue;
+	}
+
+}
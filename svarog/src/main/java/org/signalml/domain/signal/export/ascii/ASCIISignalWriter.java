@@ -1,38 +1,67 @@
 package org.signalml.domain.signal.export.ascii;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.text.DecimalFormat;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import org.signalml.app.model.signal.SignalExportDescriptor;
 import org.signalml.app.view.signal.SampleSourceUtils;
 import org.signalml.domain.signal.SignalWriterMonitor;
 import org.signalml.domain.signal.export.ISignalWriter;
 import org.signalml.domain.signal.samplesource.MultichannelSampleSource;
+import org.signalml.util.DoubleFormatter;
 
 /**
  * Exports signal to ASCII format.
  *
+ * The samples are read in blocks, the blocks are formatted by
+ * the {@link DoubleFormatter} on a number of threads and written
+ * to the file in order. The {@link ASCIILayout layout} of the
+ * file is taken from the {@link SignalExportDescriptor}.
+ *
  * @author Paweł Kordowski, Piotr Szachewicz
  */
 public class ASCIISignalWriter implements ISignalWriter {
 
 	/**
-	 * Maximum size of buffer used to write the signal to file.
+	 * Maximum number of sample values formatted in one block.
+	 */
+	private static final int BLOCK_SIZE = 65536;
+
+	/**
+	 * Size of buffer used to write the formatted blocks to file.
 	 */
-	private static final int BUFFER_SIZE = 8192;
+	private static final int OUTPUT_BUFFER_SIZE = 65536;
 
 	/**
-	 * Formatter used to format sample values.
+	 * Number of threads formatting the sample values.
 	 */
-	private DecimalFormat formatter = new DecimalFormat("#####0.0##############");
+	private int threadCount = Runtime.getRuntime().availableProcessors();
 
 	/**
 	 * Number of channels that will be written to the file.
 	 */
 	private int channelCount;
 
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	public void setThreadCount(int threadCount) {
+		this.threadCount = threadCount;
+	}
+
 	/**
 	 * Writes the signal to a file in ASCII format.
 	 *
@@ -44,54 +73,293 @@ public class ASCIISignalWriter implements ISignalWriter {
 	@Override
 	public void writeSignal(File outputFile, MultichannelSampleSource sampleSource, SignalExportDescriptor descriptor, SignalWriterMonitor monitor) throws IOException {
 
-		FileWriter fileWriter = new FileWriter(outputFile);
 		this.channelCount = sampleSource.getChannelCount();
+		String separator = descriptor.getSeparator();
+		if (separator == null) {
+			separator = "";
+		}
+
+		OutputStream output = new BufferedOutputStream(new FileOutputStream(outputFile), OUTPUT_BUFFER_SIZE);
+		FormattingPipeline pipeline = new FormattingPipeline(output, separator.getBytes());
+		try {
+			boolean completed;
+			if (descriptor.getAsciiLayout() == ASCIILayout.SAMPLES_IN_ROWS) {
+				completed = writeSamplesInRows(pipeline, sampleSource, monitor);
+			} else {
+				completed = writeChannelsInRows(pipeline, sampleSource, monitor);
+			}
+			if (completed) {
+				pipeline.finish();
+			}
+		} finally {
+			pipeline.close();
+		}
+	}
+
+	/**
+	 * Exports the signal with each channel in a separate row.
+	 * @return false if writing data was cancelled, true if continuing is ok.
+	 * @throws IOException
+	 */
+	protected boolean writeChannelsInRows(FormattingPipeline pipeline, MultichannelSampleSource sampleSource,
+										  SignalWriterMonitor monitor) throws IOException {
+
+		int sampleCount = SampleSourceUtils.getMinSampleCount(sampleSource);
+		int numberOfSamplesToGet = 0;
 
 		for (int channelNumber = 0; channelNumber < channelCount; channelNumber++) {
-			if(!writeSingleChannel(fileWriter, sampleSource, descriptor, monitor, channelNumber))
-				return;
+			for (int sampleNumber = 0; sampleNumber < sampleCount; sampleNumber += numberOfSamplesToGet) {
+				numberOfSamplesToGet = Math.min(sampleCount - sampleNumber, BLOCK_SIZE);
+
+				double[][] data = pipeline.getSampleBuffer(1, BLOCK_SIZE);
+				sampleSource.getSamples(channelNumber, data[0], sampleNumber, numberOfSamplesToGet, 0);
+
+				boolean rowEnds = (sampleNumber + numberOfSamplesToGet == sampleCount && channelNumber < channelCount - 1);
+				pipeline.submit(data, numberOfSamplesToGet, false, rowEnds);
 
-			if (channelNumber < sampleSource.getChannelCount()-1)
-				fileWriter.write("\n");
+				if (monitor != null && monitor.isRequestingAbort()) {
+					return false;
+				}
+
+				if (monitor != null) {
+					double processedSampleCount = channelNumber * sampleCount + sampleNumber + numberOfSamplesToGet;
+					processedSampleCount = Math.ceil(processedSampleCount / channelCount);
+					monitor.setProcessedSampleCount((int) processedSampleCount);
+				}
+			}
 		}
-		fileWriter.close();
+		return true;
 	}
 
 	/**
-	 * Exports signal from a single channel to file.
-	 * @param channelNumber number of channel to be exported.
+	 * Exports the signal as a header row with the labels of the channels
+	 * followed by a row for each sample.
 	 * @return false if writing data was cancelled, true if continuing is ok.
 	 * @throws IOException
 	 */
-	protected boolean writeSingleChannel(
-			FileWriter output, MultichannelSampleSource sampleSource,
-			SignalExportDescriptor descriptor, SignalWriterMonitor monitor,
-			int channelNumber) throws IOException {
+	protected boolean writeSamplesInRows(FormattingPipeline pipeline, MultichannelSampleSource sampleSource,
+										 SignalWriterMonitor monitor) throws IOException {
+
+		StringBuilder header = new StringBuilder();
+		for (int channelNumber = 0; channelNumber < channelCount; channelNumber++) {
+			if (channelNumber > 0) {
+				header.append(new String(pipeline.separator));
+			}
+			header.append(sampleSource.getLabel(channelNumber));
+		}
+		header.append('\n');
+		pipeline.write(header.toString().getBytes());
 
 		int sampleCount = SampleSourceUtils.getMinSampleCount(sampleSource);
+		int blockLength = Math.max(1, BLOCK_SIZE / Math.max(1, channelCount));
 		int numberOfSamplesToGet = 0;
 
 		for (int sampleNumber = 0; sampleNumber < sampleCount; sampleNumber += numberOfSamplesToGet) {
-			numberOfSamplesToGet = Math.min(sampleCount - sampleNumber, BUFFER_SIZE);
+			numberOfSamplesToGet = Math.min(sampleCount - sampleNumber, blockLength);
 
-			double[] data = new double[numberOfSamplesToGet];
-			sampleSource.getSamples(channelNumber, data, sampleNumber, numberOfSamplesToGet, 0);
-
-			for (double sample: data) {
-				output.write(formatter.format(sample) + descriptor.getSeparator());
+			double[][] data = pipeline.getSampleBuffer(channelCount, blockLength);
+			for (int channelNumber = 0; channelNumber < channelCount; channelNumber++) {
+				sampleSource.getSamples(channelNumber, data[channelNumber], sampleNumber, numberOfSamplesToGet, 0);
 			}
+			pipeline.submit(data, numberOfSamplesToGet, true, false);
 
 			if (monitor != null && monitor.isRequestingAbort()) {
 				return false;
 			}
 
 			if (monitor != null) {
-				double processedSampleCount = channelNumber * sampleCount + sampleNumber + numberOfSamplesToGet;
-				processedSampleCount = Math.ceil(processedSampleCount / channelCount);
-				monitor.setProcessedSampleCount((int) processedSampleCount);
+				monitor.setProcessedSampleCount(sampleNumber + numberOfSamplesToGet);
 			}
 		}
 		return true;
+	}
+
+	/**
+	 * Formats the blocks of samples on a pool of threads and writes
+	 * the formatted blocks to the output in the order in which they
+	 * were submitted. At most twice as many blocks as there are threads
+	 * wait for formatting or writing and their buffers are reused.
+	 */
+	protected class FormattingPipeline {
+
+		private OutputStream output;
+		private byte[] separator;
+
+		private ExecutorService executor;
+		private int maxPendingBlocks;
+
+		/**
+		 * The formatted blocks in the order in which they will be written.
+		 */
+		private LinkedList<Future<TextBlock>> pendingBlocks = new LinkedList<Future<TextBlock>>();
+
+		private BlockingQueue<double[][]> freeSampleBuffers = new LinkedBlockingQueue<double[][]>();
+		private BlockingQueue<byte[]> freeTextBuffers = new LinkedBlockingQueue<byte[]>();
+
+		public FormattingPipeline(OutputStream output, byte[] separator) {
+			this.output = output;
+			this.separator = separator;
+			int count = Math.max(1, threadCount);
+			this.executor = Executors.newFixedThreadPool(count);
+			this.maxPendingBlocks = 2 * count;
+		}
+
+		/**
+		 * Returns an array for the samples of a block, which is given
+		 * back to this pipeline with the block.
+		 */
+		public double[][] getSampleBuffer(int rows, int length) {
+			double[][] buffer = freeSampleBuffers.poll();
+			if (buffer == null || buffer.length != rows || buffer[0].length != length) {
+				buffer = new double[rows][length];
+			}
+			return buffer;
+		}
+
+		/**
+		 * Submits a block of samples for formatting.
+		 * @param samples the samples, a row for each channel
+		 * @param length the number of samples of each channel
+		 * @param samplesInRows true if the samples of all channels at each
+		 * time should be written in one row, false if the samples of the
+		 * (only) channel should be written one after another
+		 * @param rowEnds if a new line should be written after the block
+		 */
+		public void submit(double[][] samples, int length, boolean samplesInRows, boolean rowEnds) throws IOException {
+			while (pendingBlocks.size() >= maxPendingBlocks) {
+				writeFirstPendingBlock();
+			}
+			pendingBlocks.add(executor.submit(new FormattingTask(samples, length, samplesInRows, rowEnds)));
+		}
+
+		/**
+		 * Writes the given bytes after all submitted blocks.
+		 */
+		public void write(byte[] bytes) throws IOException {
+			while (!pendingBlocks.isEmpty()) {
+				writeFirstPendingBlock();
+			}
+			output.write(bytes);
+		}
+
+		/**
+		 * Writes all submitted blocks.
+		 */
+		public void finish() throws IOException {
+			while (!pendingBlocks.isEmpty()) {
+				writeFirstPendingBlock();
+			}
+			output.flush();
+		}
+
+		/**
+		 * Stops formatting and closes the output.
+		 */
+		public void close() throws IOException {
+			for (Future<TextBlock> future : pendingBlocks) {
+				future.cancel(true);
+			}
+			pendingBlocks.clear();
+			executor.shutdownNow();
+			output.close();
+		}
+
+		private void writeFirstPendingBlock() throws IOException {
+			TextBlock block;
+			try {
+				block = pendingBlocks.removeFirst().get();
+			} catch (InterruptedException ex) {
+				throw new InterruptedIOException("Interrupted while formatting samples");
+			} catch (ExecutionException ex) {
+				if (ex.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) ex.getCause();
+				}
+				throw new IOException(ex.getCause());
+			}
+			output.write(block.text, 0, block.length);
+			freeTextBuffers.add(block.text);
+			freeSampleBuffers.add(block.samples);
+		}
+
+		/**
+		 * Formats one block of samples.
+		 */
+		private class FormattingTask implements Callable<TextBlock> {
+
+			private double[][] samples;
+			private int length;
+			private boolean samplesInRows;
+			private boolean rowEnds;
+
+			public FormattingTask(double[][] samples, int length, boolean samplesInRows, boolean rowEnds) {
+				this.samples = samples;
+				this.length = length;
+				this.samplesInRows = samplesInRows;
+				this.rowEnds = rowEnds;
+			}
+
+			@Override
+			public TextBlock call() {
+				int capacity = samples.length * length * (DoubleFormatter.MAX_LENGTH + separator.length) + length + 1;
+				byte[] text = freeTextBuffers.poll();
+				if (text == null || text.length < capacity) {
+					text = new byte[capacity];
+				}
+
+				int position = 0;
+				if (samplesInRows) {
+					for (int j = 0; j < length; j++) {
+						for (int i = 0; i < samples.length; i++) {
+							if (i > 0) {
+								position = writeSeparator(text, position);
+							}
+							position = DoubleFormatter.format(samples[i][j], text, position);
+						}
+						text[position++] = '\n';
+					}
+				} else {
+					double[] row = samples[0];
+					for (int j = 0; j < length; j++) {
+						position = DoubleFormatter.format(row[j], text, position);
+						position = writeSeparator(text, position);
+					}
+					if (rowEnds) {
+						text[position++] = '\n';
+					}
+				}
+
+				return new TextBlock(text, position, samples);
+			}
+
+			private int writeSeparator(byte[] text, int position) {
+				for (int k = 0; k < separator.length; k++) {
+					text[position++] = separator[k];
+				}
+				return position;
+			}
+
+		}
+
+	}
+
+	/**
+	 * A formatted block of samples.
+	 */
+	private static class TextBlock {
+
+		private byte[] text;
+		private int length;
+
+		/**
+		 * The samples which were formatted, kept to reuse the array.
+		 */
+		private double[][] samples;
+
+		public TextBlock(byte[] text, int length, double[][] samples) {
+			this.text = text;
+			this.length = length;
+			this.samples = samples;
+		}
 
 	}
 
@@ -8,7 +8,8 @@
 /**
  * This class can provide parts of the signal data to the {@link MatlabFileWriter}
  * in order to make the process lazy - i.e. not the whole sample array at once,
- * but part after part.
+ * but part after part. Each part contains the samples of all channels
+ * from one block of time.
  *
  * @author Piotr Szachewicz
  */
@@ -35,15 +36,18 @@ public void setSignalWriterMonitor(SignalWriterMonitor signalWriterMonitor) {
 	@Override
 	public double[][] getDataChunk(int i, int length) {
 		double[][] target = new double[sampleSource.getChannelCount()][length];
+		getDataChunk(target, i, length);
+		return target;
+	}
 
+	@Override
+	public void getDataChunk(double[][] target, int i, int length) {
 		for (int channel = 0; channel < sampleSource.getChannelCount(); channel++) {
 			sampleSource.getSamples(channel, target[channel], i, length, 0);
 		}
 
 		if (signalWriterMonitor != null)
 			signalWriterMonitor.setProcessedSampleCount(i + length);
-
-		return target;
 	}
 
 	@Override
@@ -26,6 +26,7 @@
 import org.signalml.domain.signal.filter.iir.OnlineIIRSinglechannelSampleFilter;
 import org.signalml.domain.signal.samplesource.ChangeableMultichannelSampleSource;
 import org.signalml.domain.signal.samplesource.ChannelSelectorSampleSource;
+import org.signalml.domain.signal.samplesource.MultichannelBlockSampleSource;
 import org.signalml.domain.signal.samplesource.MultichannelSampleSource;
 import org.signalml.domain.signal.samplesource.OriginalMultichannelSampleSource;
 import org.signalml.domain.signal.samplesource.SampleSource;
@@ -40,7 +41,7 @@
  *
  * @author Michal Dobaczewski &copy; 2007-2008 CC Otwarte Systemy Komputerowe Sp. z o.o.
  */
-public class MultichannelSampleFilter extends MultichannelSampleProcessor {
+public class MultichannelSampleFilter extends MultichannelSampleProcessor implements MultichannelBlockSampleSource {
 
 	protected OriginalMultichannelSampleSource originalSource;
 
@@ -189,6 +190,63 @@ public synchronized void getSamples(int channel, double[] target, int signalOffs
 
 	}
 
+	/**
+	 * Returns the given number of samples for the given channels starting
+	 * from a given position in time. The channels which are not filtered
+	 * are read from the source at once (in one call if it is a
+	 * {@link MultichannelBlockSampleSource}), the filtered channels are
+	 * computed by their chains one by one.
+	 * @param channels the numbers of channels
+	 * @param targets the arrays to which results will be written, one
+	 * array for every channel
+	 * @param signalOffset the position (in time) in the signal starting
+	 * from which samples will be returned
+	 * @param count the number of samples to be returned
+	 * @param arrayOffset the offset in <code>targets</code> arrays starting
+	 * from which samples will be written
+	 */
+	@Override
+	public synchronized void getSamples(int[] channels, double[][] targets, int signalOffset, int count, int arrayOffset) {
+
+		try {
+			if (originalSource instanceof ChangeableMultichannelSampleSource)
+				updateTimeDomainSampleFilterEnginesCache();
+			semaphore.acquire();
+
+			int unfilteredCount = 0;
+			for (int channel : channels) {
+				if (chains.get(channel).isEmpty()) {
+					unfilteredCount++;
+				}
+			}
+
+			int[] unfilteredChannels = new int[unfilteredCount];
+			double[][] unfilteredTargets = new double[unfilteredCount][];
+			int e = 0;
+			for (int i=0; i<channels.length; i++) {
+				LinkedList<SinglechannelSampleFilterEngine> chain = chains.get(channels[i]);
+				if (chain.isEmpty()) {
+					unfilteredChannels[e] = channels[i];
+					unfilteredTargets[e] = targets[i];
+					e++;
+				} else {
+					chain.getLast().getSamples(targets[i], signalOffset, count, arrayOffset);
+				}
+			}
+
+			if (unfilteredCount > 0) {
+				getSourceSamples(unfilteredChannels, unfilteredTargets, signalOffset, count, arrayOffset);
+			}
+		}
+		catch (InterruptedException ex) {
+			java.util.logging.Logger.getLogger(MultichannelSampleFilter.class.getName()).log(Level.SEVERE, null, ex);
+		}
+		finally {
+			semaphore.release();
+		}
+
+	}
+
 	/**
 	 * Adds the filter {@link SinglechannelSampleFilterEngine engine} for all
 	 * channels.
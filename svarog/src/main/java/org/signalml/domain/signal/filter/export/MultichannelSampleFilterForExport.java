@@ -148,6 +148,17 @@ public void getSamples(int channel, double[] target, int signalOffset, int count
 		}
 	}
 
+	/**
+	 * Returns samples of many channels, channel by channel, so that the
+	 * filtered data is prepared as in {@link #getSamples(int, double[], int, int, int)}.
+	 */
+	@Override
+	public void getSamples(int[] channels, double[][] targets, int signalOffset, int count, int arrayOffset) {
+		for (int i=0; i<channels.length; i++) {
+			getSamples(channels[i], targets[i], signalOffset, count, arrayOffset);
+		}
+	}
+
 	@Override
 	public void setProcessedSampleCount(int sampleCount) {
 		float realSampleCount = (float)(source.getSampleCount(0) * filteringState + sampleCount);
@@ -1,6 +1,5 @@
 package org.signalml.domain.signal.filter.fft;
 
-import org.apache.commons.math.complex.Complex;
 import org.signalml.domain.montage.filter.FFTSampleFilter;
 import org.signalml.domain.montage.filter.SampleFilterDefinition;
 import org.signalml.domain.signal.filter.SinglechannelSampleFilterEngine;
@@ -25,32 +24,56 @@ public class FFTFilterEngineForExport extends SinglechannelSampleFilterEngine {
 	 * for reference.
 	 */
 	private double[] overlapBuffer;
+	/**
+	 * The number of valid samples in the {@link #overlapBuffer}.
+	 */
+	private int overlapLength;
+	/**
+	 * The transform used to filter the data, it caches the window weights.
+	 */
+	private FourierTransform fourierTransform;
+	/**
+	 * Buffer for the samples read from the source.
+	 */
+	private double[] samples;
+	/**
+	 * Buffer for the half spectrum of the samples.
+	 */
+	private double[] spectrum;
+	/**
+	 * Buffer for the filtered samples.
+	 */
+	private double[] filteredSignal;
 
 	public FFTFilterEngineForExport(SampleSource source, FFTSampleFilter filter) {
 		super(source);
 		this.fftSampleFilter = filter;
+		this.fourierTransform = new FourierTransform(fftSampleFilter.getWindowType(), fftSampleFilter.getWindowParameter());
 	}
 
 	@Override
 	public void getSamples(double[] target, int signalOffset, int count, int arrayOffset) {
 
-		double[] samples = new double[count];
+		if (samples == null || samples.length < count) {
+			samples = new double[count];
+		}
 		source.getSamples(samples, signalOffset, count, 0);
 
-		FourierTransform fourierTransform = new FourierTransform(fftSampleFilter.getWindowType(), fftSampleFilter.getWindowParameter());
-		Complex[] samplesFFT = fourierTransform.forwardFFT(samples);
-		FFTSinglechannelSampleFilter.multiplyFFTByFFTSampleFilter(samplesFFT, fftSampleFilter, source.getSamplingFrequency());
-		double[] filteredSignal = fourierTransform.inverseFFT(samplesFFT);
+		int size = FourierTransform.getPowerOfTwoSize(count);
+		spectrum = fourierTransform.forwardRealFFT(samples, count, spectrum);
+		FFTSinglechannelSampleFilter.multiplyFFTByFFTSampleFilter(spectrum, size, fftSampleFilter, source.getSamplingFrequency());
+		filteredSignal = fourierTransform.inverseRealFFT(spectrum, size, filteredSignal);
 
-		if (overlapBuffer != null) {
-			for (int i = 0; i < overlapBuffer.length; i++) {
-				filteredSignal[i] += overlapBuffer[i];
-			}
+		for (int i = 0; i < overlapLength; i++) {
+			filteredSignal[i] += overlapBuffer[i];
 		}
 		System.arraycopy(filteredSignal, 0, target, 0, count);
 
-		overlapBuffer = new double[filteredSignal.length - count];
-		System.arraycopy(filteredSignal, count, overlapBuffer, 0, overlapBuffer.length);
+		overlapLength = size - count;
+		if (overlapBuffer == null || overlapBuffer.length < overlapLength) {
+			overlapBuffer = new double[overlapLength];
+		}
+		System.arraycopy(filteredSignal, count, overlapBuffer, 0, overlapLength);
 	}
 
 	@Override
@@ -23,10 +23,18 @@
 public class FFTSinglechannelSampleFilter extends SinglechannelSampleFilterEngine {
 
 	private double[] cache = null;
+	/**
+	 * the buffer for the half spectrum of the {@link #cache}
+	 */
+	private double[] spectrum = null;
 	/**
 	 * the buffer of already filtered samples
 	 */
 	private double[] filtered = null;
+	/**
+	 * the transform used to filter samples, it caches the window weights
+	 */
+	private FourierTransform fourierTransform;
 	/**
 	 * the index (in the source) of the first sample in the buffer
 	 */
@@ -52,6 +60,7 @@ public class FFTSinglechannelSampleFilter extends SinglechannelSampleFilterEngin
 	public FFTSinglechannelSampleFilter(SampleSource source, FFTSampleFilter definition) {
 		super(source);
 		this.definition = new FFTSampleFilter(definition);
+		this.fourierTransform = new FourierTransform(definition.getWindowType(), definition.getWindowParameter());
 	}
 
 	@Override
@@ -129,7 +138,9 @@ public void getSamples(double[] target, int signalOffset, int count, int arrayOf
 				}
 
 				// transform
-				filtered = filterWithFFTFilter(cache, (FFTSampleFilter) definition, samplingFrequency);
+				spectrum = fourierTransform.forwardRealFFT(cache, countPow2, spectrum);
+				multiplyFFTByFFTSampleFilter(spectrum, countPow2, (FFTSampleFilter) definition, samplingFrequency);
+				filtered = fourierTransform.inverseRealFFT(spectrum, countPow2, filtered);
 
 				minFilteredSample = signalOffset - leftPadding;
 				minFilteredSampleAt = leftOffsetToCopy - leftPadding;
@@ -148,12 +159,91 @@ public void getSamples(double[] target, int signalOffset, int count, int arrayOf
 		}
 	}
 
+	/**
+	 * Filters the given signal with the FFT filter.
+	 * @param signal the signal to be filtered
+	 * @param filterDefinition the definition of the filter
+	 * @param samplingFrequency the sampling frequency of the signal
+	 * @return the filtered signal (padded with zeros to the power of two size)
+	 */
 	public static double[] filterWithFFTFilter(double[] signal, FFTSampleFilter filterDefinition, double samplingFrequency) {
 		FourierTransform fourierTransform = new FourierTransform(filterDefinition.getWindowType(), filterDefinition.getWindowParameter());
-		Complex[] transformed = fourierTransform.forwardFFT(signal);
-		multiplyFFTByFFTSampleFilter(transformed, filterDefinition, samplingFrequency);
+		int size = FourierTransform.getPowerOfTwoSize(signal.length);
+		double[] transformed = fourierTransform.forwardRealFFT(signal, signal.length, null);
+		multiplyFFTByFFTSampleFilter(transformed, size, filterDefinition, samplingFrequency);
+
+		return fourierTransform.inverseRealFFT(transformed, size, null);
+	}
 
-		return fourierTransform.inverseFFT(transformed);
+	/**
+	 * Multiplies the half spectrum of a real signal (as returned by
+	 * {@link FourierTransform#forwardRealFFT(double[], int, double[])})
+	 * by the coefficients of the filter.
+	 * This is the equivalent of {@link #multiplyFFTByFFTSampleFilter(Complex[], FFTSampleFilter, double)}
+	 * for the half spectrum: the mirrored elements don't need to be
+	 * multiplied because they are not stored.
+	 * @param spectrum the interleaved half spectrum
+	 * @param size the size of the transform (must be even)
+	 * @param definition the definition of the filter
+	 * @param samplingFrequency the sampling frequency of the signal
+	 */
+	public static void multiplyFFTByFFTSampleFilter(double[] spectrum, int size, FFTSampleFilter definition, double samplingFrequency) {
+		int segCount = (size/2) + 1;
+		double hzPerSegment = samplingFrequency / size;
+
+		Iterator<Range> it = definition.getRangeIterator();
+		int lowSeg;
+		int highSeg;
+		float lowFrequency;
+		float highFrequency;
+		boolean end = false;
+		double coefficient;
+
+		while (!end && it.hasNext()) {
+
+			Range range = it.next();
+			coefficient = range.getCoefficient();
+
+			// optymization
+			if (coefficient == 1) {
+				continue;
+			}
+
+			lowFrequency = range.getLowFrequency();
+			highFrequency = range.getHighFrequency();
+
+			lowSeg = (int) Math.floor(lowFrequency / hzPerSegment);
+			if (lowSeg >= segCount) {
+				break;
+			}
+
+			if (highFrequency <= lowFrequency) {
+				highSeg = segCount;
+			} else {
+				highSeg = (int) Math.floor(highFrequency / hzPerSegment);
+				if (highSeg > segCount) {
+					highSeg = segCount;
+					end = true;
+				}
+			}
+
+			if (lowSeg == 0) {
+				spectrum[0] *= coefficient;
+				spectrum[1] *= coefficient;
+				lowSeg++;
+			}
+
+			if (highSeg == segCount) {
+				spectrum[2 * (segCount - 1)] *= coefficient;
+				spectrum[2 * (segCount - 1) + 1] *= coefficient;
+				highSeg--;
+			}
+
+			for (int i = 2 * lowSeg; i < 2 * highSeg; i++) {
+				spectrum[i] *= coefficient;
+			}
+
+		}
 	}
 
 	public static void multiplyFFTByFFTSampleFilter(Complex[] transformed, FFTSampleFilter definition, double samplingFrequency) {
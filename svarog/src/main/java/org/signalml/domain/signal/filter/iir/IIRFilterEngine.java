@@ -1,5 +1,11 @@
 package org.signalml.domain.signal.filter.iir;
 
+import org.apache.log4j.Logger;
+import org.signalml.math.iirdesigner.BadFilterParametersException;
+import org.signalml.math.iirdesigner.FilterCoefficients;
+import org.signalml.math.iirdesigner.InitialStateCalculator;
+import org.signalml.math.iirdesigner.SecondOrderSections;
+
 /**
  * This class represents a single IIR filter implemented as
  * direct II transposed structure.
@@ -14,6 +20,8 @@
  */
 public class IIRFilterEngine {
 
+	protected static final Logger logger = Logger.getLogger(IIRFilterEngine.class);
+
 	/**
 	 * feedforward coefficients of the filter
 	 */
@@ -29,6 +37,12 @@ public class IIRFilterEngine {
 	 */
 	protected double[] initialConditions;
 
+	/**
+	 * The state of the filter delays after filtering a constant signal
+	 * equal to one, calculated when needed.
+	 */
+	private double[] steadyState;
+
 	/**
 	 * Creates this filter.
 	 *
@@ -69,12 +83,46 @@ protected void resetInitialConditionsToZero() {
 		}
 	}
 
+	/**
+	 * Creates an engine for the given filter. The filter is implemented as
+	 * a cascade of {@link SecondOrderSections second order sections} if its
+	 * coefficients can be converted to them, and as a single direct II
+	 * transposed structure otherwise.
+	 * @param coefficients the coefficients of the filter
+	 * @return the engine with the state of the filter delays set to zeros
+	 */
+	public static IIRFilterEngine createEngine(FilterCoefficients coefficients) {
+		try {
+			return new SOSFilterEngine(coefficients, SecondOrderSections.fromCoefficients(coefficients));
+		} catch (BadFilterParametersException ex) {
+			logger.debug("Filter cannot be converted to second order sections, using direct form: " + ex.getMessage());
+			return new IIRFilterEngine(coefficients.getBCoefficients(), coefficients.getACoefficients());
+		}
+	}
+
 	/**
 	 * Filters the given signal.
 	 * @param input the input signal to be filtered
 	 * @return the input signal after filtering
 	 */
 	public double[] filter(double[] input) {
+		double[] filtered = new double[input.length];
+		filter(input, 0, filtered, 0, input.length);
+		return filtered;
+	}
+
+	/**
+	 * Filters the given part of the signal and writes the result to the
+	 * given array. The input and output arrays may be the same array.
+	 * @param input the array with the input signal
+	 * @param inputOffset the position of the first sample to be filtered
+	 * in the input array
+	 * @param output the array to which the filtered samples are written
+	 * @param outputOffset the position in the output array at which
+	 * the first filtered sample is written
+	 * @param count the number of samples to be filtered
+	 */
+	public void filter(double[] input, int inputOffset, double[] output, int outputOffset, int count) {
 		/**
 		 * The filter function is implemented as a direct II transposed structure.
 		 * It is implemented as the lfilter function in the Scipy library.
@@ -82,34 +130,102 @@ public double[] filter(double[] input) {
 		 */
 
 		int bi, ai, zi;
-		double[] filtered = new double[input.length];
+		double x, y;
 
-		for (int n = 0; n < input.length; n++) {
+		for (int n = 0; n < count; n++) {
 			bi = 0;
 			ai = 0;
 			zi = 0;
+			x = input[inputOffset + n];
 
 			if (bCoefficients.length > 1) {
-				filtered[n] = initialConditions[zi] + bCoefficients[bi] / aCoefficients[0] * input[n];
+				y = initialConditions[zi] + bCoefficients[bi] / aCoefficients[0] * x;
 				bi++;
 				ai++;
 
 				for (; zi < bCoefficients.length - 2; zi++) {
 					initialConditions[zi] = initialConditions[zi + 1]
-											+ input[n] * bCoefficients[bi] / aCoefficients[0]
-											- filtered[n] * aCoefficients[ai] / aCoefficients[0];
+											+ x * bCoefficients[bi] / aCoefficients[0]
+											- y * aCoefficients[ai] / aCoefficients[0];
 
 					bi++;
 					ai++;
 				}
-				initialConditions[zi] = input[n] * bCoefficients[bi] / aCoefficients[0]
-										- filtered[n] * aCoefficients[ai] / aCoefficients[0];
+				initialConditions[zi] = x * bCoefficients[bi] / aCoefficients[0]
+										- y * aCoefficients[ai] / aCoefficients[0];
 			} else {
-				filtered[n] = input[n] * bCoefficients[bi /* 0 */] / aCoefficients[0];
+				y = x * bCoefficients[bi /* 0 */] / aCoefficients[0];
 			}
+			output[outputOffset + n] = y;
 		}
+	}
 
-		return filtered;
+	/**
+	 * Returns a copy of the state of the filter delays, which can be
+	 * given to {@link #setState(double[])} to continue filtering from
+	 * the same point later.
+	 * @return the state of the filter delays
+	 */
+	public double[] getState() {
+		return initialConditions.clone();
+	}
+
+	/**
+	 * Copies the state of the filter delays to the given array.
+	 * @param target the array of at least {@link #getStateLength()} elements
+	 * @param offset the position in the array at which the state is written
+	 */
+	public void getState(double[] target, int offset) {
+		System.arraycopy(initialConditions, 0, target, offset, initialConditions.length);
+	}
+
+	/**
+	 * Sets the state of the filter delays.
+	 * @param state the array containing the state
+	 * @param offset the position in the array at which the state begins
+	 */
+	public void setState(double[] state, int offset) {
+		System.arraycopy(state, offset, initialConditions, 0, initialConditions.length);
+	}
+
+	/**
+	 * Returns the number of values describing the state of the filter delays.
+	 * @return the length of the state
+	 */
+	public int getStateLength() {
+		return initialConditions.length;
+	}
+
+	/**
+	 * Sets the state of the filter delays to the state in which the filter
+	 * would be after filtering a constant signal for a very long time,
+	 * so that filtering a signal beginning with this value causes no
+	 * transient response.
+	 * @param value the value of the constant signal
+	 */
+	public void setSteadyState(double value) {
+		if (steadyState == null) {
+			try {
+				steadyState = new InitialStateCalculator(new FilterCoefficients(bCoefficients, aCoefficients)).getInitialState();
+			} catch (RuntimeException ex) {
+				// the filter has no steady state (a pole at z = 1)
+				steadyState = new double[initialConditions.length];
+			}
+		}
+		for (int i = 0; i < initialConditions.length; i++) {
+			initialConditions[i] = steadyState[i] * value;
+		}
+	}
+
+	/**
+	 * Returns the number of samples after which the response of the filter
+	 * to any state of its delays decays below the given fraction of its
+	 * initial value.
+	 * @param fraction the fraction, for example 1e-6
+	 * @return the number of samples or -1 if it is not known
+	 */
+	public int getDecayLength(double fraction) {
+		return -1;
 	}
 
 }
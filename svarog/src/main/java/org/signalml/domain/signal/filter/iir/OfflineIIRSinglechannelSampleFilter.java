@@ -1,16 +1,26 @@
 package org.signalml.domain.signal.filter.iir;
 
+import java.util.Arrays;
+
 import org.apache.log4j.Logger;
 import org.signalml.domain.montage.filter.TimeDomainSampleFilter;
 import org.signalml.domain.signal.samplesource.RoundBufferSampleSource;
 import org.signalml.domain.signal.samplesource.SampleSource;
-import org.signalml.math.ArrayOperations;
 import org.signalml.math.iirdesigner.FilterCoefficients;
-import org.signalml.math.iirdesigner.InitialStateCalculator;
 
 /**
  * This class represents a Time Domain (IIR or FIR) engine for filtering the samples.
  * Use this for offline signals.
+ * <p>
+ * The state of the filter is stored at checkpoints placed every
+ * {@link #CHECKPOINT_INTERVAL} samples along the signal, so that the samples
+ * at any position are filtered starting from the nearest checkpoint before
+ * them, whatever the length of the signal. A checkpoint holds only the state
+ * of the filter (two values per second order section), so there is one for
+ * every interval of the signal. The checkpoints are calculated when
+ * the filter passes them; far from any known checkpoint the filter is warmed up
+ * on the samples preceding a new checkpoint, long enough for its response
+ * to the unknown state to decay.
  *
  * @author Piotr Szachewicz
  */
@@ -18,6 +28,32 @@ public class OfflineIIRSinglechannelSampleFilter extends AbstractIIRSinglechanne
 
 	protected static final Logger logger = Logger.getLogger(OfflineIIRSinglechannelSampleFilter.class);
 
+	/**
+	 * The number of samples between the checkpoints of the filter state.
+	 */
+	protected static final int CHECKPOINT_INTERVAL = 4096;
+
+	/**
+	 * The smallest number of samples filtered before the first needed sample
+	 * when the state of the filter is not known (IIR filters are unstable at
+	 * the beginning).
+	 */
+	protected static final int MIN_WARM_UP_LENGTH = 2048; //1024*2 - 2secs for 1024 samplingFreq
+
+	/**
+	 * The largest number of samples filtered before the first needed sample
+	 * when the state of the filter is not known.
+	 */
+	protected static final int MAX_WARM_UP_LENGTH = 32768;
+
+	/**
+	 * The largest number of checkpoints passed when filtering from the
+	 * nearest known checkpoint to the first needed sample. If the nearest
+	 * known checkpoint is farther, a new checkpoint is calculated
+	 * by warming the filter up.
+	 */
+	protected static final int MAX_CHAINED_CHECKPOINTS = 16;
+
 	/**
 	 * The signal offset of the first sample stored in the {@link AbstractIIRSinglechannelSampleFilter#filtered}
 	 * sample source. Allows to control the caching of the filtered data.
@@ -30,6 +66,40 @@ public class OfflineIIRSinglechannelSampleFilter extends AbstractIIRSinglechanne
 	 */
 	protected boolean useFiltFilt = false;
 
+	/**
+	 * The engine filtering the signal forwards, created when needed.
+	 */
+	private IIRFilterEngine forwardEngine;
+
+	/**
+	 * The engine filtering the signal backwards (used by filtfilt).
+	 */
+	private IIRFilterEngine backwardEngine;
+
+	/**
+	 * The states of the forward filter before the samples at the multiples
+	 * of {@link #CHECKPOINT_INTERVAL}, one after another.
+	 */
+	private double[] checkpoints;
+
+	/**
+	 * Whether the state at the checkpoint of the given index is known.
+	 */
+	private boolean[] knownCheckpoints;
+
+	/**
+	 * The number of samples filtered before the first needed sample
+	 * when the state of the filter is not known.
+	 */
+	private int warmUpLength;
+
+	/**
+	 * Buffers reused for the samples being filtered.
+	 */
+	private double[] inputBuffer;
+	private double[] outputBuffer;
+	private double[] filtfiltBuffer;
+
 	public OfflineIIRSinglechannelSampleFilter(SampleSource source, TimeDomainSampleFilter definition) {
 		super(source, definition);
 	}
@@ -44,9 +114,9 @@ public OfflineIIRSinglechannelSampleFilter(SampleSource source, FilterCoefficien
 
 	/**
 	 * Returns the given number of the filtered samples starting from
-	 * the given position in time. {@link OfflineIIRSinglechannelSampleFilter#updateCache(int)}
-	 * must be run before running this method if new samples were added or
-	 * cache was never updated before.
+	 * the given position in time. The samples are filtered starting from
+	 * the nearest checkpoint of the filter state before the given position,
+	 * so the cost does not depend on the position in the signal.
 	 *
 	 * @param target the array to which results will be written starting
 	 * from position <code>arrayOffset</code>
@@ -60,13 +130,8 @@ public OfflineIIRSinglechannelSampleFilter(SampleSource source, FilterCoefficien
 	public synchronized void getSamples(double[] target, int signalOffset, int count, int arrayOffset) {
 		if (!isCached(signalOffset, count)) {
 			filterOffline(signalOffset, count);
-			filteredSignalOffset = signalOffset;
-			filtered.getSamples(target, 0, count, arrayOffset);
-		} else {
-			filtered.getSamples(target, signalOffset - filteredSignalOffset, count, arrayOffset);
 		}
-
-
+		filtered.getSamples(target, signalOffset - filteredSignalOffset, count, arrayOffset);
 	}
 
 	/**
@@ -78,7 +143,7 @@ public synchronized void getSamples(double[] target, int signalOffset, int count
 	 * @return true if the samples are available in cache, false otherwise
 	 */
 	protected boolean isCached(int signalOffset, int count) {
-		if (filteredSignalOffset != null
+		if (filtered != null && filteredSignalOffset != null
 				&& filteredSignalOffset <= signalOffset
 				&& filteredSignalOffset + filtered.getSampleCount() >= signalOffset + count) {
 			return true;
@@ -95,72 +160,237 @@ protected boolean isCached(int signalOffset, int count) {
 	 * @param count the number of filtered samples to be returned
 	 */
 	protected synchronized void filterOffline(int signalOffset, int count) {
+		double[] result = new double[count];
+		filterOffline(result, signalOffset, count, 0);
 
-		//filter signal from prefixCount samples before requested starting point (IIR filters are unstable at the beginning)
-		int leftPrefixCount = 2048; //1024*2 - 2secs for 1024 samplingFreq
-		if (signalOffset - leftPrefixCount < 0) //fix prefix if some starting area of the signal is requested
-			leftPrefixCount = signalOffset;
+		filtered = new RoundBufferSampleSource(count);
+		filtered.addSamples(result);
+		filteredSignalOffset = signalOffset;
+	}
 
-		//right prefix - it is useful only if the signal is filered using filtFilt.
-		int rightPrefixCount = useFiltFilt ? 2048 : 0;
-		if (signalOffset + count + rightPrefixCount > source.getSampleCount()) {
-			rightPrefixCount = source.getSampleCount() - signalOffset - count;
+	/**
+	 * Filters the given part of the signal from the source SampleSource
+	 * and writes the result to the given array.
+	 * @param target the array to which the filtered samples are written
+	 * @param signalOffset the position (in time) in the signal starting
+	 * from which samples will be filtered
+	 * @param count the number of samples to be filtered
+	 * @param arrayOffset the position in the target array at which the
+	 * first filtered sample is written
+	 */
+	protected synchronized void filterOffline(double[] target, int signalOffset, int count, int arrayOffset) {
+		if (count <= 0) {
+			return;
 		}
+		initializeEngines();
 
-		int filteredCount = leftPrefixCount + count + rightPrefixCount;//samples to filter
+		if (!useFiltFilt) {
+			filterForward(signalOffset, signalOffset + count, target, arrayOffset);
+			return;
+		}
 
-		//get data from source and filter it
-		double[] input = new double[filteredCount];
+		//right prefix - samples after the requested ones, which are filtered backwards first
+		int sampleCount = source.getSampleCount();
+		int rightPrefixCount = Math.min(warmUpLength, sampleCount - signalOffset - count);
+		int forwardCount = count + rightPrefixCount;
+		int filteredCount = forwardCount;
+		if (signalOffset + forwardCount == sampleCount) {
+			filteredCount += getEdgeLength(sampleCount);
+		}
+		if (filtfiltBuffer == null || filtfiltBuffer.length < filteredCount) {
+			filtfiltBuffer = new double[filteredCount];
+		}
 
-		source.getSamples(input, signalOffset - leftPrefixCount, filteredCount, 0);
+		filterForward(signalOffset, signalOffset + forwardCount, filtfiltBuffer, 0);
+		if (filteredCount > forwardCount) {
+			//the end of the signal - continue with its inverted replica
+			int edge = filteredCount - forwardCount;
+			double[] extension = getRightEdge(sampleCount, edge);
+			forwardEngine.filter(extension, 0, filtfiltBuffer, forwardCount, edge);
+		}
 
-		double[] newFilteredSamples = calculateInitialConditionsAndFilter(input);
+		//left-wise
+		reverse(filtfiltBuffer, filteredCount);
+		backwardEngine.setSteadyState(filtfiltBuffer[0]);
+		backwardEngine.filter(filtfiltBuffer, 0, filtfiltBuffer, 0, filteredCount);
+		reverse(filtfiltBuffer, filteredCount);
 
-		//get last filteredCount - prefixCount = count samples and return it
-		filtered = new RoundBufferSampleSource(count);
-		for (int i = 0; i < count; i++) {
-			filtered.addSample(newFilteredSamples[i + leftPrefixCount]);
+		System.arraycopy(filtfiltBuffer, 0, target, arrayOffset, count);
+	}
+
+	/**
+	 * Creates the engines and the checkpoints if they were not created yet.
+	 */
+	private void initializeEngines() {
+		if (forwardEngine != null) {
+			return;
 		}
+		FilterCoefficients coefficients = new FilterCoefficients(bCoefficients, aCoefficients);
+		forwardEngine = IIRFilterEngine.createEngine(coefficients);
+		backwardEngine = IIRFilterEngine.createEngine(coefficients);
+
+		int decayLength = forwardEngine.getDecayLength(1e-6);
+		warmUpLength = (decayLength < 0 ? MIN_WARM_UP_LENGTH : Math.max(MIN_WARM_UP_LENGTH, Math.min(MAX_WARM_UP_LENGTH, decayLength)));
 
+		checkpoints = new double[0];
+		knownCheckpoints = new boolean[0];
+		ensureCheckpoints();
+
+		inputBuffer = new double[CHECKPOINT_INTERVAL];
+		outputBuffer = new double[CHECKPOINT_INTERVAL];
 	}
 
 	/**
-	 * Calculates initial conditions of the filter delays and filters the data
-	 * assuming the calculated initial conditions.
-	 * @param signal the signal to be filtered
-	 * @return the filtered signal
+	 * Makes room for the checkpoints of the whole signal, keeping the
+	 * known ones. The signal may grow after the checkpoints were created.
 	 */
-	private double[] calculateInitialConditionsAndFilter(double[] signal) {
-		InitialStateCalculator initalStateCalculator = new InitialStateCalculator(new FilterCoefficients(bCoefficients, aCoefficients));
-		double[] initialState = initalStateCalculator.getInitialState();
-		double[] grownSignal = initalStateCalculator.growSignal(signal);
-		double[] filteredSamples;
+	private void ensureCheckpoints() {
+		int checkpointCount = source.getSampleCount() / CHECKPOINT_INTERVAL + 1;
+		if (checkpointCount <= knownCheckpoints.length) {
+			return;
+		}
+		checkpoints = Arrays.copyOf(checkpoints, checkpointCount * forwardEngine.getStateLength());
+		knownCheckpoints = Arrays.copyOf(knownCheckpoints, checkpointCount);
+	}
 
-		//right-wise
-		double[] initialStateRightwise = new double[initialState.length];
-		for (int i = 0; i < initialStateRightwise.length; i++) {
-			initialStateRightwise[i] = initialState[i] * grownSignal[0];
+	/**
+	 * Filters the signal forwards, starting from the nearest checkpoint
+	 * before the given start, and writes the filtered samples from the given
+	 * range to the target array. The checkpoints passed on the way are stored.
+	 * @param start the first sample to be written
+	 * @param end the sample after the last sample to be written
+	 * @param target the array to which the samples are written
+	 * @param arrayOffset the position in the target array at which the
+	 * sample at start is written
+	 */
+	private void filterForward(int start, int end, double[] target, int arrayOffset) {
+		int stateLength = forwardEngine.getStateLength();
+		int checkpoint = start / CHECKPOINT_INTERVAL;
+		ensureCheckpoints();
+
+		int nearest = checkpoint;
+		while (nearest >= 0 && checkpoint - nearest <= MAX_CHAINED_CHECKPOINTS && !knownCheckpoints[nearest]) {
+			nearest--;
+		}
+		if (nearest < 0 || checkpoint - nearest > MAX_CHAINED_CHECKPOINTS) {
+			warmUp(checkpoint);
+			nearest = checkpoint;
+		}
+
+		forwardEngine.setState(checkpoints, nearest * stateLength);
+		int position = nearest * CHECKPOINT_INTERVAL;
+
+		while (position < end) {
+			int length = Math.min(end - position, CHECKPOINT_INTERVAL - position % CHECKPOINT_INTERVAL);
+			source.getSamples(inputBuffer, position, length, 0);
+
+			if (position + length <= start) {
+				forwardEngine.filter(inputBuffer, 0, outputBuffer, 0, length);
+			} else if (position >= start) {
+				forwardEngine.filter(inputBuffer, 0, target, arrayOffset + position - start, length);
+			} else {
+				forwardEngine.filter(inputBuffer, 0, outputBuffer, 0, length);
+				System.arraycopy(outputBuffer, start - position, target, arrayOffset, position + length - start);
+			}
+			position += length;
+
+			if (position % CHECKPOINT_INTERVAL == 0) {
+				int index = position / CHECKPOINT_INTERVAL;
+				if (index < knownCheckpoints.length && !knownCheckpoints[index]) {
+					forwardEngine.getState(checkpoints, index * stateLength);
+					knownCheckpoints[index] = true;
+				}
+			}
 		}
-		filteredSamples = filter(bCoefficients, aCoefficients, grownSignal, initialStateRightwise);
+	}
 
-		if (useFiltFilt) {
-			filteredSamples = ArrayOperations.reverse(filteredSamples);
+	/**
+	 * Calculates the state of the forward filter at the given checkpoint
+	 * by filtering the samples before it, starting from the steady state
+	 * for the first of them.
+	 * @param checkpoint the index of the checkpoint
+	 */
+	private void warmUp(int checkpoint) {
+		int position = checkpoint * CHECKPOINT_INTERVAL;
+		int warmUpStart = Math.max(0, position - warmUpLength);
 
-			//left-wise
-			double[] initialStateLeftwise = new double[initialState.length];
-			for (int i = 0; i < initialStateLeftwise.length; i++) {
-				initialStateLeftwise[i] = initialState[i] * filteredSamples[0];
+		if (warmUpStart == 0) {
+			//the beginning of the signal - start with its inverted replica
+			double[] extension = getLeftEdge(getEdgeLength(source.getSampleCount()));
+			if (extension.length > 0) {
+				forwardEngine.setSteadyState(extension[0]);
+				forwardEngine.filter(extension, 0, extension, 0, extension.length);
+			} else {
+				source.getSamples(inputBuffer, 0, 1, 0);
+				forwardEngine.setSteadyState(inputBuffer[0]);
 			}
-			filteredSamples = filter(bCoefficients, aCoefficients, filteredSamples, initialStateLeftwise);
+		} else {
+			source.getSamples(inputBuffer, warmUpStart, 1, 0);
+			forwardEngine.setSteadyState(inputBuffer[0]);
+		}
 
-			filteredSamples = ArrayOperations.reverse(filteredSamples);
+		while (warmUpStart < position) {
+			int length = Math.min(position - warmUpStart, inputBuffer.length);
+			source.getSamples(inputBuffer, warmUpStart, length, 0);
+			forwardEngine.filter(inputBuffer, 0, outputBuffer, 0, length);
+			warmUpStart += length;
 		}
 
-		//shorten
-		int padding = (grownSignal.length - signal.length) / 2;
-		double[] result = new double[signal.length];
-		System.arraycopy(filteredSamples, padding, result, 0, signal.length);
-		return result;
+		forwardEngine.getState(checkpoints, checkpoint * forwardEngine.getStateLength());
+		knownCheckpoints[checkpoint] = true;
+	}
+
+	/**
+	 * Returns the number of samples added at each edge of the signal
+	 * to stabilize the filter (the same as in
+	 * {@link org.signalml.math.iirdesigner.InitialStateCalculator#growSignal(double[])}).
+	 * @param sampleCount the number of samples in the signal
+	 * @return the number of samples in the edge
+	 */
+	private int getEdgeLength(int sampleCount) {
+		int edge = 3 * Math.max(aCoefficients.length, bCoefficients.length);
+		return Math.max(0, Math.min(edge, sampleCount - 2));
+	}
+
+	/**
+	 * Returns the inverted replica of the beginning of the signal, which
+	 * is filtered before the first sample.
+	 * @param edge the number of samples in the edge
+	 * @return the samples preceding the signal
+	 */
+	private double[] getLeftEdge(int edge) {
+		double[] samples = new double[edge + 1];
+		source.getSamples(samples, 0, edge + 1, 0);
+		double[] extension = new double[edge];
+		for (int i = 0; i < edge; i++) {
+			extension[i] = 2 * samples[0] - samples[edge - i];
+		}
+		return extension;
+	}
+
+	/**
+	 * Returns the inverted replica of the end of the signal, which
+	 * is filtered after the last sample.
+	 * @param sampleCount the number of samples in the signal
+	 * @param edge the number of samples in the edge
+	 * @return the samples following the signal
+	 */
+	private double[] getRightEdge(int sampleCount, int edge) {
+		double[] samples = new double[edge + 1];
+		source.getSamples(samples, sampleCount - edge - 1, edge + 1, 0);
+		double[] extension = new double[edge];
+		for (int i = 0; i < edge; i++) {
+			extension[i] = 2 * samples[edge] - samples[edge - 1 - i];
+		}
+		return extension;
+	}
+
+	private static void reverse(double[] array, int length) {
+		for (int i = 0, j = length - 1; i < j; i++, j--) {
+			double temp = array[i];
+			array[i] = array[j];
+			array[j] = temp;
+		}
 	}
 
 	/**
@@ -16,6 +16,16 @@ public class OnlineIIRSinglechannelSampleFilter extends AbstractIIRSinglechannel
 
 	protected static final Logger logger = Logger.getLogger(OnlineIIRSinglechannelSampleFilter.class);
 
+	/**
+	 * The engine filtering the new samples, created when needed.
+	 */
+	private IIRFilterEngine engine;
+
+	/**
+	 * The buffer reused for the new samples.
+	 */
+	private double[] buffer;
+
 	public OnlineIIRSinglechannelSampleFilter(SampleSource source, TimeDomainSampleFilter definition) {
 		super(source, definition);
 	}
@@ -153,38 +163,61 @@ protected static double[] calculateNewFilteredSamples(double[] bCoefficients,
 			double[] aCoefficients, int filterOrder, double[] unfilteredSamplesCache,
 			double[] filteredSamplesCache, int newSamples) {
 
+		// coefficients padded with zeros to filterOrder + 1, so that no tap needs a bounds check
+		double[] b = new double[filterOrder + 1];
+		double[] a = new double[filterOrder + 1];
+		System.arraycopy(bCoefficients, 0, b, 0, Math.min(b.length, bCoefficients.length));
+		System.arraycopy(aCoefficients, 0, a, 0, Math.min(a.length, aCoefficients.length));
+
 		for (int i = filterOrder; i < filteredSamplesCache.length; i++) {
 
-			for (int j = i - filterOrder; j <= i; j++) {
-				if (i - j < bCoefficients.length) {
-					filteredSamplesCache[i] += unfilteredSamplesCache[j] * bCoefficients[i - j];
-				}
-				if (j < i && i - j < aCoefficients.length) {
-					filteredSamplesCache[i] -= filteredSamplesCache[j] * aCoefficients[i - j];
-				}
+			double sum = filteredSamplesCache[i];
+			for (int k = filterOrder; k > 0; k--) {
+				sum += unfilteredSamplesCache[i - k] * b[k];
+				sum -= filteredSamplesCache[i - k] * a[k];
 			}
-			filteredSamplesCache[i] /= aCoefficients[0];
+			sum += unfilteredSamplesCache[i] * b[0];
+			filteredSamplesCache[i] = sum / a[0];
 
 		}
 
 		double[] newFilteredSamples = new double[newSamples];
-		for (int i = 0; i < newSamples; i++) {
-			newFilteredSamples[i] = filteredSamplesCache[filterOrder + i];
-		}
+		System.arraycopy(filteredSamplesCache, filterOrder, newFilteredSamples, 0, newSamples);
 		return newFilteredSamples;
 	}
 
 	/**
 	 * Updates the cache used to store filtered samples of the signal.
+	 * The new samples are filtered by an engine which keeps the state of
+	 * the filter between the calls of this method.
 	 * @param newSamples number of samples which were added to the signal since the last call
 	 * of this method
 	 */
 	public synchronized void updateCache(int newSamples) {
-		double[] unfilteredSamplesCache = getUnfilteredSamplesCache(newSamples);
-		double[] filteredSamplesCache = getFilteredSamplesCache(newSamples);
-		double[] newFilteredSamples = calculateNewFilteredSamples(bCoefficients, aCoefficients, filterOrder, unfilteredSamplesCache, filteredSamplesCache, newSamples);
+		if (filtered == null) {
+			filtered = new RoundBufferSampleSource(source.getSampleCount());
+			for (int i = 0; i < source.getSampleCount(); i++) {
+				filtered.addSample(0.0);
+			}
+		}
+		if (engine == null) {
+			engine = IIRFilterEngine.createEngine(new FilterCoefficients(bCoefficients, aCoefficients));
+		}
 
-		filtered.addSamples(newFilteredSamples);
+		// the samples before the beginning of the signal are zeros, which do not change the zero state
+		int available = Math.min(newSamples, source.getSampleCount());
+		if (buffer == null || buffer.length < available) {
+			buffer = new double[available];
+		}
+		source.getSamples(buffer, source.getSampleCount() - available, available, 0);
+		engine.filter(buffer, 0, buffer, 0, available);
+
+		for (int i = available; i < newSamples; i++) {
+			filtered.addSample(0.0);
+		}
+		for (int i = 0; i < available; i++) {
+			filtered.addSample(buffer[i]);
+		}
 	}
 
 	/**
@@ -0,0 +1,137 @@
+package org.signalml.domain.signal.filter.iir;
+
+import org.signalml.math.iirdesigner.FilterCoefficients;
+import org.signalml.math.iirdesigner.SecondOrderSections;
+
+/**
+ * This class represents an IIR filter implemented as a cascade of
+ * {@link SecondOrderSections second order sections} (biquads), each of
+ * them a direct II transposed structure.
+ * <p>
+ * It gives the same results as the {@link IIRFilterEngine} for the same
+ * filter, but the errors of the floating point arithmetic do not grow
+ * with the order of the filter, so it stays stable for filters of high
+ * orders, for which the direct form is not.
+ * The state of the filter consists of the two delays of each section.
+ */
+public class SOSFilterEngine extends IIRFilterEngine {
+
+	/**
+	 * the sections of the filter
+	 */
+	private SecondOrderSections sections;
+
+	/**
+	 * the coefficients of the sections (the sections are the rows)
+	 */
+	private double[] b0;
+	private double[] b1;
+	private double[] b2;
+	private double[] a1;
+	private double[] a2;
+
+	/**
+	 * the delays of the sections
+	 */
+	private double[] z1;
+	private double[] z2;
+
+	/**
+	 * Creates this filter with the state of the filter delays set to zeros.
+	 * @param coefficients the coefficients of the filter
+	 * @param sections the second order sections of the same filter
+	 */
+	public SOSFilterEngine(FilterCoefficients coefficients, SecondOrderSections sections) {
+		super(coefficients.getBCoefficients(), coefficients.getACoefficients());
+		this.sections = sections;
+
+		int count = sections.getSectionCount();
+		b0 = new double[count];
+		b1 = new double[count];
+		b2 = new double[count];
+		a1 = new double[count];
+		a2 = new double[count];
+		for (int i = 0; i < count; i++) {
+			double[] section = sections.getSection(i);
+			b0[i] = section[0];
+			b1[i] = section[1];
+			b2[i] = section[2];
+			a1[i] = section[3];
+			a2[i] = section[4];
+		}
+		z1 = new double[count];
+		z2 = new double[count];
+	}
+
+	@Override
+	public void filter(double[] input, int inputOffset, double[] output, int outputOffset, int count) {
+		int sectionCount = b0.length;
+		for (int n = 0; n < count; n++) {
+			double x = input[inputOffset + n];
+			for (int i = 0; i < sectionCount; i++) {
+				double y = b0[i] * x + z1[i];
+				z1[i] = b1[i] * x - a1[i] * y + z2[i];
+				z2[i] = b2[i] * x - a2[i] * y;
+				x = y;
+			}
+			output[outputOffset + n] = x;
+		}
+	}
+
+	@Override
+	public double[] getState() {
+		double[] state = new double[getStateLength()];
+		getState(state, 0);
+		return state;
+	}
+
+	@Override
+	public void getState(double[] target, int offset) {
+		System.arraycopy(z1, 0, target, offset, z1.length);
+		System.arraycopy(z2, 0, target, offset + z1.length, z2.length);
+	}
+
+	@Override
+	public void setState(double[] state, int offset) {
+		System.arraycopy(state, offset, z1, 0, z1.length);
+		System.arraycopy(state, offset + z1.length, z2, 0, z2.length);
+	}
+
+	@Override
+	public int getStateLength() {
+		return 2 * b0.length;
+	}
+
+	@Override
+	public void setSteadyState(double value) {
+		double x = value;
+		for (int i = 0; i < b0.length; i++) {
+			double denominator = 1.0 + a1[i] + a2[i];
+			if (denominator == 0.0) {
+				// a pole at z = 1, there is no steady state
+				for (int j = i; j < b0.length; j++) {
+					z1[j] = 0.0;
+					z2[j] = 0.0;
+				}
+				return;
+			}
+			double y = x * (b0[i] + b1[i] + b2[i]) / denominator;
+			z2[i] = b2[i] * x - a2[i] * y;
+			z1[i] = b1[i] * x - a1[i] * y + z2[i];
+			x = y;
+		}
+	}
+
+	@Override
+	public int getDecayLength(double fraction) {
+		double radius = sections.getMaxPoleRadius();
+		if (radius >= 1.0) {
+			return -1;
+		}
+		if (radius <= 0.0) {
+			return 2 * b0.length;
+		}
+		return (int) Math.ceil(Math.log(fraction) / Math.log(radius)) + 2 * b0.length;
+	}
+
+}
@@ -0,0 +1,426 @@
+package org.signalml.domain.signal.raw;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.signalml.domain.signal.samplesource.MultichannelBlockSampleSource;
+import org.signalml.util.FileUtils;
+
+/**
+ * This class represents the source of samples for the raw signal which
+ * reads the file through memory mapped windows instead of a
+ * {@link RandomAccessFile}.
+ * The file is mapped lazily in windows of about {@link #WINDOW_SIZE} bytes
+ * (each window contains a whole number of frames), so files larger
+ * than 2 GB are supported. The windows are never modified after they are
+ * mapped and are read only with absolute get operations, so samples
+ * may be read concurrently by many threads without locking and without
+ * copying the data to intermediate arrays.
+ * <p>
+ * Samples for many channels may be read at once using
+ * {@link #getSamples(int[], double[][], int, int, int)}, which
+ * demultiplexes all requested channels in one pass over the frames.
+ * <p>
+ * {@link #close()} unmaps the windows at once where the JVM allows it, so
+ * the file is not locked afterwards (which matters for deleting or renaming
+ * it on Windows); otherwise the windows are unmapped when they are garbage
+ * collected. It must not be called while other threads read samples.
+ *
+ * @see RawSignalSampleSource
+ */
+public class MappedRawSignalSampleSource extends RawSignalSampleSource implements MultichannelBlockSampleSource {
+
+	/**
+	 * The maximal size (in bytes) of a single mapped window.
+	 */
+	public static final int WINDOW_SIZE = 1 << 30;
+
+	/**
+	 * the size (in bytes) of one frame (one sample for every channel)
+	 */
+	private final int frameSize;
+
+	/**
+	 * the size (in bytes) of one sample
+	 */
+	private final int sampleByteWidth;
+
+	/**
+	 * the number of frames in one window
+	 */
+	private final int windowFrames;
+
+	/**
+	 * the mapped windows, null for windows which were not used yet
+	 */
+	private final AtomicReferenceArray<ByteBuffer> windows;
+
+	/**
+	 * Constructor. Creates the source of samples for the multichannel raw
+	 * signal based on the file with that signal.
+	 * @param file the file with the signal
+	 * @param channelCount number of channels in the signal
+	 * @param samplingFrequency number of samples per second
+	 * @param sampleType the {@link RawSignalSampleType type} of signal
+	 * samples in the file
+	 * @param byteOrder the {@link RawSignalByteOrder order} of bytes
+	 * in the signal file
+	 * @throws IOException if the file could not be opened
+	 */
+	public MappedRawSignalSampleSource(File file, int channelCount, float samplingFrequency, RawSignalSampleType sampleType, RawSignalByteOrder byteOrder) throws IOException {
+		this(file, channelCount, samplingFrequency, sampleType, byteOrder, WINDOW_SIZE);
+	}
+
+	/**
+	 * Constructor. Creates the source of samples for the multichannel raw
+	 * signal which maps the file in windows of the given size.
+	 * @param file the file with the signal
+	 * @param channelCount number of channels in the signal
+	 * @param samplingFrequency number of samples per second
+	 * @param sampleType the {@link RawSignalSampleType type} of signal
+	 * samples in the file
+	 * @param byteOrder the {@link RawSignalByteOrder order} of bytes
+	 * in the signal file
+	 * @param windowSize the maximal size (in bytes) of a single mapped window
+	 * @throws IOException if the file could not be opened
+	 */
+	MappedRawSignalSampleSource(File file, int channelCount, float samplingFrequency, RawSignalSampleType sampleType, RawSignalByteOrder byteOrder, int windowSize) throws IOException {
+		super(file, channelCount, samplingFrequency, sampleType, byteOrder);
+
+		sampleByteWidth = sampleType.getByteWidth();
+		frameSize = channelCount * sampleByteWidth;
+		windowFrames = Math.max(1, windowSize / frameSize);
+
+		int sampleCount = getSampleCount();
+		int windowCount = (sampleCount + windowFrames - 1) / windowFrames;
+		windows = new AtomicReferenceArray<ByteBuffer>(windowCount);
+	}
+
+	@Override
+	protected RawSignalSampleSource createCopy() throws IOException {
+		return new MappedRawSignalSampleSource(getFile(), getChannelCount(), getSamplingFrequency(), getSampleType(), getByteOrder(), windowFrames * frameSize);
+	}
+
+	/**
+	 * Closes the file with the signal and unmaps the mapped windows.
+	 * No other thread may read samples during or after this call.
+	 */
+	@Override
+	public void close() {
+		for (int i = 0; i < windows.length(); i++) {
+			ByteBuffer window = windows.getAndSet(i, null);
+			if (window != null) {
+				FileUtils.unmap(window);
+			}
+		}
+		super.close();
+	}
+
+	/**
+	 * Returns the window of a given index, mapping it if it was not
+	 * mapped yet.
+	 * @param index the index of the window
+	 * @return the mapped window
+	 * @throws IOException if the window could not be mapped
+	 */
+	private ByteBuffer getWindow(int index) throws IOException {
+		ByteBuffer window = windows.get(index);
+		if (window != null) {
+			return window;
+		}
+
+		RandomAccessFile randomAccessFile = getRandomAccessFile();
+		if (randomAccessFile == null) {
+			throw new IOException("File [" + getFile() + "] is closed");
+		}
+
+		long windowStart = (long) index * (long) windowFrames * (long) frameSize;
+		long windowLength = Math.min((long) windowFrames * (long) frameSize, (long) getSampleCount() * (long) frameSize - windowStart);
+
+		try {
+			window = mapWindow(windowStart, windowLength);
+		} catch (ClosedByInterruptException ex) {
+			// the thread was interrupted (e.g. a cancelled worker), map the
+			// window anyway and restore the interrupt status afterwards
+			boolean interrupted = Thread.interrupted();
+			try {
+				window = mapWindow(windowStart, windowLength);
+			} finally {
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		window.order(getByteOrder().getByteOrder());
+
+		// another thread may have mapped the same window in the meantime
+		windows.compareAndSet(index, null, window);
+		return windows.get(index);
+	}
+
+	/**
+	 * Maps the given range of the file through a channel of its own, which
+	 * is closed right after mapping (the mapping stays valid). A channel is
+	 * closed when a thread using it is interrupted, so mapping through
+	 * the channel of the shared {@link RandomAccessFile} would make all
+	 * later reads fail.
+	 * @param start the position of the range in the file
+	 * @param length the length of the range
+	 * @return the mapped range
+	 * @throws IOException if the range could not be mapped
+	 */
+	private ByteBuffer mapWindow(long start, long length) throws IOException {
+		RandomAccessFile mappedFile = new RandomAccessFile(getFile(), "r");
+		try {
+			return mappedFile.getChannel().map(FileChannel.MapMode.READ_ONLY, start, length);
+		} finally {
+			mappedFile.close();
+		}
+	}
+
+	@Override
+	public void getSamples(int channel, double[] target, int signalOffset, int count, int arrayOffset) {
+
+		if (channel < 0 || channel >= getChannelCount()) {
+			throw new IndexOutOfBoundsException("Bad channel number [" + channel + "]");
+		}
+		if ((arrayOffset < 0) || ((arrayOffset + count) > target.length)) {
+			throw new IndexOutOfBoundsException("Target range [" + arrayOffset + ":" + count + "] doesn't fit in the target array");
+		}
+		if ((signalOffset < 0) || ((signalOffset + count) > getSampleCount())) {
+			throw new IndexOutOfBoundsException("Signal range [" + signalOffset + ":" + count + "] doesn't fit in the signal");
+		}
+
+		float[] gain = getCalibrationGain();
+		float[] offset = getCalibrationOffset();
+		boolean calibrate = (gain != null && offset != null);
+		int channelPosition = channel * sampleByteWidth;
+
+		int done = 0;
+		while (done < count) {
+			int frame = signalOffset + done;
+			int windowIndex = frame / windowFrames;
+			int windowFrame = frame - windowIndex * windowFrames;
+			int chunk = Math.min(count - done, windowFrames - windowFrame);
+
+			ByteBuffer window;
+			try {
+				window = getWindow(windowIndex);
+			} catch (IOException ex) {
+				logger.error("Failed to map samples, filling the array with zero and exiting", ex);
+				for (int j = done; j < count; j++) {
+					target[arrayOffset + j] = 0.0;
+				}
+				return;
+			}
+
+			int start = arrayOffset + done;
+			readChannel(window, windowFrame * frameSize + channelPosition, target, start, chunk);
+			if (calibrate) {
+				double channelGain = gain[channel];
+				double channelOffset = offset[channel];
+				for (int i = start; i < start + chunk; i++) {
+					target[i] = target[i] * channelGain + channelOffset;
+				}
+			}
+			done += chunk;
+		}
+
+	}
+
+	/**
+	 * Copies samples of one channel from consecutive frames of the window
+	 * to the target array.
+	 * @param window the window to read from
+	 * @param position the position (in bytes) of the first sample in the window
+	 * @param target the array to which samples will be written
+	 * @param arrayOffset the offset in the <code>target</code> array
+	 * @param count the number of samples to be read
+	 */
+	private void readChannel(ByteBuffer window, int position, double[] target, int arrayOffset, int count) {
+
+		int samplePosition = position;
+		int i;
+
+		switch (getSampleType()) {
+
+		case DOUBLE :
+			for (i = arrayOffset; i < arrayOffset + count; i++) {
+				target[i] = window.getDouble(samplePosition);
+				samplePosition += frameSize;
+			}
+			break;
+
+		case FLOAT :
+			for (i = arrayOffset; i < arrayOffset + count; i++) {
+				target[i] = window.getFloat(samplePosition);
+				samplePosition += frameSize;
+			}
+			break;
+
+		case INT :
+			for (i = arrayOffset; i < arrayOffset + count; i++) {
+				target[i] = window.getInt(samplePosition);
+				samplePosition += frameSize;
+			}
+			break;
+
+		case SHORT :
+			for (i = arrayOffset; i < arrayOffset + count; i++) {
+				target[i] = window.getShort(samplePosition);
+				samplePosition += frameSize;
+			}
+			break;
+
+		}
+
+	}
+
+	/**
+	 * Returns the given number of samples for the given channels starting
+	 * from a given position in time. The frames are read once and
+	 * all requested channels are demultiplexed in the same pass.
+	 * @param channels the numbers of channels
+	 * @param targets the arrays to which results will be written starting
+	 * from position <code>arrayOffset</code>, one array for every channel
+	 * @param signalOffset the position (in time) in the signal starting
+	 * from which samples will be returned
+	 * @param count the number of samples to be returned
+	 * @param arrayOffset the offset in <code>targets</code> arrays starting
+	 * from which samples will be written
+	 * @throws IndexOutOfBoundsException if bad channel number is given
+	 * or samples of requested indexes are not in the signal
+	 * or the requested part of the signal doesn't fit in the
+	 * <code>targets<\code> arrays
+	 */
+	@Override
+	public void getSamples(int[] channels, double[][] targets, int signalOffset, int count, int arrayOffset) {
+
+		int channelCount = getChannelCount();
+		int sampleCount = getSampleCount();
+
+		if (channels.length != targets.length) {
+			throw new IndexOutOfBoundsException("Got [" + channels.length + "] channels and [" + targets.length + "] target arrays");
+		}
+		for (int i = 0; i < channels.length; i++) {
+			if (channels[i] < 0 || channels[i] >= channelCount) {
+				throw new IndexOutOfBoundsException("Bad channel number [" + channels[i] + "]");
+			}
+			if ((arrayOffset < 0) || ((arrayOffset + count) > targets[i].length)) {
+				throw new IndexOutOfBoundsException("Target range [" + arrayOffset + ":" + count + "] doesn't fit in the target array");
+			}
+		}
+		if ((signalOffset < 0) || ((signalOffset + count) > sampleCount)) {
+			throw new IndexOutOfBoundsException("Signal range [" + signalOffset + ":" + count + "] doesn't fit in the signal");
+		}
+
+		float[] gain = getCalibrationGain();
+		float[] offset = getCalibrationOffset();
+		if (gain == null || offset == null) {
+			gain = null;
+			offset = null;
+		}
+
+		int done = 0;
+		while (done < count) {
+			int frame = signalOffset + done;
+			int windowIndex = frame / windowFrames;
+			int windowFrame = frame - windowIndex * windowFrames;
+			int chunk = Math.min(count - done, windowFrames - windowFrame);
+
+			ByteBuffer window;
+			try {
+				window = getWindow(windowIndex);
+			} catch (IOException ex) {
+				logger.error("Failed to map samples, filling the arrays with zero and exiting", ex);
+				for (int i = 0; i < targets.length; i++) {
+					for (int j = done; j < count; j++) {
+						targets[i][arrayOffset + j] = 0.0;
+					}
+				}
+				return;
+			}
+
+			demultiplex(window, windowFrame * frameSize, channels, targets, arrayOffset + done, chunk, gain, offset);
+			done += chunk;
+		}
+
+	}
+
+	/**
+	 * Copies samples of the given channels from consecutive frames of the
+	 * window to the target arrays, performing calibration if needed.
+	 * @param window the window to read from
+	 * @param position the position (in bytes) of the first frame in the window
+	 * @param channels the numbers of channels
+	 * @param targets the arrays to which samples will be written
+	 * @param arrayOffset the offset in <code>targets</code> arrays
+	 * @param count the number of frames to be read
+	 * @param gain the calibration gain or null if no calibration should be done
+	 * @param offset the calibration offset or null if no calibration should be done
+	 */
+	private void demultiplex(ByteBuffer window, int position, int[] channels, double[][] targets, int arrayOffset, int count, float[] gain, float[] offset) {
+
+		int channelCount = channels.length;
+		int framePosition = position;
+		int i, c;
+
+		switch (getSampleType()) {
+
+		case DOUBLE :
+			for (i = arrayOffset; i < arrayOffset + count; i++) {
+				for (c = 0; c < channelCount; c++) {
+					targets[c][i] = window.getDouble(framePosition + channels[c] * sampleByteWidth);
+				}
+				framePosition += frameSize;
+			}
+			break;
+
+		case FLOAT :
+			for (i = arrayOffset; i < arrayOffset + count; i++) {
+				for (c = 0; c < channelCount; c++) {
+					targets[c][i] = window.getFloat(framePosition + channels[c] * sampleByteWidth);
+				}
+				framePosition += frameSize;
+			}
+			break;
+
+		case INT :
+			for (i = arrayOffset; i < arrayOffset + count; i++) {
+				for (c = 0; c < channelCount; c++) {
+					targets[c][i] = window.getInt(framePosition + channels[c] * sampleByteWidth);
+				}
+				framePosition += frameSize;
+			}
+			break;
+
+		case SHORT :
+			for (i = arrayOffset; i < arrayOffset + count; i++) {
+				for (c = 0; c < channelCount; c++) {
+					targets[c][i] = window.getShort(framePosition + channels[c] * sampleByteWidth);
+				}
+				framePosition += frameSize;
+			}
+			break;
+
+		}
+
+		if (gain != null) {
+			for (c = 0; c < channelCount; c++) {
+				double[] target = targets[c];
+				double channelGain = gain[channels[c]];
+				double channelOffset = offset[channels[c]];
+				for (i = arrayOffset; i < arrayOffset + count; i++) {
+					target[i] = target[i] * channelGain + channelOffset;
+				}
+			}
+		}
+
+	}
+
+}
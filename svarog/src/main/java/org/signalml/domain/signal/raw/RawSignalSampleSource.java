@@ -167,7 +167,7 @@ public OriginalMultichannelSampleSource duplicate() throws SignalMLException {
 
 		RawSignalSampleSource newSource;
 		try {
-			newSource = new RawSignalSampleSource(file, channelCount, samplingFrequency, sampleType, byteOrder);
+			newSource = createCopy();
 		} catch (IOException ex) {
 			throw new SignalMLException(ex);
 		}
@@ -182,6 +182,25 @@ public OriginalMultichannelSampleSource duplicate() throws SignalMLException {
 
 	}
 
+	/**
+	 * Creates a new, uncalibrated source of samples reading the same file
+	 * as this source. Used by {@link #duplicate()}.
+	 * @return the new source of samples
+	 * @throws IOException if the file could not be opened
+	 */
+	protected RawSignalSampleSource createCopy() throws IOException {
+		return new RawSignalSampleSource(file, channelCount, samplingFrequency, sampleType, byteOrder);
+	}
+
+	/**
+	 * Returns the file opened for random access reading.
+	 * @return the file opened for random access reading or null if this
+	 * source was closed
+	 */
+	protected RandomAccessFile getRandomAccessFile() {
+		return randomAccessFile;
+	}
+
 	/**
 	 * Returns the file with the signal.
 	 * @return the file with the signal
@@ -27,6 +27,14 @@ public interface ChangeableMultichannelSampleSource {
 
 	void addSamples(float[] newSamples);
 
+	/**
+	 * Adds a block of samples for all channels at once. Listeners are
+	 * notified once for the whole block.
+	 * @param block the new samples, <code>block[channel][sample]</code>
+	 * @param count the number of samples of every channel in the block
+	 */
+	void addSampleBlock(float[][] block, int count);
+
 	/**
 	 * Acquires the built in binary semaphore. It does not prevent other threads
 	 * from using the {@link ChangeableMultichannelSampleSource}, unless their
@@ -0,0 +1,242 @@
+package org.signalml.domain.signal.samplesource;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A multichannel round buffer of float samples which can be written by
+ * one thread and read by many threads without locking.
+ * <p>
+ * The buffer holds the last {@link #getCapacity() capacity} samples of
+ * every channel. Reads address a window of <code>capacity</code> samples
+ * which ends at the newest sample; positions in the window for which no
+ * samples were received yet are returned as zeros. A read of a range is
+ * done in at most two contiguous segments, no temporary arrays are used.
+ * <p>
+ * Instead of a lock the buffer uses two sequence numbers: before
+ * the writer overwrites samples it publishes the number of samples which
+ * will be written after the write ({@link #writeLimit}) and after the write
+ * it publishes the number of samples actually written ({@link #written}).
+ * A reader takes a snapshot of <code>written</code>, copies the samples
+ * and then checks <code>writeLimit</code>; if the writer may have
+ * overwritten any of the copied samples in the meantime the read is
+ * repeated. Reads of recent samples are therefore never repeated.
+ * <p>
+ * The samples are stored as the bits of floats in atomic arrays, so that
+ * every access to a sample is a volatile access. The check of
+ * <code>writeLimit</code> is valid only because of that: the memory model
+ * orders plain reads neither before a later volatile read nor after an
+ * earlier volatile write, so a reader copying plain floats could see
+ * samples of a write which began after its check.
+ * <p>
+ * Only one thread may write to the buffer at a time.
+ */
+public class FloatRingBuffer {
+
+	/**
+	 * the samples (as returned by {@link Float#floatToRawIntBits(float)}),
+	 * one array of {@link #capacity} samples for each channel
+	 */
+	private final AtomicIntegerArray[] data;
+
+	/**
+	 * the number of channels
+	 */
+	private final int channelCount;
+
+	/**
+	 * the number of samples of every channel which can be stored
+	 */
+	private final int capacity;
+
+	/**
+	 * the number of samples written to the buffer so far
+	 */
+	private volatile long written;
+
+	/**
+	 * the number of samples which will be written when the current write
+	 * is finished, equal to {@link #written} if no write is in progress
+	 */
+	private volatile long writeLimit;
+
+	/**
+	 * Constructor. Creates an empty buffer.
+	 * @param channelCount the number of channels
+	 * @param capacity the number of samples of every channel which can be
+	 * stored
+	 */
+	public FloatRingBuffer(int channelCount, int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Bad capacity [" + capacity + "]");
+		}
+		this.channelCount = channelCount;
+		this.capacity = capacity;
+		this.data = new AtomicIntegerArray[channelCount];
+		for (int i = 0; i < channelCount; i++) {
+			this.data[i] = new AtomicIntegerArray(capacity);
+		}
+	}
+
+	public int getChannelCount() {
+		return channelCount;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of samples (per channel) written to the buffer
+	 * so far.
+	 * @return the number of written samples
+	 */
+	public long getWrittenCount() {
+		return written;
+	}
+
+	/**
+	 * Sets the number of samples written to the buffer so far without
+	 * changing the stored samples. Should be used only by the writer.
+	 * @param count the new number of written samples
+	 */
+	void setWrittenCount(long count) {
+		writeLimit = count;
+		written = count;
+	}
+
+	/**
+	 * Returns the position in the channel arrays at which the next sample
+	 * will be written.
+	 * @return the next insert position
+	 */
+	public int getNextInsertPosition() {
+		return (int) (written % capacity);
+	}
+
+	/**
+	 * Returns whether the buffer was filled at least once.
+	 * @return true if at least capacity samples were written
+	 */
+	public boolean isFull() {
+		return written >= capacity;
+	}
+
+	/**
+	 * Writes one sample for every channel.
+	 * @param frame the samples, one for every channel
+	 */
+	public void write(float[] frame) {
+		long start = written;
+		writeLimit = start + 1;
+		int position = (int) (start % capacity);
+		for (int i = 0; i < channelCount; i++) {
+			data[i].set(position, Float.floatToRawIntBits(frame[i]));
+		}
+		written = start + 1;
+	}
+
+	/**
+	 * Writes a block of samples for every channel.
+	 * @param block the samples, <code>block[channel][sample]</code>
+	 * @param offset the index of the first sample in the block arrays
+	 * @param count the number of samples of every channel to be written
+	 */
+	public void write(float[][] block, int offset, int count) {
+		if (count <= 0) {
+			return;
+		}
+		long start = written;
+		writeLimit = start + count;
+		if (count > capacity) {
+			// older samples would be overwritten anyway
+			offset += count - capacity;
+			start += count - capacity;
+			count = capacity;
+		}
+
+		int position = (int) (start % capacity);
+		int firstSegment = Math.min(count, capacity - position);
+		for (int i = 0; i < channelCount; i++) {
+			put(block[i], offset, data[i], position, firstSegment);
+			if (firstSegment < count) {
+				put(block[i], offset + firstSegment, data[i], 0, count - firstSegment);
+			}
+		}
+		written = start + count;
+	}
+
+	/**
+	 * Returns the sample stored at the given position of a channel array.
+	 * The position is not related to the order of samples in time.
+	 * @param channel the number of the channel
+	 * @param position the position in the channel array
+	 * @return the stored sample
+	 */
+	float getStoredSample(int channel, int position) {
+		return Float.intBitsToFloat(data[channel].get(position));
+	}
+
+	/**
+	 * Copies samples of the given channel from the window of last
+	 * {@link #getCapacity() capacity} samples.
+	 * @param channel the number of the channel
+	 * @param target the array to which samples will be written
+	 * @param windowOffset the position in the window of the first sample
+	 * to be copied, 0 is the oldest sample in the window
+	 * @param count the number of samples to be copied
+	 * @param arrayOffset the position in the target array of the first
+	 * copied sample
+	 * @throws IndexOutOfBoundsException if the requested range is not
+	 * in the window
+	 */
+	public void read(int channel, double[] target, int windowOffset, int count, int arrayOffset) {
+		if (windowOffset < 0 || count < 0 || windowOffset + count > capacity) {
+			throw new IndexOutOfBoundsException("Range [" + windowOffset + ":" + count + "] doesn't fit in the buffer of [" + capacity + "] samples");
+		}
+		AtomicIntegerArray channelData = data[channel];
+
+		while (true) {
+			long end = written;
+			long first = end - capacity + windowOffset;
+
+			// samples which weren't received yet are zeros
+			int zeros = (int) Math.max(0, Math.min(count, -first));
+			if (zeros > 0) {
+				Arrays.fill(target, arrayOffset, arrayOffset + zeros, 0.0);
+			}
+			int remaining = count - zeros;
+			if (remaining == 0) {
+				return;
+			}
+
+			long from = first + zeros;
+			int position = (int) (from % capacity);
+			int firstSegment = Math.min(remaining, capacity - position);
+			int targetPosition = arrayOffset + zeros;
+			copy(channelData, position, target, targetPosition, firstSegment);
+			if (firstSegment < remaining) {
+				copy(channelData, 0, target, targetPosition + firstSegment, remaining - firstSegment);
+			}
+
+			if (from >= writeLimit - capacity) {
+				// none of the copied samples was overwritten
+				return;
+			}
+			Thread.yield();
+		}
+	}
+
+	private static void put(float[] source, int sourcePosition, AtomicIntegerArray target, int targetPosition, int length) {
+		for (int i = 0; i < length; i++) {
+			target.set(targetPosition + i, Float.floatToRawIntBits(source[sourcePosition + i]));
+		}
+	}
+
+	private static void copy(AtomicIntegerArray source, int sourcePosition, double[] target, int targetPosition, int length) {
+		for (int i = 0; i < length; i++) {
+			target[targetPosition + i] = Float.intBitsToFloat(source.get(sourcePosition + i));
+		}
+	}
+
+}
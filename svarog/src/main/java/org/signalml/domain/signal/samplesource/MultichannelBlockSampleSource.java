@@ -0,0 +1,30 @@
+package org.signalml.domain.signal.samplesource;
+
+/**
+ * This interface represents a {@link MultichannelSampleSource source of samples}
+ * which is able to return samples for many channels at once.
+ * Implementations which store the signal multiplexed (frame after frame)
+ * can demultiplex all requested channels in a single pass over the frames
+ * instead of reading the same frames once for every channel.
+ *
+ * @see MultichannelSampleSource
+ */
+public interface MultichannelBlockSampleSource extends MultichannelSampleSource {
+
+	/**
+	 * Returns the given number of samples for the given channels starting
+	 * from a given position in time.
+	 * Samples of the channel <code>channels[i]</code> are written to
+	 * <code>targets[i]</code>.
+	 * @param channels the numbers of channels
+	 * @param targets the arrays to which results will be written starting
+	 * from position <code>arrayOffset</code>, one array for every channel
+	 * @param signalOffset the position (in time) in the signal starting
+	 * from which samples will be returned
+	 * @param count the number of samples to be returned
+	 * @param arrayOffset the offset in <code>targets</code> arrays starting
+	 * from which samples will be written
+	 */
+	void getSamples(int[] channels, double[][] targets, int signalOffset, int count, int arrayOffset);
+
+}
@@ -25,8 +25,10 @@ public class RoundBufferMultichannelSampleSource extends DoubleArraySampleSource
 	 */
 	private EventListenerList listenerList = new EventListenerList();
 
-	protected int nextInsertPos;
-	protected boolean full;
+	/**
+	 * The buffer in which samples are stored.
+	 */
+	protected FloatRingBuffer buffer;
 	protected DocumentView documentView;
 	protected float samplingFrequency;
 	protected Object[] labels;
@@ -35,13 +37,13 @@ public class RoundBufferMultichannelSampleSource extends DoubleArraySampleSource
 	 * The calibration gain for the signal - the value by which each sample
 	 * value is multiplied.
 	 */
-	private float[] calibrationGain;
+	private volatile float[] calibrationGain;
 
 	/**
 	 * The calibration offset for the signal - the value which is added
 	 * to each sample value.
 	 */
-	private float[] calibrationOffset;
+	private volatile float[] calibrationOffset;
 
 	/**
 	 * Semaphore preventing simultaneous read/write/newSamplesCount operations.
@@ -51,14 +53,12 @@ public class RoundBufferMultichannelSampleSource extends DoubleArraySampleSource
 	/**
 	 * Stores the number of samples added to this sample source.
 	 */
-	private long addedSamplesCount = 0;
+	private volatile long addedSamplesCount = 0;
 
 	public RoundBufferMultichannelSampleSource(int channelCount, int sampleCount) {
 
 		super(null, channelCount, sampleCount);
-		this.samples = new double[channelCount][sampleCount];
-		nextInsertPos = 0;
-		full = false;
+		buffer = new FloatRingBuffer(channelCount, sampleCount);
 		semaphore = new Semaphore(1);
 	}
 
@@ -70,47 +70,42 @@ public void setDocumentView(DocumentView documentView) {
 		this.documentView = documentView;
 	}
 
-	synchronized int getNextInsertPos() {
-		return nextInsertPos;
+	int getNextInsertPos() {
+		return buffer.getNextInsertPosition();
 	}
 
 	synchronized void setNextInsertPos(int nextInsertPos) {
-		this.nextInsertPos = nextInsertPos;
+		long written = buffer.getWrittenCount();
+		buffer.setWrittenCount(written - buffer.getNextInsertPosition() + nextInsertPos);
 	}
 
-	synchronized boolean isFull() {
-		return full;
+	boolean isFull() {
+		return buffer.isFull();
 	}
 
-	synchronized void setFull(boolean full) {
-		this.full = full;
-	}
-
-	synchronized double[][] getSamples() {
-		return this.samples;
-	}
-
-	synchronized void setSamples(double[][] samples) {
-		this.samples = samples;
+	/**
+	 * Returns a copy of the samples as they are stored in the buffer
+	 * (the samples are not ordered in time).
+	 * @return the stored samples
+	 */
+	double[][] getSamples() {
+		double[][] stored = new double[channelCount][sampleCount];
+		for (int i = 0; i < channelCount; i++) {
+			for (int j = 0; j < sampleCount; j++) {
+				stored[i][j] = buffer.getStoredSample(i, j);
+			}
+		}
+		return stored;
 	}
 
 	protected synchronized void incrNextInsertPos() {
-
-		nextInsertPos++;
-		if (nextInsertPos == sampleCount) {
-			full = true;
-			nextInsertPos = 0;
-		}
-
+		buffer.setWrittenCount(buffer.getWrittenCount() + 1);
 	}
 
 	@Override
 	public synchronized void addSampleChunk(float[] newSamples) {
 
-		for (int i = 0; i < channelCount; i++) {
-			samples[i][nextInsertPos] = newSamples[i];
-		}
-		incrNextInsertPos();
+		buffer.write(newSamples);
 		addedSamplesCount++;
 
 		fireNewSamplesAddedEvent();
@@ -120,15 +115,28 @@ public synchronized void addSampleChunk(float[] newSamples) {
 	public synchronized void addSamples(float[] newSamples) {
 
 		addSampleChunk(newSamples);
-		fireNewSamplesAddedEvent();
 
 	}
 
 	@Override
 	public synchronized void addSamples(List<float[]> newSamples) {
 
-		for (Iterator< float[]> i = newSamples.iterator(); i.hasNext();)
-			addSampleChunk(i.next());
+		for (Iterator< float[]> i = newSamples.iterator(); i.hasNext();) {
+			buffer.write(i.next());
+			addedSamplesCount++;
+		}
+		fireNewSamplesAddedEvent();
+	}
+
+	@Override
+	public synchronized void addSampleBlock(float[][] block, int count) {
+
+		if (count <= 0)
+			return;
+
+		buffer.write(block, 0, count);
+		addedSamplesCount += count;
+
 		fireNewSamplesAddedEvent();
 	}
 
@@ -139,42 +147,23 @@ public synchronized void addSamples(List<float[]> newSamples) {
 	// jeśli bufor jest częściowo wypełniony, to próbki od zera do sampleCount - 1 - n są równe zero
 	// a pozostałe nie, gdzie n jest liczbą próbek zaczytanych do bufora; jesli cały bufor jest wypełiony
 	// to offset trzeba przesunąć odpowiednio względem bieżącego punktu wstawiania
+	// Samples are read without locking, see FloatRingBuffer.
 	@Override
-	public synchronized void getSamples(int channel, double[] target, int signalOffset, int count, int arrayOffset) {
+	public void getSamples(int channel, double[] target, int signalOffset, int count, int arrayOffset) {
 		getSamples(channel, target, signalOffset, count, arrayOffset, true);
 	}
 
-	public synchronized void getSamples(int channel, double[] target, int signalOffset, int count, int arrayOffset, boolean calibrate) {
-		double[] tmp = new double[sampleCount];
-		if (full) {
-			for (int i = 0; i < sampleCount; i++) {
-				tmp[i] = samples[channel][(nextInsertPos + i) % sampleCount];
-			}
-		}
-		else {
-			if (nextInsertPos == 0) {
-				for (int i = 0; i < sampleCount; i++) {
-					tmp[i] = 0.0;
-				}
-			}
-			else {
-				int n = sampleCount - nextInsertPos;
-				for (int i = 0; i < n; i++)
-					tmp[i] = 0.0;
-				for (int i = n; i < sampleCount; i++) {
-					tmp[i] = samples[channel][i - n];
-				}
-			}
-		}
+	public void getSamples(int channel, double[] target, int signalOffset, int count, int arrayOffset, boolean calibrate) {
+		buffer.read(channel, target, signalOffset, count, arrayOffset);
 
 		//calibration
-		if (calibrate) {
-			for (int i = 0; i < count; i++)
-				target[arrayOffset+i] = calibrateSample(tmp[signalOffset + i], channel);
-		}
-		else {
-			for (int i = 0; i < count; i++)
-				target[arrayOffset+i] = tmp[signalOffset + i];
+		float[] gain = calibrationGain;
+		float[] offset = calibrationOffset;
+		if (calibrate && gain != null && offset != null) {
+			double channelGain = gain[channel];
+			double channelOffset = offset[channel];
+			for (int i = arrayOffset; i < arrayOffset + count; i++)
+				target[i] = channelGain * target[i] + channelOffset;
 		}
 	}
 
@@ -236,10 +225,10 @@ public void unlock() {
 	 * @return number of samples received from the start
 	 */
 	public int getReceivedSampleCount() {
-		if (full) {
+		if (buffer.isFull()) {
 			return sampleCount;
 		} else {
-			return nextInsertPos;
+			return buffer.getNextInsertPosition();
 		}
 	}
 
@@ -26,6 +26,11 @@ public class SignalMLCodecSampleSource extends AbstractMultichannelSampleSource
 
 	protected static final Logger logger = Logger.getLogger(SignalMLCodecSampleSource.class);
 
+	/**
+	 * the maximum number of samples decoded by the codec at once
+	 */
+	private static final int RAW_BUFFER_SIZE = 65536;
+
 	/**
 	 * the {@link SignalMLCodecReader reader} that gets all informations
 	 * about the signal from file
@@ -100,6 +105,22 @@ public class SignalMLCodecSampleSource extends AbstractMultichannelSampleSource
 	 */
 	private MultichannelSignalResampler resampler = null;
 
+	/**
+	 * the calibration gains of the channels read from the codec, null if
+	 * they were not read yet
+	 */
+	private float[] channelGains;
+
+	/**
+	 * the calibration offsets of the channels
+	 */
+	private float[] channelOffsets;
+
+	/**
+	 * the buffer for the samples decoded by the codec
+	 */
+	private float[] rawBuffer;
+
 	/**
 	 * Constructor. Creates the source of samples based on a given
 	 * {@link SignalMLCodecReader reader}.
@@ -386,19 +407,11 @@ public void getSamples(int channel, double[] target, int signalOffset, int count
 			}
 
 			if (this.calibrationCapable) {
-				float gain;
-				try {
-					gain = this.reader.get_calibration(channel);
-				} catch (SignalMLCodecException e) {
-					logger.error("get_calibration(channel) failed", e);
-					try {
-						gain = this.reader.get_calibration();
-					} catch (SignalMLCodecException e2) {
-						logger.error("get_calibration() failed", e2);
-						throw new RuntimeException(e);
-					}
+				if (channelGains == null) {
+					readCalibration();
 				}
-				float offset = this.getCalibrationOffset()[channel];
+				float gain = channelGains[channel];
+				float offset = channelOffsets[channel];
 				//logger.debug(String.format("[%d] gain=%f offset=%f", channel, gain, offset));
 				for (int i=0; i<count; i++) {
 					target[arrayOffset + i] *= gain;
@@ -408,24 +421,50 @@ public void getSamples(int channel, double[] target, int signalOffset, int count
 		}
 	}
 
+	/**
+	 * Reads the calibration gains of all channels from the codec, so that
+	 * they are not read again for every block of samples.
+	 * If the codec doesn't return the gain of a channel, its single
+	 * gain is used.
+	 */
+	private void readCalibration() {
+		float[] gains = new float[channelCount];
+		for (int channel=0; channel<channelCount; channel++) {
+			try {
+				gains[channel] = this.reader.get_calibration(channel);
+			} catch (SignalMLCodecException e) {
+				logger.error("get_calibration(channel) failed", e);
+				try {
+					gains[channel] = this.reader.get_calibration();
+				} catch (SignalMLCodecException e2) {
+					logger.error("get_calibration() failed", e2);
+					throw new RuntimeException(e);
+				}
+			}
+		}
+		channelOffsets = getCalibrationOffset();
+		channelGains = gains;
+	}
+
 	@Override
 	public void getRawSamples(int channel, double[] target, int signalOffset, int count, int arrayOffset) {
 		synchronized (this) {
-			int targetIndex = arrayOffset;
-			int i = signalOffset;
-			int limit = signalOffset + count;
+			if (rawBuffer == null) {
+				rawBuffer = new float[RAW_BUFFER_SIZE];
+			}
+			int done = 0;
 			try {
-				for (; i<limit; i++) {
-					target[targetIndex] = reader.getChannelSample(i, channel);
-					targetIndex++;
+				while (done < count) {
+					int length = Math.min(count - done, RAW_BUFFER_SIZE);
+					reader.getChannelSamples(signalOffset + done, channel, rawBuffer, 0, length);
+					for (int i=0; i<length; i++) {
+						target[arrayOffset + done + i] = rawBuffer[i];
+					}
+					done += length;
 				}
 			} catch (SignalMLCodecException ex) {
-				logger.error("Failed to get sample, filling the rest with zero and exiting", ex);
-				for (; i<limit; i++) {
-					target[targetIndex] = 0.0F;
-					targetIndex++;
-				}
-				return;
+				logger.error("Failed to get samples, filling the rest with zero and exiting", ex);
+				Arrays.fill(target, arrayOffset + done, arrayOffset + count, 0.0);
 			}
 		}
 	}
@@ -442,6 +481,7 @@ public void setCalibrationGain(float calibration) {
 				float last = this.calibration;
 				this.calibration = calibration;
 				calibrationExternal = true;
+				channelGains = null;
 				try {
 					reader.set_calibration(calibration);
 				} catch (SignalMLCodecException ex) {
@@ -479,6 +519,7 @@ public void setChannelCount(int channelCount) {
 				int last = this.channelCount;
 				this.channelCount = channelCount;
 				channelCountExternal = true;
+				channelGains = null;
 				try {
 					reader.set_number_of_channels(channelCount);
 				} catch (SignalMLCodecException ex) {
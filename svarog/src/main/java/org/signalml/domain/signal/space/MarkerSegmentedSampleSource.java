@@ -12,6 +12,7 @@
 import org.signalml.domain.montage.system.IChannelFunction;
 import org.signalml.domain.signal.MultichannelSampleProcessor;
 import org.signalml.domain.signal.SignalProcessingChain;
+import org.signalml.domain.signal.samplesource.MultichannelBlockSampleSource;
 import org.signalml.domain.signal.samplesource.MultichannelSampleSource;
 import org.signalml.domain.signal.samplesource.MultichannelSegmentedSampleSource;
 import org.signalml.domain.tag.StyledTagSet;
@@ -316,6 +317,31 @@ public void getSegmentSamples(int channel, double[] target, int segment) {
 		source.getSamples(channelIndices[channel], target, offsets[segment], segmentLength, 0);
 	}
 
+	/**
+	 * Returns the samples of the given segment for all channels of this
+	 * source. If the actual source is a {@link MultichannelBlockSampleSource}
+	 * all channels are read at once.
+	 * <p>
+	 * The samples are read while holding the lock of the actual source,
+	 * so many marker sources sharing the same actual source may be
+	 * read by different threads.
+	 * @param targets the arrays to which samples will be written,
+	 * one array of at least {@link #getSegmentLengthInSamples()} samples
+	 * for every channel
+	 * @param segment the index of the segment
+	 */
+	public void getSegmentSamples(double[][] targets, int segment) {
+		synchronized (source) {
+			if (source instanceof MultichannelBlockSampleSource) {
+				((MultichannelBlockSampleSource) source).getSamples(channelIndices, targets, offsets[segment], segmentLength, 0);
+			} else {
+				for (int channel = 0; channel < channelCount; channel++) {
+					source.getSamples(channelIndices[channel], targets[channel], offsets[segment], segmentLength, 0);
+				}
+			}
+		}
+	}
+
 	@Override
 	public int getUnusableSegmentCount() {
 		return unusableSegmentCount;
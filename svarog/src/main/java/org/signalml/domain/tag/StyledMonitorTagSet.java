@@ -3,6 +3,7 @@
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.Semaphore;
 import javax.swing.Timer;
 import org.signalml.plugin.export.signal.Tag;
@@ -49,12 +50,18 @@ public void newSample(double newestSampleTimestamp) {
 		this.firstSampleTimestamp = newestSampleTimestamp - this.getPageSize();
 	}
 
+	/**
+	 * Returns all tags of this set, as the positions of monitor tags change
+	 * with every new sample. The returned set is a copy, so the tags may be
+	 * removed from this set while it is iterated.
+	 */
+	@Override
 	public SortedSet<Tag> getTagsBetween(double start, double end) {
 		start = (double) 0.0;
 		end = Double.MAX_VALUE;
 		Tag startMarker = new Tag(null, start - maxTagLength, 0);
 		Tag endMarker = new Tag(null, end, Double.MAX_VALUE); // note that lengths matter, so that all tags starting at exactly end will be selected
-		return tags.subSet(startMarker, true, endMarker, true);
+		return new TreeSet<Tag>(tags.subSet(startMarker, true, endMarker, true));
 	}
 
 	public double computePosition(double position) {
@@ -85,6 +85,13 @@ public class StyledTagSet implements Serializable, Preset {
 	 */
 	protected double maxTagLength = 0;
 
+	/**
+	 * The index of <i>tags</i> used to find tags overlapping a given range.
+	 * It is created when it is needed for the first time and then updated
+	 * when tags are added, removed or changed.
+	 */
+	private transient TagIntervalTree tagIndex = null;
+
 	/**
 	 * list of tagged selections of signal pages
 	 */
@@ -485,22 +492,61 @@ public SortedSet<Tag> getTags() {
 	}
 
 	/**
-	 * Returns {@link Tag tagged selections} that may be between two
-	 * given positions.
-	 * Always remember that this method returns tags that MAY be between
-	 * these two positions. It doesn't mean they actually ARE (!!!).
-	 * You always need to verify this. The only guarantee being made is that
-	 * ALL the tags that MAY be in this region  are returned.
+	 * Returns {@link Tag tagged selections} that overlap the range between
+	 * two given positions, that is tags which start before or at
+	 * <code>end</code> and end after or at <code>start</code>.
 	 * This set is inclusive at both ends!
+	 * The tags are found using the interval index, so the time needed
+	 * doesn't depend on the length of the longest tag.
+	 * The returned set is a copy: modifying it doesn't change this tag set.
 	 * @param start starting position
 	 * @param end ending position
-	 * @return set of tagged selections that may be between two
+	 * @return set of tagged selections that overlap the range between two
 	 * given positions.
 	 */
 	public SortedSet<Tag> getTagsBetween(double start, double end) {
-		Tag startMarker = new Tag(null, start-maxTagLength, 0);
-		Tag endMarker = new Tag(null,end,Float.MAX_VALUE); // note that lengths matter, so that all tags starting at exactly end will be selected
-		return tags.subSet(startMarker, true, endMarker, true);
+		TreeSet<Tag> result = new TreeSet<Tag>();
+		getTagIndex().findOverlapping(start, end, result);
+		return result;
+	}
+
+	/**
+	 * Returns the {@link TagIntervalTree index} of tags, creates it if
+	 * it doesn't exist.
+	 * @return the index of tags
+	 */
+	private TagIntervalTree getTagIndex() {
+		if (tagIndex == null) {
+			tagIndex = new TagIntervalTree(tags);
+		}
+		return tagIndex;
+	}
+
+	/**
+	 * Removes the {@link Tag tagged selection} (the instance which is
+	 * contained in this set) from <i>tags</i> and from the index.
+	 * Doesn't fire any events.
+	 * @param tag the tagged selection to be removed
+	 */
+	private void removeFromTags(Tag tag) {
+		tags.remove(tag);
+		if (tagIndex != null) {
+			tagIndex.remove(tag);
+		}
+	}
+
+	/**
+	 * Returns the instance of the {@link Tag tagged selection} contained
+	 * in this set which is equal to the given tag.
+	 * @param tag the tagged selection to be found
+	 * @return the contained instance or null if there is no such tag
+	 */
+	private Tag findContainedTag(Tag tag) {
+		Tag contained = tags.ceiling(tag);
+		if (contained != null && contained.compareTo(tag) == 0) {
+			return contained;
+		}
+		return null;
 	}
 
 	/**
@@ -796,7 +842,9 @@ public void addTag(Tag tag) {
 		if (style != null)
 			tag.setStyle(style);
 
-		tags.add(tag);
+		if (tags.add(tag) && tagIndex != null) {
+			tagIndex.add(tag);
+		}
 		invalidateTagCache(tag.getStyle().getType());
 		if (maxTagLength < tag.getLength()) {
 			maxTagLength = tag.getLength();
@@ -830,7 +878,7 @@ public void eraseTags(SignalSelection selection) {
 				confStart = confTag.getPosition();
 				confEnd = confStart + confTag.getLength();
 				if ((confStart < selEnd) && (confEnd > selStart) && (confTag.getChannel() == selection.getChannel())) {
-					it.remove();
+					removeFromTags(confTag);
 					invalidateTagCache(type);
 					if (confTag.getLength() > (maxTagLength * 0.75)) {
 						calculateLength = true;
@@ -874,7 +922,7 @@ public void replaceSameTypeTags(Tag tag) {
 				confStart = confTag.getPosition();
 				confEnd = confStart + confTag.getLength();
 				if ((confStart < selEnd) && (confEnd > selStart) && (confTag.getChannel() == tag.getChannel())) {
-					it.remove();
+					removeFromTags(confTag);
 					invalidateTagCache(confStyle.getType());
 					if (confTag.getLength() > (maxTagLength * 0.75)) {
 						calculateLength = true;
@@ -961,7 +1009,7 @@ public void splitAndMergeSameTypeTags(Tag tag) {
 
 					}
 
-					it.remove();
+					removeFromTags(confTag);
 					invalidateTagCache(confStyle.getType());
 					if (confTag.getLength() > (maxTagLength * 0.75)) {
 						calculateLength = true;
@@ -1032,7 +1080,7 @@ public void mergeSameTypeChannelTags(Tag tag) {
 				confStart = confTag.getPosition();
 				confEnd = confStart + confTag.getLength();
 				if ((confTag.getStyle() == tag.getStyle()) && (confStart <= selEnd) && (confEnd >= selStart) && (confTag.getChannel() == tag.getChannel())) {
-					it.remove();
+					removeFromTags(confTag);
 					invalidateTagCache(confStyle.getType());
 					if (confTag.getLength() > (maxTagLength * 0.75)) {
 						calculateLength = true;
@@ -1065,8 +1113,9 @@ public void mergeSameTypeChannelTags(Tag tag) {
 	 * @param tag the tagged selection to be removed
 	 */
 	public void removeTag(Tag tag) {
-		boolean removed = tags.remove(tag);
-		if (removed) {
+		Tag contained = findContainedTag(tag);
+		if (contained != null) {
+			removeFromTags(contained);
 			invalidateTagCache(tag.getStyle().getType());
 			if (tag.getLength() > (maxTagLength * 0.75)) {
 				calculateMaxTagLength();
@@ -1085,14 +1134,17 @@ public void updateTag(Tag oldTag, Tag tag) {
 		if (!verifyTag(tag)) {
 			throw new SanityCheckException("Tag not compatible");
 		}
-		boolean removed = tags.remove(oldTag);
-		if (removed) {
+		Tag contained = findContainedTag(oldTag);
+		if (contained != null) {
+			removeFromTags(contained);
 			invalidateTagCache(tag.getStyle().getType());
 			if (tag.getLength() != oldTag.getLength() && oldTag.getLength() > (maxTagLength * 0.9)) {
 				calculateMaxTagLength();
 			}
 		}
-		tags.add(tag);
+		if (tags.add(tag) && tagIndex != null) {
+			tagIndex.add(tag);
+		}
 		invalidateTagCache(tag.getStyle().getType());
 		if (maxTagLength < tag.getLength()) {
 			maxTagLength = tag.getLength();
@@ -1110,6 +1162,9 @@ public void editTag(Tag tag) {
 		if (!verifyTag(tag)) {
 			throw new SanityCheckException("Tag not compatible");
 		}
+		if (tagIndex != null) {
+			tagIndex.update(tag);
+		}
 		invalidateTagCache(tag.getStyle().getType());
 		fireTagChanged(tag, tag);
 	}
@@ -0,0 +1,289 @@
+package org.signalml.domain.tag;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Random;
+
+import org.signalml.plugin.export.signal.Tag;
+
+/**
+ * The index of {@link Tag tagged selections} which allows to find all
+ * tags overlapping a given range of time in O(log n + k).
+ * <p>
+ * It is an interval tree: a randomized binary search tree (treap) ordered
+ * by the start of tags in which every node additionally remembers the
+ * maximal end of all tags in its subtree, so subtrees which can't contain
+ * overlapping tags are skipped.
+ * <p>
+ * The position and the length of a tag are captured when it is added, so
+ * a tag which is modified in place must be {@link #update(Tag) updated}.
+ * Tags are identified by reference, not by {@link Tag#equals(Object)}.
+ * This class is not thread safe.
+ */
+class TagIntervalTree {
+
+	/**
+	 * The node of the tree.
+	 */
+	private static final class Node {
+
+		/**
+		 * the indexed tag
+		 */
+		private final Tag tag;
+
+		/**
+		 * the start of the tag at the moment it was added
+		 */
+		private final double start;
+
+		/**
+		 * the end of the tag at the moment it was added
+		 */
+		private final double end;
+
+		/**
+		 * the number distinguishing nodes with equal starts
+		 */
+		private final long sequence;
+
+		/**
+		 * the heap priority of the node
+		 */
+		private final int priority;
+
+		/**
+		 * the maximal end of tags in the subtree of this node
+		 */
+		private double maxEnd;
+
+		private Node left;
+		private Node right;
+
+		private Node(Tag tag, long sequence, int priority) {
+			this.tag = tag;
+			this.start = tag.getPosition();
+			this.end = start + tag.getLength();
+			this.sequence = sequence;
+			this.priority = priority;
+			this.maxEnd = end;
+		}
+
+		/**
+		 * Checks if this node precedes the given node in the tree order.
+		 */
+		private boolean isBefore(Node node) {
+			if (start != node.start) {
+				return start < node.start;
+			}
+			return sequence < node.sequence;
+		}
+
+		/**
+		 * Recalculates {@link #maxEnd} after children were changed.
+		 */
+		private void update() {
+			double max = end;
+			if (left != null && left.maxEnd > max) {
+				max = left.maxEnd;
+			}
+			if (right != null && right.maxEnd > max) {
+				max = right.maxEnd;
+			}
+			maxEnd = max;
+		}
+
+	}
+
+	/**
+	 * the nodes of the tree by the tags they contain
+	 */
+	private final IdentityHashMap<Tag, Node> nodes = new IdentityHashMap<Tag, Node>();
+
+	/**
+	 * the generator of node priorities
+	 */
+	private final Random random = new Random();
+
+	/**
+	 * the root of the tree, null if the tree is empty
+	 */
+	private Node root;
+
+	/**
+	 * the sequence number of the next added node
+	 */
+	private long nextSequence;
+
+	/**
+	 * Creates an empty index.
+	 */
+	public TagIntervalTree() {
+	}
+
+	/**
+	 * Creates the index of given tags.
+	 * @param tags the tags to be indexed
+	 */
+	public TagIntervalTree(Collection<Tag> tags) {
+		for (Tag tag : tags) {
+			add(tag);
+		}
+	}
+
+	/**
+	 * Returns the number of indexed tags.
+	 * @return the number of indexed tags
+	 */
+	public int size() {
+		return nodes.size();
+	}
+
+	/**
+	 * Adds the tag to the index. If the tag is already indexed it is
+	 * {@link #update(Tag) updated}.
+	 * @param tag the tag to be added
+	 */
+	public void add(Tag tag) {
+		remove(tag);
+		Node node = new Node(tag, nextSequence++, random.nextInt());
+		nodes.put(tag, node);
+		root = insert(root, node);
+	}
+
+	/**
+	 * Removes the tag from the index.
+	 * @param tag the tag to be removed
+	 * @return true if the tag was indexed, false otherwise
+	 */
+	public boolean remove(Tag tag) {
+		Node node = nodes.remove(tag);
+		if (node == null) {
+			return false;
+		}
+		root = delete(root, node);
+		return true;
+	}
+
+	/**
+	 * Updates the position and the length of a tag which was modified
+	 * after it was added.
+	 * @param tag the modified tag
+	 */
+	public void update(Tag tag) {
+		if (nodes.containsKey(tag)) {
+			add(tag);
+		}
+	}
+
+	/**
+	 * Removes all tags from the index.
+	 */
+	public void clear() {
+		nodes.clear();
+		root = null;
+	}
+
+	/**
+	 * Finds tags which overlap the given range, that is tags for which
+	 * <code>position &lt;= end</code> and
+	 * <code>position + length &gt;= start</code>.
+	 * Tags are added to the result ordered by their position.
+	 * @param start the start of the range
+	 * @param end the end of the range
+	 * @param result the collection to which found tags are added
+	 */
+	public void findOverlapping(double start, double end, Collection<Tag> result) {
+		findOverlapping(root, start, end, result);
+	}
+
+	private static void findOverlapping(Node node, double start, double end, Collection<Tag> result) {
+		while (node != null && node.maxEnd >= start) {
+			findOverlapping(node.left, start, end, result);
+			if (node.start > end) {
+				// all tags in the right subtree start even later
+				return;
+			}
+			if (node.end >= start) {
+				result.add(node.tag);
+			}
+			node = node.right;
+		}
+	}
+
+	private static Node insert(Node subtree, Node node) {
+		if (subtree == null) {
+			return node;
+		}
+		if (node.isBefore(subtree)) {
+			subtree.left = insert(subtree.left, node);
+			if (subtree.left.priority > subtree.priority) {
+				subtree = rotateRight(subtree);
+			}
+		} else {
+			subtree.right = insert(subtree.right, node);
+			if (subtree.right.priority > subtree.priority) {
+				subtree = rotateLeft(subtree);
+			}
+		}
+		subtree.update();
+		return subtree;
+	}
+
+	private static Node delete(Node subtree, Node node) {
+		if (subtree == null) {
+			return null;
+		}
+		if (subtree == node) {
+			return merge(node.left, node.right);
+		}
+		if (node.isBefore(subtree)) {
+			subtree.left = delete(subtree.left, node);
+		} else {
+			subtree.right = delete(subtree.right, node);
+		}
+		subtree.update();
+		return subtree;
+	}
+
+	/**
+	 * Merges two trees, all nodes of the first tree must precede all nodes
+	 * of the second tree.
+	 */
+	private static Node merge(Node first, Node second) {
+		if (first == null) {
+			return second;
+		}
+		if (second == null) {
+			return first;
+		}
+		if (first.priority > second.priority) {
+			first.right = merge(first.right, second);
+			first.update();
+			return first;
+		} else {
+			second.left = merge(first, second.left);
+			second.update();
+			return second;
+		}
+	}
+
+	private static Node rotateRight(Node node) {
+		Node left = node.left;
+		node.left = left.right;
+		left.right = node;
+		node.update();
+		left.update();
+		return left;
+	}
+
+	private static Node rotateLeft(Node node) {
+		Node right = node.right;
+		node.right = right.left;
+		right.left = node;
+		node.update();
+		right.update();
+		return right;
+	}
+
+}
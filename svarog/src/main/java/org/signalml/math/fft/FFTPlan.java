@@ -0,0 +1,552 @@
+package org.signalml.math.fft;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class calculates the discrete Fourier transform of a given size
+ * on primitive arrays.
+ * <p>
+ * Complex data is stored in interleaved arrays: the real part of the
+ * k-th element is at index <code>2*k</code> and the imaginary part at
+ * index <code>2*k+1</code>. All transforms are performed in place (or into
+ * arrays given by the caller), so no objects are allocated while
+ * transforming.
+ * <p>
+ * The twiddle factors and the bit reversal permutation are calculated
+ * once for every size and plans are cached, so a plan should be obtained
+ * using {@link #getPlan(int)}. Sizes which are powers of two are
+ * transformed using the iterative radix-2 algorithm, other sizes
+ * using the Bluestein (chirp-z) algorithm.
+ * <p>
+ * Plans are immutable and may be used concurrently by many threads;
+ * the buffers needed by the Bluestein algorithm are kept per thread.
+ */
+public class FFTPlan {
+
+	/**
+	 * the cache of already created plans
+	 */
+	private static final ConcurrentHashMap<Integer, FFTPlan> plans = new ConcurrentHashMap<Integer, FFTPlan>();
+
+	/**
+	 * the size of the transform (the number of complex elements)
+	 */
+	private final int size;
+
+	/**
+	 * the bit reversal permutation, null if the size is not a power of two
+	 */
+	private final int[] bitReversal;
+
+	/**
+	 * cosines of 2*PI*k/size for k &lt; size/2, null if the size
+	 * is not a power of two
+	 */
+	private final double[] cosTable;
+
+	/**
+	 * sines of 2*PI*k/size for k &lt; size/2, null if the size
+	 * is not a power of two
+	 */
+	private final double[] sinTable;
+
+	/**
+	 * the plan used to calculate the convolution in the Bluestein
+	 * algorithm, null if the size is a power of two
+	 */
+	private final FFTPlan convolutionPlan;
+
+	/**
+	 * the interleaved chirp exp(-i*PI*k*k/size) used by the Bluestein
+	 * algorithm
+	 */
+	private final double[] chirp;
+
+	/**
+	 * the interleaved transform of the conjugated chirp used by the
+	 * Bluestein algorithm
+	 */
+	private final double[] chirpTransform;
+
+	/**
+	 * the per thread buffer for the Bluestein algorithm
+	 */
+	private final ThreadLocal<double[]> bluesteinBuffer;
+
+	/**
+	 * the plan of size/2 used to transform real data of even size
+	 * (null for odd sizes)
+	 */
+	private final FFTPlan halfPlan;
+
+	/**
+	 * cosines of 2*PI*k/size for k &lt;= size/4 used to transform real
+	 * data of even size
+	 */
+	private final double[] realCosTable;
+
+	/**
+	 * sines of 2*PI*k/size for k &lt;= size/4 used to transform real
+	 * data of even size
+	 */
+	private final double[] realSinTable;
+
+	/**
+	 * the per thread buffer used to transform real data of odd size
+	 */
+	private final ThreadLocal<double[]> oddRealBuffer;
+
+	/**
+	 * Returns the plan for the transform of a given size. Plans are
+	 * cached, so subsequent calls for the same size return the same plan.
+	 * @param size the number of complex elements to be transformed
+	 * @return the plan
+	 * @throws IllegalArgumentException if the size is not positive
+	 */
+	public static FFTPlan getPlan(int size) {
+		Integer key = Integer.valueOf(size);
+		FFTPlan plan = plans.get(key);
+		if (plan == null) {
+			plan = new FFTPlan(size);
+			FFTPlan existing = plans.putIfAbsent(key, plan);
+			if (existing != null) {
+				plan = existing;
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Checks whether the given number is a power of two.
+	 * @param n the number to be checked
+	 * @return true if n is a power of two, false otherwise
+	 */
+	public static boolean isPowerOfTwo(int n) {
+		return n > 0 && (n & (n - 1)) == 0;
+	}
+
+	/**
+	 * Constructor. Calculates the tables for the transform of a given size.
+	 * @param size the number of complex elements to be transformed
+	 */
+	private FFTPlan(int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Bad transform size [" + size + "]");
+		}
+		this.size = size;
+
+		if (isPowerOfTwo(size)) {
+			int bits = Integer.numberOfTrailingZeros(size);
+			bitReversal = new int[size];
+			for (int i = 0; i < size; i++) {
+				bitReversal[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+			}
+			cosTable = new double[size / 2];
+			sinTable = new double[size / 2];
+			for (int i = 0; i < size / 2; i++) {
+				double angle = 2 * Math.PI * i / size;
+				cosTable[i] = Math.cos(angle);
+				sinTable[i] = Math.sin(angle);
+			}
+			convolutionPlan = null;
+			chirp = null;
+			chirpTransform = null;
+			bluesteinBuffer = null;
+		} else {
+			bitReversal = null;
+			cosTable = null;
+			sinTable = null;
+
+			int convolutionSize = Integer.highestOneBit(2 * size - 1) << 1;
+			convolutionPlan = getPlan(convolutionSize);
+
+			chirp = new double[2 * size];
+			long doubleSize = 2L * size;
+			for (int i = 0; i < size; i++) {
+				// k*k modulo 2*size keeps the angle accurate for large k
+				long square = ((long) i * i) % doubleSize;
+				double angle = Math.PI * square / size;
+				chirp[2 * i] = Math.cos(angle);
+				chirp[2 * i + 1] = -Math.sin(angle);
+			}
+
+			chirpTransform = new double[2 * convolutionSize];
+			chirpTransform[0] = chirp[0];
+			chirpTransform[1] = -chirp[1];
+			for (int i = 1; i < size; i++) {
+				chirpTransform[2 * i] = chirp[2 * i];
+				chirpTransform[2 * i + 1] = -chirp[2 * i + 1];
+				chirpTransform[2 * (convolutionSize - i)] = chirp[2 * i];
+				chirpTransform[2 * (convolutionSize - i) + 1] = -chirp[2 * i + 1];
+			}
+			convolutionPlan.forward(chirpTransform, 0);
+
+			final int bufferLength = 2 * convolutionSize;
+			bluesteinBuffer = new ThreadLocal<double[]>() {
+				@Override
+				protected double[] initialValue() {
+					return new double[bufferLength];
+				}
+			};
+		}
+
+		if (size % 2 == 0) {
+			halfPlan = getPlan(size / 2);
+			int quarter = size / 4;
+			realCosTable = new double[quarter + 1];
+			realSinTable = new double[quarter + 1];
+			for (int i = 0; i <= quarter; i++) {
+				double angle = 2 * Math.PI * i / size;
+				realCosTable[i] = Math.cos(angle);
+				realSinTable[i] = Math.sin(angle);
+			}
+			oddRealBuffer = null;
+		} else {
+			halfPlan = null;
+			realCosTable = null;
+			realSinTable = null;
+			final int bufferLength = 2 * size;
+			oddRealBuffer = new ThreadLocal<double[]>() {
+				@Override
+				protected double[] initialValue() {
+					return new double[bufferLength];
+				}
+			};
+		}
+	}
+
+	/**
+	 * Returns the size of the transform.
+	 * @return the number of complex elements transformed by this plan
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Calculates in place the forward transform of the interleaved complex
+	 * data.
+	 * @param data the interleaved complex data, at least <code>2*size</code>
+	 * long
+	 */
+	public void forward(double[] data) {
+		forward(data, 0);
+	}
+
+	/**
+	 * Calculates in place the forward transform of the interleaved complex
+	 * data starting from the given position.
+	 * @param data the array with the interleaved complex data
+	 * @param offset the index in the array of the real part of the first
+	 * element
+	 */
+	public void forward(double[] data, int offset) {
+		transform(data, offset, false);
+	}
+
+	/**
+	 * Calculates in place the inverse transform of the interleaved complex
+	 * data. The result is scaled by <code>1/size</code>, so
+	 * inverse(forward(x)) == x.
+	 * @param data the interleaved complex data, at least <code>2*size</code>
+	 * long
+	 */
+	public void inverse(double[] data) {
+		inverse(data, 0);
+	}
+
+	/**
+	 * Calculates in place the inverse transform of the interleaved complex
+	 * data starting from the given position. The result is scaled by
+	 * <code>1/size</code>.
+	 * @param data the array with the interleaved complex data
+	 * @param offset the index in the array of the real part of the first
+	 * element
+	 */
+	public void inverse(double[] data, int offset) {
+		transform(data, offset, true);
+		double scale = 1.0 / size;
+		int end = offset + 2 * size;
+		for (int i = offset; i < end; i++) {
+			data[i] *= scale;
+		}
+	}
+
+	/**
+	 * Calculates the unscaled transform in place.
+	 * @param data the array with the interleaved complex data
+	 * @param offset the index of the real part of the first element
+	 * @param inverse true for the inverse transform, false for the
+	 * forward transform
+	 */
+	private void transform(double[] data, int offset, boolean inverse) {
+		if (bitReversal != null) {
+			radix2(data, offset, inverse);
+		} else {
+			bluestein(data, offset, inverse);
+		}
+	}
+
+	/**
+	 * Calculates the unscaled transform using the iterative radix-2
+	 * algorithm.
+	 * @param data the array with the interleaved complex data
+	 * @param offset the index of the real part of the first element
+	 * @param inverse true for the inverse transform
+	 */
+	private void radix2(double[] data, int offset, boolean inverse) {
+		int i, j, k;
+		double tr, ti;
+
+		for (i = 0; i < size; i++) {
+			j = bitReversal[i];
+			if (j > i) {
+				int a = offset + 2 * i;
+				int b = offset + 2 * j;
+				tr = data[a];
+				ti = data[a + 1];
+				data[a] = data[b];
+				data[a + 1] = data[b + 1];
+				data[b] = tr;
+				data[b + 1] = ti;
+			}
+		}
+
+		double sign = inverse ? 1.0 : -1.0;
+		for (int length = 2; length <= size; length <<= 1) {
+			int half = length >> 1;
+			int step = size / length;
+			for (i = 0; i < size; i += length) {
+				for (j = 0, k = 0; j < half; j++, k += step) {
+					double wr = cosTable[k];
+					double wi = sign * sinTable[k];
+					int a = offset + 2 * (i + j);
+					int b = a + 2 * half;
+					double br = data[b];
+					double bi = data[b + 1];
+					tr = br * wr - bi * wi;
+					ti = br * wi + bi * wr;
+					data[b] = data[a] - tr;
+					data[b + 1] = data[a + 1] - ti;
+					data[a] += tr;
+					data[a + 1] += ti;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calculates the unscaled transform of any size using the Bluestein
+	 * algorithm, which expresses the transform as a convolution
+	 * calculated with transforms of a power of two size.
+	 * @param data the array with the interleaved complex data
+	 * @param offset the index of the real part of the first element
+	 * @param inverse true for the inverse transform
+	 */
+	private void bluestein(double[] data, int offset, boolean inverse) {
+		double[] buffer = bluesteinBuffer.get();
+		int convolutionSize = convolutionPlan.getSize();
+		// the inverse transform is the conjugated forward transform
+		// of the conjugated data
+		double sign = inverse ? -1.0 : 1.0;
+		int i;
+
+		for (i = 0; i < size; i++) {
+			double xr = data[offset + 2 * i];
+			double xi = sign * data[offset + 2 * i + 1];
+			double cr = chirp[2 * i];
+			double ci = chirp[2 * i + 1];
+			buffer[2 * i] = xr * cr - xi * ci;
+			buffer[2 * i + 1] = xr * ci + xi * cr;
+		}
+		for (i = 2 * size; i < 2 * convolutionSize; i++) {
+			buffer[i] = 0.0;
+		}
+
+		convolutionPlan.forward(buffer, 0);
+		for (i = 0; i < convolutionSize; i++) {
+			double ar = buffer[2 * i];
+			double ai = buffer[2 * i + 1];
+			double br = chirpTransform[2 * i];
+			double bi = chirpTransform[2 * i + 1];
+			buffer[2 * i] = ar * br - ai * bi;
+			buffer[2 * i + 1] = ar * bi + ai * br;
+		}
+		convolutionPlan.inverse(buffer, 0);
+
+		for (i = 0; i < size; i++) {
+			double xr = buffer[2 * i];
+			double xi = buffer[2 * i + 1];
+			double cr = chirp[2 * i];
+			double ci = chirp[2 * i + 1];
+			data[offset + 2 * i] = xr * cr - xi * ci;
+			data[offset + 2 * i + 1] = sign * (xr * ci + xi * cr);
+		}
+	}
+
+	/**
+	 * Returns the length of the array needed to hold the spectrum
+	 * calculated by {@link #realForward(double[], int, double[])}.
+	 * @return the length of the half spectrum array
+	 */
+	public int getRealSpectrumLength() {
+		return 2 * (size / 2 + 1);
+	}
+
+	/**
+	 * Calculates the forward transform of real data.
+	 * Because the transform of real data is conjugate symmetric, only
+	 * the elements from 0 to size/2 (inclusive) are calculated. They are
+	 * written as interleaved complex numbers to the spectrum array.
+	 * <p>
+	 * For even sizes the data is transformed as complex data of half
+	 * the size, so the transform takes about half of the time of the
+	 * complex transform. The input array may be the same as
+	 * the spectrum array if the offset is 0.
+	 * @param input the array with the real data
+	 * @param inputOffset the index of the first sample in the input array
+	 * @param spectrum the array to which the half spectrum will be written,
+	 * at least {@link #getRealSpectrumLength()} long
+	 */
+	public void realForward(double[] input, int inputOffset, double[] spectrum) {
+		int i;
+		if (halfPlan == null) {
+			double[] buffer = oddRealBuffer.get();
+			for (i = 0; i < size; i++) {
+				buffer[2 * i] = input[inputOffset + i];
+				buffer[2 * i + 1] = 0.0;
+			}
+			transform(buffer, 0, false);
+			System.arraycopy(buffer, 0, spectrum, 0, getRealSpectrumLength());
+			return;
+		}
+
+		if (input != spectrum || inputOffset != 0) {
+			System.arraycopy(input, inputOffset, spectrum, 0, size);
+		}
+		// even samples are real parts and odd samples are imaginary parts
+		halfPlan.transform(spectrum, 0, false);
+
+		int half = size / 2;
+		double zr = spectrum[0];
+		double zi = spectrum[1];
+		spectrum[0] = zr + zi;
+		spectrum[1] = 0.0;
+		spectrum[2 * half] = zr - zi;
+		spectrum[2 * half + 1] = 0.0;
+
+		for (int k = 1; k <= half / 2; k++) {
+			int j = half - k;
+			double zkr = spectrum[2 * k];
+			double zki = spectrum[2 * k + 1];
+			double zjr = spectrum[2 * j];
+			double zji = spectrum[2 * j + 1];
+
+			// transforms of even and odd samples
+			double er = 0.5 * (zkr + zjr);
+			double ei = 0.5 * (zki - zji);
+			double or = 0.5 * (zki + zji);
+			double oi = -0.5 * (zkr - zjr);
+
+			double c = realCosTable[k];
+			double s = realSinTable[k];
+			double tr = c * or + s * oi;
+			double ti = c * oi - s * or;
+
+			spectrum[2 * k] = er + tr;
+			spectrum[2 * k + 1] = ei + ti;
+			spectrum[2 * j] = er - tr;
+			spectrum[2 * j + 1] = -ei + ti;
+		}
+	}
+
+	/**
+	 * Calculates the inverse transform of the spectrum of real data.
+	 * This is the inverse of {@link #realForward(double[], int, double[])}:
+	 * the spectrum contains interleaved complex elements from 0 to size/2
+	 * (inclusive) and the result is scaled by <code>1/size</code>.
+	 * The spectrum array may be the same as the output array if the offset
+	 * is 0 (it is overwritten in that case).
+	 * @param spectrum the half spectrum
+	 * @param output the array to which the real data will be written
+	 * @param outputOffset the index in the output array of the first sample
+	 */
+	public void realInverse(double[] spectrum, double[] output, int outputOffset) {
+		int i;
+		if (halfPlan == null) {
+			double[] buffer = oddRealBuffer.get();
+			int half = size / 2;
+			for (i = 0; i <= half; i++) {
+				buffer[2 * i] = spectrum[2 * i];
+				buffer[2 * i + 1] = spectrum[2 * i + 1];
+			}
+			for (i = half + 1; i < size; i++) {
+				buffer[2 * i] = spectrum[2 * (size - i)];
+				buffer[2 * i + 1] = -spectrum[2 * (size - i) + 1];
+			}
+			transform(buffer, 0, true);
+			double scale = 1.0 / size;
+			for (i = 0; i < size; i++) {
+				output[outputOffset + i] = buffer[2 * i] * scale;
+			}
+			return;
+		}
+
+		int half = size / 2;
+		double x0r = spectrum[0];
+		double x0i = spectrum[1];
+		double xhr = spectrum[2 * half];
+		double xhi = spectrum[2 * half + 1];
+
+		// the pair k, size/2-k reads and writes only its own elements,
+		// so the output may be the same array as the spectrum
+		for (int k = 1; k <= half / 2; k++) {
+			inverseRealPair(spectrum, output, outputOffset, k, half - k);
+		}
+
+		double er = 0.5 * (x0r + xhr);
+		double ei = 0.5 * (x0i - xhi);
+		double or = 0.5 * (x0r - xhr);
+		double oi = 0.5 * (x0i + xhi);
+		output[outputOffset] = er - oi;
+		output[outputOffset + 1] = ei + or;
+
+		halfPlan.transform(output, outputOffset, true);
+		double scale = 1.0 / half;
+		for (i = outputOffset; i < outputOffset + size; i++) {
+			output[i] *= scale;
+		}
+	}
+
+	/**
+	 * Calculates the elements k and j=size/2-k of the half size complex
+	 * data from the spectrum of real data.
+	 * @param spectrum the half spectrum
+	 * @param output the array to which the complex data is written
+	 * @param outputOffset the index of the first element in the output array
+	 * @param k the index of the first element of the pair
+	 * @param j the index of the second element of the pair
+	 */
+	private void inverseRealPair(double[] spectrum, double[] output, int outputOffset, int k, int j) {
+		double xkr = spectrum[2 * k];
+		double xki = spectrum[2 * k + 1];
+		double xjr = spectrum[2 * j];
+		double xji = spectrum[2 * j + 1];
+
+		double er = 0.5 * (xkr + xjr);
+		double ei = 0.5 * (xki - xji);
+		double dr = 0.5 * (xkr - xjr);
+		double di = 0.5 * (xki + xji);
+
+		double c = realCosTable[k];
+		double s = realSinTable[k];
+		double or = dr * c - di * s;
+		double oi = dr * s + di * c;
+
+		output[outputOffset + 2 * k] = er - oi;
+		output[outputOffset + 2 * k + 1] = ei + or;
+		output[outputOffset + 2 * j] = er + oi;
+		output[outputOffset + 2 * j + 1] = -ei + or;
+	}
+
+}
@@ -1,11 +1,13 @@
 package org.signalml.math.fft;
 
+import java.util.Arrays;
+
 import org.apache.commons.math.complex.Complex;
-import org.apache.commons.math.transform.FastFourierTransformer;
 import org.signalml.math.ArrayOperations;
 
 /**
  * This class can be used to calculate FFT of a signal.
+ * The transforms are calculated by {@link FFTPlan}.
  *
  * @author Piotr Szachewicz
  */
@@ -16,6 +18,18 @@ public class FourierTransform {
 	 */
 	private WindowFunction windowFunction = new WindowFunction(WindowType.RECTANGULAR);
 
+	/**
+	 * The buffer for the half spectrum reused by
+	 * {@link #calculatePowerSpectrum(double[])}.
+	 */
+	private double[] spectrumBuffer;
+
+	/**
+	 * The buffer for the power spectrum returned by
+	 * {@link #calculatePowerSpectrum(double[])}.
+	 */
+	private double[] powerSpectrumBuffer;
+
 	/**
 	 * Constructor.
 	 * @param windowType the window to be used before performing FFT
@@ -50,11 +64,19 @@ public FourierTransform() {
 	 * @return the result of the FFT
 	 */
 	public Complex[] forwardFFT(double[] signal) {
-		FastFourierTransformer transformer = new FastFourierTransformer();
+		int size = getPowerOfTwoSize(signal.length);
+		double[] data = new double[2 * size];
 		double[] windowedSignal = windowFunction.applyWindow(signal);
-		double[] paddedSignal = padWithZeroIfNecessary(windowedSignal);
-		return transformer.transform(paddedSignal);
+		for (int i = 0; i < windowedSignal.length; i++) {
+			data[2 * i] = windowedSignal[i];
+		}
+		FFTPlan.getPlan(size).forward(data);
 
+		Complex[] transformed = new Complex[size];
+		for (int i = 0; i < size; i++) {
+			transformed[i] = new Complex(data[2 * i], data[2 * i + 1]);
+		}
+		return transformed;
 	}
 
 	/**
@@ -66,16 +88,79 @@ public Complex[] forwardFFT(double[] signal) {
 	 * @return the time domain representation of the signal
 	 */
 	public double[] inverseFFT(Complex[] fft) {
-		FastFourierTransformer transformer = new FastFourierTransformer();
-		Complex[] complexSignal = transformer.inversetransform(fft);
+		double[] data = new double[2 * fft.length];
+		for (int i = 0; i < fft.length; i++) {
+			data[2 * i] = fft[i].getReal();
+			data[2 * i + 1] = fft[i].getImaginary();
+		}
+		FFTPlan.getPlan(fft.length).inverse(data);
 
-		double[] signal = new double[complexSignal.length];
-		for (int i = 0; i < complexSignal.length; i++) {
-			signal[i] = complexSignal[i].getReal();
+		double[] signal = new double[fft.length];
+		for (int i = 0; i < signal.length; i++) {
+			signal[i] = data[2 * i];
 		}
 		return signal;
 	}
 
+	/**
+	 * Calculates the FFT of the real signal without allocating
+	 * intermediate objects.
+	 * The window is applied to the first <code>length</code> samples of
+	 * the signal and the windowed signal is padded with zeros to the
+	 * {@link #getPowerOfTwoSize(int) power of two size}. Because the
+	 * transform of a real signal is conjugate symmetric only its first
+	 * half (elements from 0 to size/2 inclusive) is returned as interleaved
+	 * complex numbers (see {@link FFTPlan}).
+	 * @param signal the signal for which the FFT should be calculated
+	 * @param length the number of samples of the signal to be used
+	 * @param spectrum the array to which the result will be written,
+	 * it is reused if it is at least {@link #getRealSpectrumLength(int)} long
+	 * (may be null)
+	 * @return the array with the half spectrum (the spectrum array if
+	 * it was large enough)
+	 */
+	public double[] forwardRealFFT(double[] signal, int length, double[] spectrum) {
+		int size = getPowerOfTwoSize(length);
+		int spectrumLength = getRealSpectrumLength(size);
+		if (spectrum == null || spectrum.length < spectrumLength) {
+			spectrum = new double[spectrumLength];
+		}
+		windowFunction.applyWindow(signal, 0, length, spectrum, 0);
+		Arrays.fill(spectrum, length, size, 0.0);
+		FFTPlan.getPlan(size).realForward(spectrum, 0, spectrum);
+		return spectrum;
+	}
+
+	/**
+	 * Calculates the inverse FFT of the half spectrum calculated by
+	 * {@link #forwardRealFFT(double[], int, double[])}.
+	 * @param spectrum the half spectrum of the real signal (it is not
+	 * modified)
+	 * @param size the size of the transform (the length of the signal
+	 * in the time domain)
+	 * @param signal the array to which the signal will be written,
+	 * it is reused if it is at least size long (may be null)
+	 * @return the time domain representation of the signal
+	 */
+	public double[] inverseRealFFT(double[] spectrum, int size, double[] signal) {
+		if (signal == null || signal.length < size) {
+			signal = new double[size];
+		}
+		FFTPlan.getPlan(size).realInverse(spectrum, signal, 0);
+		return signal;
+	}
+
+	/**
+	 * Returns the length of the array needed to hold the half spectrum
+	 * of a real signal.
+	 * @param size the size of the transform
+	 * @return the length of the array with interleaved complex elements
+	 * from 0 to size/2 (inclusive)
+	 */
+	public static int getRealSpectrumLength(int size) {
+		return 2 * (size / 2 + 1);
+	}
+
 	/**
 	 * Returns a number that is greater or equal to the given and is
 	 * power of 2.
@@ -134,23 +219,39 @@ public static double[] getFrequencies(double[] signal, double samplingFrequency)
 
 	/**
 	 * Calculates the power spectrum of the provided real sample
-	 * data using FFT.
+	 * data using FFT. The returned array is owned by this object and
+	 * is overwritten by the next call of this method.
 	 * @param samples the data (real numbers)
 	 * @return estimates of the power spectrum
 	 */
 	public double[] calculatePowerSpectrum(double[] samples) {
+		powerSpectrumBuffer = calculatePowerSpectrum(samples, powerSpectrumBuffer);
+		return powerSpectrumBuffer;
+	}
+
+	/**
+	 * Calculates the power spectrum of the provided real sample
+	 * data using FFT.
+	 * @param samples the data (real numbers)
+	 * @param powerSpectrum the array to which the power spectrum will be
+	 * written, it is reused if its length is samples.length/2 (may be null)
+	 * @return estimates of the power spectrum
+	 */
+	public double[] calculatePowerSpectrum(double[] samples, double[] powerSpectrum) {
 
-		Complex[] fftTransformedData = forwardFFT(samples);
 		int dataLength = samples.length;
+		int fftSize = getPowerOfTwoSize(dataLength);
+		spectrumBuffer = forwardRealFFT(samples, dataLength, spectrumBuffer);
+		double[] spectrum = spectrumBuffer;
 		int size = dataLength/2;
 
-		double[] powerSpectrum = new double[size];
-		powerSpectrum[0] = square(fftTransformedData[0].getReal()) + square(fftTransformedData[0].getImaginary());
+		if (powerSpectrum == null || powerSpectrum.length != size) {
+			powerSpectrum = new double[size];
+		}
+		powerSpectrum[0] = squaredModulus(spectrum, fftSize, 0);
 		for (int i = 1; i < size ; ++i) {
-			powerSpectrum[i] = square(fftTransformedData[i].getReal())
-					+ square(fftTransformedData[i].getImaginary())
-					+ square(fftTransformedData[dataLength - i].getReal())
-					+ square(fftTransformedData[dataLength-i].getImaginary());
+			powerSpectrum[i] = squaredModulus(spectrum, fftSize, i)
+					+ squaredModulus(spectrum, fftSize, dataLength - i);
 		}
 		for (int i = 1; i < size ; ++i) {
 			powerSpectrum[i] = 2.0D * powerSpectrum[i] / (windowFunction.getWindowWeightsSqueredSum()*dataLength);
@@ -158,6 +259,21 @@ public double[] calculatePowerSpectrum(double[] samples) {
 		return powerSpectrum;
 	}
 
+	/**
+	 * Returns the squared modulus of the given element of the full spectrum
+	 * of a real signal using its half spectrum.
+	 * @param spectrum the half spectrum
+	 * @param fftSize the size of the transform
+	 * @param index the index of the element in the full spectrum
+	 * @return the squared modulus of the element
+	 */
+	private double squaredModulus(double[] spectrum, int fftSize, int index) {
+		if (index > fftSize / 2) {
+			index = fftSize - index;
+		}
+		return square(spectrum[2 * index]) + square(spectrum[2 * index + 1]);
+	}
+
 	protected double square(double x) {
 		return x*x;
 	}
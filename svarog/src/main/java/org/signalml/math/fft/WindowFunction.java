@@ -139,4 +139,29 @@ public double[] applyWindow(double[] data) {
 		return windowedData;
 	}
 
+	/**
+	 * Applies the window to the given part of the real data and writes
+	 * the windowed data to the target array. No arrays are allocated
+	 * if the weights for the given length were already calculated.
+	 * The target may be the same array as the data.
+	 * @param data the data to be windowed
+	 * @param offset the index of the first sample to be windowed
+	 * @param length the number of samples (the length of the window)
+	 * @param target the array to which windowed data will be written
+	 * @param targetOffset the index in the target array starting from which
+	 * windowed data will be written
+	 */
+	public void applyWindow(double[] data, int offset, int length, double[] target, int targetOffset) {
+		calculateWeights(length);
+		if (windowType == WindowType.RECTANGULAR) {
+			if (data != target || offset != targetOffset) {
+				System.arraycopy(data, offset, target, targetOffset, length);
+			}
+			return;
+		}
+		for (int i = 0; i < length; ++i) {
+			target[targetOffset + i] = windowWeights[i] * data[offset + i];
+		}
+	}
+
 }
@@ -0,0 +1,378 @@
+package org.signalml.math.iirdesigner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.math.MathException;
+import org.apache.commons.math.analysis.solvers.LaguerreSolver;
+import org.apache.commons.math.complex.Complex;
+
+/**
+ * This class contains the representation of a digital filter as a cascade
+ * of second order sections (biquads). Filtering with the sections one after
+ * another gives the same result as filtering with the {@link FilterCoefficients
+ * coefficients} of the whole filter, but is numerically much more stable for
+ * filters of high orders, whose poles lie close to each other.
+ * <p>
+ * Each section is stored as an array {b0, b1, b2, a1, a2} of the coefficients
+ * of the transfer function (b0 + b1 z^-1 + b2 z^-2) / (1 + a1 z^-1 + a2 z^-2).
+ * The gain of the filter is included in the first section. The sections are
+ * ordered so that the poles closest to the unit circle are in the last section
+ * and each section has the zeros closest to its poles.
+ */
+public class SecondOrderSections {
+
+	/**
+	 * the roots whose imaginary part is smaller than this (relative to
+	 * the modulus of the root) are treated as real
+	 */
+	private static final double IMAGINARY_PART_TOLERANCE = 1e-9;
+
+	/**
+	 * the maximum difference (relative to the largest coefficient) between
+	 * the coefficients of the filter and the product of its sections
+	 */
+	private static final double COEFFICIENT_TOLERANCE = 1e-6;
+
+	/**
+	 * the maximum value (relative to the sum of the moduli of the coefficients)
+	 * of a polynomial at z = 1 or z = -1 for which the point is treated as its root
+	 */
+	private static final double ROOT_TOLERANCE = 1e-12;
+
+	/**
+	 * the coefficients of the sections
+	 */
+	private double[][] sections;
+
+	/**
+	 * the largest modulus of the poles of the filter
+	 */
+	private double maxPoleRadius;
+
+	/**
+	 * Constructor.
+	 * @param sections the coefficients {b0, b1, b2, a1, a2} of each section
+	 * @param maxPoleRadius the largest modulus of the poles of the filter
+	 */
+	protected SecondOrderSections(double[][] sections, double maxPoleRadius) {
+		this.sections = sections;
+		this.maxPoleRadius = maxPoleRadius;
+	}
+
+	/**
+	 * Converts the coefficients of a filter (for example returned by the
+	 * {@link IIRDesigner}) to second order sections, by finding the zeros
+	 * and poles of the filter and grouping them in pairs.
+	 *
+	 * @param coefficients the coefficients of the filter
+	 * @return the second order sections of the filter
+	 * @throws BadFilterParametersException thrown when the coefficients cannot
+	 * be converted (the roots of the polynomials cannot be found accurately enough)
+	 */
+	public static SecondOrderSections fromCoefficients(FilterCoefficients coefficients) throws BadFilterParametersException {
+
+		double[] b = stripTrailingZeros(coefficients.getBCoefficients());
+		double[] a = stripTrailingZeros(coefficients.getACoefficients());
+
+		if (a.length == 0 || a[0] == 0.0 || b.length == 0 || b[0] == 0.0) {
+			throw new BadFilterParametersException("The first coefficients of the filter must not be zero.");
+		}
+
+		List<double[]> zeroFactors = factorize(b, true);
+		List<double[]> poleFactors = factorize(a, false);
+
+		double gain = b[0] / a[0];
+		double maxPoleRadius = 0.0;
+		for (double[] factor : poleFactors) {
+			maxPoleRadius = Math.max(maxPoleRadius, getRadius(factor));
+		}
+
+		// poles farthest from the unit circle first
+		Collections.sort(poleFactors, new Comparator<double[]>() {
+			@Override
+			public int compare(double[] f1, double[] f2) {
+				return Double.compare(getRadius(f1), getRadius(f2));
+			}
+		});
+
+		int sectionCount = Math.max(1, Math.max(zeroFactors.size(), poleFactors.size()));
+		double[][] sections = new double[sectionCount][];
+
+		// the sections with poles closest to the unit circle are paired first
+		for (int i = sectionCount - 1; i >= 0; i--) {
+			double[] poles = (i < poleFactors.size() ? poleFactors.get(i) : new double[] {0.0, 0.0});
+			double[] zeros = new double[] {0.0, 0.0};
+			if (!zeroFactors.isEmpty()) {
+				int nearest = 0;
+				if (i < poleFactors.size()) {
+					double nearestDistance = Double.MAX_VALUE;
+					for (int j = 0; j < zeroFactors.size(); j++) {
+						double distance = getDistance(zeroFactors.get(j), poles);
+						if (distance < nearestDistance) {
+							nearestDistance = distance;
+							nearest = j;
+						}
+					}
+				}
+				zeros = zeroFactors.remove(nearest);
+			}
+			sections[i] = new double[] {1.0, zeros[0], zeros[1], poles[0], poles[1]};
+		}
+
+		for (int i = 0; i < 3; i++) {
+			sections[0][i] *= gain;
+		}
+
+		SecondOrderSections result = new SecondOrderSections(sections, maxPoleRadius);
+		result.checkCoefficients(b, a);
+		return result;
+
+	}
+
+	/**
+	 * Returns the number of sections.
+	 * @return the number of sections
+	 */
+	public int getSectionCount() {
+		return sections.length;
+	}
+
+	/**
+	 * Returns the coefficients of the given section.
+	 * @param index the index of the section
+	 * @return an array {b0, b1, b2, a1, a2} of the coefficients of the section
+	 */
+	public double[] getSection(int index) {
+		return sections[index].clone();
+	}
+
+	/**
+	 * Returns the largest modulus of the poles of the filter. The filter
+	 * is stable if it is smaller than one, and the closer it is to one,
+	 * the longer the response of the filter lasts.
+	 * @return the largest modulus of the poles
+	 */
+	public double getMaxPoleRadius() {
+		return maxPoleRadius;
+	}
+
+	/**
+	 * Checks if the product of the sections has the given coefficients.
+	 */
+	private void checkCoefficients(double[] b, double[] a) throws BadFilterParametersException {
+
+		double[] bProduct = new double[] {1.0};
+		double[] aProduct = new double[] {1.0};
+		for (double[] section : sections) {
+			bProduct = multiply(bProduct, new double[] {section[0], section[1], section[2]});
+			aProduct = multiply(aProduct, new double[] {1.0, section[3], section[4]});
+		}
+
+		if (!isProductOf(bProduct, b, b[0] / a[0]) || !isProductOf(aProduct, a, 1.0)) {
+			throw new BadFilterParametersException("The roots of the filter polynomials cannot be found accurately.");
+		}
+
+	}
+
+	/**
+	 * Returns true if the given product is equal (within the tolerance)
+	 * to the given coefficients multiplied by the scale.
+	 */
+	private static boolean isProductOf(double[] product, double[] coefficients, double scale) {
+		double max = 0.0;
+		for (double coefficient : coefficients) {
+			max = Math.max(max, Math.abs(coefficient / coefficients[0]));
+		}
+		for (int i = 0; i < product.length; i++) {
+			double expected = (i < coefficients.length ? coefficients[i] / coefficients[0] : 0.0);
+			if (Math.abs(product[i] / scale - expected) > COEFFICIENT_TOLERANCE * max) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the product of two polynomials.
+	 */
+	private static double[] multiply(double[] p, double[] q) {
+		double[] product = new double[p.length + q.length - 1];
+		for (int i = 0; i < p.length; i++) {
+			for (int j = 0; j < q.length; j++) {
+				product[i + j] += p[i] * q[j];
+			}
+		}
+		return product;
+	}
+
+	/**
+	 * Factorizes the polynomial c0 + c1 z^-1 + ... + cn z^-n into factors
+	 * (1 + f1 z^-1 + f2 z^-2) whose roots are real or complex conjugate.
+	 * @param coefficients the coefficients of the polynomial (c0 != 0)
+	 * @param divideUnitRoots if the roots at z = 1 and z = -1 should be
+	 * divided out before the other roots are searched for; the filters
+	 * designed by the {@link IIRDesigner} often have multiple zeros there,
+	 * which cannot be found accurately by an iterative method
+	 * @return the factors {f1, f2} of the polynomial divided by c0
+	 */
+	private static List<double[]> factorize(double[] coefficients, boolean divideUnitRoots) throws BadFilterParametersException {
+
+		List<double[]> factors = new ArrayList<double[]>();
+		List<Double> realRoots = new ArrayList<Double>();
+
+		if (divideUnitRoots) {
+			for (double root = 1.0; root >= -1.0; root -= 2.0) {
+				while (coefficients.length > 1 && isRoot(coefficients, root)) {
+					coefficients = divide(coefficients, root);
+					realRoots.add(root);
+				}
+			}
+		}
+
+		int degree = coefficients.length - 1;
+
+		// the roots in z are the roots of c0 z^n + c1 z^(n-1) + ... + cn
+		double[] ascending = new double[degree + 1];
+		for (int i = 0; i <= degree; i++) {
+			ascending[i] = coefficients[degree - i];
+		}
+
+		List<Complex> roots = new ArrayList<Complex>();
+		if (degree > 0) {
+			try {
+				roots.addAll(Arrays.asList(new LaguerreSolver().solveAll(ascending, 0.0)));
+			} catch (MathException ex) {
+				throw new BadFilterParametersException("The roots of the filter polynomials cannot be found.");
+			}
+		}
+
+		// pairs of complex conjugate roots
+		while (!roots.isEmpty()) {
+			Complex root = roots.remove(0);
+			if (Math.abs(root.getImaginary()) <= IMAGINARY_PART_TOLERANCE * Math.max(1.0, root.abs())) {
+				realRoots.add(root.getReal());
+				continue;
+			}
+			Complex conjugate = root.conjugate();
+			int nearest = -1;
+			double nearestDistance = Double.MAX_VALUE;
+			for (int i = 0; i < roots.size(); i++) {
+				double distance = roots.get(i).subtract(conjugate).abs();
+				if (distance < nearestDistance) {
+					nearestDistance = distance;
+					nearest = i;
+				}
+			}
+			if (nearest < 0) {
+				throw new BadFilterParametersException("A complex root of the filter polynomial has no conjugate.");
+			}
+			Complex other = roots.remove(nearest);
+			double real = (root.getReal() + other.getReal()) / 2.0;
+			double imaginary = (Math.abs(root.getImaginary()) + Math.abs(other.getImaginary())) / 2.0;
+			factors.add(new double[] {-2.0 * real, real * real + imaginary * imaginary});
+		}
+
+		// the real roots are paired in the order of their values
+		Collections.sort(realRoots);
+		for (int i = 0; i < realRoots.size(); i += 2) {
+			double r1 = realRoots.get(i);
+			if (i + 1 < realRoots.size()) {
+				double r2 = realRoots.get(i + 1);
+				factors.add(new double[] {-(r1 + r2), r1 * r2});
+			} else {
+				factors.add(new double[] {-r1, 0.0});
+			}
+		}
+
+		return factors;
+
+	}
+
+	/**
+	 * Returns true if the polynomial c0 z^n + c1 z^(n-1) + ... + cn has
+	 * the given root (within the accuracy of the coefficients).
+	 */
+	private static boolean isRoot(double[] coefficients, double root) {
+		double value = 0.0;
+		double scale = 0.0;
+		for (double coefficient : coefficients) {
+			value = value * root + coefficient;
+			scale += Math.abs(coefficient);
+		}
+		return Math.abs(value) <= ROOT_TOLERANCE * scale;
+	}
+
+	/**
+	 * Divides the polynomial c0 z^n + c1 z^(n-1) + ... + cn by (z - root),
+	 * ignoring the remainder.
+	 */
+	private static double[] divide(double[] coefficients, double root) {
+		double[] quotient = new double[coefficients.length - 1];
+		double value = 0.0;
+		for (int i = 0; i < quotient.length; i++) {
+			value = value * root + coefficients[i];
+			quotient[i] = value;
+		}
+		return quotient;
+	}
+
+	/**
+	 * Returns the largest modulus of the roots of the factor (1 + f1 z^-1 + f2 z^-2).
+	 */
+	private static double getRadius(double[] factor) {
+		Complex[] roots = getRoots(factor);
+		return Math.max(roots[0].abs(), roots[1].abs());
+	}
+
+	/**
+	 * Returns the smallest distance between the roots of two factors.
+	 */
+	private static double getDistance(double[] factor1, double[] factor2) {
+		Complex[] roots1 = getRoots(factor1);
+		Complex[] roots2 = getRoots(factor2);
+		double distance = Double.MAX_VALUE;
+		for (Complex r1 : roots1) {
+			for (Complex r2 : roots2) {
+				distance = Math.min(distance, r1.subtract(r2).abs());
+			}
+		}
+		return distance;
+	}
+
+	/**
+	 * Returns the roots of z^2 + f1 z + f2.
+	 */
+	private static Complex[] getRoots(double[] factor) {
+		double discriminant = factor[0] * factor[0] - 4.0 * factor[1];
+		if (discriminant >= 0.0) {
+			double sqrt = Math.sqrt(discriminant);
+			return new Complex[] {new Complex((-factor[0] + sqrt) / 2.0, 0.0), new Complex((-factor[0] - sqrt) / 2.0, 0.0)};
+		}
+		double sqrt = Math.sqrt(-discriminant);
+		return new Complex[] {new Complex(-factor[0] / 2.0, sqrt / 2.0), new Complex(-factor[0] / 2.0, -sqrt / 2.0)};
+	}
+
+	private static double[] stripTrailingZeros(double[] coefficients) {
+		int length = coefficients.length;
+		while (length > 0 && coefficients[length - 1] == 0.0) {
+			length--;
+		}
+		double[] result = new double[length];
+		System.arraycopy(coefficients, 0, result, 0, length);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (double[] section : sections) {
+			builder.append(Arrays.toString(section)).append('\n');
+		}
+		return builder.toString();
+	}
+
+}
@@ -5,12 +5,21 @@
 
 import static org.signalml.app.util.i18n.SvarogI18n._;
 
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 import org.signalml.domain.book.StandardBook;
-import org.signalml.domain.book.StandardBookSegment;
 import org.signalml.domain.book.WignerMapProvider;
+import org.signalml.domain.book.WignerMapRasterizer;
 import org.signalml.method.AbstractMethod;
 import org.signalml.method.ComputationException;
 import org.signalml.method.MethodExecutionTracker;
@@ -23,6 +32,10 @@
 /**
  * BookAverageMethod
  *
+ * Averages the normal Wigner maps (and signals) of the selected segments
+ * and channels of a book. Segments are divided between
+ * {@link BookAverageWorker workers} running in parallel.
+ *
  * @author Michal Dobaczewski &copy; 2007-2008 CC Otwarte Systemy Komputerowe Sp. z o.o.
  * (+ fixed by) piotr@develancer.pl
  */
@@ -34,6 +47,11 @@ public class BookAverageMethod extends AbstractMethod implements TrackableMethod
 	private static final String NAME = "bookAverage";
 	private static final int[] VERSION = new int[] {1,0};
 
+	/**
+	 * the interval between updates of the progress
+	 */
+	private static final long PROGRESS_INTERVAL_MS = 200;
+
 	public BookAverageMethod() throws SignalMLException {
 		super();
 	}
@@ -80,15 +98,8 @@ public Object doComputation(Object dataObj, final MethodExecutionTracker tracker
 
 		StandardBook book = data.getBook();
 
-		WignerMapProvider provider = new WignerMapProvider(book.getSamplingFrequency());
 		int width = data.getWidth();
 		int height = data.getHeight();
-		provider.setWidth(width);
-		provider.setHeight(height);
-		provider.setMinFrequency(data.getMinFrequency());
-		provider.setMaxFrequency(data.getMaxFrequency());
-		provider.setMinPosition(data.getMinPosition());
-		provider.setMaxPosition(data.getMaxPosition());
 
 		LinkedHashSet<Integer> channels = data.getChannels();
 		int[] channelArr = new int[channels.size()];
@@ -101,87 +112,118 @@ public Object doComputation(Object dataObj, final MethodExecutionTracker tracker
 		int minSegment = data.getMinSegment();
 		int maxSegment = Math.min(data.getMaxSegment(), book.getSegmentCount()-1);
 
-		int stepCount = (maxSegment+1-minSegment) * channelArr.length;
+		int stepCount = Math.max(0, (maxSegment+1-minSegment) * channelArr.length);
 		tracker.setTickerLimits(new int[] {stepCount});
 
-		int x;
-		int y;
-
-		float[] averageSignal = null;
-		boolean averagingNotPossible = false;
-		double[][] averageMap = new double[width][height];
-		double[][] normalMap;
-
-		int cnt = 0;
-
-		StandardBookSegment segment;
-		float[] signalSamples;
-		int j;
-
+		int[] pairChannels = new int[stepCount];
+		int[] pairSegments = new int[stepCount];
+		int pair = 0;
 		for (int e=0; e<channelArr.length; e++) {
 			for (int i=minSegment; i<=maxSegment; i++) {
-				if (tracker.isRequestingAbort()) {
-					return null;
-				}
+				pairChannels[pair] = channelArr[e];
+				pairSegments[pair] = i;
+				pair++;
+			}
+		}
 
-				segment = book.getSegmentAt(i)[channelArr[e]];
-				provider.setSegment(segment);
-				normalMap = provider.getMap();
-				for (x=0; x<width; x++) {
-					for (y=0; y<height; y++) {
-						averageMap[x][y] += normalMap[x][y];
-					}
-				}
+		AtomicInteger nextPair = new AtomicInteger();
+		AtomicInteger processedCount = new AtomicInteger();
+		int threadCount = Math.max(1, Math.min(stepCount, Runtime.getRuntime().availableProcessors()));
+		List<BookAverageWorker> workers = new ArrayList<BookAverageWorker>(threadCount);
+		for (int i=0; i<threadCount; i++) {
+			WignerMapRasterizer rasterizer = new WignerMapRasterizer(book.getSamplingFrequency(), width, height,
+					data.getMinFrequency(), data.getMaxFrequency(), data.getMinPosition(), data.getMaxPosition());
+			workers.add(new BookAverageWorker(book, pairChannels, pairSegments, nextPair, processedCount, rasterizer, width, height));
+		}
 
-				if (!averagingNotPossible) {
-
-					if (!segment.hasSignal()) {
-						averagingNotPossible = true;
-						averageSignal = null;
-					} else {
-
-						signalSamples = segment.getSignalSamples();
-						if (averageSignal == null) {
-							averageSignal = new float[signalSamples.length];
-						} else {
-							if (averageSignal.length != signalSamples.length) {
-								averagingNotPossible = true;
-								averageSignal = null;
-							}
-						}
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(threadCount);
+		try {
+			for (BookAverageWorker worker : workers) {
+				futures.add(executor.submit(worker));
+			}
 
-						for (j=0; j<signalSamples.length; j++) {
-							averageSignal[j] += signalSamples[j];
+			for (Future<Boolean> future : futures) {
+				while (true) {
+					if (tracker.isRequestingAbort()) {
+						return null;
+					}
+					try {
+						if (!future.get(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+							return null;
 						}
-
+						break;
+					} catch (TimeoutException ex) {
+						tracker.setTicker(0, processedCount.get());
 					}
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException ex) {
+			logger.error("Failed to average book segments", ex.getCause());
+			throw new ComputationException(ex.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		tracker.setTicker(0, stepCount);
+
+		double[][] averageMap = new double[width][height];
+		double[] signalSum = null;
+		boolean averagingNotPossible = false;
+		int cnt = 0;
 
+		for (BookAverageWorker worker : workers) {
+			if (worker.getCount() == 0) {
+				continue;
+			}
+			cnt += worker.getCount();
+
+			double[][] mapSum = worker.getMapSum();
+			for (int x=0; x<width; x++) {
+				for (int y=0; y<height; y++) {
+					averageMap[x][y] += mapSum[x][y];
 				}
+			}
 
-				cnt++;
-				tracker.setTicker(0, cnt);
+			if (!averagingNotPossible) {
+				double[] workerSignalSum = worker.getSignalSum();
+				if (worker.isAveragingNotPossible() || (signalSum != null && signalSum.length != workerSignalSum.length)) {
+					averagingNotPossible = true;
+					signalSum = null;
+				} else if (signalSum == null) {
+					signalSum = workerSignalSum;
+				} else {
+					for (int j=0; j<signalSum.length; j++) {
+						signalSum[j] += workerSignalSum[j];
+					}
+				}
 			}
 		}
 
+		float[] averageSignal = null;
+
 		if (cnt > 0) {
 
-			for (x=0; x<width; x++) {
-				for (y=0; y<height; y++) {
+			for (int x=0; x<width; x++) {
+				for (int y=0; y<height; y++) {
 					averageMap[x][y] /= cnt;
 				}
 			}
 
+			WignerMapProvider provider = new WignerMapProvider(book.getSamplingFrequency());
 			averageMap = provider.scaleMap(null, averageMap, width, height, data.getScaleType());
 
-			if (!averagingNotPossible && averageSignal != null) {
-				for (j=0; j<averageSignal.length; j++) {
-					averageSignal[j] /= cnt;
+			if (!averagingNotPossible && signalSum != null) {
+				averageSignal = new float[signalSum.length];
+				for (int j=0; j<signalSum.length; j++) {
+					averageSignal[j] = (float) (signalSum[j] / cnt);
 				}
 			}
 
 		}
 
-
 		BookAverageResult result = new BookAverageResult();
 		result.setMap(averageMap);
 		result.setSignal(averageSignal);
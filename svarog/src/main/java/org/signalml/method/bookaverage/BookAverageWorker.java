@@ -0,0 +1,179 @@
+package org.signalml.method.bookaverage;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.signalml.domain.book.StandardBook;
+import org.signalml.domain.book.StandardBookSegment;
+import org.signalml.domain.book.WignerMapRasterizer;
+
+/**
+ * Sums the normal Wigner maps and the signals of a part of the segments
+ * averaged by the {@link BookAverageMethod}.
+ * <p>
+ * Workers share the list of (channel, segment) pairs to be averaged and
+ * take the next pair from a common counter, so every pair is summed by
+ * exactly one worker. Every worker sums into its own map, the maps of
+ * all workers are added when all workers are finished. Segments are read
+ * from the book one at a time (the book is used as the lock), the maps
+ * are computed concurrently.
+ * <p>
+ * The worker stops if the thread is interrupted.
+ */
+class BookAverageWorker implements Callable<Boolean> {
+
+	/**
+	 * the averaged book
+	 */
+	private final StandardBook book;
+
+	/**
+	 * the channels of the averaged pairs
+	 */
+	private final int[] channels;
+
+	/**
+	 * the segments of the averaged pairs
+	 */
+	private final int[] segments;
+
+	/**
+	 * the index of the next pair to be averaged, shared by all workers
+	 */
+	private final AtomicInteger nextPair;
+
+	/**
+	 * the counter of pairs summed by all workers
+	 */
+	private final AtomicInteger processedCount;
+
+	/**
+	 * the rasterizer of this worker
+	 */
+	private final WignerMapRasterizer rasterizer;
+
+	private final int width;
+	private final int height;
+
+	/**
+	 * the sum of normal maps [x][y]
+	 */
+	private double[][] mapSum;
+
+	/**
+	 * the sum of signals, null if no signal was summed
+	 */
+	private double[] signalSum;
+
+	/**
+	 * true if any summed segment had no signal or the signals had
+	 * different lengths
+	 */
+	private boolean averagingNotPossible;
+
+	/**
+	 * the number of summed pairs
+	 */
+	private int count;
+
+	/**
+	 * Constructor.
+	 * @param book the averaged book
+	 * @param channels the channels of the averaged pairs
+	 * @param segments the segments of the averaged pairs
+	 * @param nextPair the counter of pairs taken by all workers
+	 * @param processedCount the counter which is incremented after every
+	 * summed pair
+	 * @param rasterizer the rasterizer used only by this worker
+	 * @param width the width of the map
+	 * @param height the height of the map
+	 */
+	public BookAverageWorker(StandardBook book, int[] channels, int[] segments, AtomicInteger nextPair, AtomicInteger processedCount, WignerMapRasterizer rasterizer, int width, int height) {
+		this.book = book;
+		this.channels = channels;
+		this.segments = segments;
+		this.nextPair = nextPair;
+		this.processedCount = processedCount;
+		this.rasterizer = rasterizer;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Sums the pairs until there are no more pairs.
+	 * @return true if the worker finished, false if the thread was
+	 * interrupted
+	 */
+	@Override
+	public Boolean call() {
+
+		mapSum = new double[width][height];
+		double[][] normalMap = new double[width][height];
+
+		int pair;
+		while ((pair = nextPair.getAndIncrement()) < channels.length) {
+
+			if (Thread.currentThread().isInterrupted()) {
+				return Boolean.FALSE;
+			}
+
+			StandardBookSegment segment;
+			synchronized (book) {
+				segment = book.getSegmentAt(segments[pair])[channels[pair]];
+			}
+
+			rasterizer.calculateNormalMap(segment, normalMap);
+			for (int x=0; x<width; x++) {
+				double[] sumColumn = mapSum[x];
+				double[] column = normalMap[x];
+				for (int y=0; y<height; y++) {
+					sumColumn[y] += column[y];
+				}
+			}
+
+			if (!averagingNotPossible) {
+				if (!segment.hasSignal()) {
+					averagingNotPossible = true;
+					signalSum = null;
+				} else {
+					float[] signalSamples = segment.getSignalSamples();
+					if (signalSum == null) {
+						signalSum = new double[signalSamples.length];
+					}
+					if (signalSum.length != signalSamples.length) {
+						averagingNotPossible = true;
+						signalSum = null;
+					} else {
+						for (int j=0; j<signalSamples.length; j++) {
+							signalSum[j] += signalSamples[j];
+						}
+					}
+				}
+			}
+
+			count++;
+			processedCount.incrementAndGet();
+
+		}
+
+		return Boolean.TRUE;
+
+	}
+
+	public double[][] getMapSum() {
+		return mapSum;
+	}
+
+	public double[] getSignalSum() {
+		return signalSum;
+	}
+
+	public boolean isAveragingNotPossible() {
+		return averagingNotPossible;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+}
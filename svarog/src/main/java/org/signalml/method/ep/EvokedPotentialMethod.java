@@ -6,13 +6,22 @@
 
 import static org.signalml.app.util.i18n.SvarogI18n._;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.log4j.Logger;
 import org.signalml.domain.montage.filter.TimeDomainSampleFilter;
 import org.signalml.domain.montage.system.IChannelFunction;
 import org.signalml.domain.signal.filter.iir.OfflineIIRSinglechannelSampleFilter;
 import org.signalml.domain.signal.samplesource.ChannelSelectorSampleSource;
 import org.signalml.domain.signal.samplesource.DoubleArraySampleSource;
-import org.signalml.domain.signal.samplesource.MultichannelSegmentedSampleSource;
 import org.signalml.domain.signal.space.MarkerSegmentedSampleSource;
 import org.signalml.math.iirdesigner.BadFilterParametersException;
 import org.signalml.math.iirdesigner.FilterCoefficients;
@@ -38,6 +47,11 @@ public class EvokedPotentialMethod extends AbstractMethod implements TrackableMe
 	private static final String NAME = "evokedPotential";
 	private static final int[] VERSION = new int[] {1,0};
 
+	/**
+	 * how often (in milliseconds) the progress of averaging is updated
+	 */
+	private static final long PROGRESS_INTERVAL_MS = 200;
+
 	public EvokedPotentialMethod() throws SignalMLException {
 		super();
 	}
@@ -54,7 +68,6 @@ public Object doComputation(Object dataObj, final MethodExecutionTracker tracker
 		MarkerSegmentedSampleSource sampleSource = data.getSampleSources().get(0);
 
 		int sampleCount = sampleSource.getSegmentLengthInSamples();
-		int segmentCount = sampleSource.getSegmentCount();
 		int channelCount = sampleSource.getChannelCount();
 		float samplingFrequency = sampleSource.getSamplingFrequency();
 
@@ -75,19 +88,15 @@ public Object doComputation(Object dataObj, final MethodExecutionTracker tracker
 		result.setStartTime(parameters.getAveragingStartTime());
 		result.setSegmentLength(parameters.getAveragingTimeLength());
 
-		tracker.setMessage(_("Summing"));
-		tracker.setTickerLimit(0, segmentCount);
+		tracker.setMessage(_("Averaging"));
 
-		for (MultichannelSegmentedSampleSource segmentedSampleSource: data.getSampleSources()) {
-			double[][] averageSamples = average(segmentedSampleSource, tracker);
-			if (averageSamples == null)
-				return null;
-			result.addAverageSamples(averageSamples);
+		List<double[][]> averageSamples = average(data, result, tracker);
+		if (averageSamples == null)
+			return null;
+		for (double[][] samples : averageSamples) {
+			result.addAverageSamples(samples);
 		}
 
-		if (data.getParameters().isBaselineCorrectionEnabled())
-			performBaselineCorrection(result, data);
-
 		if (data.getParameters().isFilteringEnabled())
 			try {
 				performLowPassFiltering(result, data);
@@ -113,33 +122,6 @@ public Object doComputation(Object dataObj, final MethodExecutionTracker tracker
 
 	}
 
-	protected void performBaselineCorrection(EvokedPotentialResult result, EvokedPotentialData data) {
-		int sampleSourceNumber = 0;
-		for (MultichannelSegmentedSampleSource segmentedSampleSource: data.getBaselineSampleSources()) {
-			double[] baselineSamples = new double[segmentedSampleSource.getSegmentLengthInSamples()];
-			for (int channel = 0; channel < segmentedSampleSource.getChannelCount(); channel++) {
-
-				double sum = 0.0;
-				for (int segment = 0; segment < segmentedSampleSource.getSegmentCount(); segment++) {
-					segmentedSampleSource.getSegmentSamples(channel, baselineSamples, segment);
-
-					for (double sample: baselineSamples) {
-						sum += sample;
-					}
-				}
-
-				if (segmentedSampleSource.getSegmentCount() > 0) {
-					double baseline = sum / (segmentedSampleSource.getSegmentCount() * segmentedSampleSource.getSegmentLengthInSamples());
-
-					double[] samples = result.getAverageSamples().get(sampleSourceNumber)[channel];
-					for (int i = 0; i < samples.length; i++)
-						samples[i] = samples[i] - baseline;
-				}
-			}
-			sampleSourceNumber++;
-		}
-	}
-
 	protected void performLowPassFiltering(EvokedPotentialResult result, EvokedPotentialData data) throws BadFilterParametersException {
 
 		TimeDomainSampleFilter filter = data.getParameters().getTimeDomainSampleFilter();
@@ -157,50 +139,76 @@ protected void performLowPassFiltering(EvokedPotentialResult result, EvokedPoten
 
 	}
 
-	protected double[][] average(MultichannelSegmentedSampleSource sampleSource, MethodExecutionTracker tracker) {
-		int sampleCount = sampleSource.getSegmentLengthInSamples();
-		int segmentCount = sampleSource.getSegmentCount();
-		int channelCount = sampleSource.getChannelCount();
-
-		double[] samples = new double[sampleCount];
-		double[][] averageSamples = new double[channelCount][sampleCount];
-
-		for (int segment=0; segment<segmentCount; segment++) {
-
-			for (int channel=0; channel<channelCount; channel++) {
-
-				if (tracker.isRequestingAbort()) {
-					return null;
-				}
-
-				sampleSource.getSegmentSamples(channel, samples, segment);
-
-				for (int j=0; j<sampleCount; j++) {
-					averageSamples[channel][j] += samples[j];
-				}
-
-			}
-
-			if (segment % 10 == 0) {
-				tracker.tick(0, 10);
-			}
-
+	/**
+	 * Averages the segments of all sample sources of the given data.
+	 * Every source (together with its baseline source if the baseline
+	 * correction is enabled) is averaged in a single pass by a
+	 * {@link SegmentAverager}; independent sources are processed in parallel.
+	 * The standard deviations of segments are added to the result.
+	 * @param data the data of the computation
+	 * @param result the result to which standard deviations are added
+	 * @param tracker the tracker used to monitor the computation
+	 * @return the averages [channel][sample] of all sources or null if
+	 * the computation was aborted
+	 * @throws ComputationException if reading the segments failed
+	 */
+	protected List<double[][]> average(EvokedPotentialData data, EvokedPotentialResult result, MethodExecutionTracker tracker) throws ComputationException {
+		List<MarkerSegmentedSampleSource> sampleSources = data.getSampleSources();
+		List<MarkerSegmentedSampleSource> baselineSampleSources = null;
+		if (data.getParameters().isBaselineCorrectionEnabled())
+			baselineSampleSources = data.getBaselineSampleSources();
+
+		AtomicInteger processedSegmentCount = new AtomicInteger();
+		List<SegmentAverager> averagers = new ArrayList<SegmentAverager>(sampleSources.size());
+		int segmentCount = 0;
+		for (int i = 0; i < sampleSources.size(); i++) {
+			MarkerSegmentedSampleSource baselineSampleSource = (baselineSampleSources != null) ? baselineSampleSources.get(i) : null;
+			SegmentAverager averager = new SegmentAverager(sampleSources.get(i), baselineSampleSource, processedSegmentCount);
+			segmentCount += averager.getSegmentCount();
+			averagers.add(averager);
 		}
 
-		tracker.setMessage(_("Averaging"));
 		tracker.setTicker(0, 0);
-		tracker.setTickerLimit(0, channelCount);
+		tracker.setTickerLimit(0, segmentCount);
 
-		// markers have been summed, now divide to get the average
-		if (segmentCount >0 ) {
-			for (int channel=0; channel<channelCount; channel++) {
-				for (int j=0; j<sampleCount; j++) {
-					averageSamples[channel][j] /= segmentCount;
+		int threadCount = Math.max(1, Math.min(averagers.size(), Runtime.getRuntime().availableProcessors()));
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(averagers.size());
+		try {
+			for (SegmentAverager averager : averagers) {
+				futures.add(executor.submit(averager));
+			}
+
+			for (Future<Boolean> future : futures) {
+				while (true) {
+					if (tracker.isRequestingAbort()) {
+						return null;
+					}
+					try {
+						if (!future.get(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS))
+							return null;
+						break;
+					} catch (TimeoutException ex) {
+						tracker.setTicker(0, processedSegmentCount.get());
+					}
 				}
-				tracker.tick(0);
 			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException ex) {
+			logger.error("Failed to average segments", ex.getCause());
+			throw new ComputationException(ex.getCause());
+		} finally {
+			executor.shutdownNow();
 		}
+		tracker.setTicker(0, segmentCount);
 
+		List<double[][]> averageSamples = new ArrayList<double[][]>(averagers.size());
+		for (SegmentAverager averager : averagers) {
+			averageSamples.add(averager.getAverageSamples());
+			result.addStandardDeviationSamples(averager.getStandardDeviationSamples());
+		}
 		return averageSamples;
 	}
 
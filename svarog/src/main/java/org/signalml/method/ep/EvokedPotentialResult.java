@@ -29,6 +29,7 @@ public class EvokedPotentialResult implements Serializable {
 	 */
 	private String[] labels;
 	private List<double[][]> averageSamples = new ArrayList<double[][]>();;
+	private List<double[][]> standardDeviationSamples = new ArrayList<double[][]>();
 
 	private List<Integer> unusableSegmentsCount = new ArrayList<Integer>();
 	private List<Integer> averagedSegmentsCount = new ArrayList<Integer>();
@@ -90,6 +91,19 @@ public void addAverageSamples(double[][] averageSamples) {
 		this.averageSamples.add(averageSamples);
 	}
 
+	/**
+	 * Returns the standard deviations of the averaged segments, one array
+	 * [channel][sample] for every averaged tag style group.
+	 * @return the standard deviations of the averaged segments
+	 */
+	public List<double[][]> getStandardDeviationSamples() {
+		return standardDeviationSamples;
+	}
+
+	public void addStandardDeviationSamples(double[][] standardDeviationSamples) {
+		this.standardDeviationSamples.add(standardDeviationSamples);
+	}
+
 	public List<Integer> getUnusableSegmentsCount() {
 		return unusableSegmentsCount;
 	}
@@ -0,0 +1,178 @@
+package org.signalml.method.ep;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.signalml.domain.signal.space.MarkerSegmentedSampleSource;
+
+/**
+ * Averages the segments of one {@link MarkerSegmentedSampleSource} in
+ * a single pass over the markers.
+ * <p>
+ * Every segment is read for all channels at once and the running mean
+ * and the sum of squared deviations are updated using the Welford
+ * algorithm. If a baseline source is given, its segments are read in the
+ * same pass (the baseline segment of a marker right after its averaged
+ * segment) and the mean of all baseline samples of every channel is
+ * subtracted from the average when the pass is finished.
+ * <p>
+ * The pass stops if the thread is interrupted.
+ */
+class SegmentAverager implements Callable<Boolean> {
+
+	/**
+	 * the source of the averaged segments
+	 */
+	private final MarkerSegmentedSampleSource sampleSource;
+
+	/**
+	 * the source of the baseline segments, null if the baseline
+	 * correction is disabled
+	 */
+	private final MarkerSegmentedSampleSource baselineSampleSource;
+
+	/**
+	 * the counter of segments read by all averagers
+	 */
+	private final AtomicInteger processedSegmentCount;
+
+	/**
+	 * the average of segments [channel][sample]
+	 */
+	private double[][] averageSamples;
+
+	/**
+	 * the standard deviation of segments [channel][sample]
+	 */
+	private double[][] standardDeviationSamples;
+
+	/**
+	 * Constructor.
+	 * @param sampleSource the source of the averaged segments
+	 * @param baselineSampleSource the source of the baseline segments or null
+	 * if the baseline correction should not be performed
+	 * @param processedSegmentCount the counter which is incremented after
+	 * every read segment
+	 */
+	public SegmentAverager(MarkerSegmentedSampleSource sampleSource, MarkerSegmentedSampleSource baselineSampleSource, AtomicInteger processedSegmentCount) {
+		this.sampleSource = sampleSource;
+		this.baselineSampleSource = baselineSampleSource;
+		this.processedSegmentCount = processedSegmentCount;
+	}
+
+	/**
+	 * Returns the number of segments which will be read by this averager.
+	 * @return the number of averaged and baseline segments
+	 */
+	public int getSegmentCount() {
+		int count = sampleSource.getSegmentCount();
+		if (baselineSampleSource != null) {
+			count += baselineSampleSource.getSegmentCount();
+		}
+		return count;
+	}
+
+	/**
+	 * Performs the pass.
+	 * @return true if all segments were read, false if the thread
+	 * was interrupted
+	 */
+	@Override
+	public Boolean call() {
+		int sampleCount = sampleSource.getSegmentLengthInSamples();
+		int segmentCount = sampleSource.getSegmentCount();
+		int channelCount = sampleSource.getChannelCount();
+
+		double[][] mean = new double[channelCount][sampleCount];
+		double[][] m2 = new double[channelCount][sampleCount];
+		double[][] segmentSamples = new double[channelCount][sampleCount];
+
+		int baselineSegmentCount = 0;
+		int baselineSampleCount = 0;
+		double[] baselineSums = new double[channelCount];
+		double[][] baselineSamples = null;
+		if (baselineSampleSource != null) {
+			baselineSegmentCount = baselineSampleSource.getSegmentCount();
+			baselineSampleCount = baselineSampleSource.getSegmentLengthInSamples();
+			baselineSamples = new double[baselineSampleSource.getChannelCount()][baselineSampleCount];
+		}
+
+		int passLength = Math.max(segmentCount, baselineSegmentCount);
+		for (int segment = 0; segment < passLength; segment++) {
+
+			if (Thread.currentThread().isInterrupted()) {
+				return Boolean.FALSE;
+			}
+
+			if (segment < segmentCount) {
+				sampleSource.getSegmentSamples(segmentSamples, segment);
+				int n = segment + 1;
+				for (int channel = 0; channel < channelCount; channel++) {
+					double[] channelSamples = segmentSamples[channel];
+					double[] channelMean = mean[channel];
+					double[] channelM2 = m2[channel];
+					for (int i = 0; i < sampleCount; i++) {
+						double delta = channelSamples[i] - channelMean[i];
+						channelMean[i] += delta / n;
+						channelM2[i] += delta * (channelSamples[i] - channelMean[i]);
+					}
+				}
+				processedSegmentCount.incrementAndGet();
+			}
+
+			if (segment < baselineSegmentCount) {
+				baselineSampleSource.getSegmentSamples(baselineSamples, segment);
+				for (int channel = 0; channel < channelCount; channel++) {
+					double[] channelSamples = baselineSamples[channel];
+					double sum = 0.0;
+					for (int i = 0; i < baselineSampleCount; i++) {
+						sum += channelSamples[i];
+					}
+					baselineSums[channel] += sum;
+				}
+				processedSegmentCount.incrementAndGet();
+			}
+		}
+
+		if (baselineSegmentCount > 0) {
+			for (int channel = 0; channel < channelCount; channel++) {
+				double baseline = baselineSums[channel] / (((double) baselineSegmentCount) * baselineSampleCount);
+				double[] channelMean = mean[channel];
+				for (int i = 0; i < sampleCount; i++) {
+					channelMean[i] -= baseline;
+				}
+			}
+		}
+
+		// m2 is reused for the standard deviation
+		for (int channel = 0; channel < channelCount; channel++) {
+			double[] channelM2 = m2[channel];
+			for (int i = 0; i < sampleCount; i++) {
+				channelM2[i] = (segmentCount > 1) ? Math.sqrt(channelM2[i] / (segmentCount - 1)) : 0.0;
+			}
+		}
+
+		averageSamples = mean;
+		standardDeviationSamples = m2;
+		return Boolean.TRUE;
+	}
+
+	/**
+	 * Returns the average of segments, corrected by the baseline if the
+	 * baseline source was given. Available after the pass is finished.
+	 * @return the average of segments [channel][sample]
+	 */
+	public double[][] getAverageSamples() {
+		return averageSamples;
+	}
+
+	/**
+	 * Returns the standard deviation of segments. Available after the pass
+	 * is finished.
+	 * @return the standard deviation of segments [channel][sample]
+	 */
+	public double[][] getStandardDeviationSamples() {
+		return standardDeviationSamples;
+	}
+
+}
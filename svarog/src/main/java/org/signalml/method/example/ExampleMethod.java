@@ -13,9 +13,9 @@
 import org.signalml.method.MethodExecutionTracker;
 import org.signalml.method.SuspendableMethod;
 import org.signalml.method.TrackableMethod;
-import org.signalml.method.iterator.IterableMethod;
 import org.signalml.method.iterator.IterableNumericProperty;
 import org.signalml.method.iterator.IterableParameter;
+import org.signalml.method.iterator.ParallelIterableMethod;
 import org.signalml.plugin.export.SignalMLException;
 import org.signalml.plugin.export.method.BaseMethodData;
 
@@ -28,7 +28,7 @@
  *
  * @author Michal Dobaczewski &copy; 2007-2008 CC Otwarte Systemy Komputerowe Sp. z o.o.
  */
-public class ExampleMethod extends AbstractMethod implements InitializingMethod, TrackableMethod, SuspendableMethod, IterableMethod {
+public class ExampleMethod extends AbstractMethod implements InitializingMethod, TrackableMethod, SuspendableMethod, ParallelIterableMethod {
 
 	/**
 	 * Logger to save history of execution at.
@@ -297,4 +297,13 @@ public Object digestIterationResult(int iteration, Object result) {
 		return result;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object createIterationData(Object data, int iteration) {
+		ExampleData exampleData = (ExampleData) data;
+		return new ExampleData(exampleData.getCount(), exampleData.isNoWait());
+	}
+
 }
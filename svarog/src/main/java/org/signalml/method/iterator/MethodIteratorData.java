@@ -5,6 +5,7 @@
 package org.signalml.method.iterator;
 
 import java.io.Serializable;
+import java.util.HashMap;
 
 import org.signalml.plugin.export.method.BaseMethodData;
 
@@ -26,8 +27,16 @@ public class MethodIteratorData extends BaseMethodData implements Serializable {
 
 	private MethodIteratorResult completedResults;
 
+	private int parallelIterations;
+
+	/** the results of iterations computed in parallel which completed before an earlier iteration */
+	private HashMap<Integer, Object> pendingResults;
+	/** the parameter values of the iterations with pending results */
+	private HashMap<Integer, Object[]> pendingParameterValues;
+
 	public MethodIteratorData() {
 		this.totalIterations = 2;
+		this.parallelIterations = 1;
 	}
 
 	public Object getSubjectMethodData() {
@@ -70,6 +79,60 @@ public void setCompletedResults(MethodIteratorResult completedResults) {
 		this.completedResults = completedResults;
 	}
 
+	/**
+	 * Returns the number of iterations computed at the same time
+	 * if the method is a {@link ParallelIterableMethod}.
+	 * @return the number of parallel iterations, 1 if the iterations
+	 * are computed one after another
+	 */
+	public int getParallelIterations() {
+		return Math.max(1, parallelIterations);
+	}
+
+	public void setParallelIterations(int parallelIterations) {
+		this.parallelIterations = parallelIterations;
+	}
+
+	/**
+	 * Stores the result of an iteration which completed before
+	 * an earlier iteration.
+	 * @param iteration the index of the iteration
+	 * @param result the result of the iteration
+	 * @param parameterValues the parameter values used in the iteration
+	 */
+	public void addPendingResult(int iteration, Object result, Object[] parameterValues) {
+		// not created in the constructor, as they are missing in data suspended by older versions
+		if (pendingResults == null) {
+			pendingResults = new HashMap<Integer, Object>();
+			pendingParameterValues = new HashMap<Integer, Object[]>();
+		}
+		pendingResults.put(iteration, result);
+		pendingParameterValues.put(iteration, parameterValues);
+	}
+
+	public boolean hasPendingResult(int iteration) {
+		return (pendingResults != null && pendingResults.containsKey(iteration));
+	}
+
+	public boolean hasPendingResults() {
+		return (pendingResults != null && !pendingResults.isEmpty());
+	}
+
+	public Object getPendingResult(int iteration) {
+		return (pendingResults != null ? pendingResults.get(iteration) : null);
+	}
+
+	public Object[] getPendingParameterValues(int iteration) {
+		return (pendingParameterValues != null ? pendingParameterValues.get(iteration) : null);
+	}
+
+	public void removePendingResult(int iteration) {
+		if (pendingResults != null) {
+			pendingResults.remove(iteration);
+			pendingParameterValues.remove(iteration);
+		}
+	}
+
 	public Object[] setupForIteration(int iteration) {
 		Object[] values = new Object[parameters.length];
 		int i;
@@ -6,6 +6,17 @@
 
 import static org.signalml.app.util.i18n.SvarogI18n._;
 
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import org.apache.log4j.Logger;
 import org.signalml.exception.SanityCheckException;
 import org.signalml.method.AbstractMethod;
@@ -20,6 +31,11 @@
 
 /** IteratorMethod
  *
+ * Computes the subject method for each iteration. If the subject method is
+ * a {@link ParallelIterableMethod} and {@link MethodIteratorData#getParallelIterations()}
+ * is greater than 1, that many iterations are computed at the same time
+ * and their results are added to the {@link MethodIteratorResult} in the
+ * order of iterations.
  *
  * @author Michal Dobaczewski &copy; 2007-2008 CC Otwarte Systemy Komputerowe Sp. z o.o.
  */
@@ -27,6 +43,9 @@ public class MethodIteratorMethod extends AbstractMethod implements Initializing
 
 	protected static final Logger logger = Logger.getLogger(MethodIteratorMethod.class);
 
+	/** how long to wait for an iteration before checking for abort and suspend requests */
+	private static final long WAIT_MILLIS = 200;
+
 	private IterableMethod subjectMethod;
 
 	public MethodIteratorMethod(IterableMethod subjectMethod) {
@@ -64,6 +83,11 @@ public Object doComputation(Object dataObj, MethodExecutionTracker tracker) thro
 			data.setCompletedResults(results);
 		}
 
+		if (data.getParallelIterations() > 1 && subjectMethod instanceof ParallelIterableMethod
+				&& totalIterations - completedIterations > 1) {
+			return computeInParallel(data, results, tracker);
+		}
+
 		TickerOffsettingTrackerWrapper trackerWrapper = new TickerOffsettingTrackerWrapper(tracker);
 		Object[] parameterValues;
 
@@ -100,6 +124,129 @@ else if (tracker.isRequestingSuspend()) {
 
 	}
 
+	/**
+	 * Computes the remaining iterations on a pool of
+	 * {@link MethodIteratorData#getParallelIterations()} threads.
+	 * <p>
+	 * The iterations are set up one after another on this thread, each on
+	 * the data {@link ParallelIterableMethod#createIterationData(Object, int) created}
+	 * for it. An iteration which completes before an earlier one is kept as a
+	 * {@link MethodIteratorData#addPendingResult(int, Object, Object[]) pending result}
+	 * until all earlier iterations complete, so that the completed iterations
+	 * always form a prefix and a suspended computation resumes without
+	 * computing any completed iteration again. Only the earliest running
+	 * iteration reports its progress to the tracker.
+	 */
+	private Object computeInParallel(MethodIteratorData data, MethodIteratorResult results, MethodExecutionTracker tracker) throws ComputationException {
+
+		ParallelIterableMethod parallelMethod = (ParallelIterableMethod) subjectMethod;
+		int totalIterations = data.getTotalIterations();
+		int nextIteration = data.getCompletedIterations();
+		int threadCount = Math.min(data.getParallelIterations(), totalIterations - nextIteration);
+
+		TreeMap<Integer, RunningIteration> running = new TreeMap<Integer, RunningIteration>();
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		boolean stopped = false;
+
+		try {
+
+			while (true) {
+
+				if (tracker.isRequestingAbort() || tracker.isRequestingSuspend()) {
+					stopped = true;
+				}
+
+				while (!stopped && running.size() < threadCount && nextIteration < totalIterations) {
+					if (!data.hasPendingResult(nextIteration)) {
+						Object[] parameterValues = data.setupForIteration(nextIteration);
+						Object iterationData = parallelMethod.createIterationData(data.getSubjectMethodData(), nextIteration);
+						TickerOffsettingTrackerWrapper trackerWrapper = new TickerOffsettingTrackerWrapper(tracker, 1, false);
+						Future<Object> future = executor.submit(new IterationCallable(iterationData, trackerWrapper));
+						running.put(nextIteration, new RunningIteration(parameterValues, trackerWrapper, future));
+					}
+					nextIteration++;
+				}
+
+				Iterator<Map.Entry<Integer, RunningIteration>> it = running.entrySet().iterator();
+				while (it.hasNext()) {
+					Map.Entry<Integer, RunningIteration> entry = it.next();
+					// the entry may be reused by the map after removal
+					int index = entry.getKey();
+					RunningIteration iteration = entry.getValue();
+					if (!iteration.future.isDone()) {
+						continue;
+					}
+					it.remove();
+					Object result = getIterationResult(iteration.future);
+					if (result != null) {
+						data.addPendingResult(index, result, iteration.parameterValues);
+					} else {
+						// the iteration was aborted or suspended, it will be computed again when resumed
+						stopped = true;
+					}
+				}
+
+				int completed = data.getCompletedIterations();
+				while (data.hasPendingResult(completed)) {
+					results.add(subjectMethod.digestIterationResult(completed, data.getPendingResult(completed)),
+								data.getPendingParameterValues(completed));
+					data.removePendingResult(completed);
+					completed++;
+					data.setCompletedIterations(completed);
+					tracker.tick(0);
+				}
+
+				if (running.isEmpty()) {
+					if (stopped || nextIteration >= totalIterations) {
+						break;
+					}
+					continue;
+				}
+
+				RunningIteration first = running.firstEntry().getValue();
+				first.trackerWrapper.setAttached(true);
+				try {
+					first.future.get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException ex) {
+					// check requests and other iterations
+				} catch (ExecutionException ex) {
+					// handled when the result is taken
+				} catch (InterruptedException ex) {
+					throw new ComputationException(ex);
+				}
+
+			}
+
+		} finally {
+			executor.shutdownNow();
+		}
+
+		if (data.getCompletedIterations() < totalIterations) {
+			return null;
+		}
+
+		return results;
+
+	}
+
+	private Object getIterationResult(Future<Object> future) throws ComputationException {
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			throw new ComputationException(ex);
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof InputDataException) {
+				logger.error("Iteration caused the data to become invalid", cause);
+				throw new ComputationException("error.iterationError", cause);
+			}
+			if (cause instanceof ComputationException) {
+				throw (ComputationException) cause;
+			}
+			throw new ComputationException(cause);
+		}
+	}
+
 	@Override
 	public BaseMethodData createData() {
 		return new MethodIteratorData();
@@ -154,8 +301,40 @@ public void initialize() throws SignalMLException {
 	}
 
 	@Override
-	public boolean isDataSuspended(Object data) {
-		return (((MethodIteratorData) data).getCompletedIterations() > 0);
+	public boolean isDataSuspended(Object dataObj) {
+		MethodIteratorData data = (MethodIteratorData) dataObj;
+		return (data.getCompletedIterations() > 0 || data.hasPendingResults());
+	}
+
+	private class IterationCallable implements Callable<Object> {
+
+		private final Object iterationData;
+		private final MethodExecutionTracker tracker;
+
+		private IterationCallable(Object iterationData, MethodExecutionTracker tracker) {
+			this.iterationData = iterationData;
+			this.tracker = tracker;
+		}
+
+		@Override
+		public Object call() throws Exception {
+			return subjectMethod.compute(iterationData, tracker);
+		}
+
+	}
+
+	private static class RunningIteration {
+
+		private final Object[] parameterValues;
+		private final TickerOffsettingTrackerWrapper trackerWrapper;
+		private final Future<Object> future;
+
+		private RunningIteration(Object[] parameterValues, TickerOffsettingTrackerWrapper trackerWrapper, Future<Object> future) {
+			this.parameterValues = parameterValues;
+			this.trackerWrapper = trackerWrapper;
+			this.future = future;
+		}
+
 	}
 
 }
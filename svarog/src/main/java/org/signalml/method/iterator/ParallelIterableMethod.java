@@ -0,0 +1,24 @@
+package org.signalml.method.iterator;
+
+/**
+ * An {@link IterableMethod} whose iterations are independent of each other
+ * and may be computed at the same time by a {@link MethodIteratorMethod}
+ * (see {@link MethodIteratorData#setParallelIterations(int)}).
+ */
+public interface ParallelIterableMethod extends IterableMethod {
+
+	/**
+	 * Creates the data for one iteration. This method is called after
+	 * the iterated parameters have been set up in the given data
+	 * for this iteration, and the returned data is computed while the
+	 * given data is set up for the following iterations. Therefore
+	 * the returned data must not share with the given data anything
+	 * which is changed by the parameters or by the computation.
+	 *
+	 * @param data the data of this method set up for the iteration
+	 * @param iteration the index of the iteration
+	 * @return the data for the iteration
+	 */
+	Object createIterationData(Object data, int iteration);
+
+}
@@ -10,6 +10,9 @@
 
 /** TickerOffsettingTrackerWrapper
  *
+ * A wrapper which may also be detached from the wrapped tracker, so that
+ * it keeps the tickers of a method computed in parallel with others to
+ * itself until it is attached again.
  *
  * @author Michal Dobaczewski &copy; 2007-2008 CC Otwarte Systemy Komputerowe Sp. z o.o.
  */
@@ -18,11 +21,29 @@ public class TickerOffsettingTrackerWrapper implements MethodExecutionTracker {
 	private MethodExecutionTracker wrappedTracker;
 	private int offset;
 
+	private boolean attached;
+
+	/** the ticker limits while detached */
+	private int[] detachedLimits;
+	/** the tickers while detached */
+	private int[] detachedTickers;
+
 	public TickerOffsettingTrackerWrapper(MethodExecutionTracker wrappedTracker) {
 		this(wrappedTracker, 1);
 	}
 
 	public TickerOffsettingTrackerWrapper(MethodExecutionTracker wrappedTracker, int offset) {
+		this(wrappedTracker, offset, true);
+	}
+
+	/**
+	 * Creates a wrapper.
+	 * @param wrappedTracker the wrapped tracker
+	 * @param offset the number of tickers of the wrapped tracker which are skipped
+	 * @param attached false if the wrapper should be created detached, with
+	 * all tickers and limits set to 0
+	 */
+	public TickerOffsettingTrackerWrapper(MethodExecutionTracker wrappedTracker, int offset, boolean attached) {
 		if (wrappedTracker == null) {
 			throw new NullPointerException("No wrapped tracker");
 		}
@@ -31,6 +52,12 @@ public TickerOffsettingTrackerWrapper(MethodExecutionTracker wrappedTracker, int
 		}
 		this.wrappedTracker = wrappedTracker;
 		this.offset = offset;
+		this.attached = attached;
+		if (!attached) {
+			int count = Math.max(0, wrappedTracker.getTickerLimits().length - offset);
+			detachedLimits = new int[count];
+			detachedTickers = new int[count];
+		}
 	}
 
 	public MethodExecutionTracker getWrappedTracker() {
@@ -41,6 +68,34 @@ public int getOffset() {
 		return offset;
 	}
 
+	public synchronized boolean isAttached() {
+		return attached;
+	}
+
+	/**
+	 * Attaches or detaches this wrapper. When attached, the tickers
+	 * and limits kept while detached are set in the wrapped tracker.
+	 * When detached, the current tickers and limits are copied from
+	 * the wrapped tracker and further changes do not reach it.
+	 * @param attached whether this wrapper should be attached
+	 */
+	public synchronized void setAttached(boolean attached) {
+		if (this.attached == attached) {
+			return;
+		}
+		if (attached) {
+			this.attached = true;
+			setTickerLimits(detachedLimits);
+			setTickers(detachedTickers);
+			detachedLimits = null;
+			detachedTickers = null;
+		} else {
+			detachedLimits = getTickerLimits();
+			detachedTickers = getTickers();
+			this.attached = false;
+		}
+	}
+
 	@Override
 	public String getMessage() {
 		return wrappedTracker.getMessage();
@@ -62,41 +117,66 @@ public boolean isRequestingSuspend() {
 	}
 
 	@Override
-	public Integer getExpectedSecondsUntilComplete(int index) {
+	public synchronized Integer getExpectedSecondsUntilComplete(int index) {
+		if (!attached) {
+			return null;
+		}
 		return wrappedTracker.getExpectedSecondsUntilComplete(index+offset);
 	}
 
 	@Override
-	public int[] getTickerLimits() {
+	public synchronized int[] getTickerLimits() {
+		if (!attached) {
+			return Arrays.copyOf(detachedLimits, detachedLimits.length);
+		}
 		int[] limits = wrappedTracker.getTickerLimits();
 		return Arrays.copyOfRange(limits, offset, limits.length);
 	}
 
 	@Override
-	public int[] getTickers() {
+	public synchronized int[] getTickers() {
+		if (!attached) {
+			return Arrays.copyOf(detachedTickers, detachedTickers.length);
+		}
 		int[] tickers = wrappedTracker.getTickers();
 		return Arrays.copyOfRange(tickers, offset, tickers.length);
 	}
 
 	@Override
-	public void resetTickers() {
+	public synchronized void resetTickers() {
+		if (!attached) {
+			Arrays.fill(detachedTickers, 0);
+			return;
+		}
 		int[] tickers = wrappedTracker.getTickers();
 		Arrays.fill(tickers, offset, tickers.length, 0);
 		wrappedTracker.setTickers(tickers);
 	}
 
 	@Override
-	public void setTicker(int index, int value) {
+	public synchronized void setTicker(int index, int value) {
+		if (!attached) {
+			detachedTickers[index] = value;
+			return;
+		}
 		wrappedTracker.setTicker(index+offset, value);
 	}
 
 	@Override
-	public void setTickerLimit(int index, int limit) {
+	public synchronized void setTickerLimit(int index, int limit) {
+		if (!attached) {
+			detachedLimits[index] = limit;
+			return;
+		}
 		wrappedTracker.setTickerLimit(index+offset, limit);
 	}
 
 	@Override
-	public void setTickerLimits(int[] initial) {
+	public synchronized void setTickerLimits(int[] initial) {
+		if (!attached) {
+			System.arraycopy(initial, 0, detachedLimits, 0, Math.min(initial.length, detachedLimits.length));
+			return;
+		}
 		int[] limits = wrappedTracker.getTickerLimits();
 		for (int i=0; (i<initial.length && (i+offset)<limits.length); i++) {
 			limits[offset+i] = initial[i];
@@ -105,7 +185,11 @@ public void setTickerLimits(int[] initial) {
 	}
 
 	@Override
-	public void setTickers(int[] current) {
+	public synchronized void setTickers(int[] current) {
+		if (!attached) {
+			System.arraycopy(current, 0, detachedTickers, 0, Math.min(current.length, detachedTickers.length));
+			return;
+		}
 		int[] tickers = wrappedTracker.getTickers();
 		for (int i=0; (i<current.length && (i+offset)<tickers.length); i++) {
 			tickers[offset+i] = current[i];
@@ -114,12 +198,20 @@ public void setTickers(int[] current) {
 	}
 
 	@Override
-	public void tick(int index, int step) {
+	public synchronized void tick(int index, int step) {
+		if (!attached) {
+			detachedTickers[index] += step;
+			return;
+		}
 		wrappedTracker.tick(index+offset, step);
 	}
 
 	@Override
-	public void tick(int index) {
+	public synchronized void tick(int index) {
+		if (!attached) {
+			detachedTickers[index]++;
+			return;
+		}
 		wrappedTracker.tick(index+offset);
 	}
 
@@ -0,0 +1,103 @@
+package org.signalml.plugin.export.signal;
+
+import java.util.NoSuchElementException;
+
+/**
+ * This interface allows to iterate over the signal in consecutive,
+ * possibly overlapping, windows of a fixed length, so that signals of
+ * any length can be processed in constant memory.
+ * <p>
+ * The {@link SignalSamples samples} returned by {@link #next()} (and the
+ * arrays of samples they contain) are reused by the cursor, they are
+ * valid until the next call to {@link #next()}. The last window may be
+ * shorter than the others, its remaining samples are zeros.
+ * <p>
+ * A cursor holds resources (for example an open copy of the signal file
+ * or a thread reading the next window in the background), so it should be
+ * {@link #close() closed} when it is no longer needed.
+ *
+ * @see SvarogAccessSignal#getActiveSignalSamplesCursor(org.signalml.domain.signal.space.SignalSourceLevel, int, int, boolean)
+ */
+public interface SignalSamplesCursor {
+
+	/**
+	 * Returns the number of channels in each window.
+	 * @return the number of channels
+	 */
+	int getChannelCount();
+
+	/**
+	 * Returns the number of samples per second.
+	 * @return the sampling frequency
+	 */
+	float getSamplingFrequency();
+
+	/**
+	 * Returns the number of samples in each channel of the signal.
+	 * @return the number of samples
+	 */
+	int getSampleCount();
+
+	/**
+	 * Returns the length of the windows.
+	 * @return the number of samples in a window
+	 */
+	int getWindowLength();
+
+	/**
+	 * Returns the distance between the beginnings of the consecutive
+	 * windows (the length of the window minus the overlap).
+	 * @return the number of samples between windows
+	 */
+	int getStep();
+
+	/**
+	 * Returns whether there are more windows and the cursor was not
+	 * cancelled.
+	 * @return true if {@link #next()} will return a window, false otherwise
+	 */
+	boolean hasNext();
+
+	/**
+	 * Moves to the next window and returns its samples.
+	 * @return the samples of the window, valid until the next call
+	 * @throws NoSuchElementException if there are no more windows or
+	 * the cursor was cancelled
+	 */
+	SignalSamples next() throws NoSuchElementException;
+
+	/**
+	 * Returns the position in the signal of the first sample of the
+	 * current window.
+	 * @return the number of the sample or -1 if {@link #next()} was not
+	 * called yet
+	 */
+	int getWindowOffset();
+
+	/**
+	 * Returns the number of samples of the current window which are in
+	 * the signal. It is smaller than the length of the window only for
+	 * the last window.
+	 * @return the number of valid samples in the current window
+	 */
+	int getWindowSampleCount();
+
+	/**
+	 * Cancels the iteration. It may be called from any thread, after it
+	 * {@link #hasNext()} returns false and the reading in the background
+	 * is stopped.
+	 */
+	void cancel();
+
+	/**
+	 * Returns whether the iteration was cancelled.
+	 * @return true if the cursor was cancelled, false otherwise
+	 */
+	boolean isCancelled();
+
+	/**
+	 * Cancels the iteration and releases the resources of this cursor.
+	 */
+	void close();
+
+}
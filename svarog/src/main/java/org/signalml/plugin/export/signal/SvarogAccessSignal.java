@@ -25,7 +25,8 @@
  * <li>either for the active signal or for the signal from the given document,</li>
  * <li>either from a {@link ChannelSamples single channel} or
  * from {@link SignalSamples all channels} in the signal,</li>
- * <li>either processed (after the montage and filtering) or raw (unprocessed).</li>
+ * <li>either processed (after the montage and filtering) or raw (unprocessed),</li>
+ * <li>either all at once or in windows, using a {@link SignalSamplesCursor cursor}.</li>
  * </ul></li>
  * <li>return {@link Tag tags}:
  * <ul>
@@ -470,6 +471,48 @@ void openSignalWithCodec(File file, String codecFormatName, float pageSize, int
 	 */
 	void exportSignal(float position, float length, int[] channels, SignalSourceLevel level, ExportedRawSignalSampleType sampleType, ByteOrder byteOrder, ExportedSignalPlot plot, File file) throws InvalidClassException, SignalMLException;
 
+	/**
+	 * Returns a {@link SignalSamplesCursor cursor} iterating over the
+	 * active signal in windows of the given length, so that the signal is
+	 * processed in constant memory instead of being copied as a whole.
+	 * The cursor reads from a copy of the signal processing chain, so it
+	 * may be used on any thread. It should be closed when it is no longer
+	 * needed.
+	 * @param level the {@link SignalSourceLevel level} of processing of
+	 * the signal
+	 * @param windowLength the number of samples in a window
+	 * @param overlap the number of samples shared by the consecutive windows
+	 * @param prefetch true if the next window should be read in the
+	 * background while the current one is processed
+	 * @return the cursor
+	 * @throws NoActiveObjectException if there is no active signal
+	 * @throws SignalMLException if the copy of the signal could not be created
+	 * @throws IllegalArgumentException if the length of the window is not
+	 * positive or the overlap is not smaller than the length of the window
+	 */
+	SignalSamplesCursor getActiveSignalSamplesCursor(SignalSourceLevel level, int windowLength, int overlap, boolean prefetch) throws NoActiveObjectException, SignalMLException;
+
+	/**
+	 * Returns a {@link SignalSamplesCursor cursor} iterating over the
+	 * signal from the given document in windows of the given length.
+	 * @param document the document with the signal. Must be returned from this
+	 * SvarogAcces (actually be of type SignalDocument - internal to Svarog).
+	 * @param level the {@link SignalSourceLevel level} of processing of
+	 * the signal
+	 * @param windowLength the number of samples in a window
+	 * @param overlap the number of samples shared by the consecutive windows
+	 * @param prefetch true if the next window should be read in the
+	 * background while the current one is processed
+	 * @return the cursor
+	 * @throws InvalidClassException if document is not returned from
+	 * this SvarogAccess (not of type SignalDocument - internal to Svarog)
+	 * @throws SignalMLException if the copy of the signal could not be created
+	 * @throws IllegalArgumentException if the length of the window is not
+	 * positive or the overlap is not smaller than the length of the window
+	 * @see #getActiveSignalSamplesCursor(SignalSourceLevel, int, int, boolean)
+	 */
+	SignalSamplesCursor getSignalSamplesCursorFromDocument(ExportedSignalDocument document, SignalSourceLevel level, int windowLength, int overlap, boolean prefetch) throws InvalidClassException, SignalMLException;
+
 	/**
 	 * Creates and returns a temporary file.
 	 * The file is created in the {@code %profile-directory%/temp}.
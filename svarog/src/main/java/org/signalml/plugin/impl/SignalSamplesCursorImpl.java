@@ -0,0 +1,324 @@
+package org.signalml.plugin.impl;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+import org.signalml.app.view.signal.SampleSourceUtils;
+import org.signalml.domain.signal.samplesource.MultichannelSampleSource;
+import org.signalml.plugin.export.signal.SignalSamples;
+import org.signalml.plugin.export.signal.SignalSamplesCursor;
+
+/**
+ * Implementation of {@link SignalSamplesCursor} reading the windows from
+ * a {@link MultichannelSampleSource}.
+ * <p>
+ * The samples of the overlapping part of the consecutive windows are read
+ * from the source only once. If prefetching is enabled, the next window is
+ * read on a background thread while the caller processes the current one,
+ * so there are two sets of window buffers which are used alternately.
+ */
+public class SignalSamplesCursorImpl implements SignalSamplesCursor {
+
+	protected static final Logger logger = Logger.getLogger(SignalSamplesCursorImpl.class);
+
+	/**
+	 * the source of the samples
+	 */
+	private MultichannelSampleSource source;
+
+	/**
+	 * true if the source should be destroyed when this cursor is closed
+	 */
+	private boolean destroySource;
+
+	private int channelCount;
+	private int sampleCount;
+	private float samplingFrequency;
+	private int windowLength;
+	private int step;
+
+	/**
+	 * the samples of the last window read from the source
+	 */
+	private double[][] data;
+
+	/**
+	 * the position in the signal of the first sample in {@link #data},
+	 * -1 if it contains no valid samples
+	 */
+	private int dataOffset = -1;
+
+	/**
+	 * the number of valid samples in {@link #data}
+	 */
+	private int dataCount;
+
+	/**
+	 * the windows returned to the caller (and their samples)
+	 */
+	private SignalSamplesImpl[] windows;
+	private double[][][] windowSamples;
+
+	/**
+	 * the index in {@link #windows} of the current window
+	 */
+	private int currentWindow = 0;
+
+	/**
+	 * the position in the signal of the next window
+	 */
+	private int nextOffset = 0;
+
+	private int windowOffset = -1;
+	private int windowSampleCount = 0;
+
+	/**
+	 * the executor reading the next window in the background, null
+	 * if prefetching is disabled
+	 */
+	private ExecutorService executor;
+
+	/**
+	 * the reading of the next window in the background
+	 */
+	private Future<?> pending;
+
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Creates a cursor over the given source.
+	 * @param source the source of the samples
+	 * @param windowLength the number of samples in a window
+	 * @param overlap the number of samples shared by the consecutive windows
+	 * @param prefetch true if the next window should be read in the background
+	 * @param destroySource true if the source should be destroyed when this
+	 * cursor is closed
+	 * @throws IllegalArgumentException if the length of the window is not
+	 * positive or the overlap is not smaller than the length of the window
+	 */
+	public SignalSamplesCursorImpl(MultichannelSampleSource source, int windowLength, int overlap, boolean prefetch, boolean destroySource) {
+		if (windowLength <= 0 || overlap < 0 || overlap >= windowLength) {
+			throw new IllegalArgumentException("Bad window length [" + windowLength + "] or overlap [" + overlap + "]");
+		}
+		this.source = source;
+		this.destroySource = destroySource;
+		this.windowLength = windowLength;
+		this.step = windowLength - overlap;
+
+		channelCount = source.getChannelCount();
+		sampleCount = SampleSourceUtils.getMinSampleCount(source);
+		samplingFrequency = source.getSamplingFrequency();
+
+		data = new double[channelCount][windowLength];
+		int windowCount = prefetch ? 2 : 1;
+		windows = new SignalSamplesImpl[windowCount];
+		windowSamples = new double[windowCount][channelCount][windowLength];
+		for (int i = 0; i < windowCount; i++) {
+			ChannelSamplesImpl[] channels = new ChannelSamplesImpl[channelCount];
+			for (int channel = 0; channel < channelCount; channel++) {
+				channels[channel] = new ChannelSamplesImpl(windowSamples[i][channel], channel, samplingFrequency, source.getLabel(channel));
+			}
+			windows[i] = new SignalSamplesImpl(channels);
+		}
+
+		if (prefetch) {
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "signal-cursor");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	@Override
+	public int getChannelCount() {
+		return channelCount;
+	}
+
+	@Override
+	public float getSamplingFrequency() {
+		return samplingFrequency;
+	}
+
+	@Override
+	public int getSampleCount() {
+		return sampleCount;
+	}
+
+	@Override
+	public int getWindowLength() {
+		return windowLength;
+	}
+
+	@Override
+	public int getStep() {
+		return step;
+	}
+
+	@Override
+	public synchronized boolean hasNext() {
+		if (cancelled || nextOffset >= sampleCount) {
+			return false;
+		}
+		// the previous window did not reach the end of the signal
+		return nextOffset == 0 || nextOffset - step + windowLength < sampleCount;
+	}
+
+	@Override
+	public synchronized SignalSamples next() throws NoSuchElementException {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		int slot = (executor != null) ? windows.length - 1 - currentWindow : 0;
+		if (windowOffset < 0) {
+			slot = 0;
+		}
+		if (pending != null) {
+			waitForPending();
+		} else {
+			readWindow(nextOffset, slot);
+		}
+		if (cancelled) {
+			throw new NoSuchElementException("cancelled");
+		}
+
+		currentWindow = slot;
+		windowOffset = nextOffset;
+		windowSampleCount = Math.min(windowLength, sampleCount - nextOffset);
+		nextOffset += step;
+
+		if (executor != null && hasNext()) {
+			final int offset = nextOffset;
+			final int prefetchSlot = windows.length - 1 - slot;
+			pending = executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					readWindow(offset, prefetchSlot);
+				}
+			});
+		}
+
+		return windows[slot];
+	}
+
+	/**
+	 * Waits until the next window is read in the background.
+	 */
+	private void waitForPending() {
+		try {
+			pending.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			cancel();
+			throw new NoSuchElementException("interrupted");
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		} finally {
+			pending = null;
+		}
+	}
+
+	/**
+	 * Reads the window starting at the given position to the given set of
+	 * window buffers. The samples which were already read for the previous
+	 * window are not read again.
+	 * @param offset the position of the window in the signal
+	 * @param slot the index of the window buffers
+	 */
+	private void readWindow(int offset, int slot) {
+		int count = Math.min(windowLength, sampleCount - offset);
+
+		int keep = 0;
+		if (dataOffset >= 0 && offset >= dataOffset && offset < dataOffset + dataCount) {
+			keep = Math.min(count, dataOffset + dataCount - offset);
+			int shift = offset - dataOffset;
+			if (shift > 0) {
+				for (int channel = 0; channel < channelCount; channel++) {
+					System.arraycopy(data[channel], shift, data[channel], 0, keep);
+				}
+			}
+		}
+		dataOffset = -1;
+
+		for (int channel = 0; channel < channelCount; channel++) {
+			if (cancelled) {
+				return;
+			}
+			if (keep < count) {
+				source.getSamples(channel, data[channel], offset + keep, count - keep, keep);
+			}
+			double[] target = windowSamples[slot][channel];
+			System.arraycopy(data[channel], 0, target, 0, count);
+			if (count < windowLength) {
+				Arrays.fill(target, count, windowLength, 0.0);
+			}
+		}
+
+		dataOffset = offset;
+		dataCount = count;
+	}
+
+	@Override
+	public synchronized int getWindowOffset() {
+		return windowOffset;
+	}
+
+	@Override
+	public synchronized int getWindowSampleCount() {
+		return windowSampleCount;
+	}
+
+	@Override
+	public void cancel() {
+		cancelled = true;
+		ExecutorService executor = this.executor;
+		if (executor != null) {
+			// the reading is not interrupted, some sources close their files then
+			executor.shutdown();
+		}
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public void close() {
+		cancel();
+		synchronized (this) {
+			if (pending != null) {
+				try {
+					pending.get();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException ex) {
+					logger.debug("Reading of the window failed", ex.getCause());
+				}
+				pending = null;
+			}
+			if (destroySource && source != null) {
+				source.destroy();
+			}
+			source = null;
+		}
+	}
+
+}
@@ -68,6 +68,7 @@
 import org.signalml.plugin.export.signal.ExportedTag;
 import org.signalml.plugin.export.signal.ExportedTagDocument;
 import org.signalml.plugin.export.signal.SignalSamples;
+import org.signalml.plugin.export.signal.SignalSamplesCursor;
 import org.signalml.plugin.export.signal.SignalSelection;
 import org.signalml.plugin.export.signal.SignalSelectionType;
 import org.signalml.plugin.export.signal.SvarogAccessSignal;
@@ -987,6 +988,27 @@ public void exportSignal(float position, float length, int[] channels, SignalSou
 
 	}
 
+	@Override
+	public SignalSamplesCursor getActiveSignalSamplesCursor(SignalSourceLevel level, int windowLength, int overlap, boolean prefetch) throws NoActiveObjectException, SignalMLException {
+		try {
+			return getSignalSamplesCursorFromDocument(getActiveSignalDocument(), level, windowLength, overlap, prefetch);
+		} catch (InvalidClassException ex) {
+			throw new NoActiveObjectException("no active signal document");
+		}
+	}
+
+	@Override
+	public SignalSamplesCursor getSignalSamplesCursorFromDocument(ExportedSignalDocument document, SignalSourceLevel level, int windowLength, int overlap, boolean prefetch) throws InvalidClassException, SignalMLException {
+		SignalPlot signalPlot = getSignalPlotFromDocument(document);
+		SignalProcessingChain signalChain = signalPlot.getSignalChain().createLevelCopyChain(level);
+		try {
+			return new SignalSamplesCursorImpl(signalChain, windowLength, overlap, prefetch, true);
+		} catch (IllegalArgumentException ex) {
+			signalChain.destroy();
+			throw ex;
+		}
+	}
+
 	@Override
 	public File getTemporaryFile(String extension) throws IOException {
 		File profileDirectory = getViewerElementManager().getProfileDir().getAbsoluteFile();
@@ -29,11 +29,30 @@ public class DefaultTaskManager implements TaskManager {
 
 	private EventListenerList listenerList = new EventListenerList();
 
+	private TaskScheduler scheduler;
+
 	/**
-	 * Constructs an empty DefaultTaskManager.
+	 * Constructs an empty DefaultTaskManager which executes tasks on the
+	 * {@link TaskScheduler#getSharedInstance() shared scheduler}.
 	 */
 	public DefaultTaskManager() {
+		this(TaskScheduler.getSharedInstance());
+	}
+
+	/**
+	 * Constructs an empty DefaultTaskManager which executes tasks on the given scheduler.
+	 * @param scheduler the scheduler of this manager
+	 */
+	public DefaultTaskManager(TaskScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
 
+	/**
+	 * Returns the scheduler which executes the tasks of this manager.
+	 * @return the scheduler of this manager
+	 */
+	public TaskScheduler getScheduler() {
+		return scheduler;
 	}
 
 	/**
@@ -122,6 +141,7 @@ public void removeTask(Task task) {
 				return;
 			}
 			int index = tasks.indexOf(task);
+			scheduler.cancel(task);
 			tasksByUID.remove(task.getUID());
 			tasks.remove(task);
 			fireTaskRemoved(task, index);
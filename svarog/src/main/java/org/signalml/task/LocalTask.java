@@ -60,6 +60,11 @@ public class LocalTask implements SvarogTask, MethodExecutionTracker, Runnable {
 
 	private Object executionMonitorObject = new Object();
 
+	/**
+	 * the scheduler to which this task was last submitted, null if it was never submitted
+	 */
+	private volatile TaskScheduler scheduler;
+
 	private void debug(String message) {
 		logger.debug("TASK [" + hashCode() + "]: " + message);
 	}
@@ -251,7 +256,8 @@ public String getUID() {
 	}
 
 	/**
-	* Prepares starting the execution of the task (the computation) on the new thread if specified TaskExecutor is null, otherwise by this TaskExecutor.
+	* Prepares starting the execution of the task (the computation) as a {@link TaskPriority#BATCH batch} task of the
+	 * {@link TaskScheduler#getSharedInstance() shared scheduler} if specified TaskExecutor is null, otherwise by this TaskExecutor.
 	 * Note that "starting" in this case menas only to post a request for starting by setting the status to ACTIVE_WAITING.
 	       * Note that when second thread calls start() on the same object, it will have to wait for the first thread to complete the call to this method.
 	       * @param t executor of Task
@@ -264,7 +270,7 @@ public void start(TaskExecutor t) throws InvalidTaskStateException {
 			}
 			status = TaskStatus.ACTIVE_WAITING;
 			if (t == null) {
-				(new Thread(this)).start();
+				TaskScheduler.getSharedInstance().submit(this, this, TaskPriority.BATCH);
 			} else {
 				t.execute(this);
 			}
@@ -326,7 +332,8 @@ else if (status.isStartable()) {
 	 *  Aborts the execution of this task. The task must be running or exceptions will be thrown. Note that
 	 *  "aborting" in this case menas only to post a request for abortion by setting the status to
 	 *  REQUESTING_ABORT. It is up to the method's compute implementation to check for this status and exit
-	 *  when it is detected.
+	 *  when it is detected. A task which still waits for a worker of its {@link TaskScheduler}
+	 *  is removed from the queue and aborted at once.
 	 *
 	 *  <p>This method may also wait for the task to abort, but this may lead to the calling thread being
 	 *  permanently locked if the compute method never finishes.
@@ -343,7 +350,8 @@ public void abort(boolean wait) throws InvalidTaskStateException {
 			if (!status.isAbortable()) {
 				throw new InvalidTaskStateException("error.taskNotAbortable");
 			}
-			if (status.isSuspended()) {
+			boolean waiting = cancelWaiting();
+			if (waiting || status.isSuspended()) {
 				onAbort(); // abort immediately
 			} else {
 				status = TaskStatus.REQUESTING_ABORT;
@@ -368,7 +376,8 @@ public void abort(boolean wait) throws InvalidTaskStateException {
 	 *  must be suspendalbe or exceptions will be thrown. Note that "suspending" in this case menas
 	 *  only to post a request for suspension by setting the status to REQUESTING_SUSPEND.
 	 *  It is up to the method's compute implementation to check for this status and exit
-	 *  when it is detected.
+	 *  when it is detected. A task which still waits for a worker of its {@link TaskScheduler}
+	 *  is removed from the queue and suspended at once.
 	 *
 	 *  <p>This method may also wait for the task to suspend, but this may lead to the calling thread being
 	 *  permanently locked if the compute method never finishes.
@@ -386,6 +395,10 @@ public void suspend(boolean wait) throws InvalidTaskStateException {
 			if (!(method instanceof SuspendableMethod) || !status.isSuspendable()) {
 				throw new InvalidTaskStateException("error.taskNotSuspendable");
 			}
+			if (cancelWaiting()) {
+				onSuspend(); // the computation hasn't started, suspend immediately
+				return;
+			}
 			status = TaskStatus.REQUESTING_SUSPEND;
 			fireTaskRequestChanged();
 			notifyAll();
@@ -415,7 +428,7 @@ public void suspend(boolean wait) throws InvalidTaskStateException {
 	       *
 	       *  Note that when second thread calls resume() on the same object, it will have to wait for the first thread to complete the call to this method.
 	       *
-	       * @param t executor of this task
+	       * @param t executor of this task, or null to execute it on the {@link TaskScheduler#getSharedInstance() shared scheduler}
 	       * @throws InvalidTaskStateException thrown when the task status doesn't allow resuming or the method
 	       *              isn't suspendable
 	       */
@@ -430,7 +443,7 @@ public void resume(TaskExecutor t) throws InvalidTaskStateException {
 			fireTaskResumed();
 			notifyAll();
 			if (t == null) {
-				(new Thread(this)).start();
+				TaskScheduler.getSharedInstance().submit(this, this, TaskPriority.BATCH);
 			} else {
 				t.execute(this);
 			}
@@ -462,6 +475,25 @@ public void resumeAndDo() throws InvalidTaskStateException {
 	}
 
 
+	/**
+	 * Sets the scheduler to which this task has been submitted.
+	 * @param scheduler the scheduler
+	 */
+	void setScheduler(TaskScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Removes this task from the queue of its scheduler if it is still waiting
+	 * there for a worker, so that it never occupies one.
+	 * @return true if the task was waiting, false if it is running or was not
+	 * submitted to a scheduler
+	 */
+	private boolean cancelWaiting() {
+		TaskScheduler scheduler = this.scheduler;
+		return (scheduler != null && scheduler.cancel(this));
+	}
+
 	/**
 	 * Method called on aborting this Task. It sets status to ABORTED and time of end of execution.
 	 */
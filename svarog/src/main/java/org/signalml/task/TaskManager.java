@@ -74,4 +74,10 @@ public interface TaskManager {
 	 */
 	void removeTaskManagerListener(TaskManagerListener listener);
 
+	/**
+	 * Returns the scheduler which executes the tasks of this manager.
+	 * @return the scheduler of this manager
+	 */
+	TaskScheduler getScheduler();
+
 }
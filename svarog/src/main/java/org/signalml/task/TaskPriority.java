@@ -0,0 +1,20 @@
+package org.signalml.task;
+
+/**
+ * The priority class in which a {@link Task} waits for a worker
+ * of a {@link TaskScheduler}.
+ */
+public enum TaskPriority {
+
+	/** The task was started by the user who waits for its result
+	 * (for example with the status dialog shown). Such tasks are
+	 * dispatched before any batch task.
+	 */
+	INTERACTIVE,
+
+	/** The task is one of many started together or a restored task.
+	 * Such tasks never occupy all workers of the scheduler.
+	 */
+	BATCH
+
+}
@@ -0,0 +1,586 @@
+package org.signalml.task;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.EventListenerList;
+
+import org.apache.log4j.Logger;
+
+/**
+ * TaskScheduler executes {@link Task tasks} on a bounded pool of worker threads.
+ * <p>
+ * Tasks wait for a worker in two {@link TaskPriority priority classes}.
+ * A free worker always takes an interactive task first, while batch tasks
+ * may occupy at most {@link #getBatchWorkerCount()} workers, so that a
+ * queue of batch tasks never keeps the task started by the user waiting
+ * for all of them.
+ * <p>
+ * Within a class the methods are served in turns (one task of every method
+ * which has waiting tasks, then again), so that many tasks of one method do
+ * not hold back the tasks of other methods, while the tasks of one method
+ * are started in the order in which they were submitted. The number of tasks
+ * of a method which may run at the same time can be {@link #setMethodLimit(String, int)
+ * limited}, for example to the number of processors for methods which
+ * start a native process.
+ * <p>
+ * A task submitted from a worker of the scheduler, that is by a running task
+ * which usually waits for its result, is started at once on an additional
+ * thread, regardless of the limits. Otherwise it could wait for the worker
+ * held by its own parent.
+ * <p>
+ * A {@link LocalTask} aborted or suspended while it is waiting is removed
+ * from the queue, so it never occupies a worker.
+ * <p>
+ * {@link ChangeListener Listeners} are notified whenever a task is submitted,
+ * started, finished or cancelled, so that the numbers of waiting and running
+ * tasks can be displayed.
+ */
+public class TaskScheduler {
+
+	/**
+	 * Logger named "TaskScheduler"
+	 */
+	protected static final Logger logger = Logger.getLogger(TaskScheduler.class);
+
+	/** the default number of workers which batch tasks leave for interactive tasks */
+	public static final int DEFAULT_INTERACTIVE_RESERVE = 1;
+
+	private static TaskScheduler sharedInstance = null;
+
+	private final EventListenerList listenerList = new EventListenerList();
+
+	/** the waiting tasks of each priority class by method name, in the order in which the methods are served */
+	private final EnumMap<TaskPriority, LinkedHashMap<String, LinkedList<Entry>>> queues;
+
+	/** all waiting tasks in the order of submission */
+	private final LinkedList<Entry> waiting = new LinkedList<Entry>();
+
+	private final Map<String, Integer> methodLimits = new HashMap<String, Integer>();
+	private final Map<String, Integer> runningByMethod = new HashMap<String, Integer>();
+
+	private final ThreadPoolExecutor executor;
+
+	/** the executor of the tasks submitted from the workers, not limited */
+	private final ThreadPoolExecutor nestedExecutor;
+
+	private int workerCount;
+	private int interactiveReserve = DEFAULT_INTERACTIVE_RESERVE;
+
+	private int runningCount = 0;
+	private int runningBatchCount = 0;
+	private int runningNestedCount = 0;
+
+	/**
+	 * Returns the scheduler shared by all task managers and tasks started
+	 * without an executor. It is created with one worker per processor.
+	 * @return the shared scheduler
+	 */
+	public static synchronized TaskScheduler getSharedInstance() {
+		if (sharedInstance == null) {
+			sharedInstance = new TaskScheduler();
+		}
+		return sharedInstance;
+	}
+
+	/**
+	 * Constructs a scheduler with one worker per processor.
+	 */
+	public TaskScheduler() {
+		this(0);
+	}
+
+	/**
+	 * Constructs a scheduler with the given number of workers.
+	 * @param workerCount the number of workers, or 0 for one worker per processor
+	 */
+	public TaskScheduler(int workerCount) {
+		queues = new EnumMap<TaskPriority, LinkedHashMap<String, LinkedList<Entry>>>(TaskPriority.class);
+		for (TaskPriority priority : TaskPriority.values()) {
+			queues.put(priority, new LinkedHashMap<String, LinkedList<Entry>>());
+		}
+
+		this.workerCount = normalizeWorkerCount(workerCount);
+		WorkerThreadFactory threadFactory = new WorkerThreadFactory();
+		executor = new ThreadPoolExecutor(this.workerCount, this.workerCount, 30, TimeUnit.SECONDS,
+										  new LinkedBlockingQueue<Runnable>(), threadFactory);
+		executor.allowCoreThreadTimeOut(true);
+		nestedExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS,
+												new SynchronousQueue<Runnable>(), threadFactory);
+	}
+
+	private static int normalizeWorkerCount(int workerCount) {
+		if (workerCount <= 0) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+		return workerCount;
+	}
+
+	/**
+	 * Returns the number of workers, that is the maximal number of tasks
+	 * running at the same time.
+	 * @return the number of workers
+	 */
+	public synchronized int getWorkerCount() {
+		return workerCount;
+	}
+
+	/**
+	 * Sets the number of workers. Running tasks are not affected, if the number
+	 * is decreased new tasks are started when enough of them finish.
+	 * @param workerCount the number of workers, or 0 for one worker per processor
+	 */
+	public void setWorkerCount(int workerCount) {
+		synchronized (this) {
+			int count = normalizeWorkerCount(workerCount);
+			if (count == this.workerCount) {
+				return;
+			}
+			if (count > this.workerCount) {
+				executor.setMaximumPoolSize(count);
+				executor.setCorePoolSize(count);
+			} else {
+				executor.setCorePoolSize(count);
+				executor.setMaximumPoolSize(count);
+			}
+			this.workerCount = count;
+			dispatch();
+		}
+		fireStateChanged();
+	}
+
+	/**
+	 * Returns the number of workers which batch tasks leave for interactive tasks.
+	 * @return the number of workers reserved for interactive tasks
+	 */
+	public synchronized int getInteractiveReserve() {
+		return interactiveReserve;
+	}
+
+	/**
+	 * Sets the number of workers which batch tasks leave for interactive tasks.
+	 * @param interactiveReserve the number of workers reserved for interactive tasks
+	 */
+	public void setInteractiveReserve(int interactiveReserve) {
+		synchronized (this) {
+			this.interactiveReserve = Math.max(0, interactiveReserve);
+			dispatch();
+		}
+		fireStateChanged();
+	}
+
+	/**
+	 * Returns the maximal number of batch tasks running at the same time.
+	 * It is always at least 1.
+	 * @return the number of workers available to batch tasks
+	 */
+	public synchronized int getBatchWorkerCount() {
+		return Math.max(1, workerCount - interactiveReserve);
+	}
+
+	/**
+	 * Returns the maximal number of tasks of the given method which may run at the same time.
+	 * @param methodName the {@link org.signalml.method.Method#getName() name} of the method
+	 * @return the limit, or 0 if the method is not limited
+	 */
+	public synchronized int getMethodLimit(String methodName) {
+		Integer limit = methodLimits.get(methodName);
+		return (limit != null ? limit : 0);
+	}
+
+	/**
+	 * Sets the maximal number of tasks of the given method which may run at the same time.
+	 * @param methodName the {@link org.signalml.method.Method#getName() name} of the method
+	 * @param limit the limit, or 0 to remove the limit
+	 */
+	public void setMethodLimit(String methodName, int limit) {
+		synchronized (this) {
+			if (limit <= 0) {
+				methodLimits.remove(methodName);
+			} else {
+				methodLimits.put(methodName, limit);
+			}
+			dispatch();
+		}
+		fireStateChanged();
+	}
+
+	/**
+	 * Submits the given runnable, which executes the given task, for execution.
+	 * If it is called from a worker of this scheduler the runnable is started
+	 * at once.
+	 * @param task the task executed by the runnable
+	 * @param runnable the runnable to execute on a worker
+	 * @param priority the priority class of the task
+	 */
+	public void submit(Task task, Runnable runnable, TaskPriority priority) {
+		// the task is not accessed with the lock held, as it may be locked by the caller
+		Entry entry = new Entry(task, runnable, priority, String.valueOf(task.getMethod().getName()), isWorkerThread());
+		if (task instanceof LocalTask) {
+			((LocalTask) task).setScheduler(this);
+		}
+		synchronized (this) {
+			if (entry.nested) {
+				start(entry);
+			} else {
+				addWaiting(entry);
+			}
+		}
+		fireStateChanged();
+	}
+
+	/**
+	 * Adds the given entry to the queues and starts waiting tasks if there
+	 * are free workers. Must be called with the lock on this scheduler held.
+	 */
+	private void addWaiting(Entry entry) {
+		LinkedHashMap<String, LinkedList<Entry>> methodQueues = queues.get(entry.priority);
+		LinkedList<Entry> queue = methodQueues.get(entry.methodName);
+		if (queue == null) {
+			queue = new LinkedList<Entry>();
+			methodQueues.put(entry.methodName, queue);
+		}
+		queue.add(entry);
+		waiting.add(entry);
+		dispatch();
+	}
+
+	/**
+	 * Removes the given task from the queue if it is still waiting for a worker.
+	 * If its runnable is a {@link Future} it is cancelled, so that nothing
+	 * waits for it.
+	 * @param task the task
+	 * @return true if the task was waiting and has been removed, false otherwise
+	 */
+	public boolean cancel(Task task) {
+		Entry entry;
+		synchronized (this) {
+			entry = findWaiting(task);
+			if (entry == null) {
+				return false;
+			}
+			waiting.remove(entry);
+			LinkedHashMap<String, LinkedList<Entry>> methodQueues = queues.get(entry.priority);
+			LinkedList<Entry> queue = methodQueues.get(entry.methodName);
+			queue.remove(entry);
+			if (queue.isEmpty()) {
+				methodQueues.remove(entry.methodName);
+			}
+		}
+		if (entry.runnable instanceof Future) {
+			((Future<?>) entry.runnable).cancel(false);
+		}
+		fireStateChanged();
+		return true;
+	}
+
+	/**
+	 * Returns the position of the given task among the tasks of its priority
+	 * class waiting for a worker, in the order of submission.
+	 * @param task the task
+	 * @return the position counted from 1, or 0 if the task is not waiting
+	 */
+	public synchronized int getQueuePosition(Task task) {
+		Entry entry = findWaiting(task);
+		if (entry == null) {
+			return 0;
+		}
+		int position = 0;
+		for (Entry e : waiting) {
+			if (e.priority == entry.priority) {
+				position++;
+			}
+			if (e == entry) {
+				break;
+			}
+		}
+		return position;
+	}
+
+	/**
+	 * Returns the priority class in which the given task is waiting.
+	 * @param task the task
+	 * @return the priority class, or null if the task is not waiting
+	 */
+	public synchronized TaskPriority getWaitingPriority(Task task) {
+		Entry entry = findWaiting(task);
+		return (entry != null ? entry.priority : null);
+	}
+
+	/**
+	 * Returns the number of tasks waiting for a worker.
+	 * @return the number of waiting tasks
+	 */
+	public synchronized int getWaitingCount() {
+		return waiting.size();
+	}
+
+	/**
+	 * Returns the number of tasks of the given priority class waiting for a worker.
+	 * @param priority the priority class
+	 * @return the number of waiting tasks
+	 */
+	public synchronized int getWaitingCount(TaskPriority priority) {
+		int count = 0;
+		for (LinkedList<Entry> queue : queues.get(priority).values()) {
+			count += queue.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of tasks which are running, including the tasks
+	 * submitted from the workers.
+	 * @return the number of running tasks
+	 */
+	public synchronized int getRunningCount() {
+		return runningCount + runningNestedCount;
+	}
+
+	/**
+	 * Returns the number of tasks of the given method which are running.
+	 * @param methodName the {@link org.signalml.method.Method#getName() name} of the method
+	 * @return the number of running tasks
+	 */
+	public synchronized int getRunningCount(String methodName) {
+		Integer count = runningByMethod.get(methodName);
+		return (count != null ? count : 0);
+	}
+
+	/**
+	 * Stops the workers when the running tasks finish. The tasks which
+	 * are waiting will not be started.
+	 */
+	public synchronized void shutdown() {
+		queues.get(TaskPriority.INTERACTIVE).clear();
+		queues.get(TaskPriority.BATCH).clear();
+		waiting.clear();
+		executor.shutdown();
+		nestedExecutor.shutdown();
+	}
+
+	/**
+	 * Adds a listener notified when the numbers of waiting or running tasks change.
+	 * The listener is notified on the thread which caused the change.
+	 * @param listener the listener to add
+	 */
+	public void addChangeListener(ChangeListener listener) {
+		synchronized (listenerList) {
+			listenerList.add(ChangeListener.class, listener);
+		}
+	}
+
+	/**
+	 * Removes the given listener.
+	 * @param listener the listener to remove
+	 */
+	public void removeChangeListener(ChangeListener listener) {
+		synchronized (listenerList) {
+			listenerList.remove(ChangeListener.class, listener);
+		}
+	}
+
+	protected void fireStateChanged() {
+		Object[] listeners;
+		synchronized (listenerList) {
+			listeners = listenerList.getListenerList();
+		}
+		ChangeEvent e = null;
+		for (int i = listeners.length-2; i>=0; i-=2) {
+			if (listeners[i]==ChangeListener.class) {
+				if (e == null) {
+					e = new ChangeEvent(this);
+				}
+				((ChangeListener)listeners[i+1]).stateChanged(e);
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the current thread is a worker of this scheduler.
+	 */
+	private boolean isWorkerThread() {
+		Thread thread = Thread.currentThread();
+		return (thread instanceof WorkerThread && ((WorkerThread) thread).getScheduler() == this);
+	}
+
+	private Entry findWaiting(Task task) {
+		for (Entry entry : waiting) {
+			if (entry.task == task) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Starts waiting tasks while there are free workers. Must be called
+	 * with the lock on this scheduler held.
+	 */
+	private void dispatch() {
+		if (executor.isShutdown()) {
+			return;
+		}
+		Entry entry;
+		while (runningCount < workerCount) {
+			entry = takeNext(TaskPriority.INTERACTIVE);
+			if (entry == null && runningBatchCount < getBatchWorkerCount()) {
+				entry = takeNext(TaskPriority.BATCH);
+			}
+			if (entry == null) {
+				return;
+			}
+			start(entry);
+		}
+	}
+
+	/**
+	 * Takes the first waiting task of the first method in turn which has
+	 * not reached its limit, and moves this method to the end of the turn.
+	 */
+	private Entry takeNext(TaskPriority priority) {
+		LinkedHashMap<String, LinkedList<Entry>> methodQueues = queues.get(priority);
+		Iterator<Map.Entry<String, LinkedList<Entry>>> it = methodQueues.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, LinkedList<Entry>> methodQueue = it.next();
+			String methodName = methodQueue.getKey();
+			Integer limit = methodLimits.get(methodName);
+			if (limit != null && getRunningCount(methodName) >= limit) {
+				continue;
+			}
+			LinkedList<Entry> queue = methodQueue.getValue();
+			Entry entry = queue.removeFirst();
+			it.remove();
+			if (!queue.isEmpty()) {
+				methodQueues.put(methodName, queue);
+			}
+			waiting.remove(entry);
+			return entry;
+		}
+		return null;
+	}
+
+	private void start(Entry entry) {
+		if (entry.nested) {
+			runningNestedCount++;
+		} else {
+			runningCount++;
+			if (entry.priority == TaskPriority.BATCH) {
+				runningBatchCount++;
+			}
+		}
+		runningByMethod.put(entry.methodName, getRunningCount(entry.methodName) + 1);
+		try {
+			(entry.nested ? nestedExecutor : executor).execute(new Worker(entry));
+		} catch (RejectedExecutionException ex) {
+			logger.error("Failed to start a task of method [" + entry.methodName + "]", ex);
+			finish(entry);
+		}
+	}
+
+	private void finish(Entry entry) {
+		if (entry.nested) {
+			runningNestedCount--;
+		} else {
+			runningCount--;
+			if (entry.priority == TaskPriority.BATCH) {
+				runningBatchCount--;
+			}
+		}
+		int count = getRunningCount(entry.methodName) - 1;
+		if (count > 0) {
+			runningByMethod.put(entry.methodName, count);
+		} else {
+			runningByMethod.remove(entry.methodName);
+		}
+	}
+
+	private void onFinished(Entry entry) {
+		synchronized (this) {
+			finish(entry);
+			dispatch();
+		}
+		fireStateChanged();
+	}
+
+	private static class Entry {
+
+		private final Task task;
+		private final Runnable runnable;
+		private final TaskPriority priority;
+		private final String methodName;
+
+		/** true if the task was submitted from a worker and does not wait for one */
+		private final boolean nested;
+
+		private Entry(Task task, Runnable runnable, TaskPriority priority, String methodName, boolean nested) {
+			this.task = task;
+			this.runnable = runnable;
+			this.priority = priority;
+			this.methodName = methodName;
+			this.nested = nested;
+		}
+
+	}
+
+	private class Worker implements Runnable {
+
+		private final Entry entry;
+
+		private Worker(Entry entry) {
+			this.entry = entry;
+		}
+
+		@Override
+		public void run() {
+			try {
+				entry.runnable.run();
+			} catch (RuntimeException ex) {
+				logger.error("Task [" + entry.task.getUID() + "] failed on worker", ex);
+			} finally {
+				onFinished(entry);
+			}
+		}
+
+	}
+
+	private class WorkerThread extends Thread {
+
+		private WorkerThread(Runnable runnable, String name) {
+			super(runnable, name);
+		}
+
+		private TaskScheduler getScheduler() {
+			return TaskScheduler.this;
+		}
+
+	}
+
+	private class WorkerThreadFactory implements ThreadFactory {
+
+		private int threadNumber = 0;
+
+		@Override
+		public synchronized Thread newThread(Runnable r) {
+			threadNumber++;
+			Thread thread = new WorkerThread(r, "task-worker-" + threadNumber);
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
@@ -0,0 +1,327 @@
+package org.signalml.util;
+
+import java.math.BigInteger;
+
+/**
+ * Formats double values as decimal text into byte arrays without
+ * creating any objects, so that large numbers of samples can be
+ * written quickly.
+ * <p>
+ * The digits are generated with the Grisu2 algorithm (F. Loitsch,
+ * <i>Printing floating-point numbers quickly and accurately with
+ * integers</i>, 2010). The text always reads back as the same value
+ * and is almost always the shortest text which does so (otherwise,
+ * when the shortest text lies exactly on the boundary of the values
+ * which read back as the same value, it has a digit or two more).
+ * Values between 1e-7 and 1e21 are written in the plain notation with
+ * at least one fractional digit (for example {@code 12.0}), other values
+ * in the scientific notation understood by {@link Double#parseDouble(String)}
+ * (for example {@code 1.5E-8}).
+ * <p>
+ * This class is thread safe.
+ */
+public final class DoubleFormatter {
+
+	/**
+	 * The maximum number of bytes written for a single value.
+	 */
+	public static final int MAX_LENGTH = 26;
+
+	private static final long SIGNIFICAND_MASK = 0x000FFFFFFFFFFFFFL;
+	private static final long HIDDEN_BIT = 0x0010000000000000L;
+	private static final int EXPONENT_BIAS = 1075;
+
+	/**
+	 * The decimal exponent of the first cached power of ten.
+	 */
+	private static final int FIRST_CACHED_EXPONENT = -348;
+
+	/**
+	 * The difference between the decimal exponents of consecutive cached powers.
+	 */
+	private static final int CACHED_EXPONENT_STEP = 8;
+
+	private static final int CACHED_POWER_COUNT = 87;
+
+	/**
+	 * The normalized 64-bit significands of the cached powers of ten.
+	 */
+	private static final long[] cachedSignificands = new long[CACHED_POWER_COUNT];
+
+	/**
+	 * The binary exponents of the cached powers of ten.
+	 */
+	private static final int[] cachedExponents = new int[CACHED_POWER_COUNT];
+
+	private static final long[] powersOfTen = new long[19];
+
+	private static final byte[] NAN = { 'N', 'a', 'N' };
+	private static final byte[] INFINITY = { 'I', 'n', 'f', 'i', 'n', 'i', 't', 'y' };
+
+	static {
+		powersOfTen[0] = 1;
+		for (int i = 1; i < powersOfTen.length; i++) {
+			powersOfTen[i] = 10 * powersOfTen[i - 1];
+		}
+
+		for (int i = 0; i < CACHED_POWER_COUNT; i++) {
+			int decimalExponent = FIRST_CACHED_EXPONENT + i * CACHED_EXPONENT_STEP;
+			BigInteger power = BigInteger.TEN.pow(Math.abs(decimalExponent));
+			BigInteger significand;
+			int exponent;
+			if (decimalExponent >= 0) {
+				int shift = power.bitLength() - 64;
+				if (shift > 0) {
+					significand = power.add(BigInteger.ONE.shiftLeft(shift - 1)).shiftRight(shift);
+				} else {
+					significand = power.shiftLeft(-shift);
+				}
+				exponent = shift;
+			} else {
+				// 2^shift / 10^-decimalExponent has 64 bits
+				int shift = 63 + power.bitLength();
+				significand = BigInteger.ONE.shiftLeft(shift).add(power.shiftRight(1)).divide(power);
+				exponent = -shift;
+			}
+			if (significand.bitLength() > 64) {
+				significand = significand.shiftRight(1);
+				exponent++;
+			}
+			cachedSignificands[i] = significand.longValue();
+			cachedExponents[i] = exponent;
+		}
+	}
+
+	private DoubleFormatter() {
+	}
+
+	/**
+	 * Writes the given value as ASCII text to the buffer.
+	 * @param value the value to be written
+	 * @param buffer the buffer, which must have at least {@link #MAX_LENGTH}
+	 * bytes after the offset
+	 * @param offset the position in the buffer at which the text begins
+	 * @return the position in the buffer after the text
+	 */
+	public static int format(double value, byte[] buffer, int offset) {
+		if (value != value) {
+			System.arraycopy(NAN, 0, buffer, offset, NAN.length);
+			return offset + NAN.length;
+		}
+
+		long bits = Double.doubleToRawLongBits(value);
+		int position = offset;
+		if (bits < 0) {
+			buffer[position++] = '-';
+			bits &= Long.MAX_VALUE;
+		}
+		if (bits == 0) {
+			buffer[position++] = '0';
+			buffer[position++] = '.';
+			buffer[position++] = '0';
+			return position;
+		}
+		if (value == Double.POSITIVE_INFINITY || value == Double.NEGATIVE_INFINITY) {
+			System.arraycopy(INFINITY, 0, buffer, position, INFINITY.length);
+			return position + INFINITY.length;
+		}
+
+		int result = generateDigits(bits, buffer, position);
+		return prettify(buffer, position, result & 31, result >> 5);
+	}
+
+	/**
+	 * Generates the digits of a positive finite value.
+	 * @return the number of digits in the lowest 5 bits and the decimal
+	 * exponent, by which the digits are multiplied, in the remaining bits
+	 */
+	private static int generateDigits(long bits, byte[] buffer, int start) {
+		long f = bits & SIGNIFICAND_MASK;
+		int biasedExponent = (int) (bits >>> 52);
+		int e;
+		if (biasedExponent != 0) {
+			f += HIDDEN_BIT;
+			e = biasedExponent - EXPONENT_BIAS;
+		} else {
+			e = 1 - EXPONENT_BIAS;
+		}
+
+		// the boundaries between this value and its neighbours
+		long plusF = (f << 1) + 1;
+		int plusE = e - 1;
+		int shift = Long.numberOfLeadingZeros(plusF);
+		plusF <<= shift;
+		plusE -= shift;
+		long minusF;
+		int minusE;
+		if (f == HIDDEN_BIT) {
+			minusF = (f << 2) - 1;
+			minusE = e - 2;
+		} else {
+			minusF = (f << 1) - 1;
+			minusE = e - 1;
+		}
+		minusF <<= minusE - plusE;
+
+		long valueF = f << Long.numberOfLeadingZeros(f);
+
+		// the cached power of ten which brings the exponent to [-60, -32]
+		double approximation = (-61 - plusE) * 0.30102999566398114 + 347;
+		int k = (int) approximation;
+		if (approximation - k > 0.0) {
+			k++;
+		}
+		int index = (k >> 3) + 1;
+		int decimalExponent = -(FIRST_CACHED_EXPONENT + index * CACHED_EXPONENT_STEP);
+		long cachedF = cachedSignificands[index];
+
+		long w = multiply(valueF, cachedF);
+		long upper = multiply(plusF, cachedF) - 1;
+		long lower = multiply(minusF, cachedF) + 1;
+		int oneShift = -(plusE + cachedExponents[index] + 64);
+
+		return generateDigits(w, upper, upper - lower, oneShift, decimalExponent, buffer, start);
+	}
+
+	private static int generateDigits(long w, long upper, long delta, int oneShift, int decimalExponent, byte[] buffer, int start) {
+		long one = 1L << oneShift;
+		long upperMinusW = upper - w;
+		long integral = upper >>> oneShift;
+		long fractional = upper & (one - 1);
+		int kappa = countDigits(integral);
+		int length = 0;
+
+		while (kappa > 0) {
+			long power = powersOfTen[kappa - 1];
+			long digit = integral / power;
+			integral %= power;
+			if (digit != 0 || length != 0) {
+				buffer[start + length++] = (byte) ('0' + digit);
+			}
+			kappa--;
+			long rest = (integral << oneShift) + fractional;
+			if (!unsignedLess(delta, rest)) {
+				round(buffer, start + length - 1, delta, rest, powersOfTen[kappa] << oneShift, upperMinusW);
+				return length | ((decimalExponent + kappa) << 5);
+			}
+		}
+
+		while (true) {
+			fractional *= 10;
+			delta *= 10;
+			long digit = fractional >>> oneShift;
+			if (digit != 0 || length != 0) {
+				buffer[start + length++] = (byte) ('0' + digit);
+			}
+			fractional &= one - 1;
+			kappa--;
+			if (unsignedLess(fractional, delta)) {
+				long unit = (-kappa < powersOfTen.length ? powersOfTen[-kappa] : 0);
+				round(buffer, start + length - 1, delta, fractional, one, upperMinusW * unit);
+				return length | ((decimalExponent + kappa) << 5);
+			}
+		}
+	}
+
+	/**
+	 * Moves the last digit towards the value as long as the result stays
+	 * within the boundaries.
+	 */
+	private static void round(byte[] buffer, int last, long delta, long rest, long tenKappa, long upperMinusW) {
+		while (unsignedLess(rest, upperMinusW)
+				&& !unsignedLess(delta - rest, tenKappa)
+				&& (unsignedLess(rest + tenKappa, upperMinusW)
+					|| unsignedLess(rest + tenKappa - upperMinusW, upperMinusW - rest))) {
+			buffer[last]--;
+			rest += tenKappa;
+		}
+	}
+
+	/**
+	 * Places the decimal point (and the exponent if needed) in the digits.
+	 */
+	private static int prettify(byte[] buffer, int start, int length, int exponent) {
+		// the value is 0.digits * 10^point
+		int point = length + exponent;
+
+		if (length <= point && point <= 21) {
+			for (int i = length; i < point; i++) {
+				buffer[start + i] = '0';
+			}
+			buffer[start + point] = '.';
+			buffer[start + point + 1] = '0';
+			return start + point + 2;
+		}
+		if (0 < point && point <= 21) {
+			System.arraycopy(buffer, start + point, buffer, start + point + 1, length - point);
+			buffer[start + point] = '.';
+			return start + length + 1;
+		}
+		if (-7 < point && point <= 0) {
+			int shift = 2 - point;
+			System.arraycopy(buffer, start, buffer, start + shift, length);
+			buffer[start] = '0';
+			buffer[start + 1] = '.';
+			for (int i = 2; i < shift; i++) {
+				buffer[start + i] = '0';
+			}
+			return start + length + shift;
+		}
+
+		int position;
+		if (length == 1) {
+			buffer[start + 1] = '.';
+			buffer[start + 2] = '0';
+			position = start + 3;
+		} else {
+			System.arraycopy(buffer, start + 1, buffer, start + 2, length - 1);
+			buffer[start + 1] = '.';
+			position = start + length + 1;
+		}
+		buffer[position++] = 'E';
+		int decimalExponent = point - 1;
+		if (decimalExponent < 0) {
+			buffer[position++] = '-';
+			decimalExponent = -decimalExponent;
+		}
+		if (decimalExponent >= 100) {
+			buffer[position++] = (byte) ('0' + decimalExponent / 100);
+			decimalExponent %= 100;
+			buffer[position++] = (byte) ('0' + decimalExponent / 10);
+		} else if (decimalExponent >= 10) {
+			buffer[position++] = (byte) ('0' + decimalExponent / 10);
+		}
+		buffer[position++] = (byte) ('0' + decimalExponent % 10);
+		return position;
+	}
+
+	/**
+	 * Returns the upper 64 bits of the 128-bit product of two unsigned
+	 * values, rounded.
+	 */
+	private static long multiply(long x, long y) {
+		long a = x >>> 32;
+		long b = x & 0xFFFFFFFFL;
+		long c = y >>> 32;
+		long d = y & 0xFFFFFFFFL;
+		long ac = a * c;
+		long bc = b * c;
+		long ad = a * d;
+		long bd = b * d;
+		long middle = (bd >>> 32) + (ad & 0xFFFFFFFFL) + (bc & 0xFFFFFFFFL) + (1L << 31);
+		return ac + (ad >>> 32) + (bc >>> 32) + (middle >>> 32);
+	}
+
+	private static int countDigits(long value) {
+		int digits = 1;
+		while (digits < powersOfTen.length && value >= powersOfTen[digits]) {
+			digits++;
+		}
+		return digits;
+	}
+
+	private static boolean unsignedLess(long x, long y) {
+		return (x + Long.MIN_VALUE) < (y + Long.MIN_VALUE);
+	}
+
+}
@@ -10,7 +10,11 @@
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 
+import org.apache.log4j.Logger;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 
@@ -21,6 +25,8 @@
  */
 public class FileUtils {
 
+	protected static final Logger logger = Logger.getLogger(FileUtils.class);
+
 	/**
 	 * Copies content of one file to another file.
 	 * @param in this file is source of copying process
@@ -93,4 +99,42 @@ public static boolean isDirectory(String filePath) {
 	public static boolean createDirectory(String directoryPath) {
 		return new File(directoryPath).mkdirs();
 	}
+
+	/**
+	 * Unmaps the given memory mapped buffer at once, so that the file is
+	 * not locked any more. There is no public API for this, so the cleaner
+	 * of the buffer is called through reflection; if that fails the buffer
+	 * is unmapped when it is garbage collected.
+	 * @param buffer the buffer to be unmapped, which must not be used
+	 * afterwards by any thread
+	 */
+	public static void unmap(ByteBuffer buffer) {
+		try {
+			Method invokeCleaner;
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			try {
+				invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			} catch (NoSuchMethodException ex) {
+				invokeCleaner = null;
+			}
+			if (invokeCleaner != null) {
+				// Java 9 and later
+				Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+				unsafeField.setAccessible(true);
+				invokeCleaner.invoke(unsafeField.get(null), buffer);
+			} else {
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null) {
+					Method cleanMethod = cleaner.getClass().getMethod("clean");
+					cleanMethod.setAccessible(true);
+					cleanMethod.invoke(cleaner);
+				}
+			}
+		} catch (Exception ex) {
+			logger.debug("Failed to unmap a buffer, it will be unmapped by the garbage collector", ex);
+		}
+	}
+
 }
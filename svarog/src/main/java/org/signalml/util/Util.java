@@ -81,6 +81,7 @@ public static boolean equalsWithNulls(Object o1, Object o2) {
 
 	/**
 	 * Computes specified checksum for given file and monitor length of processed data.
+	 * The supported checksum types are 'crc32', 'adler32' and 'md5'.
 	 * @param file file to read signal from
 	 * @param checksumTypes array of checksums to count
 	 * @param monitor monitors legth of processed data once every 1000 iterations
@@ -108,6 +109,7 @@ public static SignalChecksum[] getSignalChecksums(File file, String[] checksumTy
 		}
 
 		Checksum[] checksums = new Checksum[checksumTypes.length];
+		MessageDigest[] digests = new MessageDigest[checksumTypes.length];
 		int i;
 
 		for (i=0; i<checksumTypes.length; i++) {
@@ -116,6 +118,12 @@ public static SignalChecksum[] getSignalChecksums(File file, String[] checksumTy
 				checksums[i] = new java.util.zip.CRC32();
 			} else if (checksumTypes[i].equalsIgnoreCase("adler32")) {
 				checksums[i] = new java.util.zip.Adler32();
+			} else if (checksumTypes[i].equalsIgnoreCase("md5")) {
+				try {
+					digests[i] = MessageDigest.getInstance("MD5");
+				} catch (NoSuchAlgorithmException ex) {
+					throw new SignalMLException(ex);
+				}
 			} else {
 				throw new SignalMLException("error.noSuchChecksumType");
 			}
@@ -142,17 +150,17 @@ public static SignalChecksum[] getSignalChecksums(File file, String[] checksumTy
 					}
 				}
 
-				if (lengthProceeded + cnt <= length) {
-					for (i=0; i<checksumTypes.length; i++) {
+				if (lengthProceeded + cnt > length) {
+					cnt = length - lengthProceeded;
+				}
+				for (i=0; i<checksumTypes.length; i++) {
+					if (checksums[i] != null) {
 						checksums[i].update(buf, 0, (int) cnt);
+					} else {
+						digests[i].update(buf, 0, (int) cnt);
 					}
-					lengthProceeded += cnt;
-				} else {
-					for (i=0; i<checksumTypes.length; i++) {
-						checksums[i].update(buf, 0, (int)(length - lengthProceeded));
-					}
-					lengthProceeded = length;
 				}
+				lengthProceeded += cnt;
 
 			}
 		} catch (IOException e) {
@@ -172,6 +180,11 @@ public static SignalChecksum[] getSignalChecksums(File file, String[] checksumTy
 		byte[] bytes;
 		for (i=0; i<checksumTypes.length; i++) {
 
+			if (digests[i] != null) {
+				results[i] = new SignalChecksum(checksumTypes[i], offset, length, toHexString(digests[i].digest()));
+				continue;
+			}
+
 			checksum = checksums[i].getValue();
 			bytes = new byte[4];
 
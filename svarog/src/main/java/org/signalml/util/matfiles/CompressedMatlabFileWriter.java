@@ -1,11 +1,14 @@
 package org.signalml.util.matfiles;
 
+import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 
 import org.signalml.util.matfiles.types.DataType;
@@ -15,32 +18,88 @@
  * The written data is compressed - if you want it to be uncompressed,
  * please use {@link MatlabFileWriter} instead.
  *
+ * If the running Java version allows it, the data is compressed on
+ * a number of threads by a {@link ParallelDeflaterOutputStream}.
+ *
  * @author Piotr Szachewicz
  */
 public class CompressedMatlabFileWriter extends MatlabFileWriter {
 
+	/**
+	 * The size of the buffer between the compressing stream and the file.
+	 */
+	private static final int FILE_BUFFER_SIZE = 256 * 1024;
+
+	/**
+	 * The number of threads compressing the data.
+	 */
+	private int compressionThreadCount = Runtime.getRuntime().availableProcessors();
+
 	public CompressedMatlabFileWriter(File file) {
 		super(file);
 	}
 
+	public int getCompressionThreadCount() {
+		return compressionThreadCount;
+	}
+
+	/**
+	 * Sets the number of threads compressing the data. If it is 1
+	 * or the running Java version does not allow compressing in parallel,
+	 * the data is compressed on the thread calling {@link #write()}.
+	 * @param compressionThreadCount the number of threads
+	 */
+	public void setCompressionThreadCount(int compressionThreadCount) {
+		this.compressionThreadCount = compressionThreadCount;
+	}
+
 	@Override
 	public void write() throws IOException {
 		FileOutputStream fileOutputStream = new FileOutputStream(file);
-
-		writeHeader(fileOutputStream);
-
-		//create compressed output stream
-		DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(fileOutputStream);
-		DataOutputStream compressedDataOutputStream = new DataOutputStream(deflaterOutputStream);
-
-		//write compressed data
-		writeData(compressedDataOutputStream);
-		deflaterOutputStream.finish(); //flushes data out, but doesn't close the outputStream
-
-		//correct the compressed size
-		writeCompressedSize(fileOutputStream);
-
-		compressedDataOutputStream.close();
+		ParallelDeflaterOutputStream parallelOutputStream = null;
+		Deflater deflater = null;
+
+		try {
+			writeHeader(fileOutputStream);
+
+			//create compressed output stream
+			BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(fileOutputStream, FILE_BUFFER_SIZE);
+			DeflaterOutputStream deflaterOutputStream = null;
+			OutputStream compressedOutputStream;
+			if (compressionThreadCount > 1 && ParallelDeflaterOutputStream.isSupported()) {
+				parallelOutputStream = new ParallelDeflaterOutputStream(bufferedOutputStream,
+						ParallelDeflaterOutputStream.DEFAULT_BLOCK_SIZE, compressionThreadCount);
+				compressedOutputStream = parallelOutputStream;
+			} else {
+				deflater = new Deflater();
+				deflaterOutputStream = new DeflaterOutputStream(bufferedOutputStream, deflater);
+				compressedOutputStream = deflaterOutputStream;
+			}
+			DataOutputStream compressedDataOutputStream = new DataOutputStream(compressedOutputStream);
+
+			//write compressed data
+			writeData(compressedDataOutputStream);
+			//flushes data out, but doesn't close the outputStream
+			if (parallelOutputStream != null) {
+				parallelOutputStream.finish();
+			} else {
+				deflaterOutputStream.finish();
+			}
+			bufferedOutputStream.flush();
+
+			//correct the compressed size
+			writeCompressedSize(fileOutputStream);
+		} finally {
+			//releases the compressing threads and the native deflaters
+			//also if writing failed or was cancelled
+			if (parallelOutputStream != null) {
+				parallelOutputStream.abort();
+			}
+			if (deflater != null) {
+				deflater.end();
+			}
+			fileOutputStream.close();
+		}
 	}
 
 	/**
@@ -81,9 +140,9 @@ protected void writeCompressedSize(FileOutputStream fileOutputStream) throws IOE
 
 		FileChannel channel = fileOutputStream.getChannel();
 		ByteBuffer byteBuffer = ByteBuffer.allocate(4);
-		int size = (int) channel.size();
+		long size = channel.size();
 		size -= header.getTotalSizeInBytes() - DataType.MI_COMPRESSED.getTotalSizeInBytes() - 4 /*compressed size*/;
-		byteBuffer.putInt(size);
+		byteBuffer.putInt((int) size); //the size is an unsigned 32-bit integer
 
         long previousPosition = channel.position();
 		channel.position(header.getTotalSizeInBytes() + DataType.MI_COMPRESSED.getTotalSizeInBytes());
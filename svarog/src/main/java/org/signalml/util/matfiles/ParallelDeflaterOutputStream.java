@@ -0,0 +1,440 @@
+package org.signalml.util.matfiles;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.LinkedList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * An output stream which writes the data compressed in the zlib format,
+ * like {@link java.util.zip.DeflaterOutputStream}, but compresses blocks
+ * of the data on a number of threads at the same time.
+ * <p>
+ * Each block is compressed separately and ends with a sync flush, so that
+ * the compressed blocks written one after another form a single deflate
+ * stream. The checksums of the blocks are combined into the checksum of
+ * the whole stream. At most twice as many blocks as there are threads
+ * wait for compression or writing, so the memory used by this stream does
+ * not depend on the amount of data written.
+ * <p>
+ * A sync flush is available from Java 7 on. Use {@link #isSupported()}
+ * to check if this stream can be used with the running Java version.
+ */
+public class ParallelDeflaterOutputStream extends OutputStream {
+
+	/**
+	 * The default size of the blocks which are compressed separately.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+	/**
+	 * The value of Deflater.SYNC_FLUSH (Java 7).
+	 */
+	private static final int SYNC_FLUSH = 2;
+
+	/**
+	 * The largest prime smaller than 65536, the modulus of Adler-32.
+	 */
+	private static final int ADLER_BASE = 65521;
+
+	/**
+	 * The time (in seconds) for which the compressing threads are awaited
+	 * when the stream is released, so that they give their deflaters back.
+	 */
+	private static final long TERMINATION_TIMEOUT = 10;
+
+	/**
+	 * The Deflater.deflate(byte[], int, int, int) method, null if the
+	 * running Java version does not have it.
+	 */
+	private static final Method flushingDeflate = findFlushingDeflate();
+
+	/**
+	 * The stream to which the compressed data is written.
+	 */
+	private OutputStream out;
+
+	/**
+	 * The size of the blocks which are compressed separately.
+	 */
+	private int blockSize;
+
+	/**
+	 * The maximum number of blocks waiting for compression or writing.
+	 */
+	private int maxPendingBlocks;
+
+	private ExecutorService executor;
+
+	/**
+	 * The compressed blocks in the order in which they will be written.
+	 */
+	private LinkedList<Future<CompressedBlock>> pendingBlocks = new LinkedList<Future<CompressedBlock>>();
+
+	private BlockingQueue<Deflater> freeDeflaters = new LinkedBlockingQueue<Deflater>();
+	private BlockingQueue<byte[]> freeInputBuffers = new LinkedBlockingQueue<byte[]>();
+	private BlockingQueue<byte[]> freeOutputBuffers = new LinkedBlockingQueue<byte[]>();
+
+	/**
+	 * The block which is currently filled with the data.
+	 */
+	private byte[] currentBlock;
+	private int currentBlockLength;
+
+	/**
+	 * The checksum of the data written so far.
+	 */
+	private long adler = 1;
+
+	private boolean headerWritten;
+	private boolean finished;
+
+	/**
+	 * Creates this stream with the {@link #DEFAULT_BLOCK_SIZE default block size}
+	 * and one thread per available processor.
+	 * @param out the stream to which the compressed data will be written
+	 */
+	public ParallelDeflaterOutputStream(OutputStream out) {
+		this(out, DEFAULT_BLOCK_SIZE, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates this stream.
+	 * @param out the stream to which the compressed data will be written
+	 * @param blockSize the size of the blocks which are compressed separately
+	 * @param threadCount the number of threads compressing the blocks
+	 */
+	public ParallelDeflaterOutputStream(OutputStream out, int blockSize, int threadCount) {
+		if (!isSupported()) {
+			throw new UnsupportedOperationException("Sync flush is not available");
+		}
+		if (blockSize <= 0 || threadCount <= 0) {
+			throw new IllegalArgumentException("Bad block size or thread count");
+		}
+		this.out = out;
+		this.blockSize = blockSize;
+		this.maxPendingBlocks = 2 * threadCount;
+		this.executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "deflater");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		for (int i = 0; i < threadCount; i++) {
+			freeDeflaters.add(new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+		}
+	}
+
+	/**
+	 * Returns whether this stream can be used with the running Java version.
+	 * @return true if Deflater supports the sync flush
+	 */
+	public static boolean isSupported() {
+		return flushingDeflate != null;
+	}
+
+	private static Method findFlushingDeflate() {
+		try {
+			return Deflater.class.getMethod("deflate", byte[].class, int.class, int.class, int.class);
+		} catch (NoSuchMethodException ex) {
+			return null;
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (currentBlock == null || currentBlockLength == blockSize) {
+			nextBlock();
+		}
+		currentBlock[currentBlockLength++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (currentBlock == null || currentBlockLength == blockSize) {
+				nextBlock();
+			}
+			int count = Math.min(len, blockSize - currentBlockLength);
+			System.arraycopy(b, off, currentBlock, currentBlockLength, count);
+			currentBlockLength += count;
+			off += count;
+			len -= count;
+		}
+	}
+
+	/**
+	 * Submits the current block, if there is one, for compression
+	 * and starts a new block.
+	 */
+	private void nextBlock() throws IOException {
+		if (finished) {
+			throw new IOException("Stream finished");
+		}
+		if (currentBlock != null) {
+			submitBlock(false);
+		}
+		currentBlock = freeInputBuffers.poll();
+		if (currentBlock == null) {
+			currentBlock = new byte[blockSize];
+		}
+		currentBlockLength = 0;
+	}
+
+	private void submitBlock(boolean last) throws IOException {
+		while (pendingBlocks.size() >= maxPendingBlocks) {
+			writeFirstPendingBlock();
+		}
+		pendingBlocks.add(executor.submit(new CompressionTask(currentBlock, currentBlockLength, last)));
+		currentBlock = null;
+		currentBlockLength = 0;
+	}
+
+	private void writeFirstPendingBlock() throws IOException {
+		CompressedBlock block;
+		try {
+			block = pendingBlocks.removeFirst().get();
+		} catch (InterruptedException ex) {
+			throw new InterruptedIOException("Interrupted while compressing");
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new IOException(cause);
+		}
+
+		if (!headerWritten) {
+			// deflate, 32K window, default compression
+			out.write(0x78);
+			out.write(0x9C);
+			headerWritten = true;
+		}
+		out.write(block.data, 0, block.length);
+		freeOutputBuffers.add(block.data);
+		adler = combineAdler32(adler, block.adler, block.inputLength);
+	}
+
+	/**
+	 * Finishes writing the compressed data to the output stream without
+	 * closing it. Nothing can be written to this stream afterwards.
+	 * @throws IOException if an I/O error has occurred
+	 */
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		try {
+			if (currentBlock == null) {
+				currentBlock = new byte[0];
+			}
+			submitBlock(true);
+			finished = true;
+			while (!pendingBlocks.isEmpty()) {
+				writeFirstPendingBlock();
+			}
+			out.write((int) (adler >>> 24));
+			out.write((int) (adler >>> 16));
+			out.write((int) (adler >>> 8));
+			out.write((int) adler);
+		} finally {
+			finished = true;
+			release();
+		}
+	}
+
+	/**
+	 * Stops compressing and releases the threads and the deflaters used
+	 * by this stream without writing the rest of the compressed data.
+	 * Should be called when writing failed; does nothing if the stream
+	 * is already finished. Nothing can be written to this stream afterwards.
+	 */
+	public void abort() {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		currentBlock = null;
+		currentBlockLength = 0;
+		release();
+	}
+
+	/**
+	 * Returns whether the compressing threads of this stream have
+	 * terminated.
+	 * @return true if the threads have terminated
+	 */
+	boolean isReleased() {
+		return executor.isTerminated();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			out.close();
+		}
+	}
+
+	private void release() {
+		for (Future<CompressedBlock> future : pendingBlocks) {
+			future.cancel(true);
+		}
+		pendingBlocks.clear();
+		executor.shutdownNow();
+		try {
+			// the interrupted tasks give their deflaters back
+			executor.awaitTermination(TERMINATION_TIMEOUT, TimeUnit.SECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		Deflater deflater;
+		while ((deflater = freeDeflaters.poll()) != null) {
+			deflater.end();
+		}
+		freeInputBuffers.clear();
+		freeOutputBuffers.clear();
+	}
+
+	/**
+	 * Returns the Adler-32 checksum of two concatenated sequences of bytes.
+	 * @param adler1 the checksum of the first sequence
+	 * @param adler2 the checksum of the second sequence
+	 * @param length2 the length of the second sequence
+	 * @return the checksum of the concatenated sequences
+	 */
+	protected static long combineAdler32(long adler1, long adler2, long length2) {
+		long remainder = length2 % ADLER_BASE;
+		long sum1 = adler1 & 0xffff;
+		long sum2 = (remainder * sum1) % ADLER_BASE;
+		sum1 += (adler2 & 0xffff) + ADLER_BASE - 1;
+		sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff) + ADLER_BASE - remainder;
+		if (sum1 >= ADLER_BASE) {
+			sum1 -= ADLER_BASE;
+		}
+		if (sum1 >= ADLER_BASE) {
+			sum1 -= ADLER_BASE;
+		}
+		if (sum2 >= (ADLER_BASE << 1)) {
+			sum2 -= (ADLER_BASE << 1);
+		}
+		if (sum2 >= ADLER_BASE) {
+			sum2 -= ADLER_BASE;
+		}
+		return sum1 | (sum2 << 16);
+	}
+
+	/**
+	 * A compressed block of data.
+	 */
+	private static class CompressedBlock {
+
+		private byte[] data;
+		private int length;
+		private long adler;
+		private int inputLength;
+
+	}
+
+	/**
+	 * Compresses one block of data.
+	 */
+	private class CompressionTask implements Callable<CompressedBlock> {
+
+		private byte[] input;
+		private int length;
+		private boolean last;
+
+		private CompressionTask(byte[] input, int length, boolean last) {
+			this.input = input;
+			this.length = length;
+			this.last = last;
+		}
+
+		@Override
+		public CompressedBlock call() throws Exception {
+			CompressedBlock block = new CompressedBlock();
+			block.inputLength = length;
+
+			Adler32 checksum = new Adler32();
+			checksum.update(input, 0, length);
+			block.adler = checksum.getValue();
+
+			byte[] output = freeOutputBuffers.poll();
+			if (output == null) {
+				output = new byte[blockSize + blockSize / 8 + 64];
+			}
+			int outputLength = 0;
+
+			Deflater deflater = freeDeflaters.take();
+			try {
+				deflater.reset();
+				deflater.setInput(input, 0, length);
+				if (last) {
+					deflater.finish();
+				}
+				while (true) {
+					if (outputLength == output.length) {
+						byte[] larger = new byte[2 * output.length];
+						System.arraycopy(output, 0, larger, 0, outputLength);
+						output = larger;
+					}
+					int space = output.length - outputLength;
+					int count;
+					if (last) {
+						count = deflater.deflate(output, outputLength, space);
+					} else {
+						count = deflate(deflater, output, outputLength, space);
+					}
+					outputLength += count;
+					if (last ? deflater.finished() : count < space) {
+						break;
+					}
+				}
+			} finally {
+				freeDeflaters.add(deflater);
+			}
+
+			if (input.length == blockSize) {
+				freeInputBuffers.add(input);
+			}
+			block.data = output;
+			block.length = outputLength;
+			return block;
+		}
+
+		private int deflate(Deflater deflater, byte[] output, int offset, int length) throws Exception {
+			try {
+				return (Integer) flushingDeflate.invoke(deflater, output, offset, length, SYNC_FLUSH);
+			} catch (InvocationTargetException ex) {
+				if (ex.getCause() instanceof Error) {
+					throw (Error) ex.getCause();
+				}
+				throw (Exception) ex.getCause();
+			}
+		}
+
+	}
+
+}
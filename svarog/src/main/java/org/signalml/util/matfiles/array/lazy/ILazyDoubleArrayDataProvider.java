@@ -19,6 +19,16 @@ public interface ILazyDoubleArrayDataProvider {
 	 */
 	double[][] getDataChunk(int column, int length);
 
+	/**
+	 * Copies a chunk of the data to the given array, so that
+	 * the same array can be used for consecutive chunks.
+	 * @param target the array with a row for each row of the original
+	 * array, each at least length long
+	 * @param column the starting column of the chunk
+	 * @param length the number of columns in the chunk
+	 */
+	void getDataChunk(double[][] target, int column, int length);
+
 	/**
 	 * Returns the number of columns that the original double
 	 * array contains.
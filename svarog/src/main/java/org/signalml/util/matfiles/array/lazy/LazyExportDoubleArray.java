@@ -2,6 +2,13 @@
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.signalml.util.matfiles.array.GenericArray;
 import org.signalml.util.matfiles.array.elements.DimensionsArray;
@@ -13,10 +20,18 @@
  * but by asking the {@link ILazyDoubleArrayDataProvider}
  * for consecutive parts of the array.
  *
+ * The next part of the array is requested on another thread while the
+ * previous one is written, and the same buffers are used for all parts.
+ *
  * @author Piotr Szachewicz
  */
 public class LazyExportDoubleArray extends GenericArray<Double> {
 
+	/**
+	 * The number of columns requested from the data provider at once.
+	 */
+	private static final int CHUNK_LENGTH = 4096;
+
 	/**
 	 * Provides the data from the double array in a lazy mode.
 	 */
@@ -35,18 +50,58 @@ protected int getNumberOfElements() {
 
 	@Override
 	protected void writeData(DataOutputStream dataOutputStream) throws IOException {
-		int samplesToGet = 1024;
-		for (int x = 0; x < lazyDataProvider.getNumberOfColumns(); x += samplesToGet) {
+		int rows = lazyDataProvider.getNumberOfRows();
+		int columns = lazyDataProvider.getNumberOfColumns();
+		if (rows == 0 || columns == 0) {
+			return;
+		}
 
-			if (x + samplesToGet > lazyDataProvider.getNumberOfColumns()) {
-				samplesToGet = lazyDataProvider.getNumberOfColumns() - x;
-			}
+		int chunkLength = Math.min(CHUNK_LENGTH, columns);
+		//one chunk is written while the other one is read
+		double[][][] chunks = new double[2][rows][chunkLength];
+		//big endian, like the DataOutputStream
+		ByteBuffer byteBuffer = ByteBuffer.allocate(rows * chunkLength * 8);
+		DoubleBuffer doubleBuffer = byteBuffer.asDoubleBuffer();
 
-			double[][] sampleChunk = lazyDataProvider.getDataChunk(x, samplesToGet);
+		ExecutorService readingExecutor = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> reading = readingExecutor.submit(new ChunkReader(chunks[0], 0, chunkLength));
+			int current = 0;
+
+			for (int x = 0; x < columns; x += chunkLength) {
+				int length = Math.min(chunkLength, columns - x);
+				waitFor(reading);
+
+				int nextColumn = x + chunkLength;
+				if (nextColumn < columns) {
+					reading = readingExecutor.submit(new ChunkReader(chunks[1 - current], nextColumn,
+											Math.min(chunkLength, columns - nextColumn)));
+				}
+
+				double[][] chunk = chunks[current];
+				doubleBuffer.clear();
+				for (int j = 0; j < length; j++)
+					for (int i = 0; i < rows; i++)
+						doubleBuffer.put(chunk[i][j]);
+				dataOutputStream.write(byteBuffer.array(), 0, doubleBuffer.position() * 8);
+
+				current = 1 - current;
+			}
+		} finally {
+			readingExecutor.shutdownNow();
+		}
+	}
 
-			for (int j = 0; j < sampleChunk[0].length; j++)
-				for (int i = 0; i < sampleChunk.length; i++)
-					dataOutputStream.writeDouble(sampleChunk[i][j]);
+	private void waitFor(Future<?> reading) throws IOException {
+		try {
+			reading.get();
+		} catch (InterruptedException ex) {
+			throw new InterruptedIOException("Interrupted while reading data");
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			throw new IOException(ex.getCause());
 		}
 	}
 
@@ -56,4 +111,26 @@ protected void writeDataChunk(DataOutputStream dataOutputStream, int i, int j) t
 		//this method is not used in this class
 	}
 
+	/**
+	 * Reads a chunk of the data from the data provider.
+	 */
+	private class ChunkReader implements Runnable {
+
+		private double[][] target;
+		private int column;
+		private int length;
+
+		public ChunkReader(double[][] target, int column, int length) {
+			this.target = target;
+			this.column = column;
+			this.length = length;
+		}
+
+		@Override
+		public void run() {
+			lazyDataProvider.getDataChunk(target, column, length);
+		}
+
+	}
+
 }
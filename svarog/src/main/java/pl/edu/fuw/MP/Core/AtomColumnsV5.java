@@ -0,0 +1,41 @@
+package pl.edu.fuw.MP.Core;
+
+/**
+ * The atoms of one segment and channel of an MPv5 book stored as columns
+ * of primitive values, filled by {@link BookIndexV5#readAtoms(int, int, AtomColumnsV5)}.
+ * <p>
+ * Values are stored as in the file: the amplitude is not multiplied by
+ * the calibration (points per microvolt) and parameters which are not
+ * present for the type of an atom (e.g. the frequency of a Dirac delta)
+ * are 0. The arrays may be longer than {@link #count}, they are reused
+ * when the columns are filled again.
+ */
+public class AtomColumnsV5 {
+	public int count=0;
+	public int type[]=new int[0];
+	public float modulus[]=new float[0];
+	public float amplitude[]=new float[0];
+	public float position[]=new float[0];
+	public float scale[]=new float[0];
+	public float frequency[]=new float[0];
+	public float phase[]=new float[0];
+
+	/**
+	 * Makes sure that the columns can hold the given number of atoms.
+	 * The values are not preserved when the arrays are reallocated.
+	 * @param capacity the number of atoms
+	 */
+	public void ensureCapacity(int capacity) {
+		if (type.length>=capacity) {
+			return;
+		}
+		int length=Math.max(capacity, 2*type.length);
+		type=new int[length];
+		modulus=new float[length];
+		amplitude=new float[length];
+		position=new float[length];
+		scale=new float[length];
+		frequency=new float[length];
+		phase=new float[length];
+	}
+}
@@ -0,0 +1,669 @@
+package pl.edu.fuw.MP.Core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+import org.signalml.domain.book.StandardBookAtom;
+import org.signalml.util.FileUtils;
+
+/**
+ * The index of an MPv5 book file. The file is memory mapped and scanned
+ * once, only the headers of segments and atoms are read, and for every
+ * segment and channel the positions of its atoms and signal in the file
+ * are stored in primitive arrays. Atoms are then decoded on request into
+ * {@link AtomColumnsV5}, so neither opening nor reading a book needs
+ * an object per atom.
+ * <p>
+ * The index may be saved to a sidecar file in a cache directory given by
+ * the caller (see {@link #getSidecarFile(File, File)}), nothing is written
+ * next to the book itself. The sidecar is loaded instead of scanning the
+ * book, as long as the path, the length and the modification time of
+ * the book did not change.
+ * <p>
+ * Segments and channels are addressed by indices counted from 0: segments
+ * are ordered by their numbers and the channel index is the channel
+ * number minus 1. Once opened, the index may be read concurrently by many
+ * threads.
+ */
+public class BookIndexV5 {
+	public static final String SIDECAR_EXTENSION=".idx";
+
+	private static final int SIDECAR_MAGIC=0x4d503549; /* MP5I */
+	private static final int SIDECAR_VERSION=2;
+
+	/* the file is mapped in windows of 1 GiB, which overlap by the size
+	   of the largest primitive value, so every value is read from a single
+	   window */
+	private static final int WINDOW_SHIFT=30;
+	private static final long WINDOW_MASK=(1L<<WINDOW_SHIFT)-1;
+	private static final int WINDOW_OVERLAP=8;
+
+	private final File file;
+	private final File sidecar;
+	private RandomAccessFile stream;
+	private MappedByteBuffer windows[];
+	private long fileLength;
+
+	private float samplingFrequency=1.0F;
+	private float pointsPerMicrovolt=1.0F;
+	private int signalChannelCount=-1;
+
+	private int segmentCount;
+	private int channelCount;
+	private int segmentNumbers[];
+	private int segmentLengths[];
+
+	/* indexed by segmentIndex*channelCount+channelIndex,
+	   positions are -1 if there is no such data */
+	private long atomsPositions[];
+	private int atomsLengths[];
+	private int atomCounts[];
+	private long signalPositions[];
+	private int signalLengths[];
+
+	/* the data segments found by the scan, in file order */
+	private int recordCount;
+	private int recordTypes[];
+	private int recordSegments[];
+	private int recordDimensions[];
+	private int recordChannels[];
+	private long recordPositions[];
+	private int recordLengths[];
+	private int recordAtomCounts[];
+
+	/**
+	 * Opens and scans the given book, no sidecar index is used.
+	 * @param file the book file
+	 * @throws IOException if the book cannot be read, is not an MPv5 book
+	 * or contains atoms of an unknown type
+	 */
+	public BookIndexV5(File file) throws IOException {
+		this(file, null);
+	}
+
+	/**
+	 * Opens and indexes the given book. A valid sidecar index in the given
+	 * directory is used if it exists, otherwise the book is scanned and
+	 * the index is saved there; failures to save it are ignored.
+	 * @param file the book file
+	 * @param sidecarDirectory the directory of the sidecar index, null if
+	 * no sidecar should be used
+	 * @throws IOException if the book cannot be read, is not an MPv5 book
+	 * or contains atoms of an unknown type
+	 */
+	public BookIndexV5(File file, File sidecarDirectory) throws IOException {
+		this.file=file;
+		this.sidecar=(sidecarDirectory!=null) ? getSidecarFile(file, sidecarDirectory) : null;
+		stream=new RandomAccessFile(file, "r");
+		try {
+			map();
+			if (!readSidecar()) {
+				scan();
+				writeSidecar();
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the sidecar index of the given book in the given directory.
+	 * The name of the sidecar depends on the full path of the book, so
+	 * books of the same name from different directories do not share it.
+	 * @param bookFile the book file
+	 * @param sidecarDirectory the directory of the sidecar
+	 * @return the sidecar file
+	 */
+	public static File getSidecarFile(File bookFile, File sidecarDirectory) {
+		String path=bookFile.getAbsolutePath();
+		return new File(sidecarDirectory, bookFile.getName()+"-"+Integer.toHexString(path.hashCode())+SIDECAR_EXTENSION);
+	}
+
+	/**
+	 * Closes the file and unmaps the mapped windows, so the book is not
+	 * locked any more. No other thread may read the index during or after
+	 * this call.
+	 */
+	public void close() {
+		MappedByteBuffer closedWindows[]=windows;
+		windows=null;
+		if (closedWindows!=null) {
+			for (int i=0 ; i<closedWindows.length ; i++) {
+				if (closedWindows[i]!=null) {
+					FileUtils.unmap(closedWindows[i]);
+				}
+			}
+		}
+		if (stream!=null) {
+			try {
+				stream.close();
+			} catch (IOException e) {
+			}
+			stream=null;
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public float getSamplingFrequency() {
+		return samplingFrequency;
+	}
+
+	public float getPointsPerMicrovolt() {
+		return pointsPerMicrovolt;
+	}
+
+	/**
+	 * @return the number of channels declared in the header of the book,
+	 * -1 if the header has no signal info
+	 */
+	public int getSignalChannelCount() {
+		return signalChannelCount;
+	}
+
+	public int getSegmentCount() {
+		return segmentCount;
+	}
+
+	/**
+	 * @return the highest channel number found in the book
+	 */
+	public int getChannelCount() {
+		return channelCount;
+	}
+
+	public int getSegmentNumber(int segmentIndex) {
+		return segmentNumbers[segmentIndex];
+	}
+
+	/**
+	 * Returns the index of the segment with the given number.
+	 * @param segmentNumber the number of the segment (as stored in the file)
+	 * @return the index of the segment or -1 if there is no such segment
+	 */
+	public int getSegmentIndex(int segmentNumber) {
+		int index=Arrays.binarySearch(segmentNumbers, segmentNumber);
+		return (index>=0) ? index : -1;
+	}
+
+	/**
+	 * @return the length of the segment in samples (the offset dimension)
+	 */
+	public int getSegmentLength(int segmentIndex) {
+		return segmentLengths[segmentIndex];
+	}
+
+	public boolean hasAtoms(int segmentIndex, int channelIndex) {
+		return atomsPositions[slot(segmentIndex, channelIndex)]>=0L;
+	}
+
+	public int getAtomCount(int segmentIndex, int channelIndex) {
+		return atomCounts[slot(segmentIndex, channelIndex)];
+	}
+
+	public boolean hasSignal(int segmentIndex, int channelIndex) {
+		return signalPositions[slot(segmentIndex, channelIndex)]>=0L;
+	}
+
+	public int getSignalLength(int segmentIndex, int channelIndex) {
+		return signalLengths[slot(segmentIndex, channelIndex)];
+	}
+
+	/**
+	 * Decodes the atoms of the given segment and channel.
+	 * @param segmentIndex the index of the segment
+	 * @param channelIndex the index of the channel
+	 * @param columns the columns to which the atoms are written, their
+	 * arrays are reallocated only if they are too short
+	 * @return the number of atoms
+	 */
+	public int readAtoms(int segmentIndex, int channelIndex, AtomColumnsV5 columns) {
+		int s=slot(segmentIndex, channelIndex);
+		int count=atomCounts[s];
+		columns.ensureCapacity(count);
+		columns.count=count;
+
+		long pos=atomsPositions[s];
+		for (int i=0 ; i<count ; i++) {
+			int type=getByte(pos);
+			int payload=getAtomPayload(type, getByte(pos+1)&0xff);
+			long p=pos+2;
+
+			float modulus=0.0F, amplitude=0.0F;
+			float position=0.0F, scale=0.0F, frequency=0.0F, phase=0.0F;
+			if (payload>=8) {
+				modulus=getFloat(p);
+				amplitude=getFloat(p+4);
+			}
+			switch (type) {
+			case StandardBookAtom.DIRACDELTA_IDENTITY:
+				position=getFloat(p+8);
+				break;
+			case StandardBookAtom.GAUSSFUNCTION_IDENTITY:
+				position=getFloat(p+8);
+				scale=getFloat(p+12);
+				break;
+			case StandardBookAtom.SINCOSWAVE_IDENTITY:
+				frequency=getFloat(p+8);
+				phase=getFloat(p+12);
+				break;
+			case StandardBookAtom.GABORWAVE_IDENTITY:
+				position=getFloat(p+8);
+				scale=getFloat(p+12);
+				frequency=getFloat(p+16);
+				phase=getFloat(p+20);
+				break;
+			default:
+				/* rejected by the scan */
+				throw new IllegalStateException("Unknown atom type "+type);
+			}
+			columns.type[i]=type;
+			columns.modulus[i]=modulus;
+			columns.amplitude[i]=amplitude;
+			columns.position[i]=position;
+			columns.scale[i]=scale;
+			columns.frequency[i]=frequency;
+			columns.phase[i]=phase;
+
+			pos=p+payload;
+		}
+		return count;
+	}
+
+	/**
+	 * Reads the signal of the given segment and channel.
+	 * @param segmentIndex the index of the segment
+	 * @param channelIndex the index of the channel
+	 * @return the samples of the signal or null if the segment has
+	 * no signal
+	 */
+	public float[] readSignal(int segmentIndex, int channelIndex) {
+		int s=slot(segmentIndex, channelIndex);
+		long pos=signalPositions[s];
+		if (pos<0L) {
+			return null;
+		}
+		float signal[]=new float[signalLengths[s]];
+		long end=pos+4L*signal.length;
+		int window=(int)(pos>>>WINDOW_SHIFT);
+		if (((end-1)>>>WINDOW_SHIFT)==window) {
+			ByteBuffer buffer=windows[window].duplicate();
+			buffer.position((int)(pos&WINDOW_MASK));
+			buffer.asFloatBuffer().get(signal);
+		} else {
+			for (int i=0 ; i<signal.length ; i++) {
+				signal[i]=getFloat(pos+4L*i);
+			}
+		}
+		return signal;
+	}
+
+	private int slot(int segmentIndex, int channelIndex) {
+		if (segmentIndex<0 || segmentIndex>=segmentCount || channelIndex<0 || channelIndex>=channelCount) {
+			throw new IndexOutOfBoundsException("No segment "+segmentIndex+" channel "+channelIndex);
+		}
+		return segmentIndex*channelCount+channelIndex;
+	}
+
+	private static int getAtomPayload(int type, int size) {
+		switch (type) {
+		case StandardBookAtom.DIRACDELTA_IDENTITY:
+			return 12;
+		case StandardBookAtom.GAUSSFUNCTION_IDENTITY:
+		case StandardBookAtom.SINCOSWAVE_IDENTITY:
+			return 16;
+		case StandardBookAtom.GABORWAVE_IDENTITY:
+			return 24;
+		}
+		return size;
+	}
+
+	private static boolean isKnownAtomType(int type) {
+		switch (type) {
+		case StandardBookAtom.DIRACDELTA_IDENTITY:
+		case StandardBookAtom.GAUSSFUNCTION_IDENTITY:
+		case StandardBookAtom.SINCOSWAVE_IDENTITY:
+		case StandardBookAtom.GABORWAVE_IDENTITY:
+			return true;
+		}
+		return false;
+	}
+
+	private void map() throws IOException {
+		FileChannel channel=stream.getChannel();
+		fileLength=channel.size();
+		int count=(int)Math.max(1L, (fileLength+WINDOW_MASK)>>>WINDOW_SHIFT);
+		windows=new MappedByteBuffer[count];
+		for (int i=0 ; i<count ; i++) {
+			long start=((long)i)<<WINDOW_SHIFT;
+			long size=Math.min(WINDOW_MASK+1+WINDOW_OVERLAP, fileLength-start);
+			windows[i]=channel.map(MapMode.READ_ONLY, start, size);
+		}
+	}
+
+	private byte getByte(long pos) {
+		return windows[(int)(pos>>>WINDOW_SHIFT)].get((int)(pos&WINDOW_MASK));
+	}
+
+	private short getShort(long pos) {
+		return windows[(int)(pos>>>WINDOW_SHIFT)].getShort((int)(pos&WINDOW_MASK));
+	}
+
+	private int getInt(long pos) {
+		return windows[(int)(pos>>>WINDOW_SHIFT)].getInt((int)(pos&WINDOW_MASK));
+	}
+
+	private float getFloat(long pos) {
+		return windows[(int)(pos>>>WINDOW_SHIFT)].getFloat((int)(pos&WINDOW_MASK));
+	}
+
+	private long readFileHeader() throws IOException {
+		if (fileLength<6 || getByte(0)!='M' || getByte(1)!='P' || getByte(2)!='v' || getByte(3)!='5') {
+			throw new IOException("Not an MPv5 book: "+file);
+		}
+		long pos=6; /* MPv5.0 */
+
+		if (pos+5<=fileLength && getByte(pos)==FormatComponentV5.COMMENT_SEGMENT_IDENTITY) {
+			pos+=5+getInt(pos+1);
+		}
+		if (pos+5>fileLength || getByte(pos)!=FormatComponentV5.FILE_HEADER) {
+			return pos;
+		}
+
+		long end=pos+5+getInt(pos+1);
+		pos+=5;
+		while (pos+2<=end && end<=fileLength) {
+			int code=getByte(pos)&0xff;
+			int fieldSize=getByte(pos+1)&0xff;
+			if (code==FormatComponentV5.SIGNAL_INFO && fieldSize>=10) {
+				samplingFrequency=getFloat(pos+2);
+				pointsPerMicrovolt=getFloat(pos+6);
+				signalChannelCount=getShort(pos+10);
+			}
+			pos+=2+fieldSize;
+		}
+		return end;
+	}
+
+	private void scan() throws IOException {
+		long pos=readFileHeader();
+		int segmentNumber=0, segmentDimension=0;
+
+		recordCount=0;
+		recordTypes=new int[64];
+		recordSegments=new int[64];
+		recordDimensions=new int[64];
+		recordChannels=new int[64];
+		recordPositions=new long[64];
+		recordLengths=new int[64];
+		recordAtomCounts=new int[64];
+
+		/* a truncated segment ends the book, as in BookLibraryV5 */
+		while (pos+5<=fileLength) {
+			int code=getByte(pos);
+			long start=pos+5, end=start+getInt(pos+1);
+			if (end<start || end>fileLength) {
+				break;
+			}
+
+			switch (code) {
+			case FormatComponentV5.OFFSET_SEGMENT_IDENTITY:
+				if (end-start<6) {
+					break;
+				}
+				segmentNumber=getShort(start);
+				segmentDimension=getInt(start+2);
+				long p=start+6;
+				while (p+5<=end) {
+					long dataStart=p+5, dataEnd=dataStart+getInt(p+1);
+					if (dataEnd<dataStart || dataEnd>end) {
+						break;
+					}
+					addRecord(getByte(p), segmentNumber, segmentDimension, dataStart, dataEnd);
+					p=dataEnd;
+				}
+				break;
+			case FormatComponentV5.ATOMS_SEGMENT_IDENTITY:
+			case FormatComponentV5.SIGNAL_SEGMENT_IDENTITY:
+				addRecord(code, segmentNumber, segmentDimension, start, end);
+				break;
+			default:
+				break;
+			}
+			pos=end;
+		}
+
+		buildSlots();
+
+		recordTypes=null;
+		recordSegments=null;
+		recordDimensions=null;
+		recordChannels=null;
+		recordPositions=null;
+		recordLengths=null;
+		recordAtomCounts=null;
+	}
+
+	private void addRecord(int type, int segmentNumber, int segmentDimension, long start, long end) throws IOException {
+		if ((type!=FormatComponentV5.ATOMS_SEGMENT_IDENTITY && type!=FormatComponentV5.SIGNAL_SEGMENT_IDENTITY) || end-start<2) {
+			return;
+		}
+		int channel=getShort(start);
+		if (channel<1) {
+			return;
+		}
+
+		long dataStart=start+2;
+		int atomCount=0;
+		if (type==FormatComponentV5.ATOMS_SEGMENT_IDENTITY) {
+			long p=dataStart;
+			while (p+2<=end) {
+				int atomType=getByte(p);
+				if (!isKnownAtomType(atomType)) {
+					throw new IOException("Unknown atom type "+atomType+" in "+file);
+				}
+				long next=p+2+getAtomPayload(atomType, getByte(p+1)&0xff);
+				if (next>end) {
+					break;
+				}
+				atomCount++;
+				p=next;
+			}
+		}
+
+		if (recordCount==recordTypes.length) {
+			int length=2*recordCount;
+			recordTypes=Arrays.copyOf(recordTypes, length);
+			recordSegments=Arrays.copyOf(recordSegments, length);
+			recordDimensions=Arrays.copyOf(recordDimensions, length);
+			recordChannels=Arrays.copyOf(recordChannels, length);
+			recordPositions=Arrays.copyOf(recordPositions, length);
+			recordLengths=Arrays.copyOf(recordLengths, length);
+			recordAtomCounts=Arrays.copyOf(recordAtomCounts, length);
+		}
+		recordTypes[recordCount]=type;
+		recordSegments[recordCount]=segmentNumber;
+		recordDimensions[recordCount]=segmentDimension;
+		recordChannels[recordCount]=channel;
+		recordPositions[recordCount]=dataStart;
+		recordLengths[recordCount]=(int)(end-dataStart);
+		recordAtomCounts[recordCount]=atomCount;
+		recordCount++;
+	}
+
+	private void buildSlots() {
+		int sorted[]=Arrays.copyOf(recordSegments, recordCount);
+		Arrays.sort(sorted);
+		segmentCount=0;
+		for (int i=0 ; i<sorted.length ; i++) {
+			if (i==0 || sorted[i]!=sorted[i-1]) {
+				sorted[segmentCount++]=sorted[i];
+			}
+		}
+		segmentNumbers=Arrays.copyOf(sorted, segmentCount);
+
+		channelCount=0;
+		for (int i=0 ; i<recordCount ; i++) {
+			channelCount=Math.max(channelCount, recordChannels[i]);
+		}
+
+		int slotCount=segmentCount*channelCount;
+		segmentLengths=new int[segmentCount];
+		atomsPositions=new long[slotCount];
+		atomsLengths=new int[slotCount];
+		atomCounts=new int[slotCount];
+		signalPositions=new long[slotCount];
+		signalLengths=new int[slotCount];
+		Arrays.fill(segmentLengths, -1);
+		Arrays.fill(atomsPositions, -1L);
+		Arrays.fill(signalPositions, -1L);
+
+		/* the first data of a segment and channel is used, as in BookLibraryV5 */
+		for (int i=0 ; i<recordCount ; i++) {
+			int segmentIndex=getSegmentIndex(recordSegments[i]);
+			int s=slot(segmentIndex, recordChannels[i]-1);
+			if (segmentLengths[segmentIndex]<0) {
+				segmentLengths[segmentIndex]=recordDimensions[i];
+			}
+			if (recordTypes[i]==FormatComponentV5.ATOMS_SEGMENT_IDENTITY) {
+				if (atomsPositions[s]<0L) {
+					atomsPositions[s]=recordPositions[i];
+					atomsLengths[s]=recordLengths[i];
+					atomCounts[s]=recordAtomCounts[i];
+				}
+			} else if (signalPositions[s]<0L) {
+				signalPositions[s]=recordPositions[i];
+				signalLengths[s]=recordLengths[i]/4;
+			}
+		}
+	}
+
+	private boolean readSidecar() {
+		if (sidecar==null || !sidecar.isFile()) {
+			return false;
+		}
+
+		DataInputStream in=null;
+		try {
+			in=new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar)));
+			if (in.readInt()!=SIDECAR_MAGIC || in.readInt()!=SIDECAR_VERSION
+					|| !in.readUTF().equals(file.getAbsolutePath())
+				|| in.readLong()!=fileLength || in.readLong()!=file.lastModified()) {
+				return false;
+			}
+			float frequency=in.readFloat();
+			float calibration=in.readFloat();
+			int channels=in.readInt();
+			int segments=in.readInt();
+			int slotChannels=in.readInt();
+			if (segments<0 || slotChannels<0) {
+				return false;
+			}
+
+			int numbers[]=new int[segments];
+			int lengths[]=new int[segments];
+			for (int i=0 ; i<segments ; i++) {
+				numbers[i]=in.readInt();
+				lengths[i]=in.readInt();
+			}
+			int slotCount=segments*slotChannels;
+			long aPositions[]=new long[slotCount];
+			int aLengths[]=new int[slotCount];
+			int aCounts[]=new int[slotCount];
+			long sPositions[]=new long[slotCount];
+			int sLengths[]=new int[slotCount];
+			for (int i=0 ; i<slotCount ; i++) {
+				aPositions[i]=in.readLong();
+				aLengths[i]=in.readInt();
+				aCounts[i]=in.readInt();
+				sPositions[i]=in.readLong();
+				sLengths[i]=in.readInt();
+				if (aPositions[i]+aLengths[i]>fileLength || sPositions[i]+4L*sLengths[i]>fileLength) {
+					return false;
+				}
+			}
+
+			samplingFrequency=frequency;
+			pointsPerMicrovolt=calibration;
+			signalChannelCount=channels;
+			segmentCount=segments;
+			channelCount=slotChannels;
+			segmentNumbers=numbers;
+			segmentLengths=lengths;
+			atomsPositions=aPositions;
+			atomsLengths=aLengths;
+			atomCounts=aCounts;
+			signalPositions=sPositions;
+			signalLengths=sLengths;
+			return true;
+		} catch (IOException e) {
+			/* a broken sidecar is replaced by a scan */
+			return false;
+		} finally {
+			if (in!=null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	private void writeSidecar() {
+		if (sidecar==null) {
+			return;
+		}
+		DataOutputStream out=null;
+		try {
+			out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(sidecar)));
+			out.writeInt(SIDECAR_MAGIC);
+			out.writeInt(SIDECAR_VERSION);
+			out.writeUTF(file.getAbsolutePath());
+			out.writeLong(fileLength);
+			out.writeLong(file.lastModified());
+			out.writeFloat(samplingFrequency);
+			out.writeFloat(pointsPerMicrovolt);
+			out.writeInt(signalChannelCount);
+			out.writeInt(segmentCount);
+			out.writeInt(channelCount);
+			for (int i=0 ; i<segmentCount ; i++) {
+				out.writeInt(segmentNumbers[i]);
+				out.writeInt(segmentLengths[i]);
+			}
+			for (int i=0 ; i<atomsPositions.length ; i++) {
+				out.writeLong(atomsPositions[i]);
+				out.writeInt(atomsLengths[i]);
+				out.writeInt(atomCounts[i]);
+				out.writeLong(signalPositions[i]);
+				out.writeInt(signalLengths[i]);
+			}
+			out.close();
+			out=null;
+		} catch (IOException e) {
+			/* the sidecar is optional, e.g. the directory may be read only */
+			if (out!=null) {
+				try {
+					out.close();
+				} catch (IOException ex) {
+				}
+				out=null;
+			}
+			sidecar.delete();
+		}
+	}
+}
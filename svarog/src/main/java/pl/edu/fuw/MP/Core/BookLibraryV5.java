@@ -1,56 +1,10 @@
 package pl.edu.fuw.MP.Core;
 
 import java.io.*;
-import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.Vector;
 
 import org.signalml.domain.book.BookFormatException;
 import org.signalml.domain.book.StandardBookSegment;
 
-class CPair {
-	public long x, y;
-	public int channel;
-
-	public CPair(long x, long y, int channel) {
-		this.x=x;
-		this.y=y;
-		this.channel=channel;
-	}
-
-	public CPair(long x, int channel) {
-		this.x=x;
-		y=-1L;
-		this.channel=channel;
-	}
-}
-
-class BookLibraryV5IndexElement {
-	public int  type;
-	public int  channel;
-	public int  offset;
-	public long filePosition;
-	public BookLibraryV5IndexElement parent=null;
-
-	@Override
-	public String toString() {
-		StringBuffer buf=new StringBuffer();
-
-		buf.append("type=");
-		buf.append(type);
-		buf.append(" (");
-		buf.append(FormatComponentV5.toName(type));
-		buf.append(") channel=");
-		buf.append(channel);
-		buf.append(" offset=");
-		buf.append(offset);
-		buf.append(" pos=");
-		buf.append(filePosition);
-
-		return buf.toString();
-	}
-}
-
 public class BookLibraryV5 implements BookLibraryInterface {
 	public static final int VERSION_NONE=-1,VERSION_III=1,VERSION_IV=2,VERSION_V=3;
 	private FormatComponentV5 fields[];
@@ -58,7 +12,7 @@ public class BookLibraryV5 implements BookLibraryInterface {
 	private SegmentHeaderV5 segment=new SegmentHeaderV5(this);
 	private RandomAccessFile streamClass=null;
 	private int version=VERSION_NONE;
-	private Vector<BookLibraryV5IndexElement> index=new Vector<BookLibraryV5IndexElement>();
+	private BookIndexV5 index=null;
 	private int epochDim;
 
 	public void setFields(FormatComponentV5 fields[]) {
@@ -70,28 +24,6 @@ public void setFields(FormatComponentV5 fields[]) {
 		}
 	}
 
-	private void splitIndex() {
-		int len=index.size();
-
-		for (int i=0 ; i<len ; i++) {
-			BookLibraryV5IndexElement x=index.elementAt(i);
-
-			if (x.parent==null) {
-				for (int j=i+1 ; j<len ; j++) {
-					BookLibraryV5IndexElement y=index.elementAt(j);
-
-					if (x.channel==y.channel &&
-							x.offset==y.offset   &&
-							x.type!=y.type) {
-						x.parent=y;
-						y.parent=x;
-						break;
-					}
-				}
-			}
-		}
-	}
-
 	public final int getChannel() {
 		return segment.channelNumber;
 	}
@@ -152,6 +84,10 @@ public BookLibraryV5(BookLibraryV5Writer lib) {
 	}
 
 	public void Close() {
+		if (index!=null) {
+			index.close();
+			index=null;
+		}
 		try {
 			if (streamClass!=null) {
 				streamClass.close();
@@ -197,79 +133,6 @@ private void readBook(RandomAccessFile stream) throws IOException {
 		segment.read(stream);
 	}
 
-	private CPair[] getOffset(int segNo) {
-		Vector<CPair> v=new Vector<CPair>();
-		int len=index.size();
-
-		for (int i=0 ; i<len ; i++) {
-			BookLibraryV5IndexElement e=index.elementAt(i);
-
-			if (e.offset==segNo) {
-				if (!exists(v, e.channel)) {
-					if (e.parent==null) {
-						v.add(new CPair(e.filePosition, e.channel));
-					} else {
-						v.add(new CPair(e.filePosition, e.parent.filePosition, e.channel));
-					}
-				}
-			}
-		}
-
-		CPair []arr=new CPair[v.size()];
-		return v.toArray(arr);
-	}
-
-	private boolean exists(Vector<CPair> v, int channel) {
-		Enumeration<CPair> e=v.elements();
-
-		while (e.hasMoreElements()) {
-			CPair p=e.nextElement();
-			if (p.channel==channel) {
-				return true;
-			}
-		}
-		return false;
-	}
-
-	private long getOffset(int segNo, int chnNo, int type) {
-		int len=index.size();
-
-		for (int i=0 ; i<len ; i++) {
-			BookLibraryV5IndexElement e=index.elementAt(i);
-			if (e.offset==segNo && e.channel==chnNo && e.type==type) {
-				return e.filePosition;
-			}
-		}
-		return -1;
-	}
-
-	private int countBook(RandomAccessFile stream) throws IOException {
-		int k=0;
-		try {
-			SegmentHeaderV5 segHead=new SegmentHeaderV5(this);
-
-			for (; ; k++) {
-				long off=stream.getFilePointer();
-				segHead.skipSegment(stream);
-
-				BookLibraryV5IndexElement element=new BookLibraryV5IndexElement();
-
-				element.filePosition=off;
-				element.channel=segHead.getChannelNumber();
-				element.offset=segHead.getSegmentNumber();
-				element.type=segHead.type;
-
-				index.add(element);
-
-				Utils.log(element.toString());
-			}
-		} catch (IOException e) {
-			return k;
-		} finally {
-			splitIndex();
-		}
-	}
-
 	public boolean NextBook() {
 		try {
 			readBook(streamClass);
@@ -482,9 +345,7 @@ public boolean Open(String filename, int off) throws BookFormatException {
 			streamClass=new RandomAccessFile(filename, "r");
 
 			readFileHeader(streamClass);
-			long pos=streamClass.getFilePointer();
-			countBook(streamClass);
-			streamClass.seek(pos);
+			index=new BookIndexV5(new File(filename));
 
 			readBook(streamClass);
 		} catch (IOException e) {
@@ -493,104 +354,50 @@ public boolean Open(String filename, int off) throws BookFormatException {
 		return true;
 	}
 
-	public int getSegmentCount() {
-		HashSet<Integer> set=new HashSet<Integer>();
-		int len=index.size();
-
-		for (int i=0 ; i<len ; i++) {
-			set.add(new Integer(index.elementAt(i).offset));
-		}
+	/**
+	 * Returns the index of the opened book, which gives the atoms and
+	 * signals of all segments without reading them into objects.
+	 * @return the index or null if no book is opened
+	 */
+	public BookIndexV5 getIndex() {
+		return index;
+	}
 
-		return set.size();
+	public int getSegmentCount() {
+		return (index!=null) ? index.getSegmentCount() : 0;
 	}
 
 	public StandardBookSegment []getCurrentSegment(int segmentIndex) {
-		CPair off[]=getOffset(segmentIndex);
-
-		if (off!=null) {
-			int len=off.length;
-			SegmentHeaderV5 []arr=new SegmentHeaderV5[len];
-
-			for (int i=0 ; i<len ; i++) {
-				try {
-					CPair p=off[i];
-					SegmentHeaderV5 seg1=null, seg2=null;
-
-					Utils.log("off= "+p.x+" "+p.y);
-
-					if (p.x>=0L) {
-						streamClass.seek(p.x);
-						readBook(streamClass);
-						seg1=segment;
-					}
-					int offSetDimension = segment.offsetDimension;
-					int offsetNumber = segment.offsetNumber;
-
-					if (p.y>=0L) {
-						streamClass.seek(p.y);
-						readBook(streamClass);
-						seg2=segment;
-						segment.offsetDimension = offSetDimension;
-						segment.offsetNumber = offsetNumber;
-					}
-
-					if (seg1!=null && seg2!=null) {
-						if (seg1.hasSignal()) {
-							seg2.setSignalSamples(seg1.getSignalSamples());
-							arr[i]=seg2;
-						} else {
-							seg1.setSignalSamples(seg2.getSignalSamples());
-							arr[i]=seg1;
-						}
-					} else {
-						if (seg1!=null) {
-							arr[i]=seg1;
-						} else if (seg2!=null) {
-							arr[i]=seg2;
-						}
-					}
-				} catch (IOException e) {
-					return null;
-				}
+		int segment=(index!=null) ? index.getSegmentIndex(segmentIndex) : -1;
+		if (segment<0) {
+			return new StandardBookSegment[0];
+		}
+
+		int channelCount=index.getChannelCount(), len=0;
+		StandardBookSegment []arr=new StandardBookSegment[channelCount];
+		for (int i=0 ; i<channelCount ; i++) {
+			if (index.hasAtoms(segment, i) || index.hasSignal(segment, i)) {
+				arr[len++]=new MappedSegmentV5(index, segment, i, getSamplingFreq(), getConvFactor());
 			}
-			return arr;
 		}
-		return null;
+		if (len<channelCount) {
+			StandardBookSegment []tmp=new StandardBookSegment[len];
+			System.arraycopy(arr, 0, tmp, 0, len);
+			arr=tmp;
+		}
+		return arr;
 	}
 
 	public StandardBookSegment getCurrentSegment(int segmentIndex, int channelIndex) {
-		long off=getOffset(segmentIndex, channelIndex, FormatComponentV5.ATOMS_SEGMENT_IDENTITY);
-		SegmentHeaderV5 seg=null;
-
-		if (off>=0L) {
-			try {
-				streamClass.seek(off);
-				readBook(streamClass);
-			} catch (IOException e) {
-				return null;
-			}
-
-			seg=segment;
-		} else {
+		int segment=(index!=null) ? index.getSegmentIndex(segmentIndex) : -1;
+		if (segment<0 || channelIndex<1 || channelIndex>index.getChannelCount()) {
 			Utils.log("Books not found!");
+			return null;
 		}
-
-		off=getOffset(segmentIndex, channelIndex, FormatComponentV5.SIGNAL_SEGMENT_IDENTITY);
-		if (off>=0L) {
-			try {
-				streamClass.seek(off);
-				readBook(streamClass);
-			} catch (IOException e) {
-				return null;
-			}
-			if (seg!=null) {
-				seg.setSignalSamples(segment.getSignalSamples());
-			} else {
-				seg=segment;
-			}
-		} else {
-			Utils.log("Signals not found!");
+		if (!index.hasAtoms(segment, channelIndex-1) && !index.hasSignal(segment, channelIndex-1)) {
+			Utils.log("Books not found!");
+			return null;
 		}
-		return seg;
+		return new MappedSegmentV5(index, segment, channelIndex-1, getSamplingFreq(), getConvFactor());
 	}
 }
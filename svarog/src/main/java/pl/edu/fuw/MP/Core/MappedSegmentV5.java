@@ -0,0 +1,162 @@
+package pl.edu.fuw.MP.Core;
+
+import java.util.Enumeration;
+import java.util.Vector;
+
+import org.signalml.domain.book.StandardBookAtom;
+import org.signalml.domain.book.StandardBookSegment;
+
+/**
+ * A segment of an MPv5 book read through a {@link BookIndexV5}.
+ * <p>
+ * The atoms are decoded into columns when they are first needed and
+ * an {@link AtomV5} is created for an atom only when it is requested,
+ * then the same object is returned for this atom. The signal is also
+ * read on first request.
+ */
+public class MappedSegmentV5 implements StandardBookSegment {
+	private final BookIndexV5 index;
+	private final int segmentIndex;
+	private final int channelIndex;
+	private final float samplingFreq;
+	private final float convFactor;
+
+	private AtomColumnsV5 columns=null;
+	private AtomV5 atoms[]=null;
+	private float signal[]=null;
+
+	/**
+	 * Constructor.
+	 * @param index the index of the book
+	 * @param segmentIndex the index of the segment in the book index
+	 * @param channelIndex the index of the channel in the book index
+	 * @param samplingFreq the sampling frequency of the book
+	 * @param convFactor the calibration (points per microvolt) by which
+	 * the amplitudes of atoms are multiplied
+	 */
+	public MappedSegmentV5(BookIndexV5 index, int segmentIndex, int channelIndex, float samplingFreq, float convFactor) {
+		this.index=index;
+		this.segmentIndex=segmentIndex;
+		this.channelIndex=channelIndex;
+		this.samplingFreq=samplingFreq;
+		this.convFactor=convFactor;
+	}
+
+	/**
+	 * Returns the atoms of this segment as columns, with the amplitudes
+	 * as stored in the file. The returned columns must not be modified.
+	 * @return the atoms of this segment
+	 */
+	public synchronized AtomColumnsV5 getAtomColumns() {
+		if (columns==null) {
+			columns=new AtomColumnsV5();
+			if (index.hasAtoms(segmentIndex, channelIndex)) {
+				index.readAtoms(segmentIndex, channelIndex, columns);
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * @return the calibration by which the amplitudes of atoms are multiplied
+	 */
+	public float getConvFactor() {
+		return convFactor;
+	}
+
+	public synchronized StandardBookAtom getAtomAt(int atomIndex) {
+		AtomColumnsV5 c=getAtomColumns();
+		if (atomIndex<0 || atomIndex>=c.count) {
+			throw new ArrayIndexOutOfBoundsException(atomIndex);
+		}
+		if (atoms==null) {
+			atoms=new AtomV5[c.count];
+		}
+
+		AtomV5 atom=atoms[atomIndex];
+		if (atom==null) {
+			atom=new AtomV5();
+			atom.type=c.type[atomIndex];
+			atom.modulus=c.modulus[atomIndex];
+			atom.amplitude=c.amplitude[atomIndex]*convFactor;
+			atom.position=c.position[atomIndex];
+			atom.scale=c.scale[atomIndex];
+			atom.frequency=c.frequency[atomIndex];
+			atom.phase=c.phase[atomIndex];
+			atom.sizeOfAtomsField=2+atom.SizeOfAtom();
+			atom.conv=true;
+			atom.iteration=atomIndex;
+			atom.baseSize=getSegmentLength();
+			atom.samplingFreq=samplingFreq;
+			atoms[atomIndex]=atom;
+		}
+		return atom;
+	}
+
+	public int getAtomCount() {
+		return index.hasAtoms(segmentIndex, channelIndex) ? index.getAtomCount(segmentIndex, channelIndex) : 0;
+	}
+
+	public synchronized int indexOfAtom(StandardBookAtom atom) {
+		if (atoms!=null) {
+			for (int i=0 ; i<atoms.length ; i++) {
+				if (atoms[i]==atom) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	public int getChannelNumber() {
+		return channelIndex+1;
+	}
+
+	public float getDecompositionEnergy() {
+		return -1.0F;
+	}
+
+	public Object getProperty(String name) throws IllegalArgumentException {
+		throw new IllegalArgumentException("No properties");
+	}
+
+	public Enumeration<String> getPropertyNames() {
+		Vector<String> names = new Vector<String>();
+		return names.elements();
+	}
+
+	public float getSamplingFrequency() {
+		return samplingFreq;
+	}
+
+	public int getSegmentLength() {
+		return index.getSegmentLength(segmentIndex);
+	}
+
+	public int getSegmentNumber() {
+		return index.getSegmentNumber(segmentIndex);
+	}
+
+	public float getSegmentTime() {
+		return getSegmentNumber() / samplingFreq;
+	}
+
+	public float getSegmentTimeLength() {
+		return getSegmentLength() / samplingFreq;
+	}
+
+	public float getSignalEnergy() {
+		return -1.0F;
+	}
+
+	public synchronized float[] getSignalSamples() {
+		if (signal==null) {
+			signal=index.readSignal(segmentIndex, channelIndex);
+		}
+		return signal;
+	}
+
+	public boolean hasSignal() {
+		return index.hasSignal(segmentIndex, channelIndex);
+	}
+}
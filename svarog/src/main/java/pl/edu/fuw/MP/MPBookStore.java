@@ -163,6 +163,18 @@ public StandardBookSegment getSegmentAt(int segmentIndex, int channelIndex) {
 		return null;
 	}
 
+	/**
+	 * Returns the index of an MPv5 book, through which the atoms of all
+	 * segments can be read as primitive columns.
+	 * @return the index or null if the book is not an MPv5 book
+	 */
+	public BookIndexV5 getBookIndex() {
+		if (library instanceof BookLibraryV5) {
+			return ((BookLibraryV5)library).getIndex();
+		}
+		return null;
+	}
+
 	public int getSegmentCount() {
 		if (library instanceof BookLibraryV5) {
 			return ((BookLibraryV5)library).getSegmentCount();
@@ -18,12 +18,14 @@ public class WignerMap {
 	private double signal[]=null;
 	private boolean mask[]=null;
 	private int Count=0;
+	private StandardBookSegment book=null;
 
 	public double [][]getWignerMap() {
 		return Map;
 	}
 
 	public double getSignalValue(int k) {
+		ensureSignal();
 		if (signal==null || k>=DimBase) {
 			return 0.0;
 		}
@@ -31,6 +33,7 @@ public double getSignalValue(int k) {
 	}
 
 	public double getReconstValue(int k) {
+		ensureSignal();
 		if (ReconstSignal==null || k>=DimBase) {
 			return 0.0;
 		}
@@ -73,12 +76,18 @@ public static void makeCosTable(double Cos[],int start,int stop,
 		}
 	}
 
+	/* the signal and the reconstructions of atoms are computed only when needed */
+	private void ensureSignal() {
+		if (signal==null && book!=null) {
+			signal=new double[DimBase];
+			RSignal(book, signal);
+		}
+	}
+
 	private void RSignal(StandardBookSegment book,double signal[]) {
-		double tmpsig[]=new double[DimBase+1],sum,maxSig,minSig;
-		int i,k,itmp;
+		double atomSig[]=new double[DimBase];
 		double Exp[]=new double[DimBase],Cos[]=new double[DimBase];
-		double dtmp;
-		double  ptr[];
+		int i;
 
 		Count=0;
 
@@ -88,94 +97,72 @@ private void RSignal(StandardBookSegment book,double signal[]) {
 
 		int BookLen=book.getAtomCount();
 		mask=new boolean[ BookLen ];
-		reconst=null;
-		System.gc();
-		reconst=new double[BookLen][DimBase];
-
-		for (k=0 ; k<BookLen ; k++) {
-			mask[k]=false;
-			ptr=reconst[k];
-			for (i=0 ; i<DimBase ; i++)
-				ptr[i]=0.0F;
-		}
+		reconst=new double[BookLen][];
 
 		for (int kk=0 ; kk<BookLen ; kk++) {
-			StandardBookAtom atom=book.getAtomAt(kk);
-			ptr=reconst[kk];
-			if (atom.getType()==StandardBookAtom.DIRACDELTA_IDENTITY) {
-				signal[itmp=(int)atom.getPosition()]+=/*(dtmp=((atom.getPhase())>=0.5F) ?
-						  -1.0 : 1.0)*/ (dtmp=atom.getModulus());
-				ptr[itmp]=(double)dtmp;
-			} else if (atom.getType()==StandardBookAtom.SINCOSWAVE_IDENTITY) {
-				double freq=Math.PI*2*atom.getNaturalFrequency()/atom.getBaseLength(),
-					   phase=atom.getPhase()-freq*atom.getPosition();
-
-				for (i=0,sum=0.0 ; i<DimBase ; i++) {
-					sum+=SQR(tmpsig[i]=Math.cos(freq*i+phase));
-				}
-
-				sum=atom.getModulus()/Math.sqrt(sum);
-				for (i=0 ; i<DimBase ; i++) {
-					signal[i]+=(dtmp=tmpsig[i]*sum);
-					ptr[i]=(double)dtmp;
-				}
-			} else {
-				double freq=Math.PI*2*atom.getNaturalFrequency()/atom.getBaseLength(),
-					   phase=atom.getPhase()-freq*atom.getPosition();
-				int start=0,stop=DimBase-1;
-
-				MakeExpTable(Exp,Math.PI/SQR(atom.getScale()),
-							 (int)atom.getPosition(),
-							 start,stop);
-
-				makeCosTable(Cos,start,stop,freq,phase);
-
-				for (i=start,sum=0.0 ; i<=stop ; i++)
-					sum+=SQR(tmpsig[i]=Exp[i]*Cos[i]);
-				/*Math.cos(freq*i+phase)*/
-				sum=atom.getModulus()/Math.sqrt(sum);
-				for (i=start ; i<=stop ; i++) {
-					signal[i]+=(dtmp=tmpsig[i]*sum);
-					ptr[i]=(double)dtmp;
-				}
+			AtomSignal(book.getAtomAt(kk), atomSig, Exp, Cos);
+			for (i=0 ; i<DimBase ; i++) {
+				signal[i]+=atomSig[i];
 			}
 		}
 
-		minSig=maxSig=signal[0];
-		for (i=1 ; i<DimBase ; i++) {
-			if (signal[i]<minSig) {
-				minSig=signal[i];
-			}
-			if (signal[i]>maxSig) {
-				maxSig=signal[i];
-			}
-		}
+		ReconstSignal=new double[DimBase];
+	}
 
-//   double Yscale=((minSig==maxSig) ? 1.0 : 1.0/(maxSig-minSig));
-//   RBot=-Yscale*minSig;
+	private void AtomSignal(StandardBookAtom atom,double ptr[],double Exp[],double Cos[]) {
+		double sum;
+		int i;
 
-		ReconstSignal=new double[DimBase];
-		for (i=0 ; i<DimBase ; i++) {
-			//  signal[i]=Yscale*(signal[i]-minSig);
-			ReconstSignal[i]=0.0; //RBot;
-		}
+		if (atom.getType()==StandardBookAtom.DIRACDELTA_IDENTITY) {
+			for (i=0 ; i<DimBase ; i++) {
+				ptr[i]=0.0;
+			}
+			ptr[(int)atom.getPosition()]=/*(((atom.getPhase())>=0.5F) ?
+					  -1.0 : 1.0)*/ atom.getModulus();
+		} else if (atom.getType()==StandardBookAtom.SINCOSWAVE_IDENTITY) {
+			double freq=Math.PI*2*atom.getNaturalFrequency()/atom.getBaseLength(),
+				   phase=atom.getPhase()-freq*atom.getPosition();
+
+			for (i=0,sum=0.0 ; i<DimBase ; i++) {
+				sum+=SQR(ptr[i]=Math.cos(freq*i+phase));
+			}
 
-		/*
-		for(k=0 ; k<BookLen ; k++) {
-			ptr=reconst[k];
-		    for(i=0 ; i<DimBase ; i++) {
-		       ptr[i]=(double)(Yscale*ptr[i]);
-		    }
+			sum=atom.getModulus()/Math.sqrt(sum);
+			for (i=0 ; i<DimBase ; i++) {
+				ptr[i]*=sum;
+			}
+		} else {
+			double freq=Math.PI*2*atom.getNaturalFrequency()/atom.getBaseLength(),
+				   phase=atom.getPhase()-freq*atom.getPosition();
+			int start=0,stop=DimBase-1;
+
+			MakeExpTable(Exp,Math.PI/SQR(atom.getScale()),
+						 (int)atom.getPosition(),
+						 start,stop);
+
+			makeCosTable(Cos,start,stop,freq,phase);
+
+			for (i=start,sum=0.0 ; i<=stop ; i++)
+				sum+=SQR(ptr[i]=Exp[i]*Cos[i]);
+			/*Math.cos(freq*i+phase)*/
+			sum=atom.getModulus()/Math.sqrt(sum);
+			for (i=start ; i<=stop ; i++) {
+				ptr[i]*=sum;
+			}
 		}
-		*/
 	}
 
 	public void atomToReconst(int k) {
+		ensureSignal();
 		if (mask==null) {
 			return;
 		}
 
 		if (k>=0 && k<mask.length) {
+			if (reconst[k]==null) {
+				reconst[k]=new double[DimBase];
+				AtomSignal(book.getAtomAt(k), reconst[k], new double[DimBase], new double[DimBase]);
+			}
 			double ptr[]=reconst[k];
 			int i;
 
@@ -201,7 +188,6 @@ public void atomToReconst(int k) {
 	}
 
 	public final void setBook(StandardBookSegment book) {
-		boolean rec=true;
 		double ref[];
 		int i,j,k;
 
@@ -220,22 +206,22 @@ public final void setBook(StandardBookSegment book) {
 			AddAtom(atom.getModulus(), (int)atom.getScale(), (int)atom.getPosition(), atom.getNaturalFrequency());
 		}
 
-		signal=new double[DimBase];
-		if (rec) {
-			RSignal(book, signal);
-		} else {
-			for (i=0 ; i<DimBase ; i++) {
-				signal[i]=0.0F;
-			}
-		}
+		this.book=book;
+		signal=null;
+		ReconstSignal=null;
+		reconst=null;
+		mask=null;
+		Count=0;
 		SetMinMax();
 	}
 
 	public double []getSignal() {
+		ensureSignal();
 		return signal;
 	}
 
 	public double []getReconstruction() {
+		ensureSignal();
 		return ReconstSignal;
 	}
 
@@ -247,11 +233,6 @@ public WignerMap(int Sx,int Sy,int minTT,int maxTT,int minFF,int maxFF) {
 		minF=minFF;
 		maxF=maxFF;
 
-		Map=null;
-		NormMap=null;
-		TimeAxis=null;
-		FreqAxis=null;
-		System.gc();
 		Map=new double[SizeX][SizeY];
 		NormMap=new double[SizeX][SizeY];
 		TimeAxis=new double[SizeX];
@@ -0,0 +1,110 @@
+package org.signalml.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+
+import org.junit.Test;
+import org.signalml.domain.book.DefaultBookAtom;
+import org.signalml.domain.book.DefaultMutableBook;
+import org.signalml.domain.book.MutableBookSegment;
+import org.signalml.domain.book.StandardBookAtom;
+import org.signalml.domain.book.WignerMapProvider;
+import org.signalml.domain.book.WignerMapScaleType;
+import org.signalml.method.bookaverage.BookAverageData;
+import org.signalml.method.bookaverage.BookAverageMethod;
+import org.signalml.method.bookaverage.BookAverageResult;
+
+/**
+ * Checks if the {@link BookAverageMethod} gives the average of the maps
+ * computed for every segment by the {@link WignerMapProvider}.
+ */
+public class BookAverageMethodTest {
+
+	private static final float SAMPLING_FREQUENCY = 128.0F;
+	private static final int SEGMENT_LENGTH = 1024;
+	private static final int SEGMENT_COUNT = 12;
+	private static final int CHANNEL_COUNT = 2;
+	private static final int WIDTH = 160;
+	private static final int HEIGHT = 90;
+
+	@Test
+	public void testAverage() throws Exception {
+		DefaultMutableBook book = new DefaultMutableBook(CHANNEL_COUNT, SAMPLING_FREQUENCY);
+		Random random = new Random(3);
+		for (int s = 0; s < SEGMENT_COUNT; s++) {
+			MutableBookSegment[] segments = book.addNewSegment(s * SEGMENT_LENGTH / SAMPLING_FREQUENCY, SEGMENT_LENGTH);
+			for (MutableBookSegment segment : segments) {
+				float[] samples = new float[SEGMENT_LENGTH];
+				for (int i = 0; i < SEGMENT_LENGTH; i++) {
+					samples[i] = (float) random.nextGaussian();
+				}
+				segment.setSignalSamples(samples);
+				for (int i = 0; i < 30; i++) {
+					// parameters from a small "dictionary", so they repeat between segments
+					int scale = 32 << random.nextInt(4);
+					int position = 64 * random.nextInt(SEGMENT_LENGTH / 64);
+					int frequency = 8 * random.nextInt(SEGMENT_LENGTH / 16);
+					segment.addAtom(new DefaultBookAtom(SAMPLING_FREQUENCY, SEGMENT_LENGTH, StandardBookAtom.GABORWAVE_IDENTITY, i,
+						(float)(1 + 50 * random.nextDouble()), frequency, position, scale, 1.0F, 0.0F));
+				}
+			}
+		}
+
+		BookAverageData data = new BookAverageData();
+		data.setBook(book);
+		data.setWidth(WIDTH);
+		data.setHeight(HEIGHT);
+		data.setMinFrequency(4.0);
+		data.setMaxFrequency(40.0);
+		data.setMinPosition(1.0);
+		data.setMaxPosition(7.0);
+		data.setMinSegment(2);
+		data.setMaxSegment(SEGMENT_COUNT + 5);
+		LinkedHashSet<Integer> channels = new LinkedHashSet<Integer>();
+		channels.add(1);
+		channels.add(0);
+		data.setChannels(channels);
+		data.setScaleType(WignerMapScaleType.NORMAL);
+
+		BookAverageResult result = (BookAverageResult) new BookAverageMethod().doComputation(data, new DummyMethodExecutionTracker());
+
+		WignerMapProvider provider = new WignerMapProvider(SAMPLING_FREQUENCY);
+		provider.setSize(WIDTH, HEIGHT);
+		provider.setRange(4.0, 40.0, 1.0, 7.0);
+		double[][] expectedMap = new double[WIDTH][HEIGHT];
+		double[] expectedSignal = new double[SEGMENT_LENGTH];
+		int count = 0;
+		for (int channel = 0; channel < CHANNEL_COUNT; channel++) {
+			for (int s = 2; s < SEGMENT_COUNT; s++) {
+				provider.setSegment(book.getSegmentAt(s, channel));
+				double[][] map = provider.getMap();
+				for (int x = 0; x < WIDTH; x++) {
+					for (int y = 0; y < HEIGHT; y++) {
+						expectedMap[x][y] += map[x][y];
+					}
+				}
+				float[] samples = book.getSegmentAt(s, channel).getSignalSamples();
+				for (int i = 0; i < SEGMENT_LENGTH; i++) {
+					expectedSignal[i] += samples[i];
+				}
+				count++;
+			}
+		}
+
+		double max = 0;
+		for (int x = 0; x < WIDTH; x++) {
+			for (int y = 0; y < HEIGHT; y++) {
+				assertEquals(expectedMap[x][y] / count, result.getMap()[x][y], 1e-5);
+				max = Math.max(max, result.getMap()[x][y]);
+			}
+		}
+		assertTrue(max > 0);
+		for (int i = 0; i < SEGMENT_LENGTH; i++) {
+			assertEquals(expectedSignal[i] / count, result.getSignal()[i], 1e-5);
+		}
+	}
+
+}
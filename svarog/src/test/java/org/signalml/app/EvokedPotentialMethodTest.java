@@ -181,9 +181,27 @@ public void performTest() throws Exception {
 			}
 
 			assertArrayEquals(averagedSamples[channel], expectedAveragedSamples, 1e-3);
+			assertArrayEquals(result.getStandardDeviationSamples().get(0)[channel], getStandardDeviation(samplesTag, avgLength), 1e-3);
 		}
 	}
 
+	protected double[] getStandardDeviation(double[][] samplesTag, int length) {
+		double[] deviation = new double[length];
+		if (samplesTag.length < 2)
+			return deviation;
+		for (int i = 0; i < length; i++) {
+			double mean = 0.0;
+			for (int j = 0; j < samplesTag.length; j++)
+				mean += samplesTag[j][i];
+			mean /= samplesTag.length;
+			double sum = 0.0;
+			for (int j = 0; j < samplesTag.length; j++)
+				sum += (samplesTag[j][i] - mean) * (samplesTag[j][i] - mean);
+			deviation[i] = Math.sqrt(sum / (samplesTag.length - 1));
+		}
+		return deviation;
+	}
+
 	protected void performBaselineCorrection(int channel, List<Double> tagPositions, double[] samples) {
 		double baseline = 0.0;
 		int number = 0;
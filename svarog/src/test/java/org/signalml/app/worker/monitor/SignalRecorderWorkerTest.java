@@ -0,0 +1,129 @@
+package org.signalml.app.worker.monitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.signalml.app.model.document.opensignal.ExperimentDescriptor;
+import org.signalml.app.model.document.opensignal.elements.Amplifier;
+import org.signalml.app.model.document.opensignal.elements.AmplifierChannel;
+import org.signalml.domain.signal.raw.RawSignalDescriptor;
+import org.signalml.domain.signal.raw.RawSignalDescriptorReader;
+
+/**
+ * Applies unit tests to the {@link SignalRecorderWorker}.
+ */
+public class SignalRecorderWorkerTest {
+
+	private static final int CHANNEL_COUNT = 3;
+
+	@Test
+	public void testRecording() throws Exception {
+		ExperimentDescriptor descriptor = createDescriptor();
+
+		File dataFile = File.createTempFile("recorder", ".raw");
+		File metadataFile = new File(dataFile.getPath().replaceAll("\\.raw$", ".xml"));
+		dataFile.deleteOnExit();
+		metadataFile.deleteOnExit();
+
+		SignalRecorderWorker recorder = new SignalRecorderWorker(dataFile.getPath(), descriptor);
+		recorder.setFirstSampleTimestamp(12.5);
+		recorder.start();
+
+		// blocks larger than the conversion buffer are written in parts
+		int[] blockSizes = new int[] {1, 32, 5000, 7};
+		int value = 0;
+		int sampleCount = 0;
+		for (int size : blockSizes) {
+			float[][] block = new float[CHANNEL_COUNT][size];
+			for (int j = 0; j < size; j++) {
+				for (int i = 0; i < CHANNEL_COUNT; i++) {
+					block[i][j] = value++;
+				}
+			}
+			recorder.offerBlock(block, size);
+			sampleCount += size;
+		}
+		recorder.offerChunk(new float[] {value, value + 1, value + 2});
+		sampleCount++;
+		recorder.save();
+		assertEquals(0, recorder.getFillerSampleCount());
+
+		RawSignalDescriptor saved = new RawSignalDescriptorReader().readDocument(metadataFile);
+		assertEquals(sampleCount, saved.getSampleCount());
+		assertEquals(12.5, saved.getFirstSampleTimestamp(), 0.0);
+		assertFalse(saved.isBackup());
+
+		assertEquals(sampleCount * CHANNEL_COUNT * 4, dataFile.length());
+		RandomAccessFile file = new RandomAccessFile(dataFile, "r");
+		byte[] bytes = new byte[(int) dataFile.length()];
+		file.readFully(bytes);
+		file.close();
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < sampleCount * CHANNEL_COUNT; i++) {
+			assertEquals(i, buffer.getFloat(), 0.0);
+		}
+	}
+
+	@Test
+	public void testFullQueue() throws Exception {
+		File dataFile = File.createTempFile("recorder", ".raw");
+		File metadataFile = new File(dataFile.getPath().replaceAll("\\.raw$", ".xml"));
+		dataFile.deleteOnExit();
+		metadataFile.deleteOnExit();
+
+		// the writer is not started, so the queue fills up and the blocks
+		// which don't fit are replaced with zeros instead of being dropped
+		SignalRecorderWorker recorder = new SignalRecorderWorker(dataFile.getPath(), createDescriptor());
+		int blockCount = 1030;
+		for (int k = 0; k < blockCount; k++) {
+			float[][] block = new float[CHANNEL_COUNT][2];
+			for (int i = 0; i < CHANNEL_COUNT; i++) {
+				block[i][0] = block[i][1] = 1;
+			}
+			recorder.offerBlock(block, 2);
+		}
+		int fillerSampleCount = recorder.getFillerSampleCount();
+		assertTrue(fillerSampleCount > 0);
+
+		recorder.save();
+		RawSignalDescriptor saved = new RawSignalDescriptorReader().readDocument(metadataFile);
+		assertEquals(2 * blockCount, saved.getSampleCount());
+		assertEquals(saved.getSampleCount() * CHANNEL_COUNT * 4, dataFile.length());
+
+		RandomAccessFile file = new RandomAccessFile(dataFile, "r");
+		byte[] bytes = new byte[(int) dataFile.length()];
+		file.readFully(bytes);
+		file.close();
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		int recordedSampleCount = 2 * blockCount - fillerSampleCount;
+		for (int i = 0; i < 2 * blockCount * CHANNEL_COUNT; i++) {
+			assertEquals(i < recordedSampleCount * CHANNEL_COUNT ? 1 : 0, buffer.getFloat(), 0.0);
+		}
+	}
+
+	private ExperimentDescriptor createDescriptor() {
+		ExperimentDescriptor descriptor = new ExperimentDescriptor();
+		descriptor.getSignalParameters().setChannelCount(CHANNEL_COUNT);
+		descriptor.getSignalParameters().setSamplingFrequency(128.0F);
+		List<AmplifierChannel> channels = new ArrayList<AmplifierChannel>();
+		for (int i = 0; i < CHANNEL_COUNT; i++) {
+			AmplifierChannel channel = new AmplifierChannel(i, "C" + i);
+			channel.setSelected(true);
+			channels.add(channel);
+		}
+		Amplifier amplifier = new Amplifier();
+		amplifier.setChannels(channels);
+		descriptor.setAmplifier(amplifier);
+		return descriptor;
+	}
+
+}
@@ -0,0 +1,145 @@
+package org.signalml.codec;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+import org.signalml.codec.generator.xml.XMLCodecException;
+
+/**
+ * This class performs unit tests on the block decoding methods of the
+ * {@link SMLCodec} class, comparing them with the decoding of single samples.
+ */
+public class SMLCodecTest {
+
+	private static final int CHANNEL_COUNT = 3;
+	private static final int HEADER_SIZE = 16;
+
+	private File file;
+
+	@After
+	public void tearDown() {
+		if (file != null) {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testMultiplex() throws Exception {
+		int frameCount = 1000;
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 4 * CHANNEL_COUNT * frameCount).order(ByteOrder.LITTLE_ENDIAN);
+		Random random = new Random(5);
+		buffer.position(HEADER_SIZE);
+		while (buffer.hasRemaining()) {
+			buffer.putFloat((float) random.nextGaussian());
+		}
+		writeFile(buffer.array());
+
+		SMLCodec codec = new SMLCodec() {
+			@Override
+			public float[] getSample(long offset) throws XMLCodecException {
+				return getMultiplexSample_float(HEADER_SIZE, offset, CHANNEL_COUNT);
+			}
+			@Override
+			public float getChannelSample(long offset, int chn) throws XMLCodecException {
+				return getMultiplexChannelSample_float(HEADER_SIZE, offset, chn, CHANNEL_COUNT);
+			}
+			@Override
+			public void getChannelSamples(long offset, int chn, float[] target, int arrayOffset, int count) throws XMLCodecException {
+				getMultiplexChannelSamples_float(HEADER_SIZE, offset, chn, CHANNEL_COUNT, target, arrayOffset, count);
+			}
+			@Override
+			public void getSamples(long offset, float[][] target, int arrayOffset, int count) throws XMLCodecException {
+				getMultiplexSamples_float(HEADER_SIZE, offset, CHANNEL_COUNT, target, arrayOffset, count);
+			}
+		};
+		codec.open(file.getAbsolutePath());
+		try {
+			int offset = 123;
+			int count = 500;
+			float[][] frames = new float[CHANNEL_COUNT][count + 2];
+			codec.getSamples(offset, frames, 2, count);
+
+			for (int chn = 0; chn < CHANNEL_COUNT; chn++) {
+				float[] samples = new float[count];
+				codec.getChannelSamples(offset, chn, samples, 0, count);
+				for (int i = 0; i < count; i++) {
+					float expected = codec.getChannelSample(offset + i, chn);
+					assertEquals(expected, samples[i], 0.0F);
+					assertEquals(expected, frames[chn][i + 2], 0.0F);
+				}
+			}
+		} finally {
+			codec.close();
+		}
+	}
+
+	@Test
+	public void testEDF() throws Exception {
+		final int[] samplesInRecord = new int[] { 4, 2, 3 };
+		int recordCount = 10;
+		int recordSize = 0;
+		for (int size : samplesInRecord) {
+			recordSize += size;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(2 * recordSize * recordCount).order(ByteOrder.LITTLE_ENDIAN);
+		short value = 0;
+		while (buffer.hasRemaining()) {
+			buffer.putShort(value++);
+		}
+		writeFile(buffer.array());
+
+		SMLCodec codec = new SMLCodec() {
+			@Override
+			public void init() throws XMLCodecException {
+				init_edf(CHANNEL_COUNT, samplesInRecord);
+			}
+			@Override
+			public float[] getSample(long offset) throws XMLCodecException {
+				return null;
+			}
+			@Override
+			public float getChannelSample(long offset, int chn) throws XMLCodecException {
+				return getEDFChannelSample(offset, chn);
+			}
+			@Override
+			public void getChannelSamples(long offset, int chn, float[] target, int arrayOffset, int count) throws XMLCodecException {
+				getEDFChannelSamples(offset, chn, target, arrayOffset, count);
+			}
+		};
+		codec.open(file.getAbsolutePath());
+		try {
+			for (int chn = 0; chn < CHANNEL_COUNT; chn++) {
+				int sampleCount = samplesInRecord[chn] * recordCount;
+				for (int offset = 0; offset < 5; offset++) {
+					int count = sampleCount - 2 * offset;
+					float[] samples = new float[count];
+					codec.getChannelSamples(offset, chn, samples, 0, count);
+					for (int i = 0; i < count; i++) {
+						assertEquals(codec.getChannelSample(offset + i, chn), samples[i], 0.0F);
+					}
+				}
+			}
+		} finally {
+			codec.close();
+		}
+	}
+
+	private void writeFile(byte[] data) throws IOException {
+		file = File.createTempFile("smlcodec", ".bin");
+		FileOutputStream stream = new FileOutputStream(file);
+		try {
+			stream.write(data);
+		} finally {
+			stream.close();
+		}
+	}
+
+}
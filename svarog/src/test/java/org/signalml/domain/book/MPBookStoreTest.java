@@ -0,0 +1,249 @@
+package org.signalml.domain.book;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.edu.fuw.MP.MPBookStore;
+import pl.edu.fuw.MP.Core.AtomColumnsV5;
+import pl.edu.fuw.MP.Core.BookIndexV5;
+import pl.edu.fuw.MP.Core.BookLibraryV5Writer;
+
+/**
+ * Writes an MPv5 book and checks if it is read back the same through
+ * the {@link MPBookStore} and through its {@link BookIndexV5}.
+ */
+public class MPBookStoreTest {
+
+	private static final float SAMPLING_FREQUENCY = 128.0F;
+	private static final float CALIBRATION = 2.0F;
+	private static final int SEGMENT_LENGTH = 256;
+	private static final int SEGMENT_COUNT = 5;
+	private static final int CHANNEL_COUNT = 3;
+	private static final int[] TYPES = new int[] {
+		StandardBookAtom.GABORWAVE_IDENTITY, StandardBookAtom.DIRACDELTA_IDENTITY,
+		StandardBookAtom.GAUSSFUNCTION_IDENTITY, StandardBookAtom.SINCOSWAVE_IDENTITY
+	};
+
+	private File bookFile;
+	private File sidecarDirectory;
+
+	/** the written atoms [segment][channel][atom] */
+	private StandardBookAtomWriterImpl[][][] atoms;
+
+	/** the written signals [segment][channel], null if not written */
+	private float[][][] signals;
+
+	@Before
+	public void setUp() throws Exception {
+		bookFile = File.createTempFile("book", ".b");
+		bookFile.deleteOnExit();
+		sidecarDirectory = File.createTempFile("book", ".idx.d");
+		sidecarDirectory.delete();
+		sidecarDirectory.mkdir();
+		sidecarDirectory.deleteOnExit();
+
+		BookLibraryV5Writer writer = new BookLibraryV5Writer();
+		writer.setSamplingFrequency(SAMPLING_FREQUENCY);
+		writer.setCalibration(CALIBRATION);
+		writer.setNumberOfChannels(CHANNEL_COUNT);
+		writer.Open(bookFile.getAbsolutePath());
+
+		Random random = new Random(7);
+		atoms = new StandardBookAtomWriterImpl[SEGMENT_COUNT][CHANNEL_COUNT][];
+		signals = new float[SEGMENT_COUNT][CHANNEL_COUNT][];
+		StandardBookSegmentWriterImpl segment = new StandardBookSegmentWriterImpl(writer);
+		for (int s = 0; s < SEGMENT_COUNT; s++) {
+			for (int c = 0; c < CHANNEL_COUNT; c++) {
+				segment.setSegmentNumber(s + 1);
+				segment.setChannelNumber(c + 1);
+				segment.setSegmentLength(SEGMENT_LENGTH);
+				segment.clearAtoms();
+
+				// the last channel has no signal
+				float[] signal = null;
+				if (c < CHANNEL_COUNT - 1) {
+					signal = new float[SEGMENT_LENGTH];
+					for (int i = 0; i < SEGMENT_LENGTH; i++) {
+						signal[i] = (float) random.nextGaussian();
+					}
+				}
+				segment.setSignalSamples(signal);
+				signals[s][c] = signal;
+
+				atoms[s][c] = new StandardBookAtomWriterImpl[10 + random.nextInt(10)];
+				for (int i = 0; i < atoms[s][c].length; i++) {
+					StandardBookAtomWriterImpl atom = new StandardBookAtomWriterImpl();
+					atom.setType(TYPES[i % TYPES.length]);
+					atom.setModulus((float) random.nextDouble());
+					atom.setAmplitude((float) random.nextDouble());
+					atom.setPosition(random.nextInt(SEGMENT_LENGTH));
+					atom.setScale(1 + random.nextInt(SEGMENT_LENGTH));
+					atom.setFrequency((float) (Math.PI * random.nextDouble()));
+					atom.setPhase((float) random.nextDouble());
+					atoms[s][c][i] = atom;
+					segment.addAtom(atom);
+				}
+				writer.writeSegment(segment);
+			}
+		}
+		writer.close();
+	}
+
+	@After
+	public void tearDown() {
+		BookIndexV5.getSidecarFile(bookFile, sidecarDirectory).delete();
+		sidecarDirectory.delete();
+		bookFile.delete();
+	}
+
+	@Test
+	public void testStandardBook() throws Exception {
+		MPBookStore book = new MPBookStore();
+		assertTrue(book.Open(bookFile.getAbsolutePath()));
+
+		assertEquals(SEGMENT_COUNT, book.getSegmentCount());
+		assertEquals(SAMPLING_FREQUENCY, book.getSamplingFrequency(), 0.0F);
+
+		for (int s = 0; s < SEGMENT_COUNT; s++) {
+			StandardBookSegment[] segments = book.getSegmentAt(s);
+			assertEquals(CHANNEL_COUNT, segments.length);
+			for (int c = 0; c < CHANNEL_COUNT; c++) {
+				StandardBookSegment segment = segments[c];
+				assertEquals(s + 1, segment.getSegmentNumber());
+				assertEquals(c + 1, segment.getChannelNumber());
+				assertEquals(SEGMENT_LENGTH, segment.getSegmentLength());
+				assertEquals(signals[s][c] != null, segment.hasSignal());
+				if (signals[s][c] != null) {
+					assertTrue(Arrays.equals(signals[s][c], segment.getSignalSamples()));
+				} else {
+					assertNull(segment.getSignalSamples());
+				}
+
+				assertEquals(atoms[s][c].length, segment.getAtomCount());
+				for (int i = 0; i < atoms[s][c].length; i++) {
+					StandardBookAtom expected = atoms[s][c][i];
+					StandardBookAtom atom = segment.getAtomAt(i);
+					assertEquals(expected.getType(), atom.getType());
+					assertEquals(i, atom.getIteration());
+					assertEquals(expected.getModulus(), atom.getModulus(), 0.0F);
+					assertEquals(expected.getAmplitude() * CALIBRATION, atom.getAmplitude(), 0.0F);
+					assertEquals(SEGMENT_LENGTH, atom.getBaseLength());
+					if (expected.getType() != StandardBookAtom.SINCOSWAVE_IDENTITY) {
+						assertEquals(expected.getPosition(), atom.getPosition());
+					}
+					if (expected.getType() == StandardBookAtom.GABORWAVE_IDENTITY) {
+						assertEquals(expected.getScale(), atom.getScale());
+						assertEquals(expected.getFrequency(), atom.getFrequency(), 0.0F);
+						assertEquals(expected.getPhase(), atom.getPhase(), 0.0F);
+					}
+					assertSame(atom, segment.getAtomAt(i));
+					assertEquals(i, segment.indexOfAtom(atom));
+				}
+			}
+		}
+
+		StandardBookSegment segment = book.getSegmentAt(2, 1);
+		assertEquals(3, segment.getSegmentNumber());
+		assertEquals(2, segment.getChannelNumber());
+		assertNull(book.getSegmentAt(SEGMENT_COUNT, 0));
+
+		book.close();
+	}
+
+	@Test
+	public void testIndexAndSidecar() throws Exception {
+		File sidecar = BookIndexV5.getSidecarFile(bookFile, sidecarDirectory);
+		assertFalse(sidecar.exists());
+
+		// nothing is written without a sidecar directory
+		BookIndexV5 plain = new BookIndexV5(bookFile);
+		assertIndex(plain);
+		plain.close();
+		assertFalse(sidecar.exists());
+		assertEquals(sidecarDirectory, sidecar.getParentFile());
+
+		BookIndexV5 scanned = new BookIndexV5(bookFile, sidecarDirectory);
+		assertTrue(sidecar.exists());
+		assertIndex(scanned);
+		scanned.close();
+
+		// the sidecar is used instead of a scan
+		BookIndexV5 loaded = new BookIndexV5(bookFile, sidecarDirectory);
+		assertIndex(loaded);
+		loaded.close();
+	}
+
+	@Test
+	public void testUnknownAtomType() throws Exception {
+		File unknownBookFile = File.createTempFile("book", ".b");
+		try {
+			BookLibraryV5Writer writer = new BookLibraryV5Writer();
+			writer.setSamplingFrequency(SAMPLING_FREQUENCY);
+			writer.setCalibration(CALIBRATION);
+			writer.setNumberOfChannels(1);
+			writer.Open(unknownBookFile.getAbsolutePath());
+			StandardBookSegmentWriterImpl segment = new StandardBookSegmentWriterImpl(writer);
+			segment.setSegmentNumber(1);
+			segment.setChannelNumber(1);
+			segment.setSegmentLength(SEGMENT_LENGTH);
+			StandardBookAtomWriterImpl atom = new StandardBookAtomWriterImpl();
+			atom.setType(99);
+			segment.addAtom(atom);
+			writer.writeSegment(segment);
+			writer.close();
+
+			try {
+				new BookIndexV5(unknownBookFile, sidecarDirectory);
+				fail("an unknown atom type should be rejected");
+			} catch (IOException e) {
+				// expected
+			}
+			assertFalse(BookIndexV5.getSidecarFile(unknownBookFile, sidecarDirectory).exists());
+		} finally {
+			unknownBookFile.delete();
+		}
+	}
+
+	private void assertIndex(BookIndexV5 index) {
+		assertEquals(SEGMENT_COUNT, index.getSegmentCount());
+		assertEquals(CHANNEL_COUNT, index.getChannelCount());
+		assertEquals(CHANNEL_COUNT, index.getSignalChannelCount());
+		assertEquals(SAMPLING_FREQUENCY, index.getSamplingFrequency(), 0.0F);
+		assertEquals(CALIBRATION, index.getPointsPerMicrovolt(), 0.0F);
+		assertEquals(-1, index.getSegmentIndex(SEGMENT_COUNT + 1));
+
+		AtomColumnsV5 columns = new AtomColumnsV5();
+		for (int s = 0; s < SEGMENT_COUNT; s++) {
+			assertEquals(s, index.getSegmentIndex(s + 1));
+			assertEquals(SEGMENT_LENGTH, index.getSegmentLength(s));
+			for (int c = 0; c < CHANNEL_COUNT; c++) {
+				assertEquals(signals[s][c] != null, index.hasSignal(s, c));
+				if (signals[s][c] != null) {
+					assertTrue(Arrays.equals(signals[s][c], index.readSignal(s, c)));
+				}
+
+				assertEquals(atoms[s][c].length, index.readAtoms(s, c, columns));
+				for (int i = 0; i < columns.count; i++) {
+					StandardBookAtom expected = atoms[s][c][i];
+					assertEquals(expected.getType(), columns.type[i]);
+					assertEquals(expected.getModulus(), columns.modulus[i], 0.0F);
+					assertEquals(expected.getAmplitude(), columns.amplitude[i], 0.0F);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,124 @@
+package org.signalml.domain.book;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.edu.fuw.MP.WignerMap.WignerMap;
+
+/**
+ * Applies unit tests to the {@link WignerMapTileRenderer}.
+ */
+public class WignerMapTileRendererTest {
+
+	private static final float SAMPLING_FREQUENCY = 128.0F;
+
+	private static final int SEGMENT_LENGTH = 2560;
+
+	private static final int WIDTH = 200;
+
+	private static final int HEIGHT = 100;
+
+	private MutableBookSegment segment;
+
+	@Before
+	public void setUp() {
+		DefaultMutableBook book = new DefaultMutableBook(1, SAMPLING_FREQUENCY);
+		segment = book.addNewSegment(0, SEGMENT_LENGTH)[0];
+
+		Random random = new Random(7);
+		for (int i = 0; i < 200; i++) {
+			int scale = 16 + random.nextInt(SEGMENT_LENGTH / 2);
+			int position = random.nextInt(SEGMENT_LENGTH);
+			int frequency = random.nextInt(SEGMENT_LENGTH / 2);
+			segment.addAtom(new DefaultBookAtom(SAMPLING_FREQUENCY, SEGMENT_LENGTH, StandardBookAtom.GABORWAVE_IDENTITY, i,
+				(float)(1 + 100 * random.nextDouble()), frequency, position, scale, 1.0F, (float) random.nextDouble()));
+		}
+		segment.addAtom(new DefaultBookAtom(SAMPLING_FREQUENCY, SEGMENT_LENGTH, StandardBookAtom.DIRACDELTA_IDENTITY, 200,
+			50.0F, 0, 1000, 0, 1.0F, 0.0F));
+		segment.addAtom(new DefaultBookAtom(SAMPLING_FREQUENCY, SEGMENT_LENGTH, StandardBookAtom.SINCOSWAVE_IDENTITY, 201,
+			50.0F, 640, 0, SEGMENT_LENGTH, 1.0F, 0.0F));
+	}
+
+	@Test
+	public void testSameAsFullMap() {
+		WignerMap wignerMap = new WignerMap(WIDTH, HEIGHT, 0, SEGMENT_LENGTH - 1, 0, SEGMENT_LENGTH / 2);
+		wignerMap.setBook(segment);
+		double[][] expected = wignerMap.getWignerMap();
+
+		double[][] map = new double[WIDTH][HEIGHT];
+		WignerMapTileRenderer renderer = new WignerMapTileRenderer();
+		assertTrue(renderer.render(segment, map, WIDTH, HEIGHT, 0, SEGMENT_LENGTH - 1, 0, SEGMENT_LENGTH / 2));
+
+		double max = wignerMap.getMaxVal();
+		assertTrue(max > 0);
+		for (int x = 0; x < WIDTH; x++) {
+			for (int y = 0; y < HEIGHT; y++) {
+				assertEquals(expected[x][y], map[x][y], 1e-4 * max);
+			}
+		}
+	}
+
+	@Test
+	public void testPannedMapReusesTiles() {
+		WignerMapTileRenderer renderer = new WignerMapTileRenderer();
+		double[][] map = new double[WIDTH][HEIGHT];
+		renderer.render(segment, map, WIDTH, HEIGHT, 0, SEGMENT_LENGTH - 1, 0, SEGMENT_LENGTH / 2);
+
+		// a shift by 10 pixels
+		double timeStep = (SEGMENT_LENGTH - 1) / (double)(WIDTH - 1);
+		int shift = (int) Math.round(10 * timeStep);
+		double[][] pannedMap = new double[WIDTH][HEIGHT];
+		renderer.render(segment, pannedMap, WIDTH, HEIGHT, shift, shift + SEGMENT_LENGTH - 1, 0, SEGMENT_LENGTH / 2);
+
+		for (int x = 0; x < WIDTH - 10; x++) {
+			for (int y = 0; y < HEIGHT; y++) {
+				assertEquals(map[x + 10][y], pannedMap[x][y], 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testChangedSegmentIsRenderedAgain() {
+		WignerMapTileRenderer renderer = new WignerMapTileRenderer();
+		double[][] map = new double[WIDTH][HEIGHT];
+		renderer.render(segment, map, WIDTH, HEIGHT, 0, SEGMENT_LENGTH - 1, 0, SEGMENT_LENGTH / 2);
+
+		segment.addAtom(new DefaultBookAtom(SAMPLING_FREQUENCY, SEGMENT_LENGTH, StandardBookAtom.DIRACDELTA_IDENTITY, 202,
+			500.0F, 0, 2000, 0, 1.0F, 0.0F));
+
+		WignerMap wignerMap = new WignerMap(WIDTH, HEIGHT, 0, SEGMENT_LENGTH - 1, 0, SEGMENT_LENGTH / 2);
+		wignerMap.setBook(segment);
+		double[][] expected = wignerMap.getWignerMap();
+		renderer.render(segment, map, WIDTH, HEIGHT, 0, SEGMENT_LENGTH - 1, 0, SEGMENT_LENGTH / 2);
+
+		double max = wignerMap.getMaxVal();
+		for (int x = 0; x < WIDTH; x++) {
+			for (int y = 0; y < HEIGHT; y++) {
+				assertEquals(expected[x][y], map[x][y], 1e-4 * max);
+			}
+		}
+	}
+
+	@Test
+	public void testRenderAfterShutdown() {
+		WignerMapTileRenderer renderer = new WignerMapTileRenderer();
+		double[][] map = new double[WIDTH][HEIGHT];
+		assertTrue(renderer.render(segment, map, WIDTH, HEIGHT, 0, SEGMENT_LENGTH - 1, 0, SEGMENT_LENGTH / 2));
+		renderer.shutdown();
+
+		renderer.clearCache();
+		double[][] again = new double[WIDTH][HEIGHT];
+		assertTrue(renderer.render(segment, again, WIDTH, HEIGHT, 0, SEGMENT_LENGTH - 1, 0, SEGMENT_LENGTH / 2));
+		renderer.shutdown();
+		for (int x = 0; x < WIDTH; x++) {
+			assertTrue(Arrays.equals(map[x], again[x]));
+		}
+	}
+
+}
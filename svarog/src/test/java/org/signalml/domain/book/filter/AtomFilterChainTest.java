@@ -0,0 +1,124 @@
+package org.signalml.domain.book.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.signalml.domain.book.DefaultBookAtom;
+import org.signalml.domain.book.DefaultMutableBook;
+import org.signalml.domain.book.FilteredBookSegment;
+import org.signalml.domain.book.MutableBookSegment;
+import org.signalml.domain.book.StandardBookAtom;
+import org.signalml.domain.book.StandardBookSegment;
+
+/**
+ * Checks if the bitmap computed by {@link AtomFilterChain#matches(SegmentAtomColumns)}
+ * is the same as the result of
+ * {@link AtomFilterChain#matches(StandardBookSegment, StandardBookAtom)}
+ * for every atom.
+ */
+public class AtomFilterChainTest {
+
+	private static final float SAMPLING_FREQUENCY = 128.0F;
+	private static final int SEGMENT_LENGTH = 1024;
+
+	private StandardBookSegment segment;
+
+	@Before
+	public void setUp() {
+		DefaultMutableBook book = new DefaultMutableBook(1, SAMPLING_FREQUENCY);
+		MutableBookSegment mutableSegment = book.addNewSegment(0, SEGMENT_LENGTH)[0];
+		Random random = new Random(11);
+		for (int i = 0; i < 200; i++) {
+			mutableSegment.addAtom(new DefaultBookAtom(SAMPLING_FREQUENCY, SEGMENT_LENGTH, StandardBookAtom.GABORWAVE_IDENTITY, i,
+				(float)(50 * random.nextDouble()), random.nextInt(SEGMENT_LENGTH / 2), random.nextInt(SEGMENT_LENGTH),
+				1 + random.nextInt(SEGMENT_LENGTH), (float) random.nextDouble(), (float)(2 * Math.PI * random.nextDouble())));
+		}
+		segment = mutableSegment;
+	}
+
+	@Test
+	public void testConjunction() {
+		AtomFilterChain chain = createChain(false);
+		assertSameAsPerAtom(chain);
+	}
+
+	@Test
+	public void testAlternative() {
+		AtomFilterChain chain = createChain(true);
+		assertSameAsPerAtom(chain);
+	}
+
+	@Test
+	public void testDisabledFilters() {
+		AtomFilterChain chain = createChain(true);
+		for (int i = 0; i < chain.getFilterCount(); i++) {
+			chain.getFilterAt(i).setEnabled(false);
+		}
+		assertEquals(segment.getAtomCount(), chain.matches(new SegmentAtomColumns(segment)).cardinality());
+
+		chain = createChain(false);
+		chain.setFilteringEnabled(false);
+		assertEquals(segment.getAtomCount(), chain.matches(new SegmentAtomColumns(segment)).cardinality());
+	}
+
+	@Test
+	public void testFilteredBookSegment() {
+		AtomFilterChain chain = createChain(false);
+		FilteredBookSegment filtered = new FilteredBookSegment(segment, chain);
+		int index = 0;
+		for (int i = 0; i < segment.getAtomCount(); i++) {
+			StandardBookAtom atom = segment.getAtomAt(i);
+			if (chain.matches(segment, atom)) {
+				assertTrue(atom == filtered.getAtomAt(index));
+				assertEquals(index, filtered.indexOfAtom(atom));
+				index++;
+			}
+		}
+		assertEquals(index, filtered.getAtomCount());
+	}
+
+	private AtomFilterChain createChain(boolean alternative) {
+		AtomFilterChain chain = new AtomFilterChain();
+		chain.setAlternative(alternative);
+
+		ParameterRangeAtomFilter modulusFilter = new ParameterRangeAtomFilter();
+		modulusFilter.setEnabled(true);
+		modulusFilter.getModulus().setMinUnlimited(false);
+		modulusFilter.getModulus().setMin(10.0F);
+		modulusFilter.getFrequency().setMaxUnlimited(false);
+		modulusFilter.getFrequency().setMax(40.0F);
+		chain.addFilter(modulusFilter);
+
+		ParameterRangeAtomFilter positionFilter = new ParameterRangeAtomFilter();
+		positionFilter.setEnabled(true);
+		positionFilter.setBlocking(true);
+		positionFilter.getPosition().setMinUnlimited(false);
+		positionFilter.getPosition().setMin(2.0F);
+		positionFilter.getPosition().setMaxUnlimited(false);
+		positionFilter.getPosition().setMax(4.0F);
+		chain.addFilter(positionFilter);
+
+		ParameterRangeAtomFilter iterationFilter = new ParameterRangeAtomFilter();
+		iterationFilter.setEnabled(true);
+		iterationFilter.getIteration().setMaxUnlimited(false);
+		iterationFilter.getIteration().setMax(150);
+		chain.addFilter(iterationFilter);
+
+		return chain;
+	}
+
+	private void assertSameAsPerAtom(AtomFilterChain chain) {
+		BitSet bitmap = chain.matches(new SegmentAtomColumns(segment));
+		for (int i = 0; i < segment.getAtomCount(); i++) {
+			assertEquals(chain.matches(segment, segment.getAtomAt(i)), bitmap.get(i));
+		}
+		assertTrue(bitmap.cardinality() > 0);
+		assertTrue(bitmap.cardinality() < segment.getAtomCount());
+	}
+
+}
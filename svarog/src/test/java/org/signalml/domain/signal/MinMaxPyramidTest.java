@@ -0,0 +1,142 @@
+package org.signalml.domain.signal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.signalml.domain.signal.samplesource.DoubleArraySampleSource;
+
+public class MinMaxPyramidTest {
+
+	private static final int SAMPLE_COUNT = 10000;
+
+	private double[][] samples;
+	private MinMaxPyramid pyramid;
+
+	@Before
+	public void setUp() {
+		samples = new double[2][SAMPLE_COUNT];
+		for (int i = 0; i < SAMPLE_COUNT; i++) {
+			samples[0][i] = Math.sin(i / 100.0);
+			samples[1][i] = i % 7;
+		}
+		// single spikes which would be skipped by decimation
+		samples[0][1234] = 50.0;
+		samples[1][5001] = -20.0;
+
+		DoubleArraySampleSource source = new DoubleArraySampleSource(samples, 2, SAMPLE_COUNT);
+		pyramid = MinMaxPyramid.createFor(source);
+		assertFalse(pyramid.isComplete());
+		assertTrue(pyramid.build(source));
+		assertTrue(pyramid.isComplete());
+	}
+
+	@Test
+	public void testColumnsContainAllSamples() {
+		double samplesPerColumn = 300.5;
+		int columnCount = (int) Math.ceil(SAMPLE_COUNT / samplesPerColumn);
+		double[] min = new double[columnCount];
+		double[] max = new double[columnCount];
+		double[] mean = new double[columnCount];
+
+		for (int channel = 0; channel < 2; channel++) {
+			pyramid.getColumns(channel, 0, samplesPerColumn, columnCount, min, max, mean);
+
+			for (int column = 0; column < columnCount; column++) {
+				int start = (int) Math.floor(column * samplesPerColumn);
+				int end = (int) Math.min(SAMPLE_COUNT, Math.ceil((column + 1) * samplesPerColumn));
+				for (int i = start; i < end; i++) {
+					assertTrue(min[column] <= samples[channel][i] + 1e-6);
+					assertTrue(max[column] >= samples[channel][i] - 1e-6);
+				}
+				assertTrue(mean[column] >= min[column] && mean[column] <= max[column]);
+			}
+		}
+
+		pyramid.getColumns(0, 0, samplesPerColumn, columnCount, min, max, null);
+		assertEquals(50.0, max[(int) (1234 / samplesPerColumn)], 1e-6);
+		pyramid.getColumns(1, 0, samplesPerColumn, columnCount, min, max, null);
+		assertEquals(-20.0, min[(int) (5001 / samplesPerColumn)], 1e-6);
+	}
+
+	@Test
+	public void testColumnsOutsideSignal() {
+		double[] min = new double[3];
+		double[] max = new double[3];
+		pyramid.getColumns(0, SAMPLE_COUNT - 500, 500, 3, min, max, null);
+		assertFalse(Double.isNaN(min[0]));
+		assertTrue(Double.isNaN(min[1]));
+		assertTrue(Double.isNaN(max[2]));
+	}
+
+	@Test
+	public void testWholeSignalInOneColumn() {
+		double[] min = new double[1];
+		double[] max = new double[1];
+		double[] mean = new double[1];
+		pyramid.getColumns(1, 0, SAMPLE_COUNT, 1, min, max, mean);
+		assertEquals(-20.0, min[0], 1e-6);
+		assertEquals(6.0, max[0], 1e-6);
+
+		double sum = 0;
+		for (int i = 0; i < SAMPLE_COUNT; i++) {
+			sum += samples[1][i];
+		}
+		assertEquals(sum / SAMPLE_COUNT, mean[0], 1e-3);
+	}
+
+	@Test
+	public void testFineLevelsComputedFromSource() {
+		DoubleArraySampleSource source = new DoubleArraySampleSource(samples, 2, SAMPLE_COUNT);
+		// room for the levels from the level 2 up only
+		MinMaxPyramid limited = new MinMaxPyramid(2, new int[] { SAMPLE_COUNT, SAMPLE_COUNT }, 2 * 12 * 81);
+		assertTrue(limited.build(source));
+		assertEquals(2, limited.getFirstStoredLevel());
+
+		double samplesPerColumn = 2.5 * MinMaxPyramid.BASE_BLOCK_SIZE;
+		assertFalse(limited.isUsable(samplesPerColumn));
+		limited.setSource(source);
+		assertTrue(limited.isUsable(samplesPerColumn));
+
+		int columnCount = (int) Math.ceil(SAMPLE_COUNT / samplesPerColumn);
+		double[] min = new double[columnCount];
+		double[] max = new double[columnCount];
+		double[] mean = new double[columnCount];
+		double[] expectedMin = new double[columnCount];
+		double[] expectedMax = new double[columnCount];
+		double[] expectedMean = new double[columnCount];
+		for (int channel = 0; channel < 2; channel++) {
+			limited.getColumns(channel, 0, samplesPerColumn, columnCount, min, max, mean);
+			pyramid.getColumns(channel, 0, samplesPerColumn, columnCount, expectedMin, expectedMax, expectedMean);
+			for (int column = 0; column < columnCount; column++) {
+				assertEquals(expectedMin[column], min[column], 0.0);
+				assertEquals(expectedMax[column], max[column], 0.0);
+				assertEquals(expectedMean[column], mean[column], 1e-5);
+			}
+		}
+
+		limited.destroy();
+		assertFalse(limited.isUsable(samplesPerColumn));
+	}
+
+	@Test
+	public void testBaseBlockSizeIsFixed() {
+		// a day of 128 channels at 1024 Hz
+		int[] sampleCount = new int[128];
+		Arrays.fill(sampleCount, 24 * 3600 * 1024);
+		MinMaxPyramid large = new MinMaxPyramid(sampleCount.length, sampleCount);
+		assertEquals(MinMaxPyramid.BASE_BLOCK_SIZE, large.getBaseBlockSize());
+		assertTrue(large.getFirstStoredLevel() > 0);
+	}
+
+	@Test
+	public void testIsUsable() {
+		assertFalse(pyramid.isUsable(pyramid.getBaseBlockSize()));
+		assertTrue(pyramid.isUsable(2 * pyramid.getBaseBlockSize()));
+	}
+
+}
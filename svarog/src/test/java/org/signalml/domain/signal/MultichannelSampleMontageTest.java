@@ -0,0 +1,67 @@
+package org.signalml.domain.signal;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.signalml.domain.montage.Montage;
+import org.signalml.domain.montage.SignalConfigurer;
+import org.signalml.domain.signal.test.MultichannelSampleSourceMock;
+
+/**
+ * Applies unit tests to the {@link MultichannelSampleMontage}.
+ */
+public class MultichannelSampleMontageTest {
+
+	private static final int CHANNEL_COUNT = 5;
+
+	private static final int SAMPLE_COUNT = 256;
+
+	@Test
+	public void testCommonAverageReference() throws Exception {
+		MultichannelSampleSourceMock source = new MultichannelSampleSourceMock(CHANNEL_COUNT, SAMPLE_COUNT);
+		Montage montage = SignalConfigurer.createMontage(CHANNEL_COUNT);
+		for (int i = 0; i < CHANNEL_COUNT; i++) {
+			for (int j = 0; j < CHANNEL_COUNT; j++) {
+				if (i != j) {
+					montage.setReference(i, j, "-0.25");
+				}
+			}
+		}
+		// the last channel is not referenced
+		for (int j = 0; j < CHANNEL_COUNT - 1; j++) {
+			montage.removeReference(CHANNEL_COUNT - 1, j);
+		}
+		MultichannelSampleMontage sampleMontage = new MultichannelSampleMontage(source, montage);
+
+		int offset = 17;
+		int count = 100;
+		double[][] sourceSamples = new double[CHANNEL_COUNT][count];
+		for (int j = 0; j < CHANNEL_COUNT; j++) {
+			source.getSamples(j, sourceSamples[j], offset, count, 0);
+		}
+
+		int[] channels = new int[] {3, 0, 4};
+		double[][] blockSamples = new double[channels.length][count + 2];
+		sampleMontage.getSamples(channels, blockSamples, offset, count, 2);
+
+		double[] channelSamples = new double[count];
+		for (int k = 0; k < channels.length; k++) {
+			int channel = channels[k];
+			sampleMontage.getSamples(channel, channelSamples, offset, count, 0);
+			for (int e = 0; e < count; e++) {
+				double expected = sourceSamples[channel][e];
+				if (channel != CHANNEL_COUNT - 1) {
+					for (int j = 0; j < CHANNEL_COUNT; j++) {
+						if (j != channel) {
+							expected -= 0.25 * sourceSamples[j][e];
+						}
+					}
+				}
+				assertEquals(expected, channelSamples[e], 1e-12);
+				// both modes must give exactly the same samples
+				assertEquals(channelSamples[e], blockSamples[k][2 + e], 0.0);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,123 @@
+package org.signalml.domain.signal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.signalml.app.view.signal.SignalScanResult;
+import org.signalml.domain.signal.samplesource.DoubleArraySampleSource;
+import org.signalml.util.Util;
+
+public class SignalStatisticsCalculatorTest {
+
+	private static final int CHANNEL_COUNT = 5;
+	private static final int SAMPLE_COUNT = 20000;
+
+	private double[][] samples;
+
+	@Before
+	public void setUp() {
+		Random random = new Random(7);
+		samples = new double[CHANNEL_COUNT][SAMPLE_COUNT];
+		for (int channel = 0; channel < CHANNEL_COUNT; channel++) {
+			for (int i = 0; i < SAMPLE_COUNT; i++) {
+				samples[channel][i] = (channel + 1) * random.nextGaussian();
+			}
+		}
+		// extremes after the first block, outside of the first histogram range
+		samples[1][15000] = 1000.0;
+		samples[2][9000] = -500.0;
+		samples[3][12345] = Double.NaN;
+	}
+
+	@Test
+	public void testStatistics() throws Exception {
+		SignalStatisticsCalculator calculator = new SignalStatisticsCalculator();
+		calculator.setChecksumTypes(new String[] { "crc32", "md5" });
+		calculator.setHistogramBinCount(64);
+		calculator.setThreadCount(3);
+
+		SignalStatistics[] statistics = calculator.calculate(new DoubleArraySampleSource(samples), null);
+		assertNotNull(statistics);
+		assertEquals(CHANNEL_COUNT, statistics.length);
+
+		for (int channel = 0; channel < CHANNEL_COUNT; channel++) {
+			SignalStatistics channelStatistics = statistics[channel];
+			double[] data = samples[channel];
+
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			int minPosition = -1;
+			int maxPosition = -1;
+			double sum = 0;
+			double sumOfSquares = 0;
+			int count = 0;
+			for (int i = 0; i < SAMPLE_COUNT; i++) {
+				if (Double.isNaN(data[i])) {
+					continue;
+				}
+				if (data[i] < min) {
+					min = data[i];
+					minPosition = i;
+				}
+				if (data[i] > max) {
+					max = data[i];
+					maxPosition = i;
+				}
+				sum += data[i];
+				sumOfSquares += data[i] * data[i];
+				count++;
+			}
+
+			assertEquals(SAMPLE_COUNT, channelStatistics.getSampleCount());
+			assertEquals(count, channelStatistics.getFiniteSampleCount());
+			assertEquals(min, channelStatistics.getMinValue(), 0.0);
+			assertEquals(minPosition, channelStatistics.getMinPosition());
+			assertEquals(max, channelStatistics.getMaxValue(), 0.0);
+			assertEquals(maxPosition, channelStatistics.getMaxPosition());
+			assertEquals(sum / count, channelStatistics.getMean(), 1e-9);
+			assertEquals(Math.sqrt(sumOfSquares / count), channelStatistics.getRms(), 1e-9);
+
+			int[] histogram = channelStatistics.getHistogram();
+			assertEquals(64, histogram.length);
+			int histogramCount = 0;
+			for (int bin : histogram) {
+				histogramCount += bin;
+			}
+			assertEquals(count, histogramCount);
+			double start = channelStatistics.getHistogramStart();
+			double width = channelStatistics.getHistogramBinWidth();
+			assertTrue(start <= min);
+			assertTrue(start + 64 * width > max);
+			assertTrue(histogram[(int) ((min - start) / width)] > 0);
+			assertTrue(histogram[(int) ((max - start) / width)] > 0);
+
+			byte[] bytes = new byte[8 * SAMPLE_COUNT];
+			ByteBuffer.wrap(bytes).asDoubleBuffer().put(data);
+			CRC32 crc = new CRC32();
+			crc.update(bytes);
+			assertEquals(Long.toHexString(crc.getValue()), Long.toHexString(Long.parseLong(channelStatistics.getChecksum("crc32").getValue(), 16)));
+			assertEquals(Util.toHexString(MessageDigest.getInstance("MD5").digest(bytes)), channelStatistics.getChecksum("md5").getValue());
+		}
+	}
+
+	@Test
+	public void testScanner() {
+		SignalScanResult result = new SignalScanner().scanSignal(new DoubleArraySampleSource(samples), null);
+		assertEquals(-500.0, result.getMinSignalValue(), 0.0);
+		assertEquals(1000.0, result.getMaxSignalValue(), 0.0);
+
+		double[][] negative = new double[][] { { -3.0, -2.0, -5.0 } };
+		result = new SignalScanner().scanSignal(new DoubleArraySampleSource(negative), null);
+		assertEquals(-5.0, result.getMinSignalValue(), 0.0);
+		assertEquals(-2.0, result.getMaxSignalValue(), 0.0);
+	}
+
+}
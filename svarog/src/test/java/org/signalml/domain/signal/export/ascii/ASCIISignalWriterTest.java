@@ -0,0 +1,100 @@
+package org.signalml.domain.signal.export.ascii;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.signalml.app.model.signal.SignalExportDescriptor;
+import org.signalml.domain.signal.samplesource.DoubleArraySampleSource;
+
+/**
+ * Checks both {@link ASCIILayout layouts} written by {@link ASCIISignalWriter}.
+ */
+public class ASCIISignalWriterTest {
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("export", ".ascii");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testChannelsInRows() throws IOException {
+		double[][] samples = createSamples(3, 70000);
+		write(samples, ASCIILayout.CHANNELS_IN_ROWS, " ", 4);
+
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		for (int channel = 0; channel < samples.length; channel++) {
+			String[] values = reader.readLine().split(" ");
+			assertEquals(samples[channel].length, values.length);
+			for (int i = 0; i < values.length; i++) {
+				assertEquals(samples[channel][i], Double.parseDouble(values[i]), 0.0);
+			}
+		}
+		assertEquals(null, reader.readLine());
+		reader.close();
+	}
+
+	@Test
+	public void testSamplesInRows() throws IOException {
+		double[][] samples = createSamples(4, 50000);
+		write(samples, ASCIILayout.SAMPLES_IN_ROWS, ",", 3);
+
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		assertEquals("L1,L2,L3,L4", reader.readLine());
+		for (int i = 0; i < samples[0].length; i++) {
+			String[] values = reader.readLine().split(",");
+			assertEquals(samples.length, values.length);
+			for (int channel = 0; channel < samples.length; channel++) {
+				assertEquals(samples[channel][i], Double.parseDouble(values[channel]), 0.0);
+			}
+		}
+		assertEquals(null, reader.readLine());
+		reader.close();
+	}
+
+	@Test
+	public void testShortSignal() throws IOException {
+		double[][] samples = new double[][] { { 1.0, -2.5 }, { 0.1, 100.0 } };
+		write(samples, ASCIILayout.CHANNELS_IN_ROWS, " ", 1);
+
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		assertEquals("1.0 -2.5 ", reader.readLine());
+		assertEquals("0.1 100.0 ", reader.readLine());
+		assertEquals(null, reader.readLine());
+		reader.close();
+	}
+
+	private void write(double[][] samples, ASCIILayout layout, String separator, int threadCount) throws IOException {
+		SignalExportDescriptor descriptor = new SignalExportDescriptor();
+		descriptor.setAsciiLayout(layout);
+		descriptor.setSeparator(separator);
+
+		ASCIISignalWriter writer = new ASCIISignalWriter();
+		writer.setThreadCount(threadCount);
+		writer.writeSignal(file, new DoubleArraySampleSource(samples), descriptor, null);
+	}
+
+	private double[][] createSamples(int channelCount, int sampleCount) {
+		double[][] samples = new double[channelCount][sampleCount];
+		for (int channel = 0; channel < channelCount; channel++) {
+			for (int i = 0; i < sampleCount; i++) {
+				samples[channel][i] = (float) (Math.sin(i * 0.01 * (channel + 1)) * 100.0);
+			}
+		}
+		return samples;
+	}
+
+}
@@ -212,5 +212,33 @@ public void testApplyMontage() throws MontageMismatchException {
 
 	}
 
+	/**
+	 * Test method for {@link org.signalml.domain.signal.filter.MultichannelSampleFilter#getSamples(int[], double[][], int, int, int)}.
+	 */
+	@Test
+	public void testGetSamplesBlock() {
+		float[] newSamples = new float[TEST_CHANNEL_COUNT];
+		for (int e = 0; e < TEST_SAMPLE_COUNT; e++) {
+			for (int j = 0; j < TEST_CHANNEL_COUNT; j++)
+				newSamples[j] = (float) Math.sin(e + j);
+			source.addSamples(newSamples);
+		}
+
+		TimeDomainSampleFilter definition = new TimeDomainSampleFilter(FilterType.LOWPASS, ApproximationFunctionType.BUTTERWORTH,
+				new double[] {20, 0}, new double[] {40, 0}, 3.0, 20.0);
+		definition.setSamplingFrequency(128.0);
+		mfilter.addFilter(new OfflineIIRSinglechannelSampleFilter(new ChannelSelectorSampleSource(source, 2), definition), new int[] {2});
+
+		int[] channels = new int[] {4, 2, 0};
+		double[][] blockSamples = new double[channels.length][TEST_SAMPLE_COUNT];
+		mfilter.getSamples(channels, blockSamples, 2, TEST_SAMPLE_COUNT - 3, 1);
+
+		double[] channelSamples = new double[TEST_SAMPLE_COUNT];
+		for (int k = 0; k < channels.length; k++) {
+			mfilter.getSamples(channels[k], channelSamples, 2, TEST_SAMPLE_COUNT - 3, 1);
+			for (int e = 1; e < TEST_SAMPLE_COUNT - 2; e++)
+				assertEquals(channelSamples[e], blockSamples[k][e], 1e-12);
+		}
+	}
 
 }
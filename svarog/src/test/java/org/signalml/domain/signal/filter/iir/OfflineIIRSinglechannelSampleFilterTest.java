@@ -1,7 +1,12 @@
 package org.signalml.domain.signal.filter.iir;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.signalml.SignalMLAssert.assertArrayEquals;
 
+import java.util.Random;
+
 import org.junit.Test;
 import org.signalml.domain.signal.filter.TestingSignals;
 import org.signalml.domain.signal.filter.iir.AbstractIIRSinglechannelSampleFilter;
@@ -9,7 +14,11 @@
 import org.signalml.domain.signal.samplesource.ChannelSelectorSampleSource;
 import org.signalml.domain.signal.samplesource.MultichannelSampleSource;
 import org.signalml.domain.signal.samplesource.RoundBufferMultichannelSampleSource;
+import org.signalml.domain.signal.samplesource.RoundBufferSampleSource;
+import org.signalml.math.iirdesigner.ApproximationFunctionType;
 import org.signalml.math.iirdesigner.FilterCoefficients;
+import org.signalml.math.iirdesigner.FilterType;
+import org.signalml.math.iirdesigner.IIRDesigner;
 
 /**
  * This class performs unit tests on the {@link OfflineIIRSinglechannelSampleFilterTest} class.
@@ -165,4 +174,116 @@ public void testFiltfiltFilter() {
 
 	}
 
+	/**
+	 * Test method for {@link OfflineIIRSinglechannelSampleFilter#getSamples(double[], int, int, int) }
+	 * reading the fragments of a long signal in a random order.
+	 */
+	@Test
+	public void testRandomAccess() throws Exception {
+
+		int sampleCount = 50000;
+		source = new RoundBufferMultichannelSampleSource(1, sampleCount);
+		Random random = new Random(3);
+		for (int i = 0; i < sampleCount; i++)
+			source.addSamples(new float[] {(float) (Math.sin(i / 50.0) + random.nextGaussian())});
+
+		FilterCoefficients coefficients = IIRDesigner.designDigitalFilter(ApproximationFunctionType.BUTTERWORTH,
+										  FilterType.LOWPASS, new double[] {10, 0.0}, new double[] {20, 0.0}, 3.0, 40.0, 128.0);
+
+		OfflineIIRSinglechannelSampleFilter engine = new OfflineIIRSinglechannelSampleFilter(new ChannelSelectorSampleSource(source, 0), coefficients);
+		double[] whole = new double[sampleCount];
+		engine.getSamples(whole, 0, sampleCount, 0);
+
+		int[] offsets = new int[] {41000, 100, 23456, 49000, 8191, 8192, 30000};
+		int count = 1000;
+
+		// the state in the checkpoints is exact once the signal has been filtered from the start
+		// (the fragments are filtered again, bypassing the cache of getSamples)
+		for (int offset : offsets) {
+			double[] fragment = new double[count + 5];
+			engine.filterOffline(fragment, offset, count, 5);
+			for (int i = 0; i < count; i++)
+				assertEquals(whole[offset + i], fragment[i + 5], 1e-12);
+		}
+
+		// far from any checkpoint the state is restored after a warm-up
+		engine = new OfflineIIRSinglechannelSampleFilter(new ChannelSelectorSampleSource(source, 0), coefficients);
+		for (int offset : offsets) {
+			double[] fragment = new double[count];
+			engine.getSamples(fragment, offset, count, 0);
+			for (int i = 0; i < count; i++)
+				assertEquals(whole[offset + i], fragment[i], 1e-6);
+		}
+
+	}
+
+	/**
+	 * Test method for {@link OfflineIIRSinglechannelSampleFilter#getSamples(double[], int, int, int) }
+	 * reading the same fragment again.
+	 */
+	@Test
+	public void testRepeatedReadIsCached() throws Exception {
+
+		int sampleCount = 10000;
+		source = new RoundBufferMultichannelSampleSource(1, sampleCount);
+		for (int i = 0; i < sampleCount; i++)
+			source.addSamples(new float[] {(float) Math.sin(i / 50.0)});
+
+		FilterCoefficients coefficients = IIRDesigner.designDigitalFilter(ApproximationFunctionType.BUTTERWORTH,
+										  FilterType.LOWPASS, new double[] {10, 0.0}, new double[] {20, 0.0}, 3.0, 40.0, 128.0);
+		OfflineIIRSinglechannelSampleFilter engine = new OfflineIIRSinglechannelSampleFilter(new ChannelSelectorSampleSource(source, 0), coefficients);
+
+		double[] first = new double[1000];
+		engine.getSamples(first, 5000, 1000, 0);
+		RoundBufferSampleSource cache = engine.filtered;
+		assertNotNull(cache);
+
+		double[] second = new double[500];
+		engine.getSamples(second, 5200, 500, 0);
+		assertSame(cache, engine.filtered);
+		for (int i = 0; i < second.length; i++)
+			assertEquals(first[200 + i], second[i], 0.0);
+
+	}
+
+	/**
+	 * Test method for {@link OfflineIIRSinglechannelSampleFilter#getSamples(double[], int, int, int) }
+	 * reading a signal which grows after it was first filtered.
+	 */
+	@Test
+	public void testGrowingSignal() throws Exception {
+
+		int sampleCount = 30000;
+		int initialCount = 5000;
+		source = new RoundBufferMultichannelSampleSource(1, sampleCount);
+		Random random = new Random(5);
+		float[] samples = new float[sampleCount];
+		for (int i = 0; i < sampleCount; i++)
+			samples[i] = (float) (Math.sin(i / 50.0) + random.nextGaussian());
+		for (int i = 0; i < initialCount; i++)
+			source.addSamples(new float[] {samples[i]});
+
+		FilterCoefficients coefficients = IIRDesigner.designDigitalFilter(ApproximationFunctionType.BUTTERWORTH,
+										  FilterType.LOWPASS, new double[] {10, 0.0}, new double[] {20, 0.0}, 3.0, 40.0, 128.0);
+		OfflineIIRSinglechannelSampleFilter engine = new OfflineIIRSinglechannelSampleFilter(new ChannelSelectorSampleSource(source, 0), coefficients);
+		double[] fragment = new double[initialCount];
+		engine.getSamples(fragment, 0, initialCount, 0);
+
+		for (int i = initialCount; i < sampleCount; i++)
+			source.addSamples(new float[] {samples[i]});
+
+		OfflineIIRSinglechannelSampleFilter reference = new OfflineIIRSinglechannelSampleFilter(new ChannelSelectorSampleSource(source, 0), coefficients);
+		double[] whole = new double[sampleCount];
+		reference.getSamples(whole, 0, sampleCount, 0);
+
+		int count = 1000;
+		for (int offset : new int[] {25000, 4500, 12288}) {
+			fragment = new double[count];
+			engine.filterOffline(fragment, offset, count, 0);
+			for (int i = 0; i < count; i++)
+				assertEquals(whole[offset + i], fragment[i], 1e-6);
+		}
+
+	}
+
 }
@@ -0,0 +1,112 @@
+package org.signalml.domain.signal.filter.iir;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.signalml.SignalMLAssert.assertArrayEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.signalml.domain.signal.filter.TestingSignals;
+import org.signalml.math.iirdesigner.ApproximationFunctionType;
+import org.signalml.math.iirdesigner.FilterCoefficients;
+import org.signalml.math.iirdesigner.FilterType;
+import org.signalml.math.iirdesigner.IIRDesigner;
+import org.signalml.math.iirdesigner.SecondOrderSections;
+
+/**
+ * This class performs unit tests on the {@link SOSFilterEngine} class.
+ */
+public class SOSFilterEngineTest {
+
+	@Test
+	public void testSameAsDirectForm() throws Exception {
+		FilterCoefficients[] filters = new FilterCoefficients[] {
+			new FilterCoefficients(new double[] {0.00041655, 0.00124964, 0.00124964, 0.00041655},
+								   new double[] {1.0, -2.6861574, 2.41965511, -0.73016535}),
+			IIRDesigner.designDigitalFilter(ApproximationFunctionType.BUTTERWORTH, FilterType.HIGHPASS,
+											new double[] {10, 0.0}, new double[] {5, 0.0}, 3.0, 40.0, 200.0),
+			IIRDesigner.designDigitalFilter(ApproximationFunctionType.CHEBYSHEV1, FilterType.BANDPASS,
+											new double[] {20, 40}, new double[] {10, 50}, 1.0, 40.0, 256.0),
+			IIRDesigner.designDigitalFilter(ApproximationFunctionType.ELLIPTIC, FilterType.BANDSTOP,
+											new double[] {40, 60}, new double[] {48, 52}, 1.0, 30.0, 256.0)
+		};
+
+		for (FilterCoefficients coefficients : filters) {
+			IIRFilterEngine engine = IIRFilterEngine.createEngine(coefficients);
+			assertTrue(engine instanceof SOSFilterEngine);
+
+			double[] expected = new IIRFilterEngine(coefficients.getBCoefficients(), coefficients.getACoefficients())
+			.filter(TestingSignals.SHORT_SIGNAL);
+			assertArrayEquals(expected, engine.filter(TestingSignals.SHORT_SIGNAL), 1e-8);
+		}
+	}
+
+	@Test
+	public void testState() throws Exception {
+		FilterCoefficients coefficients = IIRDesigner.designDigitalFilter(ApproximationFunctionType.BUTTERWORTH,
+										  FilterType.LOWPASS, new double[] {10, 0.0}, new double[] {20, 0.0}, 3.0, 40.0, 128.0);
+		IIRFilterEngine engine = IIRFilterEngine.createEngine(coefficients);
+		double[] signal = TestingSignals.SHORT_SIGNAL;
+		double[] whole = engine.filter(signal);
+
+		engine = IIRFilterEngine.createEngine(coefficients);
+		int half = signal.length / 2;
+		double[] output = new double[signal.length];
+		engine.filter(signal, 0, output, 0, half);
+		double[] state = engine.getState();
+
+		IIRFilterEngine other = IIRFilterEngine.createEngine(coefficients);
+		other.setState(state, 0);
+		other.filter(signal, half, output, half, signal.length - half);
+		assertArrayEquals(whole, output, 1e-12);
+
+		// no transient response to a constant signal in the steady state
+		double[] constant = new double[100];
+		Arrays.fill(constant, 3.0);
+		engine.setSteadyState(3.0);
+		double[] filtered = engine.filter(constant);
+		for (double value : filtered) {
+			assertEquals(3.0, value, 1e-9);
+		}
+	}
+
+	@Test
+	public void testLowFrequencyBandpass() throws Exception {
+		// a narrow band at a low frequency, poles close to each other and to z = 1
+		FilterCoefficients coefficients = IIRDesigner.designDigitalFilter(ApproximationFunctionType.BUTTERWORTH,
+										  FilterType.BANDPASS, new double[] {0.5, 1.0}, new double[] {0.2, 2.0}, 3.0, 40.0, 128.0);
+		SecondOrderSections sections = SecondOrderSections.fromCoefficients(coefficients);
+		assertTrue(sections.getMaxPoleRadius() < 1.0);
+
+		double[] impulse = new double[20000];
+		impulse[0] = 1.0;
+		double[] response = new SOSFilterEngine(coefficients, sections).filter(impulse);
+
+		// the zero at z = 1 must be kept exactly (the direct form loses it here)
+		double sum = 0.0;
+		for (double value : response) {
+			sum += value;
+		}
+		assertEquals(0.0, sum, 1e-12);
+
+		// unit gain in the passband
+		double[] sine = new double[impulse.length];
+		for (int i = 0; i < sine.length; i++) {
+			sine[i] = Math.sin(2 * Math.PI * 0.7 * i / 128.0);
+		}
+		double[] filtered = new SOSFilterEngine(coefficients, sections).filter(sine);
+		double amplitude = 0.0;
+		for (int i = sine.length / 2; i < sine.length; i++) {
+			amplitude = Math.max(amplitude, Math.abs(filtered[i]));
+		}
+		assertEquals(1.0, amplitude, 0.05);
+
+		int decayLength = new SOSFilterEngine(coefficients, sections).getDecayLength(1e-6);
+		assertTrue(decayLength > 0 && decayLength < response.length);
+		for (int i = decayLength; i < response.length; i++) {
+			assertTrue(Math.abs(response[i]) < 1e-6);
+		}
+	}
+
+}
@@ -0,0 +1,144 @@
+package org.signalml.domain.signal.raw;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedRawSignalSampleSourceTest {
+
+	private static final int CHANNEL_COUNT = 3;
+	private static final int SAMPLE_COUNT = 100;
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("mapped_test", ".bin");
+		file.deleteOnExit();
+
+		ByteBuffer buffer = ByteBuffer.allocate(CHANNEL_COUNT * SAMPLE_COUNT * 4);
+		buffer.order(RawSignalByteOrder.LITTLE_ENDIAN.getByteOrder());
+		for (int i = 0; i < SAMPLE_COUNT; i++) {
+			for (int channel = 0; channel < CHANNEL_COUNT; channel++) {
+				buffer.putFloat(getValue(channel, i));
+			}
+		}
+
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		randomAccessFile.write(buffer.array());
+		randomAccessFile.close();
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	private static float getValue(int channel, int sample) {
+		return channel * 1000 + sample;
+	}
+
+	private MappedRawSignalSampleSource createSource(int windowSize) throws IOException {
+		MappedRawSignalSampleSource source = new MappedRawSignalSampleSource(file, CHANNEL_COUNT, 128.0F, RawSignalSampleType.FLOAT, RawSignalByteOrder.LITTLE_ENDIAN, windowSize);
+		source.setCalibrationGain(new float[] { 1.0F, 2.0F, 1.0F });
+		source.setCalibrationOffset(new float[] { 0.0F, 0.0F, -1.0F });
+		return source;
+	}
+
+	@Test
+	public void testGetSamples() throws IOException {
+		// 7 frames per window, so reads cross window boundaries
+		MappedRawSignalSampleSource source = createSource(7 * CHANNEL_COUNT * 4);
+		assertEquals(SAMPLE_COUNT, source.getSampleCount(0));
+
+		double[] target = new double[30];
+		source.getSamples(1, target, 5, 25, 5);
+		for (int i = 0; i < 25; i++) {
+			assertEquals(2 * getValue(1, 5 + i), target[5 + i], 1e-5);
+		}
+		source.close();
+	}
+
+	@Test
+	public void testGetSamplesForManyChannels() throws IOException {
+		MappedRawSignalSampleSource source = createSource(7 * CHANNEL_COUNT * 4);
+		RawSignalSampleSource reference = new RawSignalSampleSource(file, CHANNEL_COUNT, 128.0F, RawSignalSampleType.FLOAT, RawSignalByteOrder.LITTLE_ENDIAN);
+		reference.setCalibrationGain(source.getCalibrationGain());
+		reference.setCalibrationOffset(source.getCalibrationOffset());
+
+		int[] channels = new int[] { 2, 0 };
+		double[][] targets = new double[2][SAMPLE_COUNT];
+		source.getSamples(channels, targets, 0, SAMPLE_COUNT, 0);
+
+		double[] expected = new double[SAMPLE_COUNT];
+		for (int c = 0; c < channels.length; c++) {
+			reference.getSamples(channels[c], expected, 0, SAMPLE_COUNT, 0);
+			for (int i = 0; i < SAMPLE_COUNT; i++) {
+				assertEquals(expected[i], targets[c][i], 1e-5);
+			}
+		}
+
+		reference.close();
+		source.close();
+	}
+
+	@Test
+	public void testReadOnInterruptedThread() throws IOException {
+		MappedRawSignalSampleSource source = createSource(7 * CHANNEL_COUNT * 4);
+		double[] target = new double[SAMPLE_COUNT];
+
+		Thread.currentThread().interrupt();
+		try {
+			source.getSamples(0, target, 0, 20, 0);
+			assertTrue(Thread.currentThread().isInterrupted());
+		} finally {
+			Thread.interrupted();
+		}
+		for (int i = 0; i < 20; i++) {
+			assertEquals(getValue(0, i), target[i], 1e-5);
+		}
+
+		// the source is still usable by other threads
+		source.getSamples(0, target, 0, SAMPLE_COUNT, 0);
+		for (int i = 0; i < SAMPLE_COUNT; i++) {
+			assertEquals(getValue(0, i), target[i], 1e-5);
+		}
+		source.close();
+	}
+
+	@Test
+	public void testClose() throws IOException {
+		MappedRawSignalSampleSource source = createSource(7 * CHANNEL_COUNT * 4);
+		double[] target = new double[SAMPLE_COUNT];
+		source.getSamples(0, target, 0, SAMPLE_COUNT, 0);
+		source.close();
+
+		// the windows are unmapped, so the file may be deleted
+		assertTrue(file.delete());
+
+		// reading a closed source gives zeros
+		source.getSamples(0, target, 0, SAMPLE_COUNT, 0);
+		for (int i = 0; i < SAMPLE_COUNT; i++) {
+			assertEquals(0.0, target[i], 0.0);
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetSamplesOutOfRange() throws IOException {
+		MappedRawSignalSampleSource source = createSource(MappedRawSignalSampleSource.WINDOW_SIZE);
+		try {
+			source.getSamples(0, new double[10], SAMPLE_COUNT - 5, 10, 0);
+		} finally {
+			source.close();
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+package org.signalml.domain.signal.samplesource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Applies unit tests to the {@link FloatRingBuffer}.
+ */
+public class FloatRingBufferTest {
+
+	private static final int CAPACITY = 10;
+
+	@Test
+	public void testReadPartiallyFilled() {
+		FloatRingBuffer buffer = new FloatRingBuffer(2, CAPACITY);
+		buffer.write(new float[][] {{1, 2, 3}, {-1, -2, -3}}, 0, 3);
+
+		double[] target = new double[CAPACITY];
+		buffer.read(1, target, 0, CAPACITY, 0);
+		for (int i = 0; i < CAPACITY - 3; i++) {
+			assertEquals(0.0, target[i], 0.0);
+		}
+		assertEquals(-1.0, target[7], 0.0);
+		assertEquals(-3.0, target[9], 0.0);
+	}
+
+	@Test
+	public void testReadWrapped() {
+		FloatRingBuffer buffer = new FloatRingBuffer(1, CAPACITY);
+		float[][] block = new float[1][25];
+		for (int i = 0; i < 25; i++) {
+			block[0][i] = i;
+		}
+		buffer.write(block, 0, 7);
+		buffer.write(block, 7, 6);
+		buffer.write(new float[] {13});
+		assertTrue(buffer.isFull());
+		assertEquals(4, buffer.getNextInsertPosition());
+
+		double[] target = new double[6];
+		buffer.read(0, target, 3, 4, 2);
+		for (int i = 0; i < 4; i++) {
+			assertEquals(7 + i, target[2 + i], 0.0);
+		}
+
+		// a block longer than the buffer keeps only the newest samples
+		buffer.write(block, 0, 25);
+		assertEquals(39, buffer.getWrittenCount());
+		double[] all = new double[CAPACITY];
+		buffer.read(0, all, 0, CAPACITY, 0);
+		for (int i = 0; i < CAPACITY; i++) {
+			assertEquals(15 + i, all[i], 0.0);
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testReadOutOfRange() {
+		new FloatRingBuffer(1, CAPACITY).read(0, new double[CAPACITY], 5, 6, 0);
+	}
+
+	@Test
+	public void testConcurrentReads() throws InterruptedException {
+		final FloatRingBuffer buffer = new FloatRingBuffer(1, 1000);
+		final AtomicBoolean finished = new AtomicBoolean(false);
+		final AtomicReference<String> error = new AtomicReference<String>();
+
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				double[] target = new double[1000];
+				while (!finished.get()) {
+					buffer.read(0, target, 0, 1000, 0);
+					for (int i = 1; i < 1000; i++) {
+						// every sample is its index, so the window must be consecutive
+						if (target[i - 1] != 0 && target[i] != target[i - 1] + 1) {
+							error.set("Inconsistent window at " + i + ": " + target[i - 1] + ", " + target[i]);
+						}
+					}
+				}
+			}
+		};
+		reader.start();
+
+		float[][] block = new float[1][37];
+		int value = 1;
+		for (int n = 0; n < 20000; n++) {
+			for (int i = 0; i < 37; i++) {
+				block[0][i] = value++;
+			}
+			buffer.write(block, 0, 37);
+		}
+		finished.set(true);
+		reader.join();
+
+		assertEquals(null, error.get());
+	}
+
+}
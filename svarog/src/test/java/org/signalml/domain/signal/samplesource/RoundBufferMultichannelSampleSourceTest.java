@@ -4,10 +4,15 @@
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.signalml.domain.signal.samplesource.RoundBufferMultichannelSampleSource;
+import org.signalml.plugin.export.change.events.PluginSignalChangeEvent;
+import org.signalml.plugin.export.change.listeners.PluginSignalChangeListener;
 
 /**
  * @author Mariusz Podsiadło
@@ -160,4 +165,96 @@ public void testGetSamples() {
 
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Test method for {@link org.signalml.domain.signal.samplesource.RoundBufferMultichannelSampleSource#addSampleBlock(float[][], int)}.
+	 */
+	@Test
+	public void testAddSampleBlock() {
+		final int[] events = new int[1];
+		theSource.addSignalChangeListener(new PluginSignalChangeListener() {
+			@Override
+			public void newSamplesAdded(PluginSignalChangeEvent e) {
+				events[0]++;
+			}
+		});
+
+		float[][] block = new float[TEST_CHANNEL_COUNT][7];
+		for (int i = 0; i < TEST_CHANNEL_COUNT; i++) {
+			for (int j = 0; j < 7; j++) {
+				block[i][j] = 10 * j + i + 1;
+			}
+		}
+		theSource.addSampleBlock(block, 7);
+		theSource.addSampleBlock(block, 5);
+		assertEquals(2, events[0]);
+		assertEquals(12, theSource.getAddedSamplesCount());
+		assertEquals(2, theSource.getNextInsertPos());
+		assertTrue(theSource.isFull());
+
+		double[] target = new double[TEST_SAMPLE_COUNT];
+		theSource.getSamples(1, target, 0, TEST_SAMPLE_COUNT, 0);
+		for (int i = 0; i < 5; i++) {
+			assertEquals(10 * (i + 2) + 2, target[i], 0.1);
+		}
+		for (int i = 0; i < 5; i++) {
+			assertEquals(10 * i + 2, target[5 + i], 0.1);
+		}
+	}
+
+	/**
+	 * Test method for {@link org.signalml.domain.signal.samplesource.RoundBufferMultichannelSampleSource#getSamples(int, double[], int, int, int)}
+	 * called by many threads while samples are added.
+	 */
+	@Test
+	public void testConcurrentGetSamples() throws InterruptedException {
+		final int sampleCount = 500;
+		final RoundBufferMultichannelSampleSource source = new RoundBufferMultichannelSampleSource(TEST_CHANNEL_COUNT, sampleCount);
+		final AtomicBoolean finished = new AtomicBoolean(false);
+		final AtomicReference<String> error = new AtomicReference<String>();
+
+		Thread[] readers = new Thread[3];
+		for (int r = 0; r < readers.length; r++) {
+			final int count = 50 + 150 * r;
+			readers[r] = new Thread() {
+				@Override
+				public void run() {
+					double[] target = new double[count];
+					int channel = 0;
+					while (!finished.get()) {
+						channel = (channel + 1) % TEST_CHANNEL_COUNT;
+						source.getSamples(channel, target, sampleCount - count, count, 0);
+						for (int i = 1; i < count; i++) {
+							// samples of a channel are consecutive multiples of the channel number
+							if (target[i - 1] != 0 && target[i] != target[i - 1] + channel + 1) {
+								error.set("Inconsistent samples of channel " + channel + " at " + i + ": " + target[i - 1] + ", " + target[i]);
+							}
+						}
+					}
+				}
+			};
+			readers[r].start();
+		}
+
+		float[][] block = new float[TEST_CHANNEL_COUNT][13];
+		int value = 1;
+		for (int n = 0; n < 20000; n++) {
+			for (int j = 0; j < 13; j++) {
+				for (int i = 0; i < TEST_CHANNEL_COUNT; i++) {
+					block[i][j] = (float) value * (i + 1);
+				}
+				value++;
+			}
+			source.addSampleBlock(block, 13);
+		}
+		finished.set(true);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+
+		assertEquals(null, error.get());
+		double[] target = new double[1];
+		source.getSamples(2, target, sampleCount - 1, 1, 0);
+		assertEquals(3.0 * (value - 1), target[0], 0.0);
+	}
+
+}
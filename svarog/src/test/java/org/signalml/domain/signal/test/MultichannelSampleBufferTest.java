@@ -240,4 +240,36 @@ public void testBufferIterateBackward() throws Exception {
 
 	}
 
+	@Test
+	public void testBufferBlock() throws Exception {
+
+		// channel 3 is partially buffered, 5 is not buffered at all
+		double[] setupData = new double[6];
+		buffer.getSamples(3, setupData, 10, setupData.length, 0);
+
+		int[] channels = new int[] {3, 5, 3};
+		double[][] bufData = new double[channels.length][8];
+		buffer.getSamples(channels, bufData, 7, 6, 2);
+
+		double[] srcData = new double[8];
+		for (int i=0; i<channels.length; i++) {
+			source.getSamples(channels[i], srcData, 7, 6, 2);
+			Util.assertDoubleArrayEquals(srcData, bufData[i]);
+		}
+
+		assertEquals(7, buffer.getMinSample(3));
+		assertEquals(16, buffer.getMaxSample(3));
+		assertEquals(0, buffer.getBoundary(5));
+		assertEquals(7, buffer.getMinSample(5));
+		assertEquals(13, buffer.getMaxSample(5));
+
+		buffer.setBufferLength(3);
+		buffer.getSamples(channels, bufData, 50, 6, 2);
+		for (int i=0; i<channels.length; i++) {
+			source.getSamples(channels[i], srcData, 50, 6, 2);
+			Util.assertDoubleArrayEquals(srcData, bufData[i]);
+		}
+
+	}
+
 }
@@ -0,0 +1,56 @@
+package org.signalml.domain.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.signalml.plugin.export.signal.SignalSelectionType;
+import org.signalml.plugin.export.signal.TagStyle;
+
+/**
+ * Applies unit tests to the conflict resolution of the {@link StyledMonitorTagSet}.
+ */
+public class StyledMonitorTagSetTest {
+
+	private StyledMonitorTagSet tagSet;
+	private TagStyle style;
+
+	@Before
+	public void setUp() {
+		tagSet = new StyledMonitorTagSet(20.0F, 5, 128.0F);
+		tagSet.stopTagsRemoving();
+		style = new TagStyle(SignalSelectionType.CHANNEL);
+		style.setName("test");
+		tagSet.addStyle(style);
+		tagSet.newSample(100.0);
+	}
+
+	@After
+	public void tearDown() {
+		tagSet.stopTagsRemoving();
+	}
+
+	private MonitorTag createTag(double timestamp, double length) {
+		MonitorTag tag = new MonitorTag(style, timestamp, length, 2);
+		tag.setParent(tagSet);
+		return tag;
+	}
+
+	@Test
+	public void testReplaceOverlappingTags() {
+		tagSet.addTag(createTag(85.0, 2.0));
+		tagSet.addTag(createTag(86.0, 2.0));
+		tagSet.addTag(createTag(87.0, 2.0));
+		tagSet.addTag(createTag(95.0, 1.0));
+		assertEquals(4, tagSet.getTagCount());
+
+		MonitorTag tag = createTag(85.5, 3.0);
+		tagSet.replaceSameTypeTags(tag);
+
+		assertEquals(2, tagSet.getTagCount());
+		assertSame(tag, tagSet.getTags().first());
+	}
+
+}
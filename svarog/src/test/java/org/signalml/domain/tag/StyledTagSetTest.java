@@ -0,0 +1,98 @@
+package org.signalml.domain.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.signalml.plugin.export.signal.SignalSelectionType;
+import org.signalml.plugin.export.signal.Tag;
+import org.signalml.plugin.export.signal.TagStyle;
+
+/**
+ * Applies unit tests to the range queries of the {@link StyledTagSet}.
+ */
+public class StyledTagSetTest {
+
+	private StyledTagSet tagSet;
+	private TagStyle style;
+	private List<Tag> added;
+
+	@Before
+	public void setUp() {
+		tagSet = new StyledTagSet(20.0F, 5);
+		style = new TagStyle(SignalSelectionType.CHANNEL);
+		style.setName("test");
+		tagSet.addStyle(style);
+		added = new ArrayList<Tag>();
+
+		Random random = new Random(7);
+		for (int i = 0; i < 2000; i++) {
+			Tag tag = new Tag(style, random.nextInt(100000) / 10.0, random.nextInt(50) / 10.0, random.nextInt(8));
+			addTag(tag);
+		}
+		// a whole night tag
+		addTag(new Tag(style, 0.0, 9000.0, 3));
+	}
+
+	private void addTag(Tag tag) {
+		int count = tagSet.getTagCount();
+		tagSet.addTag(tag);
+		if (tagSet.getTagCount() > count) {
+			added.add(tag);
+		}
+	}
+
+	private void assertExactlyOverlapping(double start, double end) {
+		SortedSet<Tag> found = tagSet.getTagsBetween(start, end);
+		int expected = 0;
+		for (Tag tag : added) {
+			boolean overlaps = tag.getPosition() <= end && tag.getPosition() + tag.getLength() >= start;
+			if (overlaps) {
+				expected++;
+				assertTrue(found.contains(tag));
+			}
+		}
+		assertEquals(expected, found.size());
+	}
+
+	@Test
+	public void testGetTagsBetween() {
+		assertExactlyOverlapping(100.0, 110.0);
+		assertExactlyOverlapping(9500.0, 9501.5);
+		assertExactlyOverlapping(-5.0, 0.0);
+		assertExactlyOverlapping(10000.0, 20000.0);
+		assertExactlyOverlapping(0.0, 10000.0);
+	}
+
+	@Test
+	public void testIndexIsUpdated() {
+		assertExactlyOverlapping(200.0, 210.0);
+
+		Tag longTag = added.remove(added.size() - 1);
+		tagSet.removeTag(new Tag(longTag));
+		assertFalse(tagSet.getTagsBetween(5000.0, 5000.0).contains(longTag));
+		assertExactlyOverlapping(200.0, 210.0);
+
+		Tag tag = added.get(0);
+		Tag moved = new Tag(style, 12345.0, 1.0, tag.getChannel());
+		tagSet.updateTag(tag, moved);
+		added.set(0, moved);
+		assertExactlyOverlapping(12345.5, 12346.0);
+
+		moved.setParameters(20000.0, 2.0);
+		tagSet.editTag(moved);
+		assertTrue(tagSet.getTagsBetween(12345.5, 12346.0).isEmpty());
+		assertExactlyOverlapping(20001.0, 20001.0);
+
+		tagSet.eraseTags(new Tag(style, 20000.5, 0.1, moved.getChannel()));
+		assertTrue(tagSet.getTagsBetween(20001.0, 20001.0).isEmpty());
+	}
+
+}
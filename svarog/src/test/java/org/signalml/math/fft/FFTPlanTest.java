@@ -0,0 +1,118 @@
+package org.signalml.math.fft;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Applies unit tests to the {@link FFTPlan}.
+ */
+public class FFTPlanTest {
+
+	private static final int[] SIZES = new int[] {1, 2, 3, 4, 5, 6, 8, 12, 15, 16, 17, 64, 100, 127, 256};
+
+	private final Random random = new Random(12345);
+
+	/**
+	 * Calculates the discrete Fourier transform directly from the definition.
+	 */
+	private static double[] naiveTransform(double[] data, int size) {
+		double[] result = new double[2 * size];
+		for (int k = 0; k < size; k++) {
+			double re = 0;
+			double im = 0;
+			for (int j = 0; j < size; j++) {
+				double angle = -2 * Math.PI * ((long) j * k % size) / size;
+				re += data[2 * j] * Math.cos(angle) - data[2 * j + 1] * Math.sin(angle);
+				im += data[2 * j] * Math.sin(angle) + data[2 * j + 1] * Math.cos(angle);
+			}
+			result[2 * k] = re;
+			result[2 * k + 1] = im;
+		}
+		return result;
+	}
+
+	private double[] randomArray(int length) {
+		double[] array = new double[length];
+		for (int i = 0; i < length; i++) {
+			array[i] = random.nextDouble() * 2 - 1;
+		}
+		return array;
+	}
+
+	private static void assertArrayEquals(double[] expected, double[] actual, int length, double delta) {
+		for (int i = 0; i < length; i++) {
+			assertEquals("element " + i, expected[i], actual[i], delta);
+		}
+	}
+
+	@Test
+	public void testForwardAndInverse() {
+		for (int size : SIZES) {
+			double[] data = randomArray(2 * size);
+			double[] expected = naiveTransform(data, size);
+
+			double[] actual = data.clone();
+			FFTPlan plan = FFTPlan.getPlan(size);
+			plan.forward(actual);
+			assertArrayEquals(expected, actual, 2 * size, 1e-9);
+
+			plan.inverse(actual);
+			assertArrayEquals(data, actual, 2 * size, 1e-9);
+		}
+	}
+
+	@Test
+	public void testForwardWithOffset() {
+		int size = 12;
+		double[] data = randomArray(2 * size);
+		double[] expected = naiveTransform(data, size);
+
+		double[] actual = new double[2 * size + 6];
+		System.arraycopy(data, 0, actual, 6, 2 * size);
+		FFTPlan.getPlan(size).forward(actual, 6);
+		for (int i = 0; i < 2 * size; i++) {
+			assertEquals(expected[i], actual[6 + i], 1e-9);
+		}
+	}
+
+	@Test
+	public void testRealForwardAndInverse() {
+		for (int size : SIZES) {
+			double[] signal = randomArray(size);
+			double[] complex = new double[2 * size];
+			for (int i = 0; i < size; i++) {
+				complex[2 * i] = signal[i];
+			}
+			double[] expected = naiveTransform(complex, size);
+
+			FFTPlan plan = FFTPlan.getPlan(size);
+			double[] spectrum = new double[plan.getRealSpectrumLength()];
+			plan.realForward(signal, 0, spectrum);
+			assertArrayEquals(expected, spectrum, spectrum.length, 1e-9);
+
+			double[] restored = new double[size + 2];
+			plan.realInverse(spectrum, restored, 2);
+			for (int i = 0; i < size; i++) {
+				assertEquals(signal[i], restored[2 + i], 1e-9);
+			}
+
+			// in place
+			double[] inPlace = new double[plan.getRealSpectrumLength()];
+			System.arraycopy(signal, 0, inPlace, 0, size);
+			plan.realForward(inPlace, 0, inPlace);
+			assertArrayEquals(expected, inPlace, inPlace.length, 1e-9);
+			plan.realInverse(inPlace, inPlace, 0);
+			assertArrayEquals(signal, inPlace, size, 1e-9);
+		}
+	}
+
+	@Test
+	public void testPlansAreCached() {
+		assertSame(FFTPlan.getPlan(48), FFTPlan.getPlan(48));
+	}
+
+}
@@ -1,6 +1,7 @@
 package org.signalml.math.fft;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.signalml.SignalMLAssert.assertArrayEquals;
 
 import org.apache.commons.math.complex.Complex;
@@ -131,6 +132,12 @@ public void testCalculatePowerSpectrum() {
 
 		assertArrayEquals(expectedSpectrum, actualSpectrum, 1e-5);
 		assertArrayEquals(expectedFrequencies, actualFrequencies, 1e-5);
+
+		// the buffers are reused by the next calls
+		assertSame(actualSpectrum, fourierTransform.calculatePowerSpectrum(signal));
+		double[] buffer = new double[expectedSpectrum.length];
+		assertSame(buffer, fourierTransform.calculatePowerSpectrum(signal, buffer));
+		assertArrayEquals(expectedSpectrum, buffer, 1e-5);
 	}
 
 }
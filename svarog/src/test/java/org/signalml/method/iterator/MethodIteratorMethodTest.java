@@ -0,0 +1,272 @@
+package org.signalml.method.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.beans.IntrospectionException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+import org.signalml.method.ComputationException;
+import org.signalml.method.InputDataException;
+import org.signalml.method.MethodExecutionTracker;
+import org.signalml.plugin.export.method.BaseMethodData;
+
+/**
+ * Checks if {@link MethodIteratorMethod} computing iterations in parallel
+ * returns the same results as computing them one after another, also when
+ * the computation is suspended and resumed.
+ */
+public class MethodIteratorMethodTest {
+
+	private static final int ITERATIONS = 12;
+
+	@Test
+	public void testParallelResultsInOrder() throws Exception {
+		SquareMethod sequentialMethod = new SquareMethod(-1);
+		MethodIteratorResult sequential = (MethodIteratorResult) new MethodIteratorMethod(sequentialMethod)
+		.compute(createData(sequentialMethod, 1), new SimpleTracker());
+
+		SquareMethod parallelMethod = new SquareMethod(-1);
+		MethodIteratorData data = createData(parallelMethod, 4);
+		SimpleTracker tracker = new SimpleTracker();
+		MethodIteratorResult parallel = (MethodIteratorResult) new MethodIteratorMethod(parallelMethod).compute(data, tracker);
+
+		assertEquals(ITERATIONS, sequential.size());
+		assertEquals(ITERATIONS, parallel.size());
+		for (int i = 0; i < ITERATIONS; i++) {
+			assertEquals((double) i * i, (Double) sequential.getResultAt(i), 0.0);
+			assertEquals(sequential.getResultAt(i), parallel.getResultAt(i));
+			assertTrue(Arrays.equals(sequential.getParameterValuesAt(i), parallel.getParameterValuesAt(i)));
+			assertEquals(1, parallelMethod.computations.get(i));
+		}
+		assertEquals(ITERATIONS, data.getCompletedIterations());
+		assertEquals(ITERATIONS, tracker.getTickers()[0]);
+	}
+
+	@Test
+	public void testSuspendAndResume() throws Exception {
+		SquareMethod method = new SquareMethod(5);
+		MethodIteratorMethod iteratorMethod = new MethodIteratorMethod(method);
+		MethodIteratorData data = createData(method, 3);
+		SimpleTracker tracker = new SimpleTracker();
+		method.tracker = tracker;
+
+		assertNull(iteratorMethod.compute(data, tracker));
+		int completed = data.getCompletedIterations();
+		assertTrue(completed < ITERATIONS);
+		assertEquals(completed, data.getCompletedResults().size());
+		assertTrue(iteratorMethod.isDataSuspended(data));
+
+		tracker.suspend = false;
+		MethodIteratorResult result = (MethodIteratorResult) iteratorMethod.compute(data, tracker);
+		assertNotNull(result);
+		assertEquals(ITERATIONS, result.size());
+		for (int i = 0; i < ITERATIONS; i++) {
+			assertEquals((double) i * i, (Double) result.getResultAt(i), 0.0);
+			// no completed iteration is computed again
+			assertEquals(1, method.computations.get(i));
+		}
+	}
+
+	private MethodIteratorData createData(SquareMethod method, int parallelIterations) {
+		MethodIteratorData data = new MethodIteratorData();
+		data.setSubjectMethodData(new SquareData());
+		ParameterIterationSettings settings = new ParameterIterationSettings(
+			method.getIterableParameters(data.getSubjectMethodData())[0]);
+		settings.setIterated(true);
+		settings.setStartValue(0.0);
+		settings.setEndValue((double) ITERATIONS);
+		data.setParameters(new ParameterIterationSettings[] { settings });
+		data.setTotalIterations(ITERATIONS);
+		data.setParallelIterations(parallelIterations);
+		return data;
+	}
+
+	public static class SquareData extends BaseMethodData {
+
+		private static final long serialVersionUID = 1L;
+
+		private Double value = 0.0;
+
+		public Double getValue() {
+			return value;
+		}
+
+		public void setValue(Double value) {
+			this.value = value;
+		}
+
+	}
+
+	/**
+	 * Computes the square of the value after a random delay, so that
+	 * iterations complete out of order. Optionally requests a suspend
+	 * when the given iteration is computed.
+	 */
+	private static class SquareMethod implements ParallelIterableMethod {
+
+		private final int suspendingIteration;
+		private final AtomicIntegerArray computations = new AtomicIntegerArray(ITERATIONS);
+		private final Random random = new Random(3);
+		private volatile SimpleTracker tracker;
+
+		private SquareMethod(int suspendingIteration) {
+			this.suspendingIteration = suspendingIteration;
+		}
+
+		@Override
+		public Object compute(Object data, MethodExecutionTracker tracker) throws InputDataException, ComputationException {
+			double value = ((SquareData) data).getValue();
+			int iteration = (int) value;
+			int delay;
+			synchronized (random) {
+				delay = random.nextInt(20);
+			}
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException ex) {
+				throw new ComputationException(ex);
+			}
+			computations.incrementAndGet(iteration);
+			if (iteration == suspendingIteration && this.tracker != null && computations.get(iteration) == 1) {
+				this.tracker.suspend = true;
+			}
+			return value * value;
+		}
+
+		@Override
+		public Object createIterationData(Object data, int iteration) {
+			SquareData copy = new SquareData();
+			copy.setValue(((SquareData) data).getValue());
+			return copy;
+		}
+
+		@Override
+		public IterableParameter[] getIterableParameters(Object data) {
+			try {
+				return new IterableParameter[] { new IterableNumericProperty(data, "value") };
+			} catch (IntrospectionException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+
+		@Override
+		public Object digestIterationResult(int iteration, Object result) {
+			return result;
+		}
+
+		@Override
+		public String getUID() {
+			return "square";
+		}
+
+		@Override
+		public String getName() {
+			return "square";
+		}
+
+		@Override
+		public int[] getVersion() {
+			return new int[] { 1, 0 };
+		}
+
+		@Override
+		public boolean supportsDataClass(Class<?> clazz) {
+			return SquareData.class.isAssignableFrom(clazz);
+		}
+
+		@Override
+		public BaseMethodData createData() {
+			return new SquareData();
+		}
+
+		@Override
+		public Class<?> getResultClass() {
+			return Double.class;
+		}
+
+	}
+
+	private static class SimpleTracker implements MethodExecutionTracker {
+
+		private volatile boolean suspend = false;
+		private int[] limits = new int[1];
+		private int[] tickers = new int[1];
+
+		@Override
+		public boolean isRequestingAbort() {
+			return false;
+		}
+
+		@Override
+		public boolean isRequestingSuspend() {
+			return suspend;
+		}
+
+		@Override
+		public synchronized int[] getTickerLimits() {
+			return Arrays.copyOf(limits, limits.length);
+		}
+
+		@Override
+		public synchronized void setTickerLimits(int[] initial) {
+			limits = Arrays.copyOf(initial, limits.length);
+		}
+
+		@Override
+		public synchronized void setTickerLimit(int index, int limit) {
+			limits[index] = limit;
+		}
+
+		@Override
+		public synchronized int[] getTickers() {
+			return Arrays.copyOf(tickers, tickers.length);
+		}
+
+		@Override
+		public synchronized void setTickers(int[] current) {
+			tickers = Arrays.copyOf(current, tickers.length);
+		}
+
+		@Override
+		public synchronized void resetTickers() {
+			Arrays.fill(tickers, 0);
+		}
+
+		@Override
+		public synchronized void setTicker(int index, int value) {
+			tickers[index] = value;
+		}
+
+		@Override
+		public synchronized void tick(int index) {
+			tickers[index]++;
+		}
+
+		@Override
+		public synchronized void tick(int index, int step) {
+			tickers[index] += step;
+		}
+
+		@Override
+		public String getMessage() {
+			return null;
+		}
+
+		@Override
+		public void setMessage(String message) {
+		}
+
+		@Override
+		public Integer getExpectedSecondsUntilComplete(int index) {
+			return null;
+		}
+
+	}
+
+}
@@ -0,0 +1,95 @@
+package org.signalml.plugin.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.NoSuchElementException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.signalml.domain.signal.samplesource.DoubleArraySampleSource;
+import org.signalml.plugin.export.signal.SignalSamples;
+import org.signalml.plugin.export.signal.SignalSamplesCursor;
+
+/**
+ * This class performs unit tests on the {@link SignalSamplesCursorImpl} class.
+ */
+public class SignalSamplesCursorImplTest {
+
+	private static final int CHANNEL_COUNT = 3;
+	private static final int SAMPLE_COUNT = 1000;
+
+	private double[][] samples;
+
+	@Before
+	public void setUp() {
+		samples = new double[CHANNEL_COUNT][SAMPLE_COUNT];
+		for (int channel = 0; channel < CHANNEL_COUNT; channel++) {
+			for (int i = 0; i < SAMPLE_COUNT; i++) {
+				samples[channel][i] = 10000 * channel + i;
+			}
+		}
+	}
+
+	@Test
+	public void testWindows() {
+		checkWindows(100, 0, false);
+		checkWindows(128, 32, false);
+		checkWindows(128, 32, true);
+		checkWindows(300, 299, true);
+		checkWindows(2000, 10, true);
+	}
+
+	private void checkWindows(int windowLength, int overlap, boolean prefetch) {
+		SignalSamplesCursor cursor = new SignalSamplesCursorImpl(new DoubleArraySampleSource(samples), windowLength, overlap, prefetch, true);
+		assertEquals(CHANNEL_COUNT, cursor.getChannelCount());
+		assertEquals(SAMPLE_COUNT, cursor.getSampleCount());
+
+		int expectedOffset = 0;
+		int lastSample = 0;
+		while (cursor.hasNext()) {
+			SignalSamples window = cursor.next();
+			assertEquals(expectedOffset, cursor.getWindowOffset());
+			int count = Math.min(windowLength, SAMPLE_COUNT - expectedOffset);
+			assertEquals(count, cursor.getWindowSampleCount());
+
+			for (int channel = 0; channel < CHANNEL_COUNT; channel++) {
+				double[] windowSamples = window.getChannelSamples(channel).getSamples();
+				assertEquals(windowLength, windowSamples.length);
+				for (int i = 0; i < windowLength; i++) {
+					double expected = (i < count) ? samples[channel][expectedOffset + i] : 0.0;
+					assertEquals(expected, windowSamples[i], 0.0);
+				}
+			}
+			lastSample = expectedOffset + count;
+			expectedOffset += windowLength - overlap;
+		}
+		assertEquals(SAMPLE_COUNT, lastSample);
+		cursor.close();
+	}
+
+	@Test
+	public void testCancel() {
+		SignalSamplesCursor cursor = new SignalSamplesCursorImpl(new DoubleArraySampleSource(samples), 100, 50, true, false);
+		cursor.next();
+		assertTrue(cursor.hasNext());
+		cursor.cancel();
+		assertTrue(cursor.isCancelled());
+		assertFalse(cursor.hasNext());
+		try {
+			cursor.next();
+			fail("a cancelled cursor returned a window");
+		} catch (NoSuchElementException ex) {
+			// expected
+		}
+		cursor.close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadOverlap() {
+		new SignalSamplesCursorImpl(new DoubleArraySampleSource(samples), 100, 100, false, false);
+	}
+
+}
@@ -0,0 +1,297 @@
+package org.signalml.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.signalml.method.Method;
+import org.signalml.method.MethodExecutionTracker;
+import org.signalml.method.SuspendableMethod;
+import org.signalml.plugin.export.method.BaseMethodData;
+import org.springframework.core.task.TaskExecutor;
+
+/**
+ * Checks the order in which {@link TaskScheduler} starts tasks and
+ * the limits it applies.
+ */
+public class TaskSchedulerTest {
+
+	private static final long TIMEOUT = 5;
+
+	private TaskScheduler scheduler;
+
+	/** the names of tasks in the order in which they were started */
+	private BlockingQueue<String> started = new LinkedBlockingQueue<String>();
+
+	@After
+	public void tearDown() {
+		if (scheduler != null) {
+			scheduler.shutdown();
+		}
+	}
+
+	@Test
+	public void testWorkerCountAndMethodLimit() throws Exception {
+		scheduler = new TaskScheduler(3);
+		scheduler.setMethodLimit("a", 1);
+
+		CountDownLatch gate = new CountDownLatch(1);
+		submit("a", "a1", gate, TaskPriority.INTERACTIVE);
+		submit("a", "a2", gate, TaskPriority.INTERACTIVE);
+		submit("b", "b1", gate, TaskPriority.INTERACTIVE);
+		submit("b", "b2", gate, TaskPriority.INTERACTIVE);
+		submit("b", "b3", gate, TaskPriority.INTERACTIVE);
+
+		assertEquals(3, scheduler.getRunningCount());
+		assertEquals(1, scheduler.getRunningCount("a"));
+		assertEquals(2, scheduler.getWaitingCount());
+
+		gate.countDown();
+		for (int i = 0; i < 5; i++) {
+			assertTrue(started.poll(TIMEOUT, TimeUnit.SECONDS) != null);
+		}
+	}
+
+	@Test
+	public void testBatchTasksLeaveWorkerForInteractive() throws Exception {
+		scheduler = new TaskScheduler(2);
+		assertEquals(1, scheduler.getBatchWorkerCount());
+
+		CountDownLatch batchGate = new CountDownLatch(1);
+		submit("x", "x1", batchGate, TaskPriority.BATCH);
+		submit("x", "x2", batchGate, TaskPriority.BATCH);
+		assertEquals("x1", started.poll(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals(1, scheduler.getRunningCount());
+		assertEquals(1, scheduler.getWaitingCount(TaskPriority.BATCH));
+
+		CountDownLatch interactiveGate = new CountDownLatch(1);
+		submit("y", "y1", interactiveGate, TaskPriority.INTERACTIVE);
+		submit("y", "y2", interactiveGate, TaskPriority.INTERACTIVE);
+		assertEquals("y1", started.poll(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals(2, scheduler.getRunningCount());
+
+		// the interactive task is started before the batch task which waits longer
+		batchGate.countDown();
+		assertEquals("y2", started.poll(TIMEOUT, TimeUnit.SECONDS));
+		interactiveGate.countDown();
+		assertEquals("x2", started.poll(TIMEOUT, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testMethodsAreServedInTurns() throws Exception {
+		scheduler = new TaskScheduler(1);
+
+		CountDownLatch gate = new CountDownLatch(1);
+		submit("g", "g", gate, TaskPriority.BATCH);
+		assertEquals("g", started.poll(TIMEOUT, TimeUnit.SECONDS));
+
+		CountDownLatch open = new CountDownLatch(0);
+		submit("a", "a1", open, TaskPriority.BATCH);
+		submit("a", "a2", open, TaskPriority.BATCH);
+		submit("a", "a3", open, TaskPriority.BATCH);
+		submit("b", "b1", open, TaskPriority.BATCH);
+		submit("b", "b2", open, TaskPriority.BATCH);
+
+		gate.countDown();
+		String[] expected = new String[] { "a1", "b1", "a2", "b2", "a3" };
+		for (String name : expected) {
+			assertEquals(name, started.poll(TIMEOUT, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	public void testQueuePositionAndCancel() throws Exception {
+		scheduler = new TaskScheduler(1);
+
+		CountDownLatch gate = new CountDownLatch(1);
+		Task running = submit("a", "a0", gate, TaskPriority.BATCH);
+		Task first = submit("a", "a1", gate, TaskPriority.BATCH);
+		Task second = submit("b", "b1", gate, TaskPriority.BATCH);
+		Task third = submit("a", "a2", gate, TaskPriority.BATCH);
+		Task interactive = submit("c", "c1", gate, TaskPriority.INTERACTIVE);
+
+		assertEquals(0, scheduler.getQueuePosition(running));
+		assertEquals(1, scheduler.getQueuePosition(first));
+		assertEquals(2, scheduler.getQueuePosition(second));
+		assertEquals(3, scheduler.getQueuePosition(third));
+		assertEquals(1, scheduler.getQueuePosition(interactive));
+		assertEquals(TaskPriority.INTERACTIVE, scheduler.getWaitingPriority(interactive));
+		assertNull(scheduler.getWaitingPriority(running));
+
+		assertTrue(scheduler.cancel(second));
+		assertFalse(scheduler.cancel(second));
+		assertFalse(scheduler.cancel(running));
+		assertEquals(2, scheduler.getQueuePosition(third));
+		assertEquals(3, scheduler.getWaitingCount());
+
+		gate.countDown();
+		String[] expected = new String[] { "a0", "c1", "a1", "a2" };
+		for (String name : expected) {
+			assertEquals(name, started.poll(TIMEOUT, TimeUnit.SECONDS));
+		}
+		assertNull(started.poll(200, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testAbortedWaitingTaskIsRemoved() throws Exception {
+		scheduler = new TaskScheduler(1);
+
+		CountDownLatch gate = new CountDownLatch(1);
+		submit("a", "a0", gate, TaskPriority.INTERACTIVE);
+		assertEquals("a0", started.poll(TIMEOUT, TimeUnit.SECONDS));
+
+		// a suspended task waiting to be resumed
+		final Task task = new LocalTask(new NamedMethod("a"), null, false, TaskStatus.SUSPENDED);
+		scheduler.submit(task, new Runnable() {
+			@Override
+			public void run() {
+				started.add("a1");
+			}
+		}, TaskPriority.INTERACTIVE);
+		assertEquals(1, scheduler.getWaitingCount());
+
+		task.abort(false);
+		assertEquals(TaskStatus.ABORTED, task.getStatus());
+		assertEquals(0, scheduler.getWaitingCount());
+
+		gate.countDown();
+		assertNull(started.poll(200, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testSuspendedWaitingTaskIsRemoved() throws Exception {
+		scheduler = new TaskScheduler(1);
+
+		CountDownLatch gate = new CountDownLatch(1);
+		submit("a", "a0", gate, TaskPriority.INTERACTIVE);
+		assertEquals("a0", started.poll(TIMEOUT, TimeUnit.SECONDS));
+
+		LocalTask task = new LocalTask(new SuspendableNamedMethod("s"), null);
+		task.start(new TaskExecutor() {
+			@Override
+			public void execute(Runnable runnable) {
+				scheduler.submit((Task) runnable, runnable, TaskPriority.BATCH);
+			}
+		});
+		assertEquals(TaskStatus.ACTIVE_WAITING, task.getStatus());
+		assertEquals(1, scheduler.getWaitingCount());
+
+		task.suspend(false);
+		assertEquals(TaskStatus.SUSPENDED, task.getStatus());
+		assertEquals(0, scheduler.getWaitingCount());
+		gate.countDown();
+	}
+
+	@Test
+	public void testNestedTaskDoesNotWaitForWorker() throws Exception {
+		scheduler = new TaskScheduler(1);
+
+		final CountDownLatch nestedDone = new CountDownLatch(1);
+		final CountDownLatch parentDone = new CountDownLatch(1);
+		scheduler.submit(new LocalTask(new NamedMethod("parent"), null), new Runnable() {
+			@Override
+			public void run() {
+				scheduler.submit(new LocalTask(new NamedMethod("nested"), null), new Runnable() {
+					@Override
+					public void run() {
+						nestedDone.countDown();
+					}
+				}, TaskPriority.INTERACTIVE);
+				try {
+					// the parent holds the only worker while it waits
+					if (nestedDone.await(TIMEOUT, TimeUnit.SECONDS)) {
+						parentDone.countDown();
+					}
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, TaskPriority.INTERACTIVE);
+
+		assertTrue(parentDone.await(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals(0, scheduler.getWaitingCount());
+	}
+
+	private Task submit(String methodName, final String name, final CountDownLatch gate, TaskPriority priority) {
+		Task task = new LocalTask(new NamedMethod(methodName), null);
+		scheduler.submit(task, new Runnable() {
+			@Override
+			public void run() {
+				started.add(name);
+				try {
+					gate.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, priority);
+		return task;
+	}
+
+	private static class NamedMethod implements Method {
+
+		private final String name;
+
+		private NamedMethod(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getUID() {
+			return name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public int[] getVersion() {
+			return new int[] { 1, 0 };
+		}
+
+		@Override
+		public boolean supportsDataClass(Class<?> clazz) {
+			return true;
+		}
+
+		@Override
+		public BaseMethodData createData() {
+			return null;
+		}
+
+		@Override
+		public Class<?> getResultClass() {
+			return Object.class;
+		}
+
+		@Override
+		public Object compute(Object data, MethodExecutionTracker tracker) {
+			return null;
+		}
+
+	}
+
+	private static class SuspendableNamedMethod extends NamedMethod implements SuspendableMethod {
+
+		private SuspendableNamedMethod(String name) {
+			super(name);
+		}
+
+		@Override
+		public boolean isDataSuspended(Object data) {
+			return false;
+		}
+
+	}
+
+}
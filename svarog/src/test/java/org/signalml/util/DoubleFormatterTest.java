@@ -0,0 +1,97 @@
+package org.signalml.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks if the text written by {@link DoubleFormatter} reads back as
+ * the formatted value and is (almost always) not longer than needed.
+ */
+public class DoubleFormatterTest {
+
+	private byte[] buffer = new byte[DoubleFormatter.MAX_LENGTH + 3];
+
+	@Test
+	public void testKnownValues() {
+		assertEquals("0.0", format(0.0));
+		assertEquals("-0.0", format(-0.0));
+		assertEquals("1.0", format(1.0));
+		assertEquals("-12.5", format(-12.5));
+		assertEquals("0.1", format(0.1));
+		assertEquals("100.0", format(100.0));
+		assertEquals("0.3", format(0.3));
+		assertEquals("123456.789", format(123456.789));
+		assertEquals("0.000001", format(0.000001));
+		assertEquals("0.0000001", format(1e-7));
+		assertEquals("1.0E-8", format(1e-8));
+		assertEquals("1.5E-8", format(1.5e-8));
+		assertEquals("100000000000000000000.0", format(1e20));
+		assertEquals("1.0E21", format(1e21));
+		assertEquals("1.7976931348623157E308", format(Double.MAX_VALUE));
+		assertEquals("5.0E-324", format(Double.MIN_VALUE));
+		assertEquals("NaN", format(Double.NaN));
+		assertEquals("Infinity", format(Double.POSITIVE_INFINITY));
+		assertEquals("-Infinity", format(Double.NEGATIVE_INFINITY));
+	}
+
+	@Test
+	public void testRandomValuesReadBack() {
+		Random random = new Random(17);
+		int longer = 0;
+		for (int i = 0; i < 200000; i++) {
+			double value;
+			switch (i % 3) {
+			case 0:
+				value = Double.longBitsToDouble(random.nextLong());
+				break;
+			case 1:
+				value = (random.nextDouble() - 0.5) * 2000.0;
+				break;
+			default:
+				// samples read from float signals
+				value = (float) (random.nextGaussian() * 100.0);
+				break;
+			}
+			if (Double.isNaN(value) || Double.isInfinite(value)) {
+				continue;
+			}
+			String text = format(value);
+			assertEquals(text, Double.doubleToLongBits(value), Double.doubleToLongBits(Double.parseDouble(text)));
+			int extraDigits = countDigits(text) - countDigits(Double.toString(value));
+			assertTrue(text, extraDigits <= 2);
+			if (extraDigits > 0) {
+				longer++;
+			}
+		}
+		// Grisu2 rarely gives more digits than needed, when the shortest
+		// text lies exactly on the boundary of the rounding interval
+		assertTrue("" + longer, longer < 200);
+	}
+
+	@Test
+	public void testOffset() {
+		int end = DoubleFormatter.format(2.25, buffer, 3);
+		assertEquals("2.25", new String(buffer, 3, end - 3));
+	}
+
+	private String format(double value) {
+		int end = DoubleFormatter.format(value, buffer, 0);
+		assertTrue(end <= DoubleFormatter.MAX_LENGTH);
+		return new String(buffer, 0, end);
+	}
+
+	/**
+	 * Returns the number of significant digits in a formatted value.
+	 */
+	private int countDigits(String text) {
+		int exponent = text.indexOf('E');
+		String mantissa = (exponent >= 0 ? text.substring(0, exponent) : text).replace("-", "").replace(".", "");
+		mantissa = mantissa.replaceAll("^0+", "").replaceAll("0+$", "");
+		return Math.max(1, mantissa.length());
+	}
+
+}
@@ -0,0 +1,123 @@
+package org.signalml.util.matfiles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.signalml.util.matfiles.array.lazy.ILazyDoubleArrayDataProvider;
+import org.signalml.util.matfiles.array.lazy.LazyExportDoubleArray;
+import org.signalml.util.matfiles.elements.Header;
+import org.signalml.util.matfiles.types.DataType;
+
+/**
+ * Checks if {@link CompressedMatlabFileWriter} writes the same data as
+ * {@link MatlabFileWriter}, compressed on one or more threads.
+ */
+public class CompressedMatlabFileWriterTest {
+
+	private static final int ROWS = 5;
+	private static final int COLUMNS = 10000;
+
+	private File uncompressedFile;
+	private File compressedFile;
+
+	@Before
+	public void setUp() throws IOException {
+		uncompressedFile = File.createTempFile("uncompressed", ".mat");
+		compressedFile = File.createTempFile("compressed", ".mat");
+	}
+
+	@After
+	public void tearDown() {
+		uncompressedFile.delete();
+		compressedFile.delete();
+	}
+
+	@Test
+	public void testSingleThread() throws IOException {
+		checkWriter(1);
+	}
+
+	@Test
+	public void testManyThreads() throws IOException {
+		checkWriter(4);
+	}
+
+	private void checkWriter(int threadCount) throws IOException {
+		MatlabFileWriter uncompressedWriter = new MatlabFileWriter(uncompressedFile);
+		uncompressedWriter.addElement(new LazyExportDoubleArray("data", new SineProvider()));
+		uncompressedWriter.write();
+
+		CompressedMatlabFileWriter compressedWriter = new CompressedMatlabFileWriter(compressedFile);
+		compressedWriter.setCompressionThreadCount(threadCount);
+		compressedWriter.addElement(new LazyExportDoubleArray("data", new SineProvider()));
+		compressedWriter.write();
+
+		int headerSize = new Header().getTotalSizeInBytes();
+		byte[] uncompressed = readFile(uncompressedFile);
+		byte[] expected = Arrays.copyOfRange(uncompressed, headerSize, uncompressed.length);
+
+		byte[] compressed = readFile(compressedFile);
+		DataInputStream tag = new DataInputStream(new ByteArrayInputStream(compressed, headerSize, 8));
+		assertEquals(DataType.MI_COMPRESSED.getValue(), tag.readInt());
+
+		InflaterInputStream input = new InflaterInputStream(new ByteArrayInputStream(compressed, headerSize + 8, compressed.length));
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int count;
+		while ((count = input.read(buffer)) != -1) {
+			output.write(buffer, 0, count);
+		}
+		assertTrue(Arrays.equals(expected, output.toByteArray()));
+	}
+
+	private byte[] readFile(File file) throws IOException {
+		byte[] bytes = new byte[(int) file.length()];
+		DataInputStream input = new DataInputStream(new FileInputStream(file));
+		input.readFully(bytes);
+		input.close();
+		return bytes;
+	}
+
+	private static class SineProvider implements ILazyDoubleArrayDataProvider {
+
+		@Override
+		public double[][] getDataChunk(int column, int length) {
+			double[][] target = new double[ROWS][length];
+			getDataChunk(target, column, length);
+			return target;
+		}
+
+		@Override
+		public void getDataChunk(double[][] target, int column, int length) {
+			for (int i = 0; i < ROWS; i++) {
+				for (int j = 0; j < length; j++) {
+					target[i][j] = Math.sin((column + j) * (i + 1) * 0.01);
+				}
+			}
+		}
+
+		@Override
+		public int getNumberOfColumns() {
+			return COLUMNS;
+		}
+
+		@Override
+		public int getNumberOfRows() {
+			return ROWS;
+		}
+
+	}
+
+}
@@ -0,0 +1,131 @@
+package org.signalml.util.matfiles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks if the data written by {@link ParallelDeflaterOutputStream}
+ * is a valid zlib stream containing the original data.
+ */
+public class ParallelDeflaterOutputStreamTest {
+
+	private static final int BLOCK_SIZE = 1000;
+
+	@Before
+	public void setUp() {
+		assumeTrue(ParallelDeflaterOutputStream.isSupported());
+	}
+
+	@Test
+	public void testCompressibleData() throws IOException {
+		byte[] data = new byte[25 * BLOCK_SIZE + 17];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i % 13 + (i / 100) % 7);
+		}
+		checkRoundTrip(data, 4);
+	}
+
+	@Test
+	public void testRandomData() throws IOException {
+		byte[] data = new byte[10 * BLOCK_SIZE];
+		new Random(7).nextBytes(data);
+		checkRoundTrip(data, 3);
+		checkRoundTrip(data, 1);
+	}
+
+	@Test
+	public void testEmptyAndShortData() throws IOException {
+		checkRoundTrip(new byte[0], 2);
+		checkRoundTrip(new byte[] { 1, 2, 3 }, 2);
+	}
+
+	@Test
+	public void testSingleBytes() throws IOException {
+		byte[] data = new byte[3 * BLOCK_SIZE + 1];
+		new Random(11).nextBytes(data);
+
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		ParallelDeflaterOutputStream stream = new ParallelDeflaterOutputStream(compressed, BLOCK_SIZE, 2);
+		for (byte b : data) {
+			stream.write(b);
+		}
+		stream.close();
+
+		assertTrue(Arrays.equals(data, inflate(compressed.toByteArray())));
+	}
+
+	@Test
+	public void testCombineAdler32() {
+		byte[] data = new byte[5000];
+		new Random(5).nextBytes(data);
+
+		Adler32 whole = new Adler32();
+		whole.update(data);
+		Adler32 first = new Adler32();
+		first.update(data, 0, 1234);
+		Adler32 second = new Adler32();
+		second.update(data, 1234, data.length - 1234);
+
+		assertEquals(whole.getValue(), ParallelDeflaterOutputStream.combineAdler32(first.getValue(), second.getValue(), data.length - 1234));
+		assertEquals(whole.getValue(), ParallelDeflaterOutputStream.combineAdler32(1, whole.getValue(), data.length));
+	}
+
+	private void checkRoundTrip(byte[] data, int threadCount) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		ParallelDeflaterOutputStream stream = new ParallelDeflaterOutputStream(compressed, BLOCK_SIZE, threadCount);
+		// write in pieces which do not match the blocks
+		for (int offset = 0; offset < data.length; offset += 777) {
+			stream.write(data, offset, Math.min(777, data.length - offset));
+		}
+		stream.finish();
+
+		assertTrue(Arrays.equals(data, inflate(compressed.toByteArray())));
+	}
+
+	@Test
+	public void testAbort() throws IOException {
+		byte[] data = new byte[20 * BLOCK_SIZE];
+		new Random(3).nextBytes(data);
+
+		ParallelDeflaterOutputStream stream = new ParallelDeflaterOutputStream(new ByteArrayOutputStream(), BLOCK_SIZE, 4);
+		stream.write(data, 0, data.length);
+		stream.abort();
+		assertTrue(stream.isReleased());
+
+		try {
+			stream.write(data, 0, 10);
+			fail("Writing to an aborted stream should fail");
+		} catch (IOException ex) {
+			// expected
+		}
+		// finishing an aborted stream does nothing
+		stream.finish();
+	}
+
+	private byte[] inflate(byte[] compressed) throws IOException {
+		// the inflater checks the Adler-32 checksum at the end of the stream
+		InflaterInputStream input = new InflaterInputStream(new ByteArrayInputStream(compressed));
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int count;
+		while ((count = input.read(buffer)) != -1) {
+			output.write(buffer, 0, count);
+		}
+		input.close();
+		return output.toByteArray();
+	}
+
+}